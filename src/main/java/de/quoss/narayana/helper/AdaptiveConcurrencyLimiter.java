@@ -0,0 +1,254 @@
+package de.quoss.narayana.helper;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.jms.JMSException;
+import javax.jms.ResourceAllocationException;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ *   Limits the number of transactions of a {@link ConnectionFactoryProxy} with enlisted xa sessions or contexts at
+ *   the same time, so a slow broker is not flooded by every worker thread at once.
+ * </p>
+ * <p>
+ *   A transaction takes a permit before its first session or context is created and returns it when it completes,
+ *   further enlistments do not wait, so a transaction never waits for a permit while holding one. The limit adapts
+ *   to the time from taking the permit to the completion (AIMD): every transaction committed within the target
+ *   latency raises it by one per limit's worth of completions, every slower one or a failure of the transaction
+ *   system lowers it by the backoff ratio. A rollback only lowers it if it was slow, rollbacks requested by the
+ *   application say nothing about the broker. Callers over the limit wait up to the acquire timeout and are then
+ *   rejected with a {@link ResourceAllocationException}.
+ * </p>
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AdaptiveConcurrencyLimiter.class);
+
+    private static final double BACKOFF_RATIO = 0.9D;
+
+    private final int minLimit;
+
+    private final int maxLimit;
+
+    private final long targetLatencyNanos;
+
+    private final long acquireTimeoutMillis;
+
+    /** Permits held by transactions, by transaction key. */
+    private final Map<Object, Permit> permits = new HashMap<>();
+
+    private double limit;
+
+    private int inFlight;
+
+    /**
+     * @param initialLimit limit to start with.
+     * @param minLimit lower bound of the limit.
+     * @param maxLimit upper bound of the limit.
+     * @param targetLatencyMillis completions slower than this lower the limit.
+     * @param acquireTimeoutMillis time a caller waits for a permit, {@code 0} to reject immediately.
+     */
+    public AdaptiveConcurrencyLimiter(final int initialLimit, final int minLimit, final int maxLimit, final long targetLatencyMillis,
+            final long acquireTimeoutMillis) {
+        if (minLimit <= 0 || maxLimit < minLimit) {
+            throw new NarayanaHelperException(String.format("Invalid limit bounds [%d,%d].", minLimit, maxLimit));
+        }
+        if (initialLimit < minLimit || initialLimit > maxLimit) {
+            throw new NarayanaHelperException(String.format("Initial limit %d out of bounds [%d,%d].", initialLimit, minLimit, maxLimit));
+        }
+        if (targetLatencyMillis <= 0L) {
+            throw new NarayanaHelperException("Target latency must be positive.");
+        }
+        if (acquireTimeoutMillis < 0L) {
+            throw new NarayanaHelperException("Acquire timeout must not be negative.");
+        }
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.targetLatencyNanos = TimeUnit.MILLISECONDS.toNanos(targetLatencyMillis);
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+    }
+
+    /**
+     * Take a permit for the current transaction unless it holds one already, returned when the transaction completes.
+     * Transaction helpers without transaction keys take a permit for every call.
+     *
+     * @param transactionHelper helper of the current transaction.
+     * @throws ResourceAllocationException if no permit became available in time.
+     * @throws JMSException if interrupted while waiting or the permit cannot be registered with the transaction.
+     */
+    public void acquire(final TransactionHelper transactionHelper) throws JMSException {
+        Object key = transactionHelper.getTransactionKey();
+        Permit permit;
+        synchronized (this) {
+            if (key != null && permits.containsKey(key)) {
+                return;
+            }
+            permit = new Permit(key, acquire());
+            if (key != null) {
+                permits.put(key, permit);
+            }
+        }
+        try {
+            transactionHelper.registerSynchronization(permit);
+        } catch (JMSException | RuntimeException e) {
+            // a doomed transaction says nothing about the broker
+            permit.discard();
+            throw e;
+        }
+    }
+
+    /**
+     * Have the permit of the current transaction lower the limit when the transaction completes, e.g. after a
+     * session or context could not be created or enlisted.
+     *
+     * @param transactionHelper helper of the current transaction.
+     */
+    public void failed(final TransactionHelper transactionHelper) {
+        Permit permit;
+        try {
+            Object key = transactionHelper.getTransactionKey();
+            synchronized (this) {
+                permit = key == null ? null : permits.get(key);
+            }
+        } catch (JMSException e) {
+            LOGGER.debug("Failure not recorded.", e);
+            return;
+        }
+        if (permit != null) {
+            permit.failed = true;
+        }
+    }
+
+    /**
+     * Take a permit, waiting up to the acquire timeout while the limit is reached.
+     *
+     * @return the start time to hand back to {@link #release(long, boolean)}.
+     * @throws ResourceAllocationException if no permit became available in time.
+     * @throws JMSException if interrupted while waiting.
+     */
+    public synchronized long acquire() throws JMSException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(acquireTimeoutMillis);
+        while (inFlight >= (int) limit) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0L) {
+                throw new ResourceAllocationException(String.format("Concurrency limit of %d transactions reached, no permit within %d ms.",
+                        (int) limit, acquireTimeoutMillis));
+            }
+            try {
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new JMSException("Interrupted while waiting for a concurrency permit.");
+            }
+        }
+        inFlight++;
+        return System.nanoTime();
+    }
+
+    /**
+     * Return a permit and adapt the limit.
+     *
+     * @param startNanos start time returned by {@link #acquire()}.
+     * @param success whether the work committed, failures lower the limit regardless of their latency.
+     */
+    public synchronized void release(final long startNanos, final boolean success) {
+        inFlight--;
+        int previous = (int) limit;
+        if (success && System.nanoTime() - startNanos <= targetLatencyNanos) {
+            // only grow while the limit is actually used, an idle limiter would otherwise drift to the maximum
+            if (inFlight + 1 >= previous / 2) {
+                limit = Math.min(maxLimit, limit + 1.0D / limit);
+            }
+        } else {
+            limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+        }
+        if ((int) limit != previous && LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Concurrency limit changed from {} to {}.", previous, (int) limit);
+        }
+        notifyAll();
+    }
+
+    /**
+     * @param startNanos start time returned by {@link #acquire()}.
+     * @return synchronization returning the permit when the transaction completes, see the class description for
+     *   the outcomes lowering the limit.
+     */
+    public Synchronization releaseOnCompletion(final long startNanos) {
+        return new Permit(null, startNanos);
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    // ---- Private Helper Methods ---------------------------------------
+
+    /**
+     * Return a permit without adapting the limit.
+     */
+    private synchronized void release() {
+        inFlight--;
+        notifyAll();
+    }
+
+    /**
+     * Permit of a transaction, returned when the transaction completes.
+     */
+    private final class Permit implements Synchronization {
+
+        private final Object key;
+
+        private final long startNanos;
+
+        private volatile boolean failed;
+
+        private Permit(final Object key, final long startNanos) {
+            this.key = key;
+            this.startNanos = startNanos;
+        }
+
+        @Override
+        public void beforeCompletion() {
+            // Nothing to do
+        }
+
+        @Override
+        public void afterCompletion(final int status) {
+            remove();
+            if (failed || status == Status.STATUS_COMMITTED) {
+                AdaptiveConcurrencyLimiter.this.release(startNanos, !failed);
+            } else if (status == Status.STATUS_ROLLEDBACK && System.nanoTime() - startNanos <= targetLatencyNanos) {
+                // e.g. a business rollback, a timed out transaction is slow and lowers the limit
+                AdaptiveConcurrencyLimiter.this.release();
+            } else {
+                AdaptiveConcurrencyLimiter.this.release(startNanos, false);
+            }
+        }
+
+        private void discard() {
+            remove();
+            AdaptiveConcurrencyLimiter.this.release();
+        }
+
+        private void remove() {
+            if (key != null) {
+                synchronized (AdaptiveConcurrencyLimiter.this) {
+                    permits.remove(key);
+                }
+            }
+        }
+
+    }
+
+}
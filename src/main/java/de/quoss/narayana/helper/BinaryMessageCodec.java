@@ -0,0 +1,265 @@
+package de.quoss.narayana.helper;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * <p>
+ *   Compact tagged binary codec for common record types: {@code null}, the primitive wrappers, {@link String},
+ *   {@code byte[]}, {@link UUID}, {@link Date} and lists and maps of these, nested up to {@value #MAX_DEPTH} levels.
+ * </p>
+ * <p>
+ *   Each value is written as a one byte tag followed by its fixed-size or length-prefixed content. Collections are
+ *   decoded as {@link ArrayList}, maps as {@link LinkedHashMap} keeping the encoding order.
+ * </p>
+ * <p>
+ *   The nesting depth is bounded on both sides, so self-containing collections are rejected and untrusted input
+ *   cannot overflow the stack of the decoding thread.
+ * </p>
+ */
+public class BinaryMessageCodec implements MessageCodec {
+
+    public static final String NAME = "binary";
+
+    /** Maximum number of nested lists and maps. */
+    public static final int MAX_DEPTH = 64;
+
+    private static final byte NULL = 0;
+
+    private static final byte BOOLEAN = 1;
+
+    private static final byte BYTE = 2;
+
+    private static final byte SHORT = 3;
+
+    private static final byte INTEGER = 4;
+
+    private static final byte LONG = 5;
+
+    private static final byte FLOAT = 6;
+
+    private static final byte DOUBLE = 7;
+
+    private static final byte CHARACTER = 8;
+
+    private static final byte STRING = 9;
+
+    private static final byte BYTES = 10;
+
+    private static final byte UUID_TAG = 11;
+
+    private static final byte DATE = 12;
+
+    private static final byte LIST = 13;
+
+    private static final byte MAP = 14;
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public boolean canEncode(final Object object) {
+        return canEncode(object, 0);
+    }
+
+    @Override
+    public byte[] encode(final Object object) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            write(out, object, 0);
+        }
+        return bytes.toByteArray();
+    }
+
+    @Override
+    public Object decode(final byte[] data) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+            return read(in, 0);
+        }
+    }
+
+    // ---- Private Helper Methods ---------------------------------------
+
+    private static boolean canEncode(final Object object, final int depth) {
+        if (object == null || object instanceof Boolean || object instanceof Byte || object instanceof Short
+                || object instanceof Integer || object instanceof Long || object instanceof Float || object instanceof Double
+                || object instanceof Character || object instanceof String || object instanceof byte[]
+                || object instanceof UUID || object instanceof Date) {
+            return true;
+        }
+        if ((object instanceof Collection || object instanceof Map) && depth >= MAX_DEPTH) {
+            // too deep or containing itself
+            return false;
+        }
+        if (object instanceof Collection) {
+            for (Object element : (Collection<?>) object) {
+                if (!canEncode(element, depth + 1)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if (object instanceof Map) {
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) object).entrySet()) {
+                if (!canEncode(entry.getKey(), depth + 1) || !canEncode(entry.getValue(), depth + 1)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private static void write(final DataOutputStream out, final Object object, final int depth) throws IOException {
+        if (object == null) {
+            out.writeByte(NULL);
+        } else if (object instanceof Boolean) {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean((Boolean) object);
+        } else if (object instanceof Byte) {
+            out.writeByte(BYTE);
+            out.writeByte((Byte) object);
+        } else if (object instanceof Short) {
+            out.writeByte(SHORT);
+            out.writeShort((Short) object);
+        } else if (object instanceof Integer) {
+            out.writeByte(INTEGER);
+            out.writeInt((Integer) object);
+        } else if (object instanceof Long) {
+            out.writeByte(LONG);
+            out.writeLong((Long) object);
+        } else if (object instanceof Float) {
+            out.writeByte(FLOAT);
+            out.writeFloat((Float) object);
+        } else if (object instanceof Double) {
+            out.writeByte(DOUBLE);
+            out.writeDouble((Double) object);
+        } else if (object instanceof Character) {
+            out.writeByte(CHARACTER);
+            out.writeChar((Character) object);
+        } else if (object instanceof String) {
+            out.writeByte(STRING);
+            // not writeUTF, strings may exceed 64k
+            writeBytes(out, ((String) object).getBytes(StandardCharsets.UTF_8));
+        } else if (object instanceof byte[]) {
+            out.writeByte(BYTES);
+            writeBytes(out, (byte[]) object);
+        } else if (object instanceof UUID) {
+            out.writeByte(UUID_TAG);
+            out.writeLong(((UUID) object).getMostSignificantBits());
+            out.writeLong(((UUID) object).getLeastSignificantBits());
+        } else if (object instanceof Date) {
+            out.writeByte(DATE);
+            out.writeLong(((Date) object).getTime());
+        } else if (object instanceof Collection) {
+            checkDepth(depth);
+            Collection<?> collection = (Collection<?>) object;
+            out.writeByte(LIST);
+            out.writeInt(collection.size());
+            for (Object element : collection) {
+                write(out, element, depth + 1);
+            }
+        } else if (object instanceof Map) {
+            checkDepth(depth);
+            Map<?, ?> map = (Map<?, ?>) object;
+            out.writeByte(MAP);
+            out.writeInt(map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                write(out, entry.getKey(), depth + 1);
+                write(out, entry.getValue(), depth + 1);
+            }
+        } else {
+            throw new IOException(String.format("Objects of type %s are not supported.", object.getClass().getName()));
+        }
+    }
+
+    private static void writeBytes(final DataOutputStream out, final byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static Object read(final DataInputStream in, final int depth) throws IOException {
+        byte tag = in.readByte();
+        switch (tag) {
+            case NULL:
+                return null;
+            case BOOLEAN:
+                return in.readBoolean();
+            case BYTE:
+                return in.readByte();
+            case SHORT:
+                return in.readShort();
+            case INTEGER:
+                return in.readInt();
+            case LONG:
+                return in.readLong();
+            case FLOAT:
+                return in.readFloat();
+            case DOUBLE:
+                return in.readDouble();
+            case CHARACTER:
+                return in.readChar();
+            case STRING:
+                return new String(readBytes(in), StandardCharsets.UTF_8);
+            case BYTES:
+                return readBytes(in);
+            case UUID_TAG:
+                return new UUID(in.readLong(), in.readLong());
+            case DATE:
+                return new Date(in.readLong());
+            case LIST:
+                checkDepth(depth);
+                int size = readSize(in);
+                List<Object> list = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    list.add(read(in, depth + 1));
+                }
+                return list;
+            case MAP:
+                checkDepth(depth);
+                int entries = readSize(in);
+                Map<Object, Object> map = new LinkedHashMap<>();
+                for (int i = 0; i < entries; i++) {
+                    map.put(read(in, depth + 1), read(in, depth + 1));
+                }
+                return map;
+            default:
+                throw new IOException(String.format("Unknown tag %d.", tag));
+        }
+    }
+
+    private static void checkDepth(final int depth) throws IOException {
+        if (depth >= MAX_DEPTH) {
+            throw new IOException(String.format("Nesting depth exceeds %d.", MAX_DEPTH));
+        }
+    }
+
+    private static byte[] readBytes(final DataInputStream in) throws IOException {
+        byte[] result = new byte[readSize(in)];
+        in.readFully(result);
+        return result;
+    }
+
+    private static int readSize(final DataInputStream in) throws IOException {
+        int result = in.readInt();
+        // the remaining input is a cheap upper bound, guards against allocating for corrupt sizes
+        if (result < 0 || result > in.available()) {
+            throw new IOException(String.format("Invalid size %d.", result));
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,77 @@
+package de.quoss.narayana.helper;
+
+import javax.jms.BytesMessage;
+import javax.jms.JMSException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * <p>
+ *   Copies {@link BytesMessage} bodies from and to {@link ByteBuffer}s for one session or context.
+ * </p>
+ * <p>
+ *   The JMS API only takes arrays. Heap buffers are handed to the provider through their backing array without an
+ *   intermediate copy, whenever the API allows it. Direct and read-only buffers go through a scratch array of at
+ *   most {@value #SCRATCH_SIZE} bytes, which is reused and never grows with the payload.
+ * </p>
+ */
+final class BytesMessageBuffers {
+
+    static final int SCRATCH_SIZE = 64 * 1024;
+
+    private byte[] scratch;
+
+    /**
+     * Write the remaining bytes of the buffer to the message body, the buffer position is moved to its limit.
+     */
+    void write(final BytesMessage message, final ByteBuffer body) throws JMSException {
+        if (body.hasArray()) {
+            message.writeBytes(body.array(), body.arrayOffset() + body.position(), body.remaining());
+            body.position(body.limit());
+            return;
+        }
+        byte[] chunk = getScratch(body.remaining());
+        while (body.hasRemaining()) {
+            int length = Math.min(chunk.length, body.remaining());
+            body.get(chunk, 0, length);
+            message.writeBytes(chunk, 0, length);
+        }
+    }
+
+    /**
+     * Read the remaining message body into the buffer, starting at its position.
+     *
+     * @return number of bytes read.
+     * @throws BufferOverflowException if the remaining body does not fit, nothing is read in that case.
+     */
+    int read(final BytesMessage message, final ByteBuffer target) throws JMSException {
+        long length = message.getBodyLength();
+        if (length > target.remaining()) {
+            throw new BufferOverflowException();
+        }
+        int result = 0;
+        if (target.hasArray() && target.arrayOffset() + target.position() == 0) {
+            // readBytes always fills the array from index 0
+            result = Math.max(0, message.readBytes(target.array(), target.remaining()));
+            target.position(target.position() + result);
+            return result;
+        }
+        byte[] chunk = getScratch((int) length);
+        int read;
+        while ((read = message.readBytes(chunk, Math.min(chunk.length, target.remaining()))) > 0) {
+            target.put(chunk, 0, read);
+            result += read;
+        }
+        return result;
+    }
+
+    // ---- Private Helper Methods ---------------------------------------
+
+    private byte[] getScratch(final int length) {
+        if (scratch == null || scratch.length < Math.min(length, SCRATCH_SIZE)) {
+            scratch = new byte[Math.max(1, Math.min(length, SCRATCH_SIZE))];
+        }
+        return scratch;
+    }
+
+}
@@ -0,0 +1,252 @@
+package de.quoss.narayana.helper;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.jms.BytesMessage;
+import javax.jms.JMSException;
+import javax.jms.MessageFormatException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * <p>
+ *   Writes the chunks of streams sent by a {@link ChunkedStreamSender} straight to files in a directory.
+ * </p>
+ * <p>
+ *   Chunks are written at their offset, so they may arrive in any order and redelivered chunks simply overwrite
+ *   themselves. A stream is written to {@code <stream id>.part} and renamed to {@code <stream id>} once all of its
+ *   chunks have arrived. Instances are not thread safe, use one per consumer.
+ * </p>
+ * <p>
+ *   The chunks received so far are recorded in {@code <stream id>.chunks} next to the part, both are forced to disk
+ *   before {@link #onMessage(BytesMessage)} returns. A reassembler created after a restart picks up the recorded
+ *   chunks and completes the stream with the remaining ones. Chunks of streams already completed, e.g. a
+ *   redelivered last chunk, are ignored as long as the completed file is in the directory or the stream was
+ *   completed by this instance recently.
+ * </p>
+ */
+public class ChunkedStreamReassembler implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ChunkedStreamReassembler.class);
+
+    private static final String PART_SUFFIX = ".part";
+
+    private static final String CHUNKS_SUFFIX = ".chunks";
+
+    private static final int MAX_COMPLETED_STREAMS = 1_024;
+
+    private final Path directory;
+
+    private final Map<String, Stream> streams = new HashMap<>();
+
+    /** Ids of the streams completed last, oldest first. */
+    private final Set<String> completedStreams = Collections.newSetFromMap(new LinkedHashMap<String, Boolean>() {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, Boolean> eldest) {
+            return size() > MAX_COMPLETED_STREAMS;
+        }
+
+    });
+
+    private byte[] buffer = new byte[0];
+
+    /**
+     * @param directory existing directory the streams are written to.
+     */
+    public ChunkedStreamReassembler(final Path directory) {
+        if (directory == null || !Files.isDirectory(directory)) {
+            throw new NarayanaHelperException(String.format("Directory %s does not exist.", directory));
+        }
+        this.directory = directory;
+    }
+
+    /**
+     * Write a received chunk.
+     *
+     * @param message chunk message.
+     * @return the file of the stream if this chunk completed it, {@code null} otherwise.
+     * @throws MessageFormatException if the message is not a chunk.
+     * @throws JMSException if the message cannot be read.
+     * @throws IOException if the chunk cannot be written.
+     */
+    public Path onMessage(final BytesMessage message) throws JMSException, IOException {
+        String streamId = message.getStringProperty(ChunkedStreamSender.STREAM_ID_PROPERTY);
+        if (streamId == null) {
+            throw new MessageFormatException("Message is not a chunk.");
+        }
+        // the id becomes a file name, only accept what the sender generates
+        try {
+            UUID.fromString(streamId);
+        } catch (IllegalArgumentException e) {
+            throw new MessageFormatException(String.format("Invalid stream id %s.", streamId));
+        }
+        int index = message.getIntProperty(ChunkedStreamSender.CHUNK_INDEX_PROPERTY);
+        long offset = message.getLongProperty(ChunkedStreamSender.CHUNK_OFFSET_PROPERTY);
+        boolean last = message.getBooleanProperty(ChunkedStreamSender.LAST_CHUNK_PROPERTY);
+        Stream stream = streams.get(streamId);
+        if (stream == null) {
+            if (isCompleted(streamId)) {
+                LOGGER.debug("Ignoring chunk {} of completed stream {}.", index, streamId);
+                return null;
+            }
+            stream = openStream(streamId);
+            streams.put(streamId, stream);
+        }
+        int length = (int) message.getBodyLength();
+        if (buffer.length < length) {
+            buffer = new byte[length];
+        }
+        message.readBytes(buffer, length);
+        ByteBuffer chunk = ByteBuffer.wrap(buffer, 0, length);
+        long position = offset;
+        while (chunk.hasRemaining()) {
+            position += stream.channel.write(chunk, position);
+        }
+        stream.received.set(index);
+        if (last) {
+            stream.chunkCount = index + 1;
+            stream.channel.truncate(offset + length);
+        }
+        // the chunk must be on disk before it is recorded, the record before the message is acknowledged
+        stream.channel.force(false);
+        if (stream.chunkCount < 0 || stream.received.cardinality() < stream.chunkCount) {
+            stream.record();
+            return null;
+        }
+        streams.remove(streamId);
+        stream.close();
+        Path result = Files.move(directory.resolve(streamId + PART_SUFFIX), directory.resolve(streamId), StandardCopyOption.REPLACE_EXISTING);
+        completedStreams.add(streamId);
+        Files.deleteIfExists(directory.resolve(streamId + CHUNKS_SUFFIX));
+        return result;
+    }
+
+    /**
+     * @return number of streams with chunks missing.
+     */
+    public int getIncompleteStreamCount() {
+        return streams.size();
+    }
+
+    /**
+     * Close the files of incomplete streams, their parts and chunk records are left in the directory.
+     */
+    @Override
+    public void close() {
+        for (Map.Entry<String, Stream> entry : streams.entrySet()) {
+            try {
+                entry.getValue().close();
+            } catch (IOException e) {
+                LOGGER.warn(String.format("Failed to close part of stream %s.", entry.getKey()), e);
+            }
+        }
+        streams.clear();
+    }
+
+    // ---- Private Helper Methods ---------------------------------------
+
+    private boolean isCompleted(final String streamId) throws IOException {
+        if (!completedStreams.contains(streamId) && !Files.exists(directory.resolve(streamId))) {
+            return false;
+        }
+        // a record left behind by a restart between completing the stream and deleting the record
+        Files.deleteIfExists(directory.resolve(streamId + CHUNKS_SUFFIX));
+        return true;
+    }
+
+    private Stream openStream(final String streamId) throws IOException {
+        FileChannel channel = FileChannel.open(directory.resolve(streamId + PART_SUFFIX), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileChannel chunks;
+        try {
+            chunks = FileChannel.open(directory.resolve(streamId + CHUNKS_SUFFIX), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        Stream result = new Stream(channel, chunks);
+        try {
+            result.load();
+        } catch (IOException e) {
+            result.close();
+            throw e;
+        }
+        if (result.received.cardinality() > 0) {
+            LOGGER.info("Resuming stream {} with {} chunks recorded.", streamId, result.received.cardinality());
+        }
+        return result;
+    }
+
+    private static final class Stream {
+
+        private final FileChannel channel;
+
+        /** Chunk count, -1 while unknown, followed by the bitmap of the received chunks. */
+        private final FileChannel chunks;
+
+        private BitSet received = new BitSet();
+
+        private int chunkCount = -1;
+
+        private Stream(final FileChannel channel, final FileChannel chunks) {
+            this.channel = channel;
+            this.chunks = chunks;
+        }
+
+        private void load() throws IOException {
+            long size = chunks.size();
+            if (size < Integer.BYTES) {
+                // new stream or a record torn by a crash, the chunks are redelivered in that case
+                return;
+            }
+            ByteBuffer record = ByteBuffer.allocate((int) size);
+            while (record.hasRemaining() && chunks.read(record, record.position()) >= 0) {
+                // read the whole record
+            }
+            record.flip();
+            chunkCount = record.getInt();
+            received = BitSet.valueOf(record.asLongBuffer());
+        }
+
+        private void record() throws IOException {
+            long[] words = received.toLongArray();
+            ByteBuffer record = ByteBuffer.allocate(Integer.BYTES + words.length * Long.BYTES);
+            record.putInt(chunkCount);
+            for (long word : words) {
+                record.putLong(word);
+            }
+            record.flip();
+            while (record.hasRemaining()) {
+                chunks.write(record, record.position());
+            }
+            chunks.truncate(record.capacity());
+            chunks.force(false);
+        }
+
+        private void close() throws IOException {
+            try {
+                channel.close();
+            } finally {
+                chunks.close();
+            }
+        }
+
+    }
+
+}
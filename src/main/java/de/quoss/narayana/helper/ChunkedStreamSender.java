@@ -0,0 +1,162 @@
+package de.quoss.narayana.helper;
+
+import javax.jms.BytesMessage;
+import javax.jms.JMSException;
+import javax.jms.MessageProducer;
+import javax.jms.Session;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.UUID;
+
+/**
+ * <p>
+ *   Sends large payloads as a stream of fixed-size {@link BytesMessage} chunks, so only one chunk is held in heap
+ *   at a time. Consumers put the payload back together with a {@link ChunkedStreamReassembler}.
+ * </p>
+ * <p>
+ *   The chunks are sent with the producer given, i.e. within the transaction the session of a {@link SessionProxy}
+ *   is enlisted in: either all chunks of a stream are delivered or none. Every chunk carries the stream id, its
+ *   index, its offset in the payload and whether it is the last one as message properties. Instances reuse their
+ *   chunk buffer and are not thread safe, like the session they belong to.
+ * </p>
+ */
+public class ChunkedStreamSender {
+
+    /** Message property holding the id of the stream a chunk belongs to. */
+    public static final String STREAM_ID_PROPERTY = "NarayanaHelperStreamId";
+
+    /** Message property holding the zero-based index of a chunk. */
+    public static final String CHUNK_INDEX_PROPERTY = "NarayanaHelperChunkIndex";
+
+    /** Message property holding the offset of a chunk in the payload. */
+    public static final String CHUNK_OFFSET_PROPERTY = "NarayanaHelperChunkOffset";
+
+    /** Message property marking the last chunk of a stream. */
+    public static final String LAST_CHUNK_PROPERTY = "NarayanaHelperLastChunk";
+
+    private final Session session;
+
+    private final byte[] chunk;
+
+    /**
+     * @param session session creating the chunk messages, usually a {@link SessionProxy}.
+     * @param chunkSize maximum number of payload bytes per message.
+     */
+    public ChunkedStreamSender(final Session session, final int chunkSize) {
+        if (session == null) {
+            throw new NarayanaHelperException("Session must not be null.");
+        }
+        if (chunkSize <= 0) {
+            throw new NarayanaHelperException("Chunk size must be positive.");
+        }
+        this.session = session;
+        this.chunk = new byte[chunkSize];
+    }
+
+    /**
+     * Send the remaining content of an input stream. The stream is not closed.
+     *
+     * @param producer producer of the session.
+     * @param in the payload.
+     * @return the id of the stream.
+     * @throws JMSException if a chunk cannot be sent.
+     * @throws IOException if the payload cannot be read.
+     */
+    public String send(final MessageProducer producer, final InputStream in) throws JMSException, IOException {
+        String streamId = UUID.randomUUID().toString();
+        long offset = 0L;
+        int index = 0;
+        int length = readChunk(in, 0);
+        // a single byte of look-ahead tells whether a full chunk is the last one without a second buffer
+        int next = length < chunk.length ? -1 : in.read();
+        while (true) {
+            sendChunk(producer, streamId, index++, offset, length, next < 0);
+            offset += length;
+            if (next < 0) {
+                return streamId;
+            }
+            chunk[0] = (byte) next;
+            length = readChunk(in, 1);
+            next = length < chunk.length ? -1 : in.read();
+        }
+    }
+
+    /**
+     * Send the content of a file channel from its current position to its end. The channel is not closed.
+     *
+     * @param producer producer of the session.
+     * @param channel the payload.
+     * @return the id of the stream.
+     * @throws JMSException if a chunk cannot be sent.
+     * @throws IOException if the payload cannot be read.
+     */
+    public String send(final MessageProducer producer, final FileChannel channel) throws JMSException, IOException {
+        String streamId = UUID.randomUUID().toString();
+        ByteBuffer buffer = ByteBuffer.wrap(chunk);
+        long offset = 0L;
+        int index = 0;
+        long remaining = channel.size() - channel.position();
+        do {
+            buffer.clear();
+            buffer.limit((int) Math.min(chunk.length, remaining));
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // fill the chunk
+            }
+            int length = buffer.position();
+            remaining = length < buffer.limit() ? 0L : remaining - length;
+            sendChunk(producer, streamId, index++, offset, length, remaining == 0L);
+            offset += length;
+        } while (remaining > 0L);
+        return streamId;
+    }
+
+    /**
+     * Send the remaining content of a buffer, e.g. a memory-mapped file. The buffer position is moved to its limit.
+     *
+     * @param producer producer of the session.
+     * @param payload the payload.
+     * @return the id of the stream.
+     * @throws JMSException if a chunk cannot be sent.
+     */
+    public String send(final MessageProducer producer, final ByteBuffer payload) throws JMSException {
+        String streamId = UUID.randomUUID().toString();
+        long offset = 0L;
+        int index = 0;
+        do {
+            int length = Math.min(chunk.length, payload.remaining());
+            // providers only take arrays, one chunk of a mapped file is paged into heap at a time
+            payload.get(chunk, 0, length);
+            sendChunk(producer, streamId, index++, offset, length, !payload.hasRemaining());
+            offset += length;
+        } while (payload.hasRemaining());
+        return streamId;
+    }
+
+    // ---- Private Helper Methods ---------------------------------------
+
+    private int readChunk(final InputStream in, final int start) throws IOException {
+        int length = start;
+        while (length < chunk.length) {
+            int read = in.read(chunk, length, chunk.length - length);
+            if (read < 0) {
+                break;
+            }
+            length += read;
+        }
+        return length;
+    }
+
+    private void sendChunk(final MessageProducer producer, final String streamId, final int index, final long offset, final int length,
+            final boolean last) throws JMSException {
+        BytesMessage message = session.createBytesMessage();
+        message.setStringProperty(STREAM_ID_PROPERTY, streamId);
+        message.setIntProperty(CHUNK_INDEX_PROPERTY, index);
+        message.setLongProperty(CHUNK_OFFSET_PROPERTY, offset);
+        message.setBooleanProperty(LAST_CHUNK_PROPERTY, last);
+        message.writeBytes(chunk, 0, length);
+        producer.send(message);
+    }
+
+}
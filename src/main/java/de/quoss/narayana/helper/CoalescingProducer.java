@@ -0,0 +1,283 @@
+package de.quoss.narayana.helper;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.jms.BytesMessage;
+import javax.jms.Destination;
+import javax.jms.JMSContext;
+import javax.jms.JMSException;
+import javax.jms.JMSProducer;
+import javax.jms.MessageFormatException;
+import javax.jms.MessageProducer;
+import javax.jms.Session;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ *   Packs many small logical text or bytes messages with their properties into one envelope {@link BytesMessage},
+ *   so the broker pays its per-message overhead once per envelope. An {@link EnvelopeUnpacker} hands them to the
+ *   consumer side as individual messages again.
+ * </p>
+ * <p>
+ *   Logical messages are buffered until the envelope reaches the maximum number of messages or bytes, or the first
+ *   buffered message reached the maximum delay when another one is sent. Within a transaction the rest is sent
+ *   before the transaction completes, so an envelope never spans transactions, and a rollback discards the messages
+ *   of the transaction only: messages buffered outside of a transaction are sent before the first message of a
+ *   transaction is added. Outside of a transaction the caller must call {@link #flush()} or {@link #close()} to send
+ *   the rest, the producer has no timer thread of its own since sessions must not be used by several threads.
+ * </p>
+ * <p>
+ *   Envelopes are sent with a {@link MessageProducer} of a session or a {@link JMSProducer} of a context, the latter
+ *   failing with the runtime exceptions of the simplified api.
+ * </p>
+ * <p>
+ *   The envelope is encoded with the {@link BinaryMessageCodec} and marked with the int property
+ *   {@value #ENVELOPE_PROPERTY} holding the number of logical messages. Property values are restricted to the
+ *   types allowed for message properties.
+ * </p>
+ */
+public class CoalescingProducer implements AutoCloseable {
+
+    /** Message property marking an envelope, holding the number of logical messages. */
+    public static final String ENVELOPE_PROPERTY = "NarayanaHelperEnvelope";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CoalescingProducer.class);
+
+    private static final BinaryMessageCodec CODEC = new BinaryMessageCodec();
+
+    /** Rough encoded size of an entry without its body and properties. */
+    private static final int ENTRY_OVERHEAD = 16;
+
+    private final Session session;
+
+    private final MessageProducer producer;
+
+    private final JMSContext context;
+
+    private final JMSProducer jmsProducer;
+
+    private final Destination destination;
+
+    private final TransactionHelper transactionHelper;
+
+    private final int maxMessages;
+
+    private final int maxBytes;
+
+    private final long maxDelayNanos;
+
+    private final List<List<Object>> entries = new ArrayList<>();
+
+    private int bytes;
+
+    private long firstNanos;
+
+    private boolean flushRegistered;
+
+    /**
+     * @param session session the envelopes are sent with, e.g. a {@link SessionProxy}.
+     * @param destination destination of the envelopes.
+     * @param transactionHelper transaction helper.
+     * @param maxMessages maximum number of logical messages per envelope.
+     * @param maxBytes envelope size in bytes after which it is sent.
+     * @param maxDelayMillis time after which a buffered message is sent with the next one.
+     * @throws JMSException if the producer cannot be created.
+     */
+    public CoalescingProducer(final Session session, final Destination destination, final TransactionHelper transactionHelper, final int maxMessages,
+            final int maxBytes, final long maxDelayMillis) throws JMSException {
+        if (session == null) {
+            throw new NarayanaHelperException("Session must not be null.");
+        }
+        this.session = session;
+        this.context = null;
+        checkArguments(transactionHelper, maxMessages, maxBytes, maxDelayMillis);
+        this.transactionHelper = transactionHelper;
+        this.maxMessages = maxMessages;
+        this.maxBytes = maxBytes;
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+        this.producer = session.createProducer(destination);
+        this.jmsProducer = null;
+        this.destination = null;
+    }
+
+    /**
+     * @param context context the envelopes are sent with, e.g. a {@link ContextProxy}.
+     * @param destination destination of the envelopes.
+     * @param transactionHelper transaction helper.
+     * @param maxMessages maximum number of logical messages per envelope.
+     * @param maxBytes envelope size in bytes after which it is sent.
+     * @param maxDelayMillis time after which a buffered message is sent with the next one.
+     */
+    public CoalescingProducer(final JMSContext context, final Destination destination, final TransactionHelper transactionHelper,
+            final int maxMessages, final int maxBytes, final long maxDelayMillis) {
+        if (context == null) {
+            throw new NarayanaHelperException("Context must not be null.");
+        }
+        this.session = null;
+        this.context = context;
+        checkArguments(transactionHelper, maxMessages, maxBytes, maxDelayMillis);
+        this.transactionHelper = transactionHelper;
+        this.maxMessages = maxMessages;
+        this.maxBytes = maxBytes;
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+        this.producer = null;
+        this.jmsProducer = context.createProducer();
+        this.destination = destination;
+    }
+
+    /**
+     * @return the producer sending the envelopes, e.g. to set the delivery mode, {@code null} if created with a context.
+     */
+    public MessageProducer getProducer() {
+        return producer;
+    }
+
+    /**
+     * @return the producer sending the envelopes, e.g. to set the delivery mode, {@code null} if created with a session.
+     */
+    public JMSProducer getJMSProducer() {
+        return jmsProducer;
+    }
+
+    /**
+     * Add a logical text message.
+     *
+     * @param text the text.
+     * @param properties the message properties, may be {@code null}.
+     * @throws MessageFormatException if a property value is of a type not allowed for message properties.
+     * @throws JMSException if a full envelope cannot be sent.
+     */
+    public synchronized void send(final String text, final Map<String, Object> properties) throws JMSException {
+        add(text, text == null ? 0 : text.length() * 3, properties);
+    }
+
+    /**
+     * Add a logical bytes message.
+     *
+     * @param body the body.
+     * @param properties the message properties, may be {@code null}.
+     * @throws MessageFormatException if a property value is of a type not allowed for message properties.
+     * @throws JMSException if a full envelope cannot be sent.
+     */
+    public synchronized void send(final byte[] body, final Map<String, Object> properties) throws JMSException {
+        add(body == null ? new byte[0] : body, body == null ? 0 : body.length, properties);
+    }
+
+    /**
+     * Send the buffered logical messages in an envelope.
+     *
+     * @throws JMSException if the envelope cannot be sent.
+     */
+    public synchronized void flush() throws JMSException {
+        if (entries.isEmpty()) {
+            return;
+        }
+        BytesMessage envelope = session != null ? session.createBytesMessage() : context.createBytesMessage();
+        envelope.setIntProperty(ENVELOPE_PROPERTY, entries.size());
+        MessageCodecRegistry.encode(envelope, entries, CODEC);
+        if (producer != null) {
+            producer.send(envelope);
+        } else {
+            jmsProducer.send(destination, envelope);
+        }
+        if (LOGGER.isTraceEnabled()) {
+            LOGGER.trace("Sent envelope of {} messages, about {} bytes.", entries.size(), bytes);
+        }
+        clear();
+    }
+
+    /**
+     * Send the buffered logical messages and close the producer, the context is left open.
+     */
+    @Override
+    public void close() throws JMSException {
+        try {
+            flush();
+        } finally {
+            if (producer != null) {
+                producer.close();
+            }
+        }
+    }
+
+    // ---- Private Methods ----------------------------------
+
+    private static void checkArguments(final TransactionHelper transactionHelper, final int maxMessages, final int maxBytes,
+            final long maxDelayMillis) {
+        if (transactionHelper == null) {
+            throw new NarayanaHelperException("Transaction helper must not be null.");
+        }
+        if (maxMessages <= 0 || maxBytes <= 0 || maxDelayMillis < 0L) {
+            throw new NarayanaHelperException(String.format("Invalid window [maxMessages=%d,maxBytes=%d,maxDelayMillis=%d].", maxMessages, maxBytes,
+                    maxDelayMillis));
+        }
+    }
+
+    private void add(final Object body, final int size, final Map<String, Object> properties) throws JMSException {
+        Map<String, Object> copy = properties == null ? Collections.emptyMap() : new LinkedHashMap<>(properties);
+        int propertyBytes = 0;
+        for (Map.Entry<String, Object> entry : copy.entrySet()) {
+            Object value = entry.getValue();
+            if (entry.getKey() == null || !(value instanceof Boolean || value instanceof Byte || value instanceof Short || value instanceof Integer
+                    || value instanceof Long || value instanceof Float || value instanceof Double || value instanceof String)) {
+                throw new MessageFormatException(String.format("Invalid property %s of type %s.", entry.getKey(),
+                        value == null ? null : value.getClass().getName()));
+            }
+            propertyBytes += entry.getKey().length() + (value instanceof String ? ((String) value).length() : Long.BYTES) + ENTRY_OVERHEAD;
+        }
+        if (!flushRegistered && transactionHelper.isTransactionAvailable()) {
+            // the buffered messages were added outside of the transaction and must not be discarded with it
+            flush();
+            transactionHelper.registerSynchronization(new FlushingSynchronization());
+            flushRegistered = true;
+        }
+        if (entries.isEmpty()) {
+            firstNanos = System.nanoTime();
+        }
+        entries.add(Arrays.asList(copy, body));
+        bytes += size + propertyBytes + ENTRY_OVERHEAD;
+        if (entries.size() >= maxMessages || bytes >= maxBytes || System.nanoTime() - firstNanos >= maxDelayNanos) {
+            flush();
+        }
+    }
+
+    private void clear() {
+        entries.clear();
+        bytes = 0;
+    }
+
+    private final class FlushingSynchronization implements Synchronization {
+
+        @Override
+        public void beforeCompletion() {
+            try {
+                flush();
+            } catch (JMSException e) {
+                // fails the commit, the logical messages must not get lost silently
+                throw new NarayanaHelperException("Error sending envelope before completion.", e);
+            }
+        }
+
+        @Override
+        public void afterCompletion(final int status) {
+            synchronized (CoalescingProducer.this) {
+                if (status != Status.STATUS_COMMITTED && !entries.isEmpty()) {
+                    LOGGER.debug("Discarding {} buffered messages of rolled back transaction.", entries.size());
+                    clear();
+                }
+                flushRegistered = false;
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,286 @@
+package de.quoss.narayana.helper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * <p>
+ *   Concurrent bag of pooled items optimized for many borrowing threads.
+ * </p>
+ * <p>
+ *   Items stay in the bag while they are borrowed, only their state changes. A borrowing thread first tries the
+ *   items it returned most recently, then steals any idle item from the shared list by a compare-and-set of its
+ *   state. Threads waiting for an item are handed returned items directly through a synchronous queue. None of these
+ *   paths takes a lock, the copy-on-write shared list is only written when items are added or removed.
+ * </p>
+ * <p>
+ *   Items are identified by {@link Object#equals(Object)}, which is object identity for the jms resources pooled by
+ *   this library.
+ * </p>
+ *
+ * @param <T> type of the pooled item
+ */
+public class ConcurrentBag<T> {
+
+    private static final int STATE_IDLE = 0;
+
+    private static final int STATE_IN_USE = 1;
+
+    private static final int STATE_RESERVED = 2;
+
+    private static final int STATE_REMOVED = -1;
+
+    private static final int MAX_THREAD_LOCAL_ENTRIES = 16;
+
+    /**
+     * Item of the bag together with its state.
+     *
+     * @param <T> type of the pooled item
+     */
+    public static final class Entry<T> {
+
+        private final T item;
+
+        private final AtomicInteger state;
+
+        private volatile long idleSince;
+
+        private Entry(final T item, final int state) {
+            this.item = item;
+            this.state = new AtomicInteger(state);
+            this.idleSince = System.nanoTime();
+        }
+
+        public T getItem() {
+            return item;
+        }
+
+        /**
+         * @return {@link System#nanoTime()} of the moment the item was returned the last time.
+         */
+        public long getIdleSince() {
+            return idleSince;
+        }
+
+        public boolean isIdle() {
+            return state.get() == STATE_IDLE;
+        }
+
+    }
+
+    private final CopyOnWriteArrayList<Entry<T>> sharedList = new CopyOnWriteArrayList<>();
+
+    private final ConcurrentHashMap<T, Entry<T>> entries = new ConcurrentHashMap<>();
+
+    private final ThreadLocal<List<Entry<T>>> threadList = ThreadLocal.withInitial(() -> new ArrayList<>(MAX_THREAD_LOCAL_ENTRIES));
+
+    private final SynchronousQueue<Entry<T>> handoffQueue = new SynchronousQueue<>(true);
+
+    private final AtomicInteger waiters = new AtomicInteger();
+
+    private final AtomicInteger idleCount = new AtomicInteger();
+
+    /**
+     * Borrow an idle item without waiting.
+     *
+     * @return the borrowed item or {@code null} if no item is idle.
+     */
+    public T tryBorrow() {
+        Entry<T> entry = borrowFromThreadList();
+        if (entry == null) {
+            entry = borrowFromSharedList();
+        }
+        return entry == null ? null : entry.item;
+    }
+
+    /**
+     * Borrow an idle item, waiting for an item to be returned if none is idle.
+     *
+     * @param timeout maximum time to wait.
+     * @param unit unit of the timeout.
+     * @return the borrowed item or {@code null} if no item became available in time.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public T borrow(final long timeout, final TimeUnit unit) throws InterruptedException {
+        Entry<T> entry = borrowFromThreadList();
+        if (entry != null) {
+            return entry.item;
+        }
+        waiters.incrementAndGet();
+        try {
+            entry = borrowFromSharedList();
+            if (entry != null) {
+                return entry.item;
+            }
+            long remaining = unit.toNanos(timeout);
+            long deadline = System.nanoTime() + remaining;
+            while (remaining > 0L) {
+                entry = handoffQueue.poll(remaining, TimeUnit.NANOSECONDS);
+                if (entry != null && acquire(entry, STATE_IN_USE)) {
+                    return entry.item;
+                }
+                remaining = deadline - System.nanoTime();
+            }
+            return null;
+        } finally {
+            waiters.decrementAndGet();
+        }
+    }
+
+    /**
+     * Return a borrowed item.
+     *
+     * @param item item to return.
+     * @return {@code false} if the item is not known to the bag.
+     */
+    public boolean requite(final T item) {
+        Entry<T> entry = entries.get(item);
+        if (entry == null || !entry.state.compareAndSet(STATE_IN_USE, STATE_IDLE)) {
+            return false;
+        }
+        makeIdle(entry);
+        List<Entry<T>> list = threadList.get();
+        list.remove(entry);
+        if (list.size() >= MAX_THREAD_LOCAL_ENTRIES) {
+            list.remove(0);
+        }
+        list.add(entry);
+        return true;
+    }
+
+    /**
+     * Add a new idle item.
+     *
+     * @param item item to add.
+     */
+    public void add(final T item) {
+        Entry<T> entry = new Entry<>(item, STATE_IN_USE);
+        if (entries.putIfAbsent(item, entry) != null) {
+            throw new NarayanaHelperException("Item is already part of the bag.");
+        }
+        sharedList.add(entry);
+        entry.state.set(STATE_IDLE);
+        makeIdle(entry);
+    }
+
+    /**
+     * Remove an item which is borrowed or reserved.
+     *
+     * @param item item to remove.
+     * @return whether the item was removed.
+     */
+    public boolean remove(final T item) {
+        Entry<T> entry = entries.get(item);
+        if (entry == null) {
+            return false;
+        }
+        if (!entry.state.compareAndSet(STATE_IN_USE, STATE_REMOVED) && !entry.state.compareAndSet(STATE_RESERVED, STATE_REMOVED)) {
+            return false;
+        }
+        entries.remove(item, entry);
+        sharedList.remove(entry);
+        return true;
+    }
+
+    /**
+     * Reserve an idle entry so it can neither be borrowed nor reserved by another thread, used for validation and
+     * eviction of idle items.
+     *
+     * @param entry entry to reserve.
+     * @return whether the entry was idle and is now reserved.
+     */
+    public boolean reserve(final Entry<T> entry) {
+        return acquire(entry, STATE_RESERVED);
+    }
+
+    /**
+     * Make a reserved entry idle again without touching its idle time stamp.
+     *
+     * @param entry entry to release.
+     */
+    public void unreserve(final Entry<T> entry) {
+        if (entry.state.compareAndSet(STATE_RESERVED, STATE_IDLE)) {
+            idleCount.incrementAndGet();
+            handOff(entry);
+        }
+    }
+
+    /**
+     * @return snapshot of all entries, oldest first.
+     */
+    public List<Entry<T>> entries() {
+        return new ArrayList<>(sharedList);
+    }
+
+    public boolean contains(final T item) {
+        return entries.containsKey(item);
+    }
+
+    public int size() {
+        return sharedList.size();
+    }
+
+    public int getIdleCount() {
+        return idleCount.get();
+    }
+
+    public int getWaitingThreadCount() {
+        return waiters.get();
+    }
+
+    // ---- Private Helper Methods ---------------------------------------
+
+    private Entry<T> borrowFromThreadList() {
+        List<Entry<T>> list = threadList.get();
+        for (int i = list.size() - 1; i >= 0; i--) {
+            Entry<T> entry = list.remove(i);
+            if (acquire(entry, STATE_IN_USE)) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    private Entry<T> borrowFromSharedList() {
+        for (Entry<T> entry : sharedList) {
+            if (acquire(entry, STATE_IN_USE)) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    private boolean acquire(final Entry<T> entry, final int state) {
+        if (entry.state.compareAndSet(STATE_IDLE, state)) {
+            idleCount.decrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    private void makeIdle(final Entry<T> entry) {
+        entry.idleSince = System.nanoTime();
+        idleCount.incrementAndGet();
+        handOff(entry);
+    }
+
+    private void handOff(final Entry<T> entry) {
+        for (int i = 0; waiters.get() > 0; i++) {
+            if (entry.state.get() != STATE_IDLE || handoffQueue.offer(entry)) {
+                return;
+            }
+            if ((i & 0xff) == 0xff) {
+                LockSupport.parkNanos(10_000L);
+            } else {
+                Thread.yield();
+            }
+        }
+    }
+
+}
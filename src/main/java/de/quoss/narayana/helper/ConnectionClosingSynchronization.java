@@ -16,11 +16,22 @@ public class ConnectionClosingSynchronization implements Synchronization {
 
     private final Connection connection;
 
+    private final ResourcePool<Connection> pool;
+
     /**
      * @param connection connection to be closed.
      */
     public ConnectionClosingSynchronization(Connection connection) {
+        this(connection, null);
+    }
+
+    /**
+     * @param connection connection to be closed or returned.
+     * @param pool pool the connection is returned to, {@code null} to close the connection.
+     */
+    public ConnectionClosingSynchronization(final Connection connection, final ResourcePool<Connection> pool) {
         this.connection = connection;
+        this.pool = pool;
     }
 
     private static final Logger LOGGER = LoggerFactory.getLogger(ConnectionClosingSynchronization.class);
@@ -31,12 +42,17 @@ public class ConnectionClosingSynchronization implements Synchronization {
     }
 
     /**
-     * Close the connection no matter what the status of the transaction is.
+     * Close or return the connection no matter what the status of the transaction is.
      *
      * @param status the status of the completed transaction
      */
     @Override
     public void afterCompletion(int status) {
+        if (pool != null) {
+            LOGGER.trace("Returning connection {} to pool {}", connection, pool.getName());
+            pool.release(connection);
+            return;
+        }
         LOGGER.trace("Closing connection {}", connection);
 
         try {
@@ -5,6 +5,7 @@ import org.slf4j.LoggerFactory;
 
 import javax.jms.Connection;
 import javax.jms.ConnectionFactory;
+import javax.jms.ExceptionListener;
 import javax.jms.JMSContext;
 import javax.jms.JMSException;
 import javax.jms.QueueConnection;
@@ -18,14 +19,45 @@ import javax.jms.XAQueueConnection;
 import javax.jms.XAQueueConnectionFactory;
 import javax.jms.XATopicConnection;
 import javax.jms.XATopicConnectionFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 
 /**
  * <p>
  *   Helper class to support en- and delisting of jms xa resources in narayana user transactions.
  *   Supports jakarta jms spec version 2.0.3.
  * </p>
+ * <p>
+ *   With a {@link PoolConfiguration} enabling pooling the proxy reuses physical xa connections, their xa sessions
+ *   and xa contexts obtained without credentials. Idle resources are validated in the background, resources of
+ *   connections reported as failed by the provider are evicted immediately and refilling the pools up to their
+ *   minimum is paced by a {@link RefillRateLimiter}. Pooling proxies should be closed with {@link #close()}.
+ * </p>
+ * <p>
+ *   {@link #warmUp()} opens the configured minimum of resources in parallel at startup, the returned
+ *   {@link WarmUpProgress} can back a readiness probe.
+ * </p>
+ * <p>
+ *   In dual-path mode non-transactional callers get plain non-xa resources from separately sized pools.
+ * </p>
+ * <p>
+ *   With multiplexing enabled, enlisted contexts are child contexts of a few shared parent contexts, see
+ *   {@link ContextMultiplexer}. Multiplexing takes precedence over context pooling.
+ * </p>
  */
-public class ConnectionFactoryProxy implements XAQueueConnectionFactory, XATopicConnectionFactory {
+public class ConnectionFactoryProxy implements XAQueueConnectionFactory, XATopicConnectionFactory, AutoCloseable {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(ConnectionFactoryProxy.class);
 
@@ -41,6 +73,8 @@ public class ConnectionFactoryProxy implements XAQueueConnectionFactory, XATopic
 
     private static final String MSG_CF_NULL = "Connection factory is null.";
 
+    private static final int MAX_WARM_UP_THREADS = 16;
+
     private static final String TRC_START_FMT = "{} start";
 
     private static final String TRC_START_FMT_USER_PWD = "{} start [userName={},password=...]";
@@ -53,17 +87,149 @@ public class ConnectionFactoryProxy implements XAQueueConnectionFactory, XATopic
 
     private final TransactionHelper transactionHelper;
 
+    private final PoolConfiguration poolConfiguration;
+
+    private final ResourcePool<Connection> connectionPool;
+
+    private final ResourcePool<JMSContext> contextPool;
+
+    private final ContextMultiplexer contextMultiplexer;
+
+    private final PoolConfiguration nonXaPoolConfiguration;
+
+    private final ResourcePool<Connection> nonXaConnectionPool;
+
+    private final ResourcePool<JMSContext> nonXaContextPool;
+
+    private final RefillRateLimiter refillRateLimiter;
+
+    private final ScheduledExecutorService maintenanceExecutor;
+
+    private final AtomicBoolean refillScheduled = new AtomicBoolean();
+
+    /** Reusable messages of the pooled contexts, kept across borrows. */
+    private final Map<JMSContext, ReusableMessages> reusableMessages = new ConcurrentHashMap<>();
+
+    private volatile MessageCompressor messageCompressor;
+
+    private volatile ProducerProfiles producerProfiles;
+
+    private volatile AdaptiveConcurrencyLimiter concurrencyLimiter;
+
     public ConnectionFactoryProxy(final ConnectionFactory connectionFactory, final TransactionHelper transactionHelper) {
-        final String methodName = "ConnectionFactoryProxy(ConnectionFactory, TransactionHelper)";
+        this(connectionFactory, transactionHelper, new PoolConfiguration());
+    }
+
+    public ConnectionFactoryProxy(final ConnectionFactory connectionFactory, final TransactionHelper transactionHelper, final PoolConfiguration poolConfiguration) {
+        this(connectionFactory, transactionHelper, poolConfiguration, null);
+    }
+
+    /**
+     * Create a proxy in dual-path mode if a non-xa pool configuration is given: outside of a transaction
+     * {@link #createConnection()}, {@link #createContext()} and {@link #createContext(int)} hand out plain non-xa
+     * resources from separate pools instead of xa resources. Connections obtained this way must not be used to
+     * create sessions within a transaction.
+     *
+     * @param connectionFactory connection factory to proxy.
+     * @param transactionHelper transaction helper.
+     * @param poolConfiguration configuration of the xa pools.
+     * @param nonXaPoolConfiguration configuration of the non-xa pools, {@code null} to always hand out xa resources.
+     */
+    public ConnectionFactoryProxy(final ConnectionFactory connectionFactory, final TransactionHelper transactionHelper, final PoolConfiguration poolConfiguration,
+            final PoolConfiguration nonXaPoolConfiguration) {
+        final String methodName = "ConnectionFactoryProxy(ConnectionFactory, TransactionHelper, PoolConfiguration, PoolConfiguration)";
         if (connectionFactory == null) {
             throw new NarayanaHelperException("Connection factory must not be null.");
         }
-        LOGGER.trace("{} start [connectionFactory={},connectionFactory.class.name={},transactionHelper={}]", methodName, connectionFactory, connectionFactory.getClass().getName(), transactionHelper);
+        if (LOGGER.isTraceEnabled()) {
+            LOGGER.trace("{} start [connectionFactory={},connectionFactory.class.name={},transactionHelper={}]", methodName, connectionFactory, connectionFactory.getClass().getName(), transactionHelper);
+        }
         this.connectionFactory = connectionFactory;
         if (transactionHelper == null) {
             throw new NarayanaHelperException("Transaction helper must not be null.");
         }
         this.transactionHelper = transactionHelper;
+        if (poolConfiguration == null) {
+            throw new NarayanaHelperException("Pool configuration must not be null.");
+        }
+        this.poolConfiguration = poolConfiguration;
+        boolean xaCapable = connectionFactory instanceof XAConnectionFactory;
+        if (xaCapable && poolConfiguration.isConnectionPoolingEnabled()) {
+            this.connectionPool = new ResourcePool<>("connections of " + connectionFactory, poolConfiguration.getMinIdleConnections(),
+                    poolConfiguration.getMaxIdleConnections(), poolConfiguration.getIdleTimeoutMillis(), new ConnectionLifecycle());
+        } else {
+            this.connectionPool = null;
+        }
+        if (xaCapable && poolConfiguration.isContextPoolingEnabled()) {
+            this.contextPool = new ResourcePool<>("contexts of " + connectionFactory, poolConfiguration.getMinIdleContexts(),
+                    poolConfiguration.getMaxIdleContexts(), poolConfiguration.getIdleTimeoutMillis(), new ContextLifecycle());
+        } else {
+            this.contextPool = null;
+        }
+        if (xaCapable && poolConfiguration.getMultiplexedParentContexts() > 0) {
+            this.contextMultiplexer = new ContextMultiplexer((XAConnectionFactory) connectionFactory, poolConfiguration.getMultiplexedParentContexts());
+        } else {
+            this.contextMultiplexer = null;
+        }
+        this.nonXaPoolConfiguration = nonXaPoolConfiguration;
+        if (nonXaPoolConfiguration != null && nonXaPoolConfiguration.isConnectionPoolingEnabled()) {
+            this.nonXaConnectionPool = new ResourcePool<>("non-xa connections of " + connectionFactory, nonXaPoolConfiguration.getMinIdleConnections(),
+                    nonXaPoolConfiguration.getMaxIdleConnections(), nonXaPoolConfiguration.getIdleTimeoutMillis(), new ConnectionLifecycle());
+        } else {
+            this.nonXaConnectionPool = null;
+        }
+        if (nonXaPoolConfiguration != null && nonXaPoolConfiguration.isContextPoolingEnabled()) {
+            this.nonXaContextPool = new ResourcePool<>("non-xa contexts of " + connectionFactory, nonXaPoolConfiguration.getMinIdleContexts(),
+                    nonXaPoolConfiguration.getMaxIdleContexts(), nonXaPoolConfiguration.getIdleTimeoutMillis(), new ContextLifecycle());
+        } else {
+            this.nonXaContextPool = null;
+        }
+        this.refillRateLimiter = new RefillRateLimiter(poolConfiguration.getRefillIntervalMillis(), poolConfiguration.getMaxRefillBackoffMillis());
+        if (connectionPool != null || contextPool != null || nonXaConnectionPool != null || nonXaContextPool != null) {
+            this.maintenanceExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "narayana-helper-pool-maintenance");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long interval = poolConfiguration.getValidationIntervalMillis();
+            if (interval > 0L) {
+                maintenanceExecutor.scheduleWithFixedDelay(this::maintain, interval, interval, TimeUnit.MILLISECONDS);
+            }
+            scheduleRefill(0L);
+        } else {
+            this.maintenanceExecutor = null;
+        }
+        LOGGER.trace(TRC_END_FMT, methodName);
+    }
+
+    // ---- AutoCloseable API Methods -------------------------------
+
+    /**
+     * Stop the background maintenance and close all idle pooled resources. Pooled resources still in use are closed
+     * when they are returned.
+     */
+    @Override
+    public void close() {
+        final String methodName = "close()";
+        LOGGER.trace(TRC_START_FMT, methodName);
+        if (maintenanceExecutor != null) {
+            maintenanceExecutor.shutdownNow();
+        }
+        if (contextMultiplexer != null) {
+            contextMultiplexer.close();
+        }
+        if (connectionPool != null) {
+            connectionPool.close();
+        }
+        if (contextPool != null) {
+            contextPool.close();
+        }
+        if (nonXaConnectionPool != null) {
+            nonXaConnectionPool.close();
+        }
+        if (nonXaContextPool != null) {
+            nonXaContextPool.close();
+        }
         LOGGER.trace(TRC_END_FMT, methodName);
     }
 
@@ -82,9 +248,12 @@ public class ConnectionFactoryProxy implements XAQueueConnectionFactory, XATopic
         if (connectionFactory == null) {
             throw new NarayanaHelperException(MSG_CF_NULL);
         } else {
-            // if we are capable of it we hand out a proxied xa transaction
-            if (connectionFactory instanceof XAConnectionFactory) {
-                result = new ConnectionProxy(((XAConnectionFactory) connectionFactory).createXAConnection(), transactionHelper);
+            if (nonXaPoolConfiguration != null && !transactionHelper.isTransactionUsable()) {
+                // dual-path mode, nothing to enlist
+                result = getPooledConnection(false);
+            } else if (connectionFactory instanceof XAConnectionFactory) {
+                // if we are capable of it we hand out a proxied xa transaction
+                result = getPooledConnection(true);
             } else {
                 result = connectionFactory.createConnection();
             }
@@ -103,7 +272,7 @@ public class ConnectionFactoryProxy implements XAQueueConnectionFactory, XATopic
         } else {
             // if we are capable of it we hand out a proxied xa transaction
             if (connectionFactory instanceof XAConnectionFactory) {
-                result = new ConnectionProxy(((XAConnectionFactory) connectionFactory).createXAConnection(userName, password), transactionHelper);
+                result = newConnectionProxy(((XAConnectionFactory) connectionFactory).createXAConnection(userName, password));
             } else {
                 result = connectionFactory.createConnection(userName, password);
             }
@@ -123,13 +292,15 @@ public class ConnectionFactoryProxy implements XAQueueConnectionFactory, XATopic
             throw new NarayanaHelperException(MSG_CF_NULL);
         } else {
             try {
-                if (transactionHelper.isTransactionAvailable()) {
+                if (transactionHelper.isTransactionUsable()) {
                     result = createAndRegisterXAContext();
+                } else if (nonXaContextPool != null) {
+                    result = getNonXAContext();
                 } else {
-                    result = new ContextProxy(connectionFactory.createContext(), transactionHelper);
+                    result = newContextProxy(connectionFactory.createContext(), null);
                 }
             } catch (JMSException e) {
-                throw new NarayanaHelperException(e);
+                throw ContextProxy.toRuntimeException(e);
             }
         }
         LOGGER.trace(TRC_END_FMT_RESULT, methodName, result);
@@ -145,13 +316,13 @@ public class ConnectionFactoryProxy implements XAQueueConnectionFactory, XATopic
             throw new NarayanaHelperException(MSG_CF_NULL);
         } else {
             try {
-                if (transactionHelper.isTransactionAvailable()) {
+                if (transactionHelper.isTransactionUsable()) {
                     result = createAndRegisterXAContext(userName, password);
                 } else {
-                    result = new ContextProxy(connectionFactory.createContext(userName, password), transactionHelper);
+                    result = newContextProxy(connectionFactory.createContext(userName, password), null);
                 }
             } catch (JMSException e) {
-                throw new NarayanaHelperException(e);
+                throw ContextProxy.toRuntimeException(e);
             }
         }
         LOGGER.trace(TRC_END_FMT_RESULT, methodName, result);
@@ -161,19 +332,21 @@ public class ConnectionFactoryProxy implements XAQueueConnectionFactory, XATopic
     @Override
     public JMSContext createContext(final String userName, final String password, final int sessionMode) {
         final String methodName = "createContext(String, String, int)";
-        LOGGER.trace("{} start [userName={},password=...,sessionMode={}]", methodName, userName, sessionMode);
+        if (LOGGER.isTraceEnabled()) {
+            LOGGER.trace("{} start [userName={},password=...,sessionMode={}]", methodName, userName, sessionMode);
+        }
         JMSContext result;
         if (connectionFactory == null) {
             throw new NarayanaHelperException(MSG_CF_NULL);
         } else {
             try {
-                if (transactionHelper.isTransactionAvailable()) {
+                if (transactionHelper.isTransactionUsable()) {
                     result = createAndRegisterXAContext(userName, password);
                 } else {
-                    result = new ContextProxy(connectionFactory.createContext(userName, password, sessionMode), transactionHelper);
+                    result = newContextProxy(connectionFactory.createContext(userName, password, sessionMode), null);
                 }
             } catch (JMSException e) {
-                throw new NarayanaHelperException(e);
+                throw ContextProxy.toRuntimeException(e);
             }
         }
         LOGGER.trace(TRC_END_FMT_RESULT, methodName, result);
@@ -189,13 +362,15 @@ public class ConnectionFactoryProxy implements XAQueueConnectionFactory, XATopic
             throw new NarayanaHelperException(MSG_CF_NULL);
         } else {
             try {
-                if (transactionHelper.isTransactionAvailable()) {
+                if (transactionHelper.isTransactionUsable()) {
                     result = createAndRegisterXAContext();
+                } else if (nonXaContextPool != null && sessionMode == JMSContext.AUTO_ACKNOWLEDGE) {
+                    result = getNonXAContext();
                 } else {
-                    result = new ContextProxy(connectionFactory.createContext(sessionMode), transactionHelper);
+                    result = newContextProxy(connectionFactory.createContext(sessionMode), null);
                 }
             } catch (JMSException e) {
-                throw new NarayanaHelperException(e);
+                throw ContextProxy.toRuntimeException(e);
             }
         }
         LOGGER.trace(TRC_END_FMT_RESULT, methodName, result);
@@ -211,7 +386,7 @@ public class ConnectionFactoryProxy implements XAQueueConnectionFactory, XATopic
         XAConnection result;
         // if we are capable of it we hand out a proxied xa transaction
         if (connectionFactory instanceof XAConnectionFactory) {
-            result = new ConnectionProxy(((XAConnectionFactory) connectionFactory).createXAConnection(), transactionHelper);
+            result = (XAConnection) getPooledConnection(true);
         } else {
             throw new NarayanaHelperException(MSG_CF_NO_XACF);
         }
@@ -226,7 +401,7 @@ public class ConnectionFactoryProxy implements XAQueueConnectionFactory, XATopic
         XAConnection result;
         // if we are capable of it we hand out a proxied xa transaction
         if (connectionFactory instanceof XAConnectionFactory) {
-            result = new ConnectionProxy(((XAConnectionFactory) connectionFactory).createXAConnection(userName, password), transactionHelper);
+            result = newConnectionProxy(((XAConnectionFactory) connectionFactory).createXAConnection(userName, password));
         } else {
             throw new NarayanaHelperException(MSG_CF_NO_XACF);
         }
@@ -243,13 +418,13 @@ public class ConnectionFactoryProxy implements XAQueueConnectionFactory, XATopic
         XAJMSContext result;
         if (connectionFactory instanceof XAConnectionFactory) {
             try {
-                if (transactionHelper.isTransactionAvailable()) {
+                if (transactionHelper.isTransactionUsable()) {
                     result = createAndRegisterXAContext();
                 } else {
-                    result = new ContextProxy(((XAConnectionFactory) connectionFactory).createXAContext(), transactionHelper);
+                    result = newContextProxy(((XAConnectionFactory) connectionFactory).createXAContext(), null);
                 }
             } catch (JMSException e) {
-                throw new NarayanaHelperException(e);
+                throw ContextProxy.toRuntimeException(e);
             }
         } else {
             throw new NarayanaHelperException(MSG_CF_NO_XACF);
@@ -265,13 +440,13 @@ public class ConnectionFactoryProxy implements XAQueueConnectionFactory, XATopic
         XAJMSContext result;
         if (connectionFactory instanceof XAConnectionFactory) {
             try {
-                if (transactionHelper.isTransactionAvailable()) {
+                if (transactionHelper.isTransactionUsable()) {
                     result = createAndRegisterXAContext(userName, password);
                 } else {
-                    result = new ContextProxy(((XAConnectionFactory) connectionFactory).createXAContext(userName, password), transactionHelper);
+                    result = newContextProxy(((XAConnectionFactory) connectionFactory).createXAContext(userName, password), null);
                 }
             } catch (JMSException e) {
-                throw new NarayanaHelperException(e);
+                throw ContextProxy.toRuntimeException(e);
             }
         } else {
             throw new NarayanaHelperException(MSG_CF_NO_XACF);
@@ -289,7 +464,7 @@ public class ConnectionFactoryProxy implements XAQueueConnectionFactory, XATopic
         QueueConnection result;
         // if we are capable of it we hand out a proxied xa transaction
         if (connectionFactory instanceof XAQueueConnectionFactory) {
-            result = new ConnectionProxy(((XAQueueConnectionFactory) connectionFactory).createXAQueueConnection(), transactionHelper);
+            result = newConnectionProxy(((XAQueueConnectionFactory) connectionFactory).createXAQueueConnection());
         } else if (connectionFactory instanceof QueueConnectionFactory) {
             result = ((QueueConnectionFactory) connectionFactory).createQueueConnection();
         } else {
@@ -306,7 +481,7 @@ public class ConnectionFactoryProxy implements XAQueueConnectionFactory, XATopic
         QueueConnection result;
         // if we are capable of it we hand out a proxied xa transaction
         if (connectionFactory instanceof XAQueueConnectionFactory) {
-            result = new ConnectionProxy(((XAQueueConnectionFactory) connectionFactory).createXAQueueConnection(userName, password), transactionHelper);
+            result = newConnectionProxy(((XAQueueConnectionFactory) connectionFactory).createXAQueueConnection(userName, password));
         } else if (connectionFactory instanceof QueueConnectionFactory) {
             result = ((QueueConnectionFactory) connectionFactory).createQueueConnection(userName, password);
         } else {
@@ -325,7 +500,7 @@ public class ConnectionFactoryProxy implements XAQueueConnectionFactory, XATopic
         XAQueueConnection result;
         // if we are capable of it we hand out a proxied xa transaction
         if (connectionFactory instanceof XAQueueConnectionFactory) {
-            result = new ConnectionProxy(((XAQueueConnectionFactory) connectionFactory).createXAQueueConnection(), transactionHelper);
+            result = newConnectionProxy(((XAQueueConnectionFactory) connectionFactory).createXAQueueConnection());
         } else {
             throw new NarayanaHelperException(MSG_CF_NO_XAQCF);
         }
@@ -340,7 +515,7 @@ public class ConnectionFactoryProxy implements XAQueueConnectionFactory, XATopic
         XAQueueConnection result;
         // if we are capable of it we hand out a proxied xa transaction
         if (connectionFactory instanceof XAQueueConnectionFactory) {
-            result = new ConnectionProxy(((XAQueueConnectionFactory) connectionFactory).createXAQueueConnection(userName, password), transactionHelper);
+            result = newConnectionProxy(((XAQueueConnectionFactory) connectionFactory).createXAQueueConnection(userName, password));
         } else {
             throw new NarayanaHelperException(MSG_CF_NO_XAQCF);
         }
@@ -357,7 +532,7 @@ public class ConnectionFactoryProxy implements XAQueueConnectionFactory, XATopic
         TopicConnection result;
         // if we are capable of it we hand out a proxied xa transaction
         if (connectionFactory instanceof XATopicConnectionFactory) {
-            result = new ConnectionProxy(((XATopicConnectionFactory) connectionFactory).createXATopicConnection(), transactionHelper);
+            result = newConnectionProxy(((XATopicConnectionFactory) connectionFactory).createXATopicConnection());
         } else if (connectionFactory instanceof TopicConnectionFactory) {
             result = ((TopicConnectionFactory) connectionFactory).createTopicConnection();
         } else {
@@ -374,7 +549,7 @@ public class ConnectionFactoryProxy implements XAQueueConnectionFactory, XATopic
         TopicConnection result;
         // if we are capable of it we hand out a proxied xa transaction
         if (connectionFactory instanceof XATopicConnectionFactory) {
-            result = new ConnectionProxy(((XATopicConnectionFactory) connectionFactory).createXATopicConnection(userName, password), transactionHelper);
+            result = newConnectionProxy(((XATopicConnectionFactory) connectionFactory).createXATopicConnection(userName, password));
         } else if (connectionFactory instanceof TopicConnectionFactory) {
             result = ((TopicConnectionFactory) connectionFactory).createTopicConnection(userName, password);
         } else {
@@ -393,7 +568,7 @@ public class ConnectionFactoryProxy implements XAQueueConnectionFactory, XATopic
         XATopicConnection result;
         // if we are capable of it we hand out a proxied xa transaction
         if (connectionFactory instanceof XATopicConnectionFactory) {
-            result = new ConnectionProxy(((XATopicConnectionFactory) connectionFactory).createXATopicConnection(), transactionHelper);
+            result = newConnectionProxy(((XATopicConnectionFactory) connectionFactory).createXATopicConnection());
         } else {
             throw new NarayanaHelperException(MSG_CF_NO_XATCF);
         }
@@ -408,7 +583,7 @@ public class ConnectionFactoryProxy implements XAQueueConnectionFactory, XATopic
         XATopicConnection result;
         // if we are capable of it we hand out a proxied xa transaction
         if (connectionFactory instanceof XATopicConnectionFactory) {
-            result = new ConnectionProxy(((XATopicConnectionFactory) connectionFactory).createXATopicConnection(userName, password), transactionHelper);
+            result = newConnectionProxy(((XATopicConnectionFactory) connectionFactory).createXATopicConnection(userName, password));
         } else {
             throw new NarayanaHelperException(MSG_CF_NO_XATCF);
         }
@@ -416,13 +591,370 @@ public class ConnectionFactoryProxy implements XAQueueConnectionFactory, XATopic
         return result;
     }
 
+    // ---- Message Compression Methods ----------------------------------
+
+    public MessageCompressor getMessageCompressor() {
+        return messageCompressor;
+    }
+
+    /**
+     * Compress large message bodies sent through the sessions and contexts handed out from now on. Their consumers
+     * decompress marked bodies regardless of this setting, except for {@code receiveBody} of a context without
+     * compressor which leaves the body to the provider.
+     *
+     * @param messageCompressor the compressor, {@code null} to send bodies as they are.
+     */
+    public void setMessageCompressor(final MessageCompressor messageCompressor) {
+        this.messageCompressor = messageCompressor;
+    }
+
+    // ---- Producer Profile Methods ----------------------------------
+
+    public ProducerProfiles getProducerProfiles() {
+        return producerProfiles;
+    }
+
+    /**
+     * Apply the producer profiles of the destinations to the producers of the sessions and contexts handed out from
+     * now on.
+     *
+     * @param producerProfiles the profiles, {@code null} to keep the provider defaults.
+     */
+    public void setProducerProfiles(final ProducerProfiles producerProfiles) {
+        this.producerProfiles = producerProfiles;
+    }
+
+    // ---- Concurrency Limit Methods ----------------------------------
+
+    public AdaptiveConcurrencyLimiter getConcurrencyLimiter() {
+        return concurrencyLimiter;
+    }
+
+    /**
+     * Limit the transactions with enlisted xa sessions or contexts at the same time, for the connections and contexts
+     * handed out from now on.
+     *
+     * @param concurrencyLimiter the limiter, {@code null} for no limit.
+     */
+    public void setConcurrencyLimiter(final AdaptiveConcurrencyLimiter concurrencyLimiter) {
+        this.concurrencyLimiter = concurrencyLimiter;
+    }
+
+    // ---- Pool Warm-Up Methods ----------------------------------
+
+    /**
+     * Open the configured minimum of idle connections, sessions per connection and contexts in parallel on a
+     * temporary thread pool.
+     *
+     * @return progress of the warm-up.
+     * @see #warmUp(Executor, Consumer)
+     */
+    public WarmUpProgress warmUp() {
+        int tasks = Math.max(1, getMinIdleToWarmUp(connectionPool) + getMinIdleToWarmUp(contextPool)
+                + getMinIdleToWarmUp(nonXaConnectionPool) + getMinIdleToWarmUp(nonXaContextPool));
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(tasks, MAX_WARM_UP_THREADS), r -> {
+            Thread thread = new Thread(r, "narayana-helper-pool-warm-up");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            return warmUp(executor, null);
+        } finally {
+            // already submitted tasks still run to completion
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Open the configured minimum of idle connections, sessions per connection and contexts in parallel. Every
+     * connection and every context is opened by its own task on the given executor, the sessions of a connection
+     * are opened by the task of the connection.
+     *
+     * @param executor executor running the warm-up tasks.
+     * @param progressCallback callback notified after every opened resource and every failure, may be {@code null}.
+     * @return progress of the warm-up.
+     */
+    public WarmUpProgress warmUp(final Executor executor, final Consumer<WarmUpProgress> progressCallback) {
+        final String methodName = "warmUp(Executor, Consumer)";
+        if (LOGGER.isTraceEnabled()) {
+            LOGGER.trace("{} start [executor={},progressCallback={}]", methodName, executor, progressCallback);
+        }
+        if (executor == null) {
+            throw new NarayanaHelperException("Executor must not be null.");
+        }
+        int connections = getMinIdleToWarmUp(connectionPool);
+        int sessionsPerConnection = getMinIdleSessionsToWarmUp(poolConfiguration);
+        int contexts = getMinIdleToWarmUp(contextPool);
+        int nonXaConnections = getMinIdleToWarmUp(nonXaConnectionPool);
+        int nonXaSessionsPerConnection = getMinIdleSessionsToWarmUp(nonXaPoolConfiguration);
+        int nonXaContexts = getMinIdleToWarmUp(nonXaContextPool);
+        WarmUpProgress result = new WarmUpProgress(connections + nonXaConnections,
+                connections * sessionsPerConnection + nonXaConnections * nonXaSessionsPerConnection, contexts + nonXaContexts, progressCallback);
+        List<CompletableFuture<Void>> tasks = new ArrayList<>(connections + contexts + nonXaConnections + nonXaContexts);
+        for (int i = 0; i < connections; i++) {
+            tasks.add(CompletableFuture.runAsync(() -> warmUpConnection(result, true, sessionsPerConnection), executor));
+        }
+        for (int i = 0; i < nonXaConnections; i++) {
+            tasks.add(CompletableFuture.runAsync(() -> warmUpConnection(result, false, nonXaSessionsPerConnection), executor));
+        }
+        for (int i = 0; i < contexts; i++) {
+            tasks.add(CompletableFuture.runAsync(() -> warmUpContext(result, true), executor));
+        }
+        for (int i = 0; i < nonXaContexts; i++) {
+            tasks.add(CompletableFuture.runAsync(() -> warmUpContext(result, false), executor));
+        }
+        CompletableFuture.allOf(tasks.toArray(new CompletableFuture<?>[0])).whenComplete((v, t) -> {
+            LOGGER.info("Pool warm-up finished: {}", result);
+            result.finish();
+        });
+        LOGGER.trace(TRC_END_FMT_RESULT, methodName, result);
+        return result;
+    }
+
+    // ---- Pool Statistics Methods ----------------------------------
+
+    public int getIdleConnectionCount() {
+        return connectionPool == null ? 0 : connectionPool.getIdleCount();
+    }
+
+    public int getIdleContextCount() {
+        return contextPool == null ? 0 : contextPool.getIdleCount();
+    }
+
+    public int getIdleNonXAConnectionCount() {
+        return nonXaConnectionPool == null ? 0 : nonXaConnectionPool.getIdleCount();
+    }
+
+    public int getIdleNonXAContextCount() {
+        return nonXaContextPool == null ? 0 : nonXaContextPool.getIdleCount();
+    }
+
+    // ---- Recovery Support Methods ----------------------------------
+
+    /**
+     * @return the proxied factory for opening recovery connections, which bypass pooling and enlistment.
+     */
+    XAConnectionFactory getXAConnectionFactory() {
+        if (!(connectionFactory instanceof XAConnectionFactory)) {
+            throw new NarayanaHelperException(MSG_CF_NO_XACF);
+        }
+        return (XAConnectionFactory) connectionFactory;
+    }
+
     // ---- Private Methods ----------------------------------
 
+    private Connection getPooledConnection(final boolean xa) throws JMSException {
+        final String methodName = "getPooledConnection(boolean)";
+        LOGGER.trace("{} start [xa={}]", methodName, xa);
+        ResourcePool<Connection> pool = xa ? connectionPool : nonXaConnectionPool;
+        PoolConfiguration configuration = xa ? poolConfiguration : nonXaPoolConfiguration;
+        Connection result;
+        if (pool != null) {
+            Connection pooled = pool.borrow();
+            // every borrower gets its own handle, a stale one cannot return the connection again
+            result = (pooled == null ? openPooledConnection(xa) : (ConnectionProxy) pooled).newHandle();
+        } else if (configuration.getMaxIdleSessionsPerConnection() > 0) {
+            result = openPooledConnection(xa);
+        } else if (xa) {
+            result = newConnectionProxy(((XAConnectionFactory) connectionFactory).createXAConnection());
+        } else {
+            result = connectionFactory.createConnection();
+        }
+        if (pool != null || configuration.getMaxIdleSessionsPerConnection() > 0) {
+            // pooled proxies may have been opened before the compressor, profiles or limiter were set
+            ((ConnectionProxy) result).setMessageCompressor(messageCompressor);
+            ((ConnectionProxy) result).setProducerProfiles(producerProfiles);
+            ((ConnectionProxy) result).setConcurrencyLimiter(concurrencyLimiter);
+        }
+        LOGGER.trace(TRC_END_FMT_RESULT, methodName, result);
+        return result;
+    }
+
+    private JMSContext getNonXAContext() {
+        JMSContext context = nonXaContextPool.borrow();
+        if (context == null) {
+            context = openPooledContext(false);
+        }
+        return newContextProxy(context, nonXaContextPool);
+    }
+
+    private static int getMinIdleToWarmUp(final ResourcePool<?> pool) {
+        return pool == null ? 0 : Math.min(pool.getMinIdle(), pool.getMaxIdle());
+    }
+
+    private static int getMinIdleSessionsToWarmUp(final PoolConfiguration configuration) {
+        if (configuration == null || !configuration.isConnectionPoolingEnabled()) {
+            return 0;
+        }
+        return Math.min(configuration.getMinIdleSessionsPerConnection(), configuration.getMaxIdleSessionsPerConnection());
+    }
+
+    private void warmUpConnection(final WarmUpProgress progress, final boolean xa, final int sessions) {
+        try {
+            ConnectionProxy connection = openPooledConnection(xa);
+            progress.connectionOpened();
+            try {
+                connection.warmUpSessions(sessions, progress::sessionOpened);
+            } finally {
+                (xa ? connectionPool : nonXaConnectionPool).release(connection);
+            }
+        } catch (JMSException | RuntimeException e) {
+            LOGGER.warn("Failed to warm up pooled connection.", e);
+            progress.failed();
+        }
+    }
+
+    private void warmUpContext(final WarmUpProgress progress, final boolean xa) {
+        try {
+            (xa ? contextPool : nonXaContextPool).release(openPooledContext(xa));
+            progress.contextOpened();
+        } catch (RuntimeException e) {
+            LOGGER.warn("Failed to warm up pooled context.", e);
+            progress.failed();
+        }
+    }
+
+    private ConnectionProxy openPooledConnection(final boolean xa) throws JMSException {
+        Connection connection = xa ? ((XAConnectionFactory) connectionFactory).createXAConnection() : connectionFactory.createConnection();
+        try {
+            return new ConnectionProxy(connection, transactionHelper, xa ? connectionPool : nonXaConnectionPool,
+                    xa ? poolConfiguration : nonXaPoolConfiguration, this::onConnectionFailure);
+        } catch (JMSException | RuntimeException e) {
+            connection.close();
+            throw e;
+        }
+    }
+
+    private JMSContext openPooledContext(final boolean xa) {
+        JMSContext context = xa ? ((XAConnectionFactory) connectionFactory).createXAContext() : connectionFactory.createContext();
+        try {
+            context.setExceptionListener(new EvictingExceptionListener(this::onContextFailure));
+        } catch (RuntimeException e) {
+            context.close();
+            throw e;
+        }
+        return context;
+    }
+
+    private void onConnectionFailure() {
+        for (ResourcePool<Connection> pool : Arrays.asList(connectionPool, nonXaConnectionPool)) {
+            if (pool != null) {
+                pool.evict(c -> ((ConnectionProxy) c).isFailed());
+            }
+        }
+        triggerMaintenance();
+    }
+
+    private void onContextFailure() {
+        for (ResourcePool<JMSContext> pool : Arrays.asList(contextPool, nonXaContextPool)) {
+            if (pool != null) {
+                pool.evict(ConnectionFactoryProxy::isFailed);
+            }
+        }
+        triggerMaintenance();
+    }
+
+    private static boolean isFailed(final JMSContext context) {
+        ExceptionListener listener = context.getExceptionListener();
+        return listener instanceof EvictingExceptionListener && ((EvictingExceptionListener) listener).isFailed();
+    }
+
+    private void triggerMaintenance() {
+        if (maintenanceExecutor != null) {
+            try {
+                maintenanceExecutor.execute(this::maintain);
+            } catch (RejectedExecutionException e) {
+                LOGGER.debug("Pool maintenance not triggered, connection factory proxy is closed.");
+            }
+        }
+    }
+
+    private void maintain() {
+        try {
+            for (ResourcePool<?> pool : Arrays.asList(connectionPool, contextPool, nonXaConnectionPool, nonXaContextPool)) {
+                if (pool != null) {
+                    pool.validate();
+                }
+            }
+        } catch (RuntimeException e) {
+            LOGGER.warn("Error validating pooled resources.", e);
+        }
+        scheduleRefill(0L);
+    }
+
+    private void scheduleRefill(final long delayMillis) {
+        if (refillScheduled.compareAndSet(false, true)) {
+            try {
+                maintenanceExecutor.schedule(this::refillPools, delayMillis, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                refillScheduled.set(false);
+            }
+        }
+    }
+
+    private void refillPools() {
+        refillScheduled.set(false);
+        boolean complete = refill(connectionPool, () -> openPooledConnection(true)) && refill(contextPool, () -> openPooledContext(true))
+                && refill(nonXaConnectionPool, () -> openPooledConnection(false)) && refill(nonXaContextPool, () -> openPooledContext(false));
+        if (!complete) {
+            scheduleRefill(Math.max(1L, refillRateLimiter.getDelayMillis()));
+        }
+    }
+
+    private <T> boolean refill(final ResourcePool<T> pool, final ResourceOpener<? extends T> opener) {
+        if (pool == null) {
+            return true;
+        }
+        // a saturated pool would close the opened resource right away, borrowed resources count against the maximum
+        while (!pool.isClosed() && pool.getIdleCount() < pool.getMinIdle() && pool.getSize() < pool.getMaxIdle()) {
+            if (!refillRateLimiter.tryAcquire()) {
+                return false;
+            }
+            try {
+                pool.release(opener.open());
+                refillRateLimiter.success();
+            } catch (JMSException | RuntimeException e) {
+                refillRateLimiter.failure();
+                LOGGER.warn(String.format("Failed to refill pool %s, next attempt in %d ms.", pool.getName(), refillRateLimiter.getDelayMillis()), e);
+                return false;
+            }
+        }
+        return true;
+    }
+
     private XAJMSContext createAndRegisterXAContext() throws JMSException {
         final String methodName = "createAndRegisterXAContext()";
         LOGGER.trace(TRC_START_FMT, methodName);
-        XAJMSContext context = ((XAConnectionFactory) connectionFactory).createXAContext();
-        XAJMSContext result = createAndRegisterXAContext(context);
+        AdaptiveConcurrencyLimiter limiter = concurrencyLimiter;
+        if (limiter != null) {
+            // the transaction holds its permit until it completes
+            limiter.acquire(transactionHelper);
+        }
+        XAJMSContext context;
+        ResourcePool<JMSContext> pool = null;
+        try {
+            transactionHelper.recordPhase(TimelinePhase.CONTEXT_CREATE_START);
+            context = contextMultiplexer == null ? null : contextMultiplexer.createChild();
+            if (context != null) {
+                // closing the child only closes its session, the shared connection stays with the parent
+                LOGGER.trace("{} multiplexed child context {}", methodName, context);
+            } else if (contextPool != null) {
+                pool = contextPool;
+                context = (XAJMSContext) contextPool.borrow();
+                if (context == null) {
+                    context = (XAJMSContext) openPooledContext(true);
+                }
+            } else {
+                context = ((XAConnectionFactory) connectionFactory).createXAContext();
+            }
+            transactionHelper.recordPhase(TimelinePhase.CONTEXT_CREATE_END);
+        } catch (RuntimeException e) {
+            if (limiter != null) {
+                limiter.failed(transactionHelper);
+            }
+            throw e;
+        }
+        XAJMSContext result = createAndRegisterXAContext(context, pool, limiter);
         LOGGER.trace(TRC_END_FMT_RESULT, methodName, result);
         return result;
     }
@@ -430,24 +962,114 @@ public class ConnectionFactoryProxy implements XAQueueConnectionFactory, XATopic
     private XAJMSContext createAndRegisterXAContext(final String userName, final String password) throws JMSException {
         final String methodName = "createAndRegisterXAContext(String, String)";
         LOGGER.trace(TRC_START_FMT_USER_PWD, methodName, userName);
-        XAJMSContext context = ((XAConnectionFactory) connectionFactory).createXAContext(userName, password);
-        XAJMSContext result = createAndRegisterXAContext(context);
+        AdaptiveConcurrencyLimiter limiter = concurrencyLimiter;
+        if (limiter != null) {
+            limiter.acquire(transactionHelper);
+        }
+        XAJMSContext context;
+        try {
+            context = ((XAConnectionFactory) connectionFactory).createXAContext(userName, password);
+        } catch (RuntimeException e) {
+            if (limiter != null) {
+                limiter.failed(transactionHelper);
+            }
+            throw e;
+        }
+        XAJMSContext result = createAndRegisterXAContext(context, null, limiter);
         LOGGER.trace(TRC_END_FMT_RESULT, methodName, result);
         return result;
     }
 
-    private XAJMSContext createAndRegisterXAContext(final XAJMSContext context) throws JMSException {
-        final String methodName = "createAndRegisterXAContext(XAJMSContext)";
-        LOGGER.trace(TRC_START_FMT_USER_PWD, methodName, context);
-        XAJMSContext result = new ContextProxy(context, transactionHelper);
+    private XAJMSContext createAndRegisterXAContext(final XAJMSContext context, final ResourcePool<JMSContext> pool,
+            final AdaptiveConcurrencyLimiter limiter) throws JMSException {
+        final String methodName = "createAndRegisterXAContext(XAJMSContext, ResourcePool, AdaptiveConcurrencyLimiter)";
+        if (LOGGER.isTraceEnabled()) {
+            LOGGER.trace("{} start [context={},pool={}]", methodName, context, pool);
+        }
+        XAJMSContext result = newContextProxy(context, pool);
         try {
             transactionHelper.registerXAResource(context.getXAResource());
-        } catch (JMSException e) {
-            context.close();
+        } catch (JMSException | RuntimeException e) {
+            if (limiter != null) {
+                limiter.failed(transactionHelper);
+            }
+            if (pool == null) {
+                context.close();
+            } else {
+                // also drops the reusable messages of the context
+                pool.destroy(context);
+            }
             throw e;
         }
         LOGGER.trace(TRC_END_FMT_RESULT, methodName, result);
         return result;
     }
 
+    private ConnectionProxy newConnectionProxy(final Connection connection) {
+        ConnectionProxy result = new ConnectionProxy(connection, transactionHelper);
+        result.setMessageCompressor(messageCompressor);
+        result.setProducerProfiles(producerProfiles);
+        result.setConcurrencyLimiter(concurrencyLimiter);
+        return result;
+    }
+
+    private ContextProxy newContextProxy(final JMSContext context, final ResourcePool<JMSContext> pool) {
+        ContextProxy result = new ContextProxy(context, transactionHelper, pool,
+                pool == null ? null : reusableMessages.computeIfAbsent(context, c -> new ReusableMessages()));
+        result.setMessageCompressor(messageCompressor);
+        result.setProducerProfiles(producerProfiles);
+        return result;
+    }
+
+    // ---- Private Classes ----------------------------------
+
+    private interface ResourceOpener<T> {
+
+        T open() throws JMSException;
+
+    }
+
+    private static final class ConnectionLifecycle implements ResourcePool.Lifecycle<Connection> {
+
+        @Override
+        public boolean isReusable(final Connection connection) {
+            return !((ConnectionProxy) connection).isFailed();
+        }
+
+        @Override
+        public boolean validate(final Connection connection) {
+            return ((ConnectionProxy) connection).validate();
+        }
+
+        @Override
+        public void destroy(final Connection connection) throws JMSException {
+            ((ConnectionProxy) connection).destroy();
+        }
+
+    }
+
+    private final class ContextLifecycle implements ResourcePool.Lifecycle<JMSContext> {
+
+        @Override
+        public boolean isReusable(final JMSContext context) {
+            return !isFailed(context);
+        }
+
+        @Override
+        public boolean validate(final JMSContext context) {
+            if (isFailed(context)) {
+                return false;
+            }
+            context.getSessionMode();
+            return true;
+        }
+
+        @Override
+        public void destroy(final JMSContext context) {
+            reusableMessages.remove(context);
+            context.close();
+        }
+
+    }
+
 }
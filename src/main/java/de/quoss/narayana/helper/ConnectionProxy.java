@@ -11,6 +11,7 @@ import javax.jms.ExceptionListener;
 import javax.jms.JMSException;
 import javax.jms.Queue;
 import javax.jms.QueueSession;
+import javax.jms.ResourceAllocationException;
 import javax.jms.ServerSessionPool;
 import javax.jms.Session;
 import javax.jms.Topic;
@@ -21,18 +22,65 @@ import javax.jms.XAQueueSession;
 import javax.jms.XASession;
 import javax.jms.XATopicConnection;
 import javax.jms.XATopicSession;
-
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>
+ *   Proxy enlisting the xa sessions of a connection in the current narayana transaction.
+ * </p>
+ * <p>
+ *   Connections handed out by a pooling {@link ConnectionFactoryProxy} keep their idle xa sessions for reuse and
+ *   return themselves to the factory's pool on close. Every borrower gets its own handle of the pooled connection,
+ *   closing a handle more than once does not return the connection again. A provider exception on the physical connection evicts the
+ *   connection and all its idle sessions at once. With a session limit configured, threads beyond the limit wait for
+ *   a session returned by another thread.
+ * </p>
+ */
 public class ConnectionProxy implements XAQueueConnection, XATopicConnection {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(ConnectionProxy.class);
 
+    private static final long SESSION_WAIT_SLICE_MILLIS = 100L;
+
     private final Connection connection;
 
     private final TransactionHelper transactionHelper;
 
+    private final ResourcePool<Connection> pool;
+
+    private final ResourcePool<Session> sessionPool;
+
+    private final EvictingExceptionListener exceptionListener;
+
+    private final int maxSessions;
+
+    private final long sessionBorrowTimeoutMillis;
+
+    private final AtomicInteger openSessions;
+
+    /** Reusable messages of the pooled sessions, kept across borrows. */
+    private final Map<Session, ReusableMessages> reusableMessages;
+
+    /** Pooled connection this proxy is a borrower's handle of, {@code null} for the pooled connection itself. */
+    private final ConnectionProxy origin;
+
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    private volatile MessageCompressor messageCompressor;
+
+    private volatile ProducerProfiles producerProfiles;
+
+    private volatile AdaptiveConcurrencyLimiter concurrencyLimiter;
+
     public ConnectionProxy(final Connection connection, final TransactionHelper transactionHelper) {
         final String methodName = "ConnectionProxy(Connection, TransactionHelper)";
-        LOGGER.trace("{} start [connection={},transactionHelper={}]", methodName, connection, transactionHelper);
+        if (LOGGER.isTraceEnabled()) {
+            LOGGER.trace("{} start [connection={},transactionHelper={}]", methodName, connection, transactionHelper);
+        }
         if (connection == null) {
             throw new NarayanaHelperException("Connection must not be null.");
         }
@@ -41,14 +89,105 @@ public class ConnectionProxy implements XAQueueConnection, XATopicConnection {
             throw new NarayanaHelperException("Transaction helper must not be null.");
         }
         this.transactionHelper = transactionHelper;
+        this.pool = null;
+        this.sessionPool = null;
+        this.exceptionListener = null;
+        this.maxSessions = 0;
+        this.sessionBorrowTimeoutMillis = 0L;
+        this.openSessions = new AtomicInteger();
+        this.reusableMessages = null;
+        this.origin = null;
         LOGGER.trace("{} end", methodName);
     }
 
+    /**
+     * Create a proxy for a pooled physical connection.
+     *
+     * @param connection physical connection, its sessions are pooled as xa sessions if it is an xa connection and as
+     *   non-transacted auto-acknowledge sessions otherwise.
+     * @param transactionHelper transaction helper.
+     * @param pool pool the connection is returned to on close, {@code null} to close the connection.
+     * @param poolConfiguration pool configuration.
+     * @param failureCallback callback run once when the provider reports the connection as failed.
+     * @throws JMSException if the exception listener cannot be installed.
+     */
+    ConnectionProxy(final Connection connection, final TransactionHelper transactionHelper, final ResourcePool<Connection> pool,
+            final PoolConfiguration poolConfiguration, final Runnable failureCallback) throws JMSException {
+        final String methodName = "ConnectionProxy(Connection, TransactionHelper, ResourcePool, PoolConfiguration, Runnable)";
+        if (LOGGER.isTraceEnabled()) {
+            LOGGER.trace("{} start [connection={},transactionHelper={},pool={}]", methodName, connection, transactionHelper, pool);
+        }
+        if (connection == null) {
+            throw new NarayanaHelperException("Connection must not be null.");
+        }
+        this.connection = connection;
+        if (transactionHelper == null) {
+            throw new NarayanaHelperException("Transaction helper must not be null.");
+        }
+        this.transactionHelper = transactionHelper;
+        this.pool = pool;
+        if (poolConfiguration.getMaxIdleSessionsPerConnection() > 0) {
+            this.sessionPool = new ResourcePool<>("sessions of " + connection, 0, poolConfiguration.getMaxIdleSessionsPerConnection(),
+                    poolConfiguration.getIdleTimeoutMillis(), new SessionLifecycle());
+        } else {
+            this.sessionPool = null;
+        }
+        this.maxSessions = poolConfiguration.getMaxSessionsPerConnection();
+        this.sessionBorrowTimeoutMillis = poolConfiguration.getSessionBorrowTimeoutMillis();
+        this.openSessions = new AtomicInteger();
+        this.reusableMessages = sessionPool == null ? null : new ConcurrentHashMap<>();
+        this.origin = null;
+        this.exceptionListener = new EvictingExceptionListener(() -> {
+            if (sessionPool != null) {
+                sessionPool.evict(s -> true);
+            }
+            failureCallback.run();
+        });
+        connection.setExceptionListener(exceptionListener);
+        LOGGER.trace("{} end", methodName);
+    }
+
+    /**
+     * Create a borrower's handle sharing the physical connection, sessions and exception listener of a pooled
+     * connection.
+     *
+     * @param origin the pooled connection.
+     */
+    private ConnectionProxy(final ConnectionProxy origin) {
+        this.connection = origin.connection;
+        this.transactionHelper = origin.transactionHelper;
+        this.pool = origin.pool;
+        this.sessionPool = origin.sessionPool;
+        this.exceptionListener = origin.exceptionListener;
+        this.maxSessions = origin.maxSessions;
+        this.sessionBorrowTimeoutMillis = origin.sessionBorrowTimeoutMillis;
+        this.openSessions = origin.openSessions;
+        this.reusableMessages = origin.reusableMessages;
+        this.origin = origin;
+    }
+
+    public Connection getConnection() {
+        return connection;
+    }
+
     // ---- Connection JMS Spec 1.1 API Methods -----------------------------------------
 
     @Override
     public void close() throws JMSException {
-        if (transactionHelper.isTransactionAvailable()) {
+        if (!closed.compareAndSet(false, true)) {
+            // the pooled connection may already be in use by the next borrower
+            return;
+        }
+        if (pool != null) {
+            // the listener of the current user must not survive in the pool
+            exceptionListener.setDelegate(null);
+            ConnectionProxy pooled = origin == null ? this : origin;
+            if (transactionHelper.isTransactionAvailable()) {
+                transactionHelper.registerSynchronization(new ConnectionClosingSynchronization(pooled, pool));
+            } else {
+                pool.release(pooled);
+            }
+        } else if (transactionHelper.isTransactionAvailable()) {
             transactionHelper.registerSynchronization(new ConnectionClosingSynchronization(connection));
         } else {
             connection.close();
@@ -67,6 +206,9 @@ public class ConnectionProxy implements XAQueueConnection, XATopicConnection {
 
     @Override
     public ExceptionListener getExceptionListener() throws JMSException {
+        if (exceptionListener != null) {
+            return exceptionListener.getDelegate();
+        }
         return connection.getExceptionListener();
     }
 
@@ -85,7 +227,12 @@ public class ConnectionProxy implements XAQueueConnection, XATopicConnection {
 
     @Override
     public void setExceptionListener(final ExceptionListener listener) throws JMSException {
-        connection.setExceptionListener(listener);
+        if (exceptionListener != null) {
+            // keep the evicting listener installed on pooled connections and chain the given one
+            exceptionListener.setDelegate(listener);
+        } else {
+            connection.setExceptionListener(listener);
+        }
     }
 
     @Override
@@ -102,17 +249,25 @@ public class ConnectionProxy implements XAQueueConnection, XATopicConnection {
 
     @Override
     public Session createSession() throws JMSException {
-        if (transactionHelper.isTransactionAvailable()) {
+        checkOpen();
+        if (transactionHelper.isTransactionUsable()) {
             return createAndRegisterXASession();
         }
+        if (isPoolingPlainSessions()) {
+            return newSessionProxy(borrowSession());
+        }
         return connection.createSession();
     }
 
     @Override
     public Session createSession(final int sessionMode) throws JMSException {
-        if (transactionHelper.isTransactionAvailable()) {
+        checkOpen();
+        if (transactionHelper.isTransactionUsable()) {
             return createAndRegisterXASession();
         }
+        if (sessionMode == Session.AUTO_ACKNOWLEDGE && isPoolingPlainSessions()) {
+            return newSessionProxy(borrowSession());
+        }
         return connection.createSession(sessionMode);
     }
 
@@ -130,15 +285,20 @@ public class ConnectionProxy implements XAQueueConnection, XATopicConnection {
 
     @Override
     public Session createSession(final boolean transacted, final int acknowledgeMode) throws JMSException {
-        if (transactionHelper.isTransactionAvailable()) {
+        checkOpen();
+        if (transactionHelper.isTransactionUsable()) {
             return createAndRegisterXASession();
         }
+        if (!transacted && acknowledgeMode == Session.AUTO_ACKNOWLEDGE && isPoolingPlainSessions()) {
+            return newSessionProxy(borrowSession());
+        }
         return connection.createSession(transacted, acknowledgeMode);
     }
 
     @Override
     public XASession createXASession() throws JMSException {
-        if (transactionHelper.isTransactionAvailable()) {
+        checkOpen();
+        if (transactionHelper.isTransactionUsable()) {
             return createAndRegisterXASession();
         }
         return ((XAConnection) connection).createXASession();
@@ -147,8 +307,8 @@ public class ConnectionProxy implements XAQueueConnection, XATopicConnection {
     // ---- QueueConnection API Methods -----------------------------------------
 
     @Override
-    public ConnectionConsumer createConnectionConsumer(final Queue queue, final String messageSelector, ServerSessionPool sessionPool, int maxMessages) throws JMSException {
-        return null;
+    public ConnectionConsumer createConnectionConsumer(final Queue queue, final String messageSelector, final ServerSessionPool sessionPool, final int maxMessages) throws JMSException {
+        return connection.createConnectionConsumer(queue, messageSelector, sessionPool, maxMessages);
     }
 
     @Override
@@ -167,7 +327,7 @@ public class ConnectionProxy implements XAQueueConnection, XATopicConnection {
 
     @Override
     public ConnectionConsumer createConnectionConsumer(final Topic topic, final String messageSelector, final ServerSessionPool serverSessionPool, final int maxMessages) throws JMSException {
-        return null;
+        return connection.createConnectionConsumer(topic, messageSelector, serverSessionPool, maxMessages);
     }
 
     @Override
@@ -187,21 +347,258 @@ public class ConnectionProxy implements XAQueueConnection, XATopicConnection {
         return null;
     }
 
+    // ---- Package Private Methods -----------------------------------------
+
+    /**
+     * @param messageCompressor compressor handed to the sessions created from now on, {@code null} for none.
+     */
+    void setMessageCompressor(final MessageCompressor messageCompressor) {
+        this.messageCompressor = messageCompressor;
+    }
+
+    /**
+     * @param producerProfiles producer profiles handed to the sessions created from now on, {@code null} for none.
+     */
+    void setProducerProfiles(final ProducerProfiles producerProfiles) {
+        this.producerProfiles = producerProfiles;
+    }
+
+    /**
+     * @param concurrencyLimiter limiter taking a permit for the transactions of the xa sessions enlisted from now on,
+     *   {@code null} for none.
+     */
+    void setConcurrencyLimiter(final AdaptiveConcurrencyLimiter concurrencyLimiter) {
+        this.concurrencyLimiter = concurrencyLimiter;
+    }
+
+    // ---- Pool Support Methods -----------------------------------------
+
+    /**
+     * @return a new handle of this pooled connection for the next borrower.
+     */
+    ConnectionProxy newHandle() {
+        return new ConnectionProxy(this);
+    }
+
+    /**
+     * @return whether the physical connection is returned to a pool on close.
+     */
+    boolean isPooled() {
+        return pool != null;
+    }
+
+    /**
+     * @return whether the provider reported this pooled connection as failed.
+     */
+    boolean isFailed() {
+        return exceptionListener != null && exceptionListener.isFailed();
+    }
+
+    /**
+     * Check the physical connection and close idle sessions which are broken or exceeded the idle timeout.
+     *
+     * @return whether the connection is still usable.
+     */
+    boolean validate() {
+        if (isFailed()) {
+            return false;
+        }
+        try {
+            connection.getMetaData();
+        } catch (JMSException e) {
+            LOGGER.debug("Validation of connection {} failed.", connection, e);
+            return false;
+        }
+        if (sessionPool != null) {
+            sessionPool.validate();
+        }
+        return true;
+    }
+
+    /**
+     * Close the idle sessions and the physical connection.
+     *
+     * @throws JMSException if closing the physical connection fails.
+     */
+    void destroy() throws JMSException {
+        if (sessionPool != null) {
+            sessionPool.close();
+        }
+        connection.close();
+    }
+
+    int getIdleSessionCount() {
+        return sessionPool == null ? 0 : sessionPool.getIdleCount();
+    }
+
+    /**
+     * Open sessions and put them into the idle session pool.
+     *
+     * @param count number of sessions to open.
+     * @param openedCallback callback run after each opened session.
+     * @throws JMSException if opening a session fails.
+     */
+    void warmUpSessions(final int count, final Runnable openedCallback) throws JMSException {
+        if (sessionPool == null) {
+            return;
+        }
+        for (int i = 0; i < count; i++) {
+            sessionPool.release(openSession());
+            openedCallback.run();
+        }
+    }
+
     // ---- Private Helper Methods -----------------------------------------
 
+    private void checkOpen() throws JMSException {
+        if (closed.get()) {
+            throw new javax.jms.IllegalStateException("Connection is closed.");
+        }
+    }
+
+    private SessionProxy newSessionProxy(final Session session) {
+        SessionProxy result = new SessionProxy(session, transactionHelper, sessionPool,
+                reusableMessages == null ? null : reusableMessages.computeIfAbsent(session, s -> new ReusableMessages()));
+        result.setMessageCompressor(messageCompressor);
+        result.setProducerProfiles(producerProfiles);
+        return result;
+    }
+
+    private boolean isPoolingPlainSessions() {
+        return sessionPool != null && !(connection instanceof XAConnection);
+    }
+
     private XASession createAndRegisterXASession() throws JMSException {
 
-        XASession session = ((XAConnection) connection).createXASession();
-        XASession result = new SessionProxy(session, transactionHelper);
+        if (!(connection instanceof XAConnection)) {
+            throw new NarayanaHelperException("Connection is not of type XAConnection, connections obtained outside of a transaction "
+                    + "from the non-xa pool cannot be used within a transaction.");
+        }
+        AdaptiveConcurrencyLimiter limiter = concurrencyLimiter;
+        if (limiter != null) {
+            // the transaction holds its permit until it completes
+            limiter.acquire(transactionHelper);
+        }
+        XASession session;
+        try {
+            transactionHelper.recordPhase(TimelinePhase.SESSION_CREATE_START);
+            session = sessionPool == null ? ((XAConnection) connection).createXASession() : (XASession) borrowSession();
+            transactionHelper.recordPhase(TimelinePhase.SESSION_CREATE_END);
+        } catch (JMSException | RuntimeException e) {
+            if (limiter != null) {
+                limiter.failed(transactionHelper);
+            }
+            throw e;
+        }
+        XASession result = newSessionProxy(session);
 
         try {
             transactionHelper.registerXAResource(session.getXAResource());
         } catch (JMSException e) {
-            session.close();
+            if (limiter != null) {
+                limiter.failed(transactionHelper);
+            }
+            if (sessionPool == null) {
+                session.close();
+            } else {
+                sessionPool.destroy(session);
+            }
             throw e;
         }
 
         return result;
     }
 
+    private Session borrowSession() throws JMSException {
+        Session result = sessionPool.borrow();
+        if (result != null) {
+            return result;
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(sessionBorrowTimeoutMillis);
+        while (true) {
+            if (reserveSession()) {
+                return openReservedSession();
+            }
+            long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remaining <= 0L) {
+                throw new ResourceAllocationException(String.format("No session available within %d ms, %d sessions open on connection %s.",
+                        sessionBorrowTimeoutMillis, maxSessions, connection));
+            }
+            try {
+                // wake up regularly, sessions returned to a full pool are closed instead of being handed over
+                result = sessionPool.borrow(Math.min(remaining, SESSION_WAIT_SLICE_MILLIS));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new JMSException("Interrupted while waiting for a session.");
+            }
+            if (result != null) {
+                return result;
+            }
+        }
+    }
+
+    private Session openSession() throws JMSException {
+        openSessions.incrementAndGet();
+        return openReservedSession();
+    }
+
+    /**
+     * @return whether a slot for another session was reserved, the slot is taken if and only if this returns true.
+     */
+    private boolean reserveSession() {
+        while (true) {
+            int current = openSessions.get();
+            if (maxSessions > 0 && current >= maxSessions) {
+                return false;
+            }
+            if (openSessions.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Open a session for a reserved slot, the slot is freed again if opening fails.
+     */
+    private Session openReservedSession() throws JMSException {
+        try {
+            if (connection instanceof XAConnection) {
+                return ((XAConnection) connection).createXASession();
+            }
+            return connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        } catch (JMSException | RuntimeException e) {
+            openSessions.decrementAndGet();
+            throw e;
+        }
+    }
+
+    private final class SessionLifecycle implements ResourcePool.Lifecycle<Session> {
+
+        @Override
+        public boolean isReusable(final Session session) {
+            return !isFailed();
+        }
+
+        @Override
+        public boolean validate(final Session session) {
+            if (isFailed()) {
+                return false;
+            }
+            try {
+                session.getAcknowledgeMode();
+                return true;
+            } catch (JMSException e) {
+                return false;
+            }
+        }
+
+        @Override
+        public void destroy(final Session session) throws JMSException {
+            openSessions.decrementAndGet();
+            reusableMessages.remove(session);
+            session.close();
+        }
+
+    }
+
 }
@@ -5,6 +5,7 @@ import org.slf4j.LoggerFactory;
 
 import javax.jms.JMSContext;
 import javax.transaction.Synchronization;
+import java.util.function.BooleanSupplier;
 
 /**
  * Synchronization to close JMS session at the end of the transaction.
@@ -15,14 +16,38 @@ public class ContextClosingSynchronization implements Synchronization {
 
     private final JMSContext context;
 
+    private final ResourcePool<JMSContext> pool;
+
+    private final BooleanSupplier reset;
+
     /**
      * @param context context to be closed.
      */
     public ContextClosingSynchronization(final JMSContext context) {
+        this(context, null);
+    }
+
+    /**
+     * @param context context to be closed or returned.
+     * @param pool pool the context is returned to, {@code null} to close the context.
+     */
+    public ContextClosingSynchronization(final JMSContext context, final ResourcePool<JMSContext> pool) {
+        this(context, pool, null);
+    }
+
+    /**
+     * @param context context to be closed or returned.
+     * @param pool pool the context is returned to, {@code null} to close the context.
+     * @param reset callback cleaning up the context before it is returned, reporting whether it may be reused,
+     *   may be {@code null}.
+     */
+    ContextClosingSynchronization(final JMSContext context, final ResourcePool<JMSContext> pool, final BooleanSupplier reset) {
         if (context == null) {
             throw new NarayanaHelperException("JMS context must not be null.");
         }
         this.context = context;
+        this.pool = pool;
+        this.reset = reset;
     }
 
     @Override
@@ -31,12 +56,21 @@ public class ContextClosingSynchronization implements Synchronization {
     }
 
     /**
-     * Close the context no matter what the status of the transaction is.
+     * Close or return the context no matter what the status of the transaction is.
      *
      * @param status the status of the completed transaction
      */
     @Override
     public void afterCompletion(final int status) {
+        if (pool != null) {
+            if (reset == null || reset.getAsBoolean()) {
+                LOGGER.trace("Returning context {} to pool {}", context, pool.getName());
+                pool.release(context);
+            } else {
+                pool.destroy(context);
+            }
+            return;
+        }
         LOGGER.trace("Closing context {}", context);
         context.close();
     }
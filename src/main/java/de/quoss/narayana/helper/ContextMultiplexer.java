@@ -0,0 +1,164 @@
+package de.quoss.narayana.helper;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.jms.ExceptionListener;
+import javax.jms.JMSContext;
+import javax.jms.JMSRuntimeException;
+import javax.jms.XAConnectionFactory;
+import javax.jms.XAJMSContext;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>
+ *   Keeps a small, fixed set of parent xa contexts and creates child contexts from them, so many concurrent callers
+ *   share a few physical connections.
+ * </p>
+ * <p>
+ *   Parents are opened lazily and chosen round-robin. A parent reported as failed by the provider is replaced on its
+ *   next use, as is one failing to create a child. Providers creating non-xa children from an xa context, or
+ *   failing to create children from a fresh parent, cannot be multiplexed. In that case {@link #createChild()}
+ *   returns {@code null} and the multiplexer disables itself.
+ * </p>
+ */
+public class ContextMultiplexer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ContextMultiplexer.class);
+
+    private final XAConnectionFactory connectionFactory;
+
+    private final XAJMSContext[] parents;
+
+    private final AtomicInteger next = new AtomicInteger();
+
+    private volatile boolean supported = true;
+
+    private volatile boolean closed;
+
+    /**
+     * @param connectionFactory factory opening the parent contexts.
+     * @param parentCount number of parent contexts, i.e. physical connections.
+     */
+    public ContextMultiplexer(final XAConnectionFactory connectionFactory, final int parentCount) {
+        if (connectionFactory == null) {
+            throw new NarayanaHelperException("Connection factory must not be null.");
+        }
+        if (parentCount <= 0) {
+            throw new NarayanaHelperException("Parent count must be positive.");
+        }
+        this.connectionFactory = connectionFactory;
+        this.parents = new XAJMSContext[parentCount];
+    }
+
+    /**
+     * Create a child xa context sharing the connection of one of the parents.
+     *
+     * @return the child context or {@code null} if the provider does not create xa children.
+     */
+    public XAJMSContext createChild() {
+        if (!supported || closed) {
+            return null;
+        }
+        int slot = (next.getAndIncrement() & Integer.MAX_VALUE) % parents.length;
+        XAJMSContext parent = getParent(slot);
+        JMSContext child;
+        try {
+            child = createChild(parent);
+        } catch (JMSRuntimeException e) {
+            // the parent may have been replaced and closed by another thread or be broken, retry once with a fresh one
+            LOGGER.debug("Creating a child of parent context {} failed, retrying with a fresh parent: {}", parent, e.toString());
+            replaceParent(slot, parent);
+            try {
+                child = closed ? null : createChild(getParent(slot));
+            } catch (JMSRuntimeException retryFailure) {
+                supported = false;
+                LOGGER.warn("Provider fails to create child contexts, context multiplexing disabled.", retryFailure);
+                return null;
+            }
+        }
+        if (child == null || child instanceof XAJMSContext) {
+            return (XAJMSContext) child;
+        }
+        child.close();
+        supported = false;
+        LOGGER.warn("Provider creates child contexts of type {} which are not xa capable, context multiplexing disabled.", child.getClass().getName());
+        return null;
+    }
+
+    public boolean isSupported() {
+        return supported;
+    }
+
+    /**
+     * Close all parent contexts and with them all children.
+     */
+    public void close() {
+        closed = true;
+        for (int i = 0; i < parents.length; i++) {
+            closeParent(i);
+        }
+    }
+
+    // ---- Private Helper Methods ---------------------------------------
+
+    private XAJMSContext getParent(final int slot) {
+        synchronized (parents) {
+            XAJMSContext parent = parents[slot];
+            if (parent != null && !isFailed(parent)) {
+                return parent;
+            }
+            if (parent != null) {
+                LOGGER.info("Replacing failed parent context {}.", parent);
+                closeParent(slot);
+            }
+            parent = connectionFactory.createXAContext();
+            parent.setExceptionListener(new EvictingExceptionListener(() -> LOGGER.debug("Parent context failed, replacing it on next use.")));
+            parents[slot] = parent;
+            return parent;
+        }
+    }
+
+    private static JMSContext createChild(final XAJMSContext parent) {
+        // contexts are not meant for concurrent use, serialize the creation of children per parent
+        synchronized (parent) {
+            return parent.createContext(parent.getSessionMode());
+        }
+    }
+
+    private void replaceParent(final int slot, final XAJMSContext parent) {
+        synchronized (parents) {
+            if (parents[slot] != parent) {
+                // already replaced by another thread
+                return;
+            }
+            parents[slot] = null;
+        }
+        close(parent);
+    }
+
+    private void closeParent(final int slot) {
+        XAJMSContext parent;
+        synchronized (parents) {
+            parent = parents[slot];
+            parents[slot] = null;
+        }
+        if (parent != null) {
+            close(parent);
+        }
+    }
+
+    private static void close(final XAJMSContext parent) {
+        try {
+            parent.close();
+        } catch (JMSRuntimeException e) {
+            LOGGER.warn(String.format("Failed to close parent context %s.", parent), e);
+        }
+    }
+
+    private static boolean isFailed(final JMSContext context) {
+        ExceptionListener listener = context.getExceptionListener();
+        return listener instanceof EvictingExceptionListener && ((EvictingExceptionListener) listener).isFailed();
+    }
+
+}
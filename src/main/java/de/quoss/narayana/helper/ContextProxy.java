@@ -4,9 +4,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.jms.BytesMessage;
+import javax.jms.CompletionListener;
 import javax.jms.ConnectionMetaData;
 import javax.jms.Destination;
 import javax.jms.ExceptionListener;
+import javax.jms.IllegalStateRuntimeException;
 import javax.jms.JMSConsumer;
 import javax.jms.JMSContext;
 import javax.jms.JMSException;
@@ -16,14 +18,25 @@ import javax.jms.Message;
 import javax.jms.ObjectMessage;
 import javax.jms.Queue;
 import javax.jms.QueueBrowser;
+import javax.jms.ResourceAllocationException;
+import javax.jms.ResourceAllocationRuntimeException;
 import javax.jms.StreamMessage;
 import javax.jms.TemporaryQueue;
 import javax.jms.TemporaryTopic;
 import javax.jms.TextMessage;
 import javax.jms.Topic;
+import javax.jms.TransactionRolledBackException;
+import javax.jms.TransactionRolledBackRuntimeException;
 import javax.jms.XAJMSContext;
 import javax.transaction.xa.XAResource;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class ContextProxy implements XAJMSContext {
 
@@ -33,7 +46,42 @@ public class ContextProxy implements XAJMSContext {
 
     private final TransactionHelper transactionHelper;
 
+    private final ResourcePool<JMSContext> pool;
+
+    /** Consumers and browsers of a pooled context, closed before the context is returned. */
+    private final Set<AutoCloseable> children;
+
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    private ReusableMessages reusableMessages;
+
+    private BytesMessageBuffers bytesMessageBuffers;
+
+    private MessageCompressor messageCompressor;
+
+    private ProducerProfiles producerProfiles;
+
     public ContextProxy(final JMSContext context, final TransactionHelper transactionHelper) {
+        this(context, transactionHelper, null);
+    }
+
+    /**
+     * @param context physical context.
+     * @param transactionHelper transaction helper.
+     * @param pool pool the context is returned to on close, {@code null} to close the context.
+     */
+    public ContextProxy(final JMSContext context, final TransactionHelper transactionHelper, final ResourcePool<JMSContext> pool) {
+        this(context, transactionHelper, pool, null);
+    }
+
+    /**
+     * @param context physical context.
+     * @param transactionHelper transaction helper.
+     * @param pool pool the context is returned to on close, {@code null} to close the context.
+     * @param reusableMessages reusable messages kept with the pooled physical context, {@code null} to keep them
+     *   with this proxy.
+     */
+    ContextProxy(final JMSContext context, final TransactionHelper transactionHelper, final ResourcePool<JMSContext> pool, final ReusableMessages reusableMessages) {
         if (context == null) {
             throw new NarayanaHelperException("JMS context must not be null.");
         }
@@ -42,6 +90,9 @@ public class ContextProxy implements XAJMSContext {
             throw new NarayanaHelperException("Transaction helper must not be null.");
         }
         this.transactionHelper = transactionHelper;
+        this.pool = pool;
+        this.children = pool == null ? null : Collections.newSetFromMap(new IdentityHashMap<>());
+        this.reusableMessages = reusableMessages;
     }
 
     @Override
@@ -65,7 +116,7 @@ public class ContextProxy implements XAJMSContext {
 
     @Override
     public JMSProducer createProducer() {
-        return context.createProducer();
+        return new JMSProducerProxy(context.createProducer(), transactionHelper, this);
     }
 
     @Override
@@ -85,12 +136,22 @@ public class ContextProxy implements XAJMSContext {
 
     @Override
     public ExceptionListener getExceptionListener() {
-        return context.getExceptionListener();
+        ExceptionListener result = context.getExceptionListener();
+        if (result instanceof EvictingExceptionListener) {
+            return ((EvictingExceptionListener) result).getDelegate();
+        }
+        return result;
     }
 
     @Override
     public void setExceptionListener(final ExceptionListener listener) {
-        context.setExceptionListener(listener);
+        ExceptionListener current = context.getExceptionListener();
+        if (current instanceof EvictingExceptionListener) {
+            // keep the evicting listener installed on pooled contexts and chain the given one
+            ((EvictingExceptionListener) current).setDelegate(listener);
+        } else {
+            context.setExceptionListener(listener);
+        }
     }
 
     @Override
@@ -117,10 +178,26 @@ public class ContextProxy implements XAJMSContext {
     public void close() {
         final String methodName = "close()";
         LOGGER.trace("{} start", methodName);
+        if (!closed.compareAndSet(false, true)) {
+            // the context may already be in use by the next borrower
+            LOGGER.trace("{} end [already closed]", methodName);
+            return;
+        }
         try {
-            if (transactionHelper.isTransactionAvailable()) {
+            if (pool != null) {
+                // the listener of the current user must not survive in the pool
+                setExceptionListener(null);
+            }
+            // contexts of the non-xa pool were never enlisted
+            if (context instanceof XAJMSContext && transactionHelper.isTransactionAvailable()) {
                 transactionHelper.deregisterXAResource(((XAJMSContext) context).getXAResource());
-                transactionHelper.registerSynchronization(new ContextClosingSynchronization(context));
+                transactionHelper.registerSynchronization(new ContextClosingSynchronization(context, pool, pool == null ? null : this::resetForPool));
+            } else if (pool != null) {
+                if (resetForPool()) {
+                    pool.release(context);
+                } else {
+                    pool.destroy(context);
+                }
             } else {
                 context.close();
             }
@@ -135,6 +212,40 @@ public class ContextProxy implements XAJMSContext {
         return context.createBytesMessage();
     }
 
+    /**
+     * Create a bytes message with the remaining bytes of the buffer as body, see
+     * {@link SessionProxy#createBytesMessage(ByteBuffer)}.
+     *
+     * @param body the body, may be a direct buffer.
+     * @return the message.
+     */
+    public BytesMessage createBytesMessage(final ByteBuffer body) {
+        BytesMessage result = context.createBytesMessage();
+        try {
+            getBytesMessageBuffers().write(result, body);
+        } catch (JMSException e) {
+            throw new NarayanaHelperException("Error writing message body.", e);
+        }
+        return result;
+    }
+
+    /**
+     * Read the remaining body of a received bytes message into the buffer, see
+     * {@link SessionProxy#readBody(BytesMessage, ByteBuffer)}.
+     *
+     * @param message the message.
+     * @param target the buffer, must have room for the body.
+     * @return number of bytes read.
+     * @throws java.nio.BufferOverflowException if the body does not fit, nothing is read in that case.
+     */
+    public int readBody(final BytesMessage message, final ByteBuffer target) {
+        try {
+            return getBytesMessageBuffers().read(message, target);
+        } catch (JMSException e) {
+            throw new NarayanaHelperException("Error reading message body.", e);
+        }
+    }
+
     @Override
     public MapMessage createMapMessage() {
         return context.createMapMessage();
@@ -152,7 +263,35 @@ public class ContextProxy implements XAJMSContext {
 
     @Override
     public ObjectMessage createObjectMessage(final Serializable object) {
-        return context.createObjectMessage();
+        return context.createObjectMessage(object);
+    }
+
+    /**
+     * Create a bytes message carrying the encoded object, see {@link SessionProxy#createEncodedMessage(Object)}.
+     *
+     * @param object the object.
+     * @return the message.
+     */
+    public BytesMessage createEncodedMessage(final Object object) {
+        return createEncodedMessage(object, MessageCodecRegistry.getDefault().getCodec(object));
+    }
+
+    /**
+     * Create a bytes message carrying the object encoded by the given codec, see
+     * {@link SessionProxy#createEncodedMessage(Object)}.
+     *
+     * @param object the object.
+     * @param codec the codec, must be registered on the consumer side.
+     * @return the message.
+     */
+    public BytesMessage createEncodedMessage(final Object object, final MessageCodec codec) {
+        BytesMessage result = context.createBytesMessage();
+        try {
+            MessageCodecRegistry.encode(result, object, codec);
+        } catch (JMSException e) {
+            throw new NarayanaHelperException("Error encoding object.", e);
+        }
+        return result;
     }
 
     @Override
@@ -170,6 +309,24 @@ public class ContextProxy implements XAJMSContext {
         return context.createTextMessage(text);
     }
 
+    /**
+     * Get the reusable text message of this context, see {@link SessionProxy#getReusableTextMessage()}.
+     *
+     * @return the reusable text message.
+     */
+    public TextMessage getReusableTextMessage() {
+        return (TextMessage) getReusableMessage(ReusableMessages.TEXT);
+    }
+
+    /**
+     * Get the reusable bytes message of this context, see {@link SessionProxy#getReusableTextMessage()}.
+     *
+     * @return the reusable bytes message.
+     */
+    public BytesMessage getReusableBytesMessage() {
+        return (BytesMessage) getReusableMessage(ReusableMessages.BYTES);
+    }
+
     @Override
     public boolean getTransacted() {
         return context.getTransacted();
@@ -197,17 +354,17 @@ public class ContextProxy implements XAJMSContext {
 
     @Override
     public JMSConsumer createConsumer(final Destination destination) {
-        return context.createConsumer(destination);
+        return track(new JMSConsumerProxy(context.createConsumer(destination), transactionHelper, this));
     }
 
     @Override
     public JMSConsumer createConsumer(final Destination destination, final String messageSelector) {
-        return context.createConsumer(destination, messageSelector);
+        return track(new JMSConsumerProxy(context.createConsumer(destination, messageSelector), transactionHelper, this));
     }
 
     @Override
     public JMSConsumer createConsumer(final Destination destination, final String messageSelector, final boolean noLocal) {
-        return context.createConsumer(destination, messageSelector, noLocal);
+        return track(new JMSConsumerProxy(context.createConsumer(destination, messageSelector, noLocal), transactionHelper, this));
     }
 
     @Override
@@ -222,42 +379,42 @@ public class ContextProxy implements XAJMSContext {
 
     @Override
     public JMSConsumer createDurableConsumer(final Topic topic, final String name) {
-        return context.createDurableConsumer(topic, name);
+        return track(new JMSConsumerProxy(context.createDurableConsumer(topic, name), transactionHelper, this));
     }
 
     @Override
     public JMSConsumer createDurableConsumer(final Topic topic, final String name, final String messageSelector, final boolean noLocal) {
-        return context.createDurableConsumer(topic, name, messageSelector, noLocal);
+        return track(new JMSConsumerProxy(context.createDurableConsumer(topic, name, messageSelector, noLocal), transactionHelper, this));
     }
 
     @Override
     public JMSConsumer createSharedDurableConsumer(final Topic topic, final String name) {
-        return context.createSharedDurableConsumer(topic, name);
+        return track(new JMSConsumerProxy(context.createSharedDurableConsumer(topic, name), transactionHelper, this));
     }
 
     @Override
     public JMSConsumer createSharedDurableConsumer(final Topic topic, final String name, final String messageSelector) {
-        return context.createSharedDurableConsumer(topic, name, messageSelector);
+        return track(new JMSConsumerProxy(context.createSharedDurableConsumer(topic, name, messageSelector), transactionHelper, this));
     }
 
     @Override
     public JMSConsumer createSharedConsumer(final Topic topic, final String sharedSubscriptionName) {
-        return context.createSharedConsumer(topic, sharedSubscriptionName);
+        return track(new JMSConsumerProxy(context.createSharedConsumer(topic, sharedSubscriptionName), transactionHelper, this));
     }
 
     @Override
     public JMSConsumer createSharedConsumer(final Topic topic, final String sharedSubscriptionName, final String messageSelector) {
-        return context.createSharedConsumer(topic, sharedSubscriptionName, messageSelector);
+        return track(new JMSConsumerProxy(context.createSharedConsumer(topic, sharedSubscriptionName, messageSelector), transactionHelper, this));
     }
 
     @Override
     public QueueBrowser createBrowser(final Queue queue) {
-        return context.createBrowser(queue);
+        return track(context.createBrowser(queue));
     }
 
     @Override
     public QueueBrowser createBrowser(final Queue queue, final String messageSelector) {
-        return context.createBrowser(queue, messageSelector);
+        return track(context.createBrowser(queue, messageSelector));
     }
 
     @Override
@@ -280,4 +437,177 @@ public class ContextProxy implements XAJMSContext {
         context.acknowledge();
     }
 
+    // ---- Package Private Methods ---------------------------------------
+
+    /**
+     * @param messageCompressor compressor applied to messages sent by the producers of this context, {@code null}
+     *   to send them as they are.
+     */
+    void setMessageCompressor(final MessageCompressor messageCompressor) {
+        this.messageCompressor = messageCompressor;
+    }
+
+    /**
+     * @param producerProfiles profiles applied by the producers of this context per destination sent to,
+     *   {@code null} for none.
+     */
+    void setProducerProfiles(final ProducerProfiles producerProfiles) {
+        this.producerProfiles = producerProfiles;
+    }
+
+    /**
+     * @return profile of the destination, {@code null} if there is none.
+     */
+    ProducerProfile getProducerProfile(final Destination destination) {
+        if (producerProfiles == null) {
+            return null;
+        }
+        try {
+            return producerProfiles.getProfile(destination);
+        } catch (JMSException e) {
+            throw new NarayanaHelperException("Error reading destination name.", e);
+        }
+    }
+
+    /**
+     * @return whether messages sent by the producers of this context are compressed.
+     */
+    boolean hasMessageCompressor() {
+        return messageCompressor != null;
+    }
+
+    /**
+     * @return whether a body of the given length is compressed.
+     */
+    boolean isCompressing(final int length) {
+        return messageCompressor != null && length >= messageCompressor.getThresholdBytes();
+    }
+
+    /**
+     * Fail fast before sending with an xa context in a doomed or completing transaction.
+     */
+    void checkTransaction() {
+        if (context instanceof XAJMSContext) {
+            try {
+                transactionHelper.isTransactionUsable();
+            } catch (JMSException e) {
+                throw toRuntimeException(e);
+            }
+        }
+    }
+
+    /**
+     * Map an exception of the classic api to the runtime exception of the simplified api, keeping the type of the
+     * transaction and resource failures callers react to.
+     */
+    static RuntimeException toRuntimeException(final JMSException e) {
+        if (e instanceof TransactionRolledBackException) {
+            return new TransactionRolledBackRuntimeException(e.getMessage(), e.getErrorCode(), e);
+        }
+        if (e instanceof javax.jms.IllegalStateException) {
+            return new IllegalStateRuntimeException(e.getMessage(), e.getErrorCode(), e);
+        }
+        if (e instanceof ResourceAllocationException) {
+            return new ResourceAllocationRuntimeException(e.getMessage(), e.getErrorCode(), e);
+        }
+        return new NarayanaHelperException(e);
+    }
+
+    void compress(final Message message) {
+        if (messageCompressor != null) {
+            try {
+                messageCompressor.compress(message);
+            } catch (JMSException e) {
+                throw new NarayanaHelperException("Error compressing message.", e);
+            }
+        }
+    }
+
+    /**
+     * @return the listener to pass on for an asynchronous send of the given message, reserving the message if it is
+     *   a reusable one.
+     */
+    CompletionListener trackAsyncSend(final Message message, final CompletionListener completionListener) {
+        return reusableMessages == null ? completionListener : reusableMessages.track(message, completionListener);
+    }
+
+    /**
+     * Release the message reserved for an asynchronous send which failed synchronously.
+     */
+    void cancelAsyncSend(final CompletionListener tracking) {
+        if (reusableMessages != null) {
+            reusableMessages.cancel(tracking);
+        }
+    }
+
+    /**
+     * Stop tracking a closed consumer or browser.
+     */
+    void untrack(final AutoCloseable child) {
+        if (children != null) {
+            synchronized (children) {
+                children.remove(child);
+            }
+        }
+    }
+
+    // ---- Private Helper Methods ---------------------------------------
+
+    private <T extends AutoCloseable> T track(final T child) {
+        if (children != null) {
+            synchronized (children) {
+                children.add(child);
+            }
+        }
+        return child;
+    }
+
+    /**
+     * Close the consumers and browsers left open by the borrower, so an idle context neither holds prefetched
+     * messages nor hands them to the listeners of the previous borrower.
+     *
+     * @return whether the context may go back to the pool.
+     */
+    private boolean resetForPool() {
+        List<AutoCloseable> open;
+        synchronized (children) {
+            open = new ArrayList<>(children);
+            children.clear();
+        }
+        boolean result = true;
+        for (AutoCloseable child : open) {
+            try {
+                child.close();
+            } catch (Exception e) {
+                LOGGER.debug("Failed to close {} of pooled context {}.", child, context, e);
+                result = false;
+            }
+        }
+        return result;
+    }
+
+    private BytesMessageBuffers getBytesMessageBuffers() {
+        if (bytesMessageBuffers == null) {
+            bytesMessageBuffers = new BytesMessageBuffers();
+        }
+        return bytesMessageBuffers;
+    }
+
+    private Message getReusableMessage(final int kind) {
+        if (reusableMessages == null) {
+            reusableMessages = new ReusableMessages();
+        }
+        Message result;
+        try {
+            result = reusableMessages.reuse(kind);
+        } catch (JMSException e) {
+            throw new NarayanaHelperException("Error clearing reusable message.", e);
+        }
+        if (result == null) {
+            result = kind == ReusableMessages.TEXT ? context.createTextMessage() : context.createBytesMessage();
+            reusableMessages.cache(kind, result);
+        }
+        return result;
+    }
+
 }
@@ -0,0 +1,400 @@
+package de.quoss.narayana.helper;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.jms.Connection;
+import javax.jms.IllegalStateException;
+import javax.jms.IllegalStateRuntimeException;
+import javax.jms.JMSContext;
+import javax.jms.JMSException;
+import javax.jms.JMSRuntimeException;
+import javax.jms.QueueConnection;
+import javax.jms.ResourceAllocationException;
+import javax.jms.ResourceAllocationRuntimeException;
+import javax.jms.TopicConnection;
+import javax.jms.TransactionRolledBackException;
+import javax.jms.TransactionRolledBackRuntimeException;
+import javax.jms.XAConnection;
+import javax.jms.XAJMSContext;
+import javax.jms.XAQueueConnection;
+import javax.jms.XAQueueConnectionFactory;
+import javax.jms.XATopicConnection;
+import javax.jms.XATopicConnectionFactory;
+import javax.transaction.Synchronization;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>
+ *   Distributes connections and contexts over several brokers, each behind its own {@link ConnectionFactoryProxy}.
+ * </p>
+ * <p>
+ *   Every create call is routed to one member factory chosen by the {@link DistributionPolicy}, so pooling,
+ *   enlistment and closing work exactly as with a single proxy. A member failing with a provider exception is taken
+ *   out of rotation for the retry interval and the call is retried on the next member. Failures caused by the
+ *   transaction, e.g. one marked for rollback, are not held against the broker and are thrown right away.
+ * </p>
+ */
+public class DistributingConnectionFactoryProxy implements XAQueueConnectionFactory, XATopicConnectionFactory, AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DistributingConnectionFactoryProxy.class);
+
+    private final List<Member> members;
+
+    private final TransactionHelper transactionHelper;
+
+    private final DistributionPolicy policy;
+
+    private final long retryIntervalNanos;
+
+    private final AtomicInteger next = new AtomicInteger();
+
+    /**
+     * @param factories member factories, closed with this factory.
+     * @param transactionHelper transaction helper of the members.
+     * @param policy distribution policy.
+     * @param retryIntervalMillis time a failed member is out of rotation.
+     */
+    public DistributingConnectionFactoryProxy(final List<ConnectionFactoryProxy> factories, final TransactionHelper transactionHelper,
+            final DistributionPolicy policy, final long retryIntervalMillis) {
+        if (factories == null || factories.isEmpty()) {
+            throw new NarayanaHelperException("Factories must not be empty.");
+        }
+        List<Member> list = new ArrayList<>(factories.size());
+        for (ConnectionFactoryProxy factory : factories) {
+            if (factory == null) {
+                throw new NarayanaHelperException("Factory must not be null.");
+            }
+            list.add(new Member(factory));
+        }
+        this.members = Collections.unmodifiableList(list);
+        if (transactionHelper == null) {
+            throw new NarayanaHelperException("Transaction helper must not be null.");
+        }
+        this.transactionHelper = transactionHelper;
+        if (policy == null) {
+            throw new NarayanaHelperException("Policy must not be null.");
+        }
+        this.policy = policy;
+        if (retryIntervalMillis < 0L) {
+            throw new NarayanaHelperException("Retry interval must not be negative.");
+        }
+        this.retryIntervalNanos = TimeUnit.MILLISECONDS.toNanos(retryIntervalMillis);
+    }
+
+    public DistributionPolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * @return the number of members currently in rotation.
+     */
+    public int getHealthyCount() {
+        long now = System.nanoTime();
+        int result = 0;
+        for (Member member : members) {
+            if (member.isAvailable(now)) {
+                result++;
+            }
+        }
+        return result;
+    }
+
+    // ---- AutoCloseable API Methods -------------------------------
+
+    /**
+     * Close all member factories.
+     */
+    @Override
+    public void close() {
+        for (Member member : members) {
+            member.factory.close();
+        }
+    }
+
+    // ---- ConnectionFactory API Methods -------------------------------
+
+    @Override
+    public Connection createConnection() throws JMSException {
+        return route("createConnection()", ConnectionFactoryProxy::createConnection);
+    }
+
+    @Override
+    public Connection createConnection(final String userName, final String password) throws JMSException {
+        return route("createConnection(String, String)", f -> f.createConnection(userName, password));
+    }
+
+    @Override
+    public JMSContext createContext() {
+        return routeContext("createContext()", ConnectionFactoryProxy::createContext);
+    }
+
+    @Override
+    public JMSContext createContext(final String userName, final String password) {
+        return routeContext("createContext(String, String)", f -> f.createContext(userName, password));
+    }
+
+    @Override
+    public JMSContext createContext(final String userName, final String password, final int sessionMode) {
+        return routeContext("createContext(String, String, int)", f -> f.createContext(userName, password, sessionMode));
+    }
+
+    @Override
+    public JMSContext createContext(final int sessionMode) {
+        return routeContext("createContext(int)", f -> f.createContext(sessionMode));
+    }
+
+    // ---- XAConnectionFactory API Methods -------------------------------
+
+    @Override
+    public XAConnection createXAConnection() throws JMSException {
+        return route("createXAConnection()", ConnectionFactoryProxy::createXAConnection);
+    }
+
+    @Override
+    public XAConnection createXAConnection(final String userName, final String password) throws JMSException {
+        return route("createXAConnection(String, String)", f -> f.createXAConnection(userName, password));
+    }
+
+    @Override
+    public XAJMSContext createXAContext() {
+        return routeContext("createXAContext()", ConnectionFactoryProxy::createXAContext);
+    }
+
+    @Override
+    public XAJMSContext createXAContext(final String userName, final String password) {
+        return routeContext("createXAContext(String, String)", f -> f.createXAContext(userName, password));
+    }
+
+    // ---- Queue And Topic API Methods -------------------------------
+
+    @Override
+    public QueueConnection createQueueConnection() throws JMSException {
+        return route("createQueueConnection()", ConnectionFactoryProxy::createQueueConnection);
+    }
+
+    @Override
+    public QueueConnection createQueueConnection(final String userName, final String password) throws JMSException {
+        return route("createQueueConnection(String, String)", f -> f.createQueueConnection(userName, password));
+    }
+
+    @Override
+    public XAQueueConnection createXAQueueConnection() throws JMSException {
+        return route("createXAQueueConnection()", ConnectionFactoryProxy::createXAQueueConnection);
+    }
+
+    @Override
+    public XAQueueConnection createXAQueueConnection(final String userName, final String password) throws JMSException {
+        return route("createXAQueueConnection(String, String)", f -> f.createXAQueueConnection(userName, password));
+    }
+
+    @Override
+    public TopicConnection createTopicConnection() throws JMSException {
+        return route("createTopicConnection()", ConnectionFactoryProxy::createTopicConnection);
+    }
+
+    @Override
+    public TopicConnection createTopicConnection(final String userName, final String password) throws JMSException {
+        return route("createTopicConnection(String, String)", f -> f.createTopicConnection(userName, password));
+    }
+
+    @Override
+    public XATopicConnection createXATopicConnection() throws JMSException {
+        return route("createXATopicConnection()", ConnectionFactoryProxy::createXATopicConnection);
+    }
+
+    @Override
+    public XATopicConnection createXATopicConnection(final String userName, final String password) throws JMSException {
+        return route("createXATopicConnection(String, String)", f -> f.createXATopicConnection(userName, password));
+    }
+
+    // ---- Private Methods ----------------------------------
+
+    private <T> T routeContext(final String methodName, final Route<T> route) {
+        try {
+            return route(methodName, route);
+        } catch (JMSException e) {
+            throw ContextProxy.toRuntimeException(e);
+        }
+    }
+
+    private <T> T route(final String methodName, final Route<T> route) throws JMSException {
+        LOGGER.trace("{} start", methodName);
+        Exception failure = null;
+        for (Member member : getCandidates()) {
+            long start = System.nanoTime();
+            member.outstanding.incrementAndGet();
+            boolean tracked = false;
+            try {
+                T result = route.create(member.factory);
+                member.succeeded(System.nanoTime() - start);
+                tracked = trackOutstanding(member);
+                if (LOGGER.isTraceEnabled()) {
+                    LOGGER.trace("{} end [member={},result={}]", methodName, member.factory, result);
+                }
+                return result;
+            } catch (JMSException | RuntimeException e) {
+                if (!isBrokerFailure(e)) {
+                    throw e;
+                }
+                member.failed(retryIntervalNanos);
+                LOGGER.warn(String.format("Broker behind %s failed, taking it out of rotation.", member.factory), e);
+                failure = e;
+            } finally {
+                if (!tracked) {
+                    member.outstanding.decrementAndGet();
+                }
+            }
+        }
+        if (failure instanceof JMSException) {
+            throw (JMSException) failure;
+        }
+        throw (RuntimeException) failure;
+    }
+
+    /**
+     * @return the chosen member first, then the other healthy ones, then the ones out of rotation as last resort.
+     */
+    private List<Member> getCandidates() {
+        long now = System.nanoTime();
+        List<Member> result = new ArrayList<>(members.size());
+        List<Member> unavailable = new ArrayList<>();
+        for (Member member : members) {
+            if (member.isAvailable(now)) {
+                result.add(member);
+            } else {
+                unavailable.add(member);
+            }
+        }
+        if (result.size() > 1) {
+            Collections.swap(result, 0, choose(result));
+        }
+        result.addAll(unavailable);
+        return result;
+    }
+
+    private int choose(final List<Member> candidates) {
+        int offset = Math.floorMod(next.getAndIncrement(), candidates.size());
+        switch (policy) {
+            case LEAST_OUTSTANDING:
+                // start at the round-robin offset so ties are spread as well
+                int best = offset;
+                for (int i = 1; i < candidates.size(); i++) {
+                    int index = (offset + i) % candidates.size();
+                    if (candidates.get(index).outstanding.get() < candidates.get(best).outstanding.get()) {
+                        best = index;
+                    }
+                }
+                return best;
+            case LATENCY_WEIGHTED:
+                double[] weights = new double[candidates.size()];
+                double total = 0.0D;
+                for (int i = 0; i < weights.length; i++) {
+                    long latency = candidates.get(i).latencyNanos;
+                    if (latency == 0L) {
+                        // not measured yet, give it a call to measure
+                        return i;
+                    }
+                    weights[i] = 1.0D / latency;
+                    total += weights[i];
+                }
+                double random = ThreadLocalRandom.current().nextDouble(total);
+                for (int i = 0; i < weights.length; i++) {
+                    random -= weights[i];
+                    if (random < 0.0D) {
+                        return i;
+                    }
+                }
+                return weights.length - 1;
+            default:
+                return offset;
+        }
+    }
+
+    /**
+     * Count a resource created in a transaction as outstanding until the transaction completes.
+     */
+    private boolean trackOutstanding(final Member member) {
+        try {
+            if (!transactionHelper.isTransactionAvailable()) {
+                return false;
+            }
+            transactionHelper.registerSynchronization(new Synchronization() {
+
+                @Override
+                public void beforeCompletion() {
+                    // Nothing to do
+                }
+
+                @Override
+                public void afterCompletion(final int status) {
+                    member.outstanding.decrementAndGet();
+                }
+
+            });
+            return true;
+        } catch (JMSException e) {
+            LOGGER.debug("Failed to track outstanding resource of {}.", member.factory, e);
+            return false;
+        }
+    }
+
+    private static boolean isBrokerFailure(final Exception e) {
+        Throwable cause = e instanceof NarayanaHelperException ? e.getCause() : e;
+        if (cause instanceof TransactionRolledBackException || cause instanceof TransactionRolledBackRuntimeException
+                || cause instanceof IllegalStateException || cause instanceof IllegalStateRuntimeException
+                || cause instanceof ResourceAllocationException || cause instanceof ResourceAllocationRuntimeException) {
+            // caused by the transaction or the concurrency limit, another broker would not do better
+            return false;
+        }
+        return cause instanceof JMSException || cause instanceof JMSRuntimeException;
+    }
+
+    // ---- Private Classes ----------------------------------
+
+    private interface Route<T> {
+
+        T create(ConnectionFactoryProxy factory) throws JMSException;
+
+    }
+
+    private static final class Member {
+
+        private final ConnectionFactoryProxy factory;
+
+        private final AtomicInteger outstanding = new AtomicInteger();
+
+        private volatile long latencyNanos;
+
+        private volatile boolean healthy = true;
+
+        private volatile long retryNanos;
+
+        private Member(final ConnectionFactoryProxy factory) {
+            this.factory = factory;
+        }
+
+        private boolean isAvailable(final long now) {
+            return healthy || now - retryNanos >= 0L;
+        }
+
+        private void succeeded(final long nanos) {
+            long latency = latencyNanos;
+            // moving average, lost updates of concurrent calls do not matter
+            latencyNanos = Math.max(1L, latency == 0L ? nanos : latency + (nanos - latency) / 5L);
+            healthy = true;
+        }
+
+        private void failed(final long retryIntervalNanos) {
+            retryNanos = System.nanoTime() + retryIntervalNanos;
+            healthy = false;
+        }
+
+    }
+
+}
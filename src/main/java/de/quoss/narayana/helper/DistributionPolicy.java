@@ -0,0 +1,17 @@
+package de.quoss.narayana.helper;
+
+/**
+ * Policies of a {@link DistributingConnectionFactoryProxy} choosing the broker for a new connection or context.
+ */
+public enum DistributionPolicy {
+
+    /** Healthy brokers in turn. */
+    ROUND_ROBIN,
+
+    /** The healthy broker with the fewest resources being created or enlisted in a running transaction. */
+    LEAST_OUTSTANDING,
+
+    /** A healthy broker picked at random, weighted by the inverse of its average create latency. */
+    LATENCY_WEIGHTED
+
+}
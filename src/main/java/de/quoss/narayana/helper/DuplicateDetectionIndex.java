@@ -0,0 +1,143 @@
+package de.quoss.narayana.helper;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ *   Bounded index of recently processed message keys, kept off-heap for an {@link IdempotentConsumer}.
+ * </p>
+ * <p>
+ *   Keys are stored as 128-bit fingerprints with their expiry time in a direct buffer of fixed size, an open-addressing
+ *   hash table with linear probing. Lookups and inserts look at a bounded number of slots: an insert takes the slot
+ *   of the same key, an empty or expired one, and if all are live the one expiring first. A full index thus forgets
+ *   its oldest keys early instead of growing, which only lets an old duplicate through. Slots are never emptied again,
+ *   so probe chains stay intact.
+ * </p>
+ */
+public class DuplicateDetectionIndex {
+
+    private static final int SLOT_SIZE = 3 * Long.BYTES;
+
+    private static final int PROBE_LIMIT = 16;
+
+    private static final long SEED_HIGH = 0x9E3779B97F4A7C15L;
+
+    private static final long SEED_LOW = 0xCBF29CE484222325L;
+
+    private static final long MULTIPLIER_HIGH = 0xBF58476D1CE4E5B9L;
+
+    private static final long MULTIPLIER_LOW = 0x100000001B3L;
+
+    private final ByteBuffer slots;
+
+    private final int mask;
+
+    private final long ttlMillis;
+
+    private final long originNanos = System.nanoTime();
+
+    /**
+     * @param capacity number of slots, rounded up to a power of two.
+     * @param ttlMillis time a recorded key is remembered.
+     */
+    public DuplicateDetectionIndex(final int capacity, final long ttlMillis) {
+        if (capacity <= 0 || capacity > (1 << 26)) {
+            throw new NarayanaHelperException(String.format("Invalid capacity %d.", capacity));
+        }
+        if (ttlMillis <= 0L) {
+            throw new NarayanaHelperException("Time to live must be positive.");
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.slots = ByteBuffer.allocateDirect(size * SLOT_SIZE);
+        this.mask = size - 1;
+        this.ttlMillis = ttlMillis;
+    }
+
+    public int getCapacity() {
+        return mask + 1;
+    }
+
+    /**
+     * @param key the key.
+     * @return whether the key was recorded and has not expired yet.
+     */
+    public synchronized boolean contains(final String key) {
+        long high = hash(key, SEED_HIGH, MULTIPLIER_HIGH);
+        long low = hash(key, SEED_LOW, MULTIPLIER_LOW);
+        long now = now();
+        int index = (int) low & mask;
+        for (int i = 0; i < PROBE_LIMIT && i <= mask; i++) {
+            int offset = ((index + i) & mask) * SLOT_SIZE;
+            long expiry = slots.getLong(offset + 2 * Long.BYTES);
+            if (expiry == 0L) {
+                return false;
+            }
+            if (slots.getLong(offset) == high && slots.getLong(offset + Long.BYTES) == low) {
+                return expiry > now;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Record a key, or renew it if already recorded.
+     *
+     * @param key the key.
+     */
+    public synchronized void record(final String key) {
+        long high = hash(key, SEED_HIGH, MULTIPLIER_HIGH);
+        long low = hash(key, SEED_LOW, MULTIPLIER_LOW);
+        long now = now();
+        int index = (int) low & mask;
+        int target = -1;
+        long targetExpiry = Long.MAX_VALUE;
+        for (int i = 0; i < PROBE_LIMIT && i <= mask; i++) {
+            int offset = ((index + i) & mask) * SLOT_SIZE;
+            long expiry = slots.getLong(offset + 2 * Long.BYTES);
+            if (expiry == 0L || slots.getLong(offset) == high && slots.getLong(offset + Long.BYTES) == low) {
+                target = offset;
+                break;
+            }
+            // reuse expired slots first, otherwise the one expiring first
+            long rank = expiry <= now ? Long.MIN_VALUE : expiry;
+            if (rank < targetExpiry) {
+                target = offset;
+                targetExpiry = rank;
+            }
+        }
+        slots.putLong(target, high);
+        slots.putLong(target + Long.BYTES, low);
+        slots.putLong(target + 2 * Long.BYTES, now + ttlMillis);
+    }
+
+    // ---- Private Helper Methods ---------------------------------------
+
+    /**
+     * @return milliseconds since creation, at least one so zero marks empty slots.
+     */
+    private long now() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - originNanos) + 1L;
+    }
+
+    /**
+     * FNV-1a style hash over the characters, two of them with different constants make up the fingerprint.
+     */
+    private static long hash(final String key, final long seed, final long multiplier) {
+        long h = seed;
+        for (int i = 0; i < key.length(); i++) {
+            h = (h ^ key.charAt(i)) * multiplier;
+        }
+        // murmur3 finalizer, spreads the bits used for the slot index
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+}
@@ -0,0 +1,127 @@
+package de.quoss.narayana.helper;
+
+import javax.jms.BytesMessage;
+import javax.jms.JMSContext;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageFormatException;
+import javax.jms.MessageListener;
+import javax.jms.Session;
+import javax.jms.TextMessage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ *   Unpacks the envelopes sent by a {@link CoalescingProducer} into individual messages.
+ * </p>
+ * <p>
+ *   Every logical message becomes a text or bytes message created on the given session or context, with its
+ *   properties and the message id, timestamp and redelivered flag of the envelope. The message id gets the index of
+ *   the logical message appended, so an {@link IdempotentConsumer} tells them apart. Messages which are no envelopes
+ *   are passed on as they are.
+ * </p>
+ */
+public class EnvelopeUnpacker {
+
+    private final Session session;
+
+    private final JMSContext context;
+
+    public EnvelopeUnpacker(final Session session) {
+        if (session == null) {
+            throw new NarayanaHelperException("Session must not be null.");
+        }
+        this.session = session;
+        this.context = null;
+    }
+
+    public EnvelopeUnpacker(final JMSContext context) {
+        if (context == null) {
+            throw new NarayanaHelperException("Context must not be null.");
+        }
+        this.session = null;
+        this.context = context;
+    }
+
+    /**
+     * @param message a received message.
+     * @return the logical messages of an envelope, the message itself otherwise.
+     * @throws MessageFormatException if the envelope is corrupt.
+     * @throws JMSException if the message cannot be read.
+     */
+    public List<Message> unpack(final Message message) throws JMSException {
+        if (!(message instanceof BytesMessage) || !message.propertyExists(CoalescingProducer.ENVELOPE_PROPERTY)) {
+            return Collections.singletonList(message);
+        }
+        Object decoded = MessageCodecRegistry.getDefault().decode(message);
+        if (!(decoded instanceof List) || ((List<?>) decoded).size() != message.getIntProperty(CoalescingProducer.ENVELOPE_PROPERTY)) {
+            throw new MessageFormatException("Envelope is corrupt.");
+        }
+        List<?> entries = (List<?>) decoded;
+        List<Message> result = new ArrayList<>(entries.size());
+        for (int i = 0; i < entries.size(); i++) {
+            result.add(toMessage(message, i, entries.get(i)));
+        }
+        return result;
+    }
+
+    /**
+     * @param listener listener to call for every logical message.
+     * @return a listener unpacking envelopes, all messages of an envelope are handled in the delivery of the envelope.
+     */
+    public MessageListener wrap(final MessageListener listener) {
+        if (listener == null) {
+            throw new NarayanaHelperException("Message listener must not be null.");
+        }
+        return message -> {
+            List<Message> messages;
+            try {
+                messages = unpack(message);
+            } catch (JMSException e) {
+                // let the provider redeliver
+                throw new NarayanaHelperException("Error unpacking envelope.", e);
+            }
+            for (Message logical : messages) {
+                listener.onMessage(logical);
+            }
+        };
+    }
+
+    // ---- Private Helper Methods ---------------------------------------
+
+    private Message toMessage(final Message envelope, final int index, final Object entry) throws JMSException {
+        if (!(entry instanceof List) || ((List<?>) entry).size() != 2 || !(((List<?>) entry).get(0) instanceof Map)) {
+            throw new MessageFormatException("Envelope entry is corrupt.");
+        }
+        Object body = ((List<?>) entry).get(1);
+        Message result;
+        if (body instanceof byte[]) {
+            BytesMessage bytesMessage = session != null ? session.createBytesMessage() : context.createBytesMessage();
+            bytesMessage.writeBytes((byte[]) body);
+            bytesMessage.reset();
+            result = bytesMessage;
+        } else if (body == null || body instanceof String) {
+            TextMessage textMessage = session != null ? session.createTextMessage() : context.createTextMessage();
+            textMessage.setText((String) body);
+            result = textMessage;
+        } else {
+            throw new MessageFormatException("Envelope entry is corrupt.");
+        }
+        for (Map.Entry<?, ?> property : ((Map<?, ?>) ((List<?>) entry).get(0)).entrySet()) {
+            if (!(property.getKey() instanceof String)) {
+                throw new MessageFormatException("Envelope entry is corrupt.");
+            }
+            result.setObjectProperty((String) property.getKey(), property.getValue());
+        }
+        String id = envelope.getJMSMessageID();
+        result.setJMSMessageID(id == null ? null : id + ":" + index);
+        result.setJMSTimestamp(envelope.getJMSTimestamp());
+        result.setJMSRedelivered(envelope.getJMSRedelivered());
+        result.setJMSDestination(envelope.getJMSDestination());
+        return result;
+    }
+
+}
@@ -0,0 +1,68 @@
+package de.quoss.narayana.helper;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.jms.ExceptionListener;
+import javax.jms.JMSException;
+
+/**
+ * <p>
+ *   Exception listener installed on pooled physical connections and contexts.
+ * </p>
+ * <p>
+ *   On the first exception reported by the provider the resource is marked as failed and the eviction callback is
+ *   run, so everything belonging to the broken connection leaves the pools immediately. The listener set by the
+ *   application through the proxies is called afterwards.
+ * </p>
+ */
+public class EvictingExceptionListener implements ExceptionListener {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EvictingExceptionListener.class);
+
+    private final Runnable evictionCallback;
+
+    private volatile ExceptionListener delegate;
+
+    private volatile boolean failed;
+
+    /**
+     * @param evictionCallback callback evicting the pooled resources of the failed connection.
+     */
+    public EvictingExceptionListener(final Runnable evictionCallback) {
+        if (evictionCallback == null) {
+            throw new NarayanaHelperException("Eviction callback must not be null.");
+        }
+        this.evictionCallback = evictionCallback;
+    }
+
+    @Override
+    public void onException(final JMSException exception) {
+        if (!failed) {
+            failed = true;
+            LOGGER.warn("Pooled connection failed, evicting its resources.", exception);
+            try {
+                evictionCallback.run();
+            } catch (RuntimeException e) {
+                LOGGER.warn("Error evicting resources of failed connection.", e);
+            }
+        }
+        ExceptionListener listener = delegate;
+        if (listener != null) {
+            listener.onException(exception);
+        }
+    }
+
+    public ExceptionListener getDelegate() {
+        return delegate;
+    }
+
+    public void setDelegate(final ExceptionListener delegate) {
+        this.delegate = delegate;
+    }
+
+    public boolean isFailed() {
+        return failed;
+    }
+
+}
@@ -0,0 +1,152 @@
+package de.quoss.narayana.helper;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageListener;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+
+/**
+ * <p>
+ *   Skips messages redelivered after they were already processed, e.g. after a rollback following a successful
+ *   handler or a broker failover, using a {@link DuplicateDetectionIndex}.
+ * </p>
+ * <p>
+ *   A message is identified by its {@code JMSMessageID} or by a business key taken from a string property. Accepted
+ *   messages are recorded in the index when their transaction commits, a rolled back message is accepted again on
+ *   redelivery. Outside of a transaction a message is recorded once it was handled, by {@link #processed(Message)}
+ *   or by a listener returned from {@link #wrap(MessageListener)}.
+ * </p>
+ */
+public class IdempotentConsumer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(IdempotentConsumer.class);
+
+    private final DuplicateDetectionIndex index;
+
+    private final TransactionHelper transactionHelper;
+
+    private final String keyProperty;
+
+    public IdempotentConsumer(final DuplicateDetectionIndex index, final TransactionHelper transactionHelper) {
+        this(index, transactionHelper, null);
+    }
+
+    /**
+     * @param index index of processed keys.
+     * @param transactionHelper transaction helper.
+     * @param keyProperty string property holding the business key, {@code null} to use the message id.
+     */
+    public IdempotentConsumer(final DuplicateDetectionIndex index, final TransactionHelper transactionHelper, final String keyProperty) {
+        if (index == null) {
+            throw new NarayanaHelperException("Index must not be null.");
+        }
+        this.index = index;
+        if (transactionHelper == null) {
+            throw new NarayanaHelperException("Transaction helper must not be null.");
+        }
+        this.transactionHelper = transactionHelper;
+        this.keyProperty = keyProperty;
+    }
+
+    /**
+     * Check a received message before handling it and have it recorded when its transaction commits. Outside of a
+     * transaction call {@link #processed(Message)} once it was handled.
+     *
+     * @param message the message.
+     * @return {@code false} if it is a duplicate to skip, {@code true} if it is to be handled.
+     * @throws JMSException if the key cannot be read or the recording cannot be registered with the transaction.
+     */
+    public boolean accept(final Message message) throws JMSException {
+        return accept(getKey(message), transactionHelper.isTransactionAvailable());
+    }
+
+    /**
+     * Record a message handled outside of a transaction, so a redelivery is skipped.
+     *
+     * @param message the message.
+     * @throws JMSException if the key cannot be read.
+     */
+    public void processed(final Message message) throws JMSException {
+        String key = getKey(message);
+        if (key != null) {
+            index.record(key);
+        }
+    }
+
+    /**
+     * @param listener listener to call for messages which are no duplicates.
+     * @return a listener skipping duplicates, recording a message handled outside of a transaction once the listener
+     *   returned.
+     */
+    public MessageListener wrap(final MessageListener listener) {
+        if (listener == null) {
+            throw new NarayanaHelperException("Message listener must not be null.");
+        }
+        return message -> {
+            String key;
+            boolean transactional;
+            try {
+                key = getKey(message);
+                transactional = transactionHelper.isTransactionAvailable();
+                if (!accept(key, transactional)) {
+                    return;
+                }
+            } catch (JMSException e) {
+                // let the provider redeliver
+                throw new NarayanaHelperException("Error checking message for duplicates.", e);
+            }
+            listener.onMessage(message);
+            if (key != null && !transactional) {
+                index.record(key);
+            }
+        };
+    }
+
+    // ---- Private Helper Methods ---------------------------------------
+
+    private String getKey(final Message message) throws JMSException {
+        return keyProperty == null ? message.getJMSMessageID() : message.getStringProperty(keyProperty);
+    }
+
+    private boolean accept(final String key, final boolean transactional) throws JMSException {
+        if (key == null) {
+            // nothing to recognize the message by
+            return true;
+        }
+        if (index.contains(key)) {
+            LOGGER.debug("Skipping duplicate message with key {}.", key);
+            return false;
+        }
+        if (transactional) {
+            transactionHelper.registerSynchronization(new RecordingSynchronization(key));
+        }
+        return true;
+    }
+
+    private final class RecordingSynchronization implements Synchronization {
+
+        private final String key;
+
+        private RecordingSynchronization(final String key) {
+            this.key = key;
+        }
+
+        @Override
+        public void beforeCompletion() {
+            // Nothing to do
+        }
+
+        @Override
+        public void afterCompletion(final int status) {
+            if (status == Status.STATUS_COMMITTED) {
+                index.record(key);
+            }
+        }
+
+    }
+
+}
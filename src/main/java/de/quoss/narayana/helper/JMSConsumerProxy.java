@@ -0,0 +1,203 @@
+package de.quoss.narayana.helper;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.jms.JMSConsumer;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageFormatException;
+import javax.jms.MessageFormatRuntimeException;
+import javax.jms.MessageListener;
+
+/**
+ * Proxy for the consumers of a {@link ContextProxy}, decompressing the bodies compressed by a
+ * {@link MessageCompressor} on receive and clipping receive timeouts to the time left in the current transaction.
+ */
+public class JMSConsumerProxy implements JMSConsumer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(JMSConsumerProxy.class);
+
+    private final JMSConsumer consumer;
+
+    private final TransactionHelper transactionHelper;
+
+    private final ContextProxy context;
+
+    private MessageListener messageListener;
+
+    public JMSConsumerProxy(final JMSConsumer consumer, final TransactionHelper transactionHelper) {
+        this(consumer, transactionHelper, null);
+    }
+
+    /**
+     * @param consumer physical consumer.
+     * @param transactionHelper transaction helper.
+     * @param context context proxy tracking the consumer until it is closed, may be {@code null}.
+     */
+    JMSConsumerProxy(final JMSConsumer consumer, final TransactionHelper transactionHelper, final ContextProxy context) {
+        if (consumer == null) {
+            throw new NarayanaHelperException("Consumer must not be null.");
+        }
+        this.consumer = consumer;
+        if (transactionHelper == null) {
+            throw new NarayanaHelperException("Transaction helper must not be null.");
+        }
+        this.transactionHelper = transactionHelper;
+        this.context = context;
+    }
+
+    public JMSConsumer getConsumer() {
+        return consumer;
+    }
+
+    @Override
+    public String getMessageSelector() {
+        return consumer.getMessageSelector();
+    }
+
+    @Override
+    public MessageListener getMessageListener() {
+        return messageListener;
+    }
+
+    @Override
+    public void setMessageListener(final MessageListener listener) {
+        consumer.setMessageListener(listener == null ? null : message -> listener.onMessage(decompress(message)));
+        this.messageListener = listener;
+    }
+
+    /**
+     * See {@link MessageConsumerProxy#receive()}.
+     */
+    @Override
+    public Message receive() {
+        long remaining = getRemainingTimeMillis();
+        if (remaining < 0L) {
+            return decompress(consumer.receive());
+        }
+        return remaining == 0L ? skip() : decompress(consumer.receive(remaining));
+    }
+
+    /**
+     * See {@link MessageConsumerProxy#receive(long)}.
+     */
+    @Override
+    public Message receive(final long timeout) {
+        long remaining = getRemainingTimeMillis();
+        if (remaining < 0L) {
+            return decompress(consumer.receive(timeout));
+        }
+        return remaining == 0L ? skip() : decompress(consumer.receive(timeout == 0L ? remaining : Math.min(timeout, remaining)));
+    }
+
+    /**
+     * See {@link MessageConsumerProxy#receiveNoWait()}.
+     */
+    @Override
+    public Message receiveNoWait() {
+        return getRemainingTimeMillis() == 0L ? skip() : decompress(consumer.receiveNoWait());
+    }
+
+    @Override
+    public void close() {
+        try {
+            consumer.close();
+        } finally {
+            if (context != null) {
+                context.untrack(this);
+            }
+        }
+    }
+
+    /**
+     * Receive the next message and return its body, see {@link MessageConsumerProxy#receive()} for the timeout. The
+     * provider checks the type of the body before the message is delivered unless the context has a
+     * {@link MessageCompressor} and the body may be compressed, the received message is then decompressed first and
+     * a message of another type belongs to the transaction or acknowledgement of the context.
+     */
+    @Override
+    public <T> T receiveBody(final Class<T> c) {
+        long remaining = getRemainingTimeMillis();
+        if (remaining == 0L) {
+            return skip();
+        }
+        if (!isDecompressing(c)) {
+            return remaining < 0L ? consumer.receiveBody(c) : consumer.receiveBody(c, remaining);
+        }
+        return getBody(remaining < 0L ? consumer.receive() : consumer.receive(remaining), c);
+    }
+
+    /**
+     * See {@link #receiveBody(Class)}.
+     */
+    @Override
+    public <T> T receiveBody(final Class<T> c, final long timeout) {
+        long remaining = getRemainingTimeMillis();
+        if (remaining == 0L) {
+            return skip();
+        }
+        long clipped = remaining < 0L ? timeout : timeout == 0L ? remaining : Math.min(timeout, remaining);
+        return isDecompressing(c) ? getBody(consumer.receive(clipped), c) : consumer.receiveBody(c, clipped);
+    }
+
+    /**
+     * See {@link #receiveBody(Class)}.
+     */
+    @Override
+    public <T> T receiveBodyNoWait(final Class<T> c) {
+        if (getRemainingTimeMillis() == 0L) {
+            return skip();
+        }
+        return isDecompressing(c) ? getBody(consumer.receiveNoWait(), c) : consumer.receiveBodyNoWait(c);
+    }
+
+    // ---- Private Helper Methods ---------------------------------------
+
+    private long getRemainingTimeMillis() {
+        try {
+            return transactionHelper.getRemainingTimeMillis();
+        } catch (JMSException e) {
+            throw new NarayanaHelperException(e);
+        }
+    }
+
+    private static <T> T skip() {
+        LOGGER.debug("Receive skipped, transaction timed out or marked for rollback.");
+        return null;
+    }
+
+    private static Message decompress(final Message message) {
+        try {
+            MessageCompressor.decompress(message);
+        } catch (JMSException e) {
+            throw new NarayanaHelperException("Error decompressing message.", e);
+        }
+        return message;
+    }
+
+    /**
+     * @return whether a body of the given type may have been compressed and must be read from the message.
+     */
+    private boolean isDecompressing(final Class<?> c) {
+        return context != null && context.hasMessageCompressor() && (c.isAssignableFrom(String.class) || c.isAssignableFrom(byte[].class));
+    }
+
+    private static <T> T getBody(final Message message, final Class<T> c) {
+        if (message == null) {
+            return null;
+        }
+        decompress(message);
+        try {
+            if (!message.isBodyAssignableTo(c)) {
+                throw new MessageFormatRuntimeException(String.format("Body of message %s is not assignable to %s.", message.getJMSMessageID(), c.getName()));
+            }
+            return message.getBody(c);
+        } catch (MessageFormatException e) {
+            throw new MessageFormatRuntimeException(e.getMessage(), e.getErrorCode(), e);
+        } catch (JMSException e) {
+            throw new NarayanaHelperException("Error reading message body.", e);
+        }
+    }
+
+}
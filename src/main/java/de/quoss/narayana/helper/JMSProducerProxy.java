@@ -0,0 +1,448 @@
+package de.quoss.narayana.helper;
+
+import javax.jms.BytesMessage;
+import javax.jms.CompletionListener;
+import javax.jms.Destination;
+import javax.jms.JMSException;
+import javax.jms.JMSProducer;
+import javax.jms.Message;
+
+import java.io.Serializable;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Proxy for the producers of a {@link ContextProxy}, recording the sends of the current transaction,
+ * compressing large bodies if the context has a {@link MessageCompressor} and applying the
+ * {@link ProducerProfile} of the destination sent to.
+ */
+public class JMSProducerProxy implements JMSProducer {
+
+    private final JMSProducer producer;
+
+    private final TransactionHelper transactionHelper;
+
+    private final ContextProxy context;
+
+    /** Settings made on this producer, taking precedence over the profiles. */
+    private final ProducerProfile explicitSettings = new ProducerProfile();
+
+    /** Settings of the physical producer before a profile was applied. */
+    private ProducerProfile defaultSettings;
+
+    /** Profile set on the physical producer, {@code null} for the default settings. */
+    private ProducerProfile appliedProfile;
+
+    public JMSProducerProxy(final JMSProducer producer, final TransactionHelper transactionHelper) {
+        this(producer, transactionHelper, null);
+    }
+
+    /**
+     * @param producer physical producer.
+     * @param transactionHelper transaction helper.
+     * @param context context proxy compressing messages and tracking its reusable messages in asynchronous sends,
+     *   may be {@code null}.
+     */
+    JMSProducerProxy(final JMSProducer producer, final TransactionHelper transactionHelper, final ContextProxy context) {
+        if (producer == null) {
+            throw new NarayanaHelperException("Producer must not be null.");
+        }
+        this.producer = producer;
+        if (transactionHelper == null) {
+            throw new NarayanaHelperException("Transaction helper must not be null.");
+        }
+        this.transactionHelper = transactionHelper;
+        this.context = context;
+    }
+
+    public JMSProducer getProducer() {
+        return producer;
+    }
+
+    @Override
+    public JMSProducer send(final Destination destination, final Message message) {
+        checkTransaction();
+        applyProfile(destination);
+        transactionHelper.recordPhase(TimelinePhase.SEND_START);
+        try {
+            if (context != null) {
+                context.compress(message);
+            }
+            CompletionListener completionListener = producer.getAsync();
+            CompletionListener tracking = context == null || completionListener == null ? completionListener
+                    : context.trackAsyncSend(message, completionListener);
+            if (tracking == completionListener) {
+                producer.send(destination, message);
+            } else {
+                // the async listener is producer state, track this send only
+                producer.setAsync(tracking);
+                try {
+                    producer.send(destination, message);
+                } catch (RuntimeException e) {
+                    context.cancelAsyncSend(tracking);
+                    throw e;
+                } finally {
+                    producer.setAsync(completionListener);
+                }
+            }
+        } finally {
+            transactionHelper.recordPhase(TimelinePhase.SEND_END);
+        }
+        return this;
+    }
+
+    @Override
+    public JMSProducer send(final Destination destination, final String body) {
+        if (context != null && body != null && context.isCompressing(body.length())) {
+            // the compressor works on messages, properties set on this producer still apply to them
+            return send(destination, context.createTextMessage(body));
+        }
+        checkTransaction();
+        applyProfile(destination);
+        transactionHelper.recordPhase(TimelinePhase.SEND_START);
+        try {
+            producer.send(destination, body);
+        } finally {
+            transactionHelper.recordPhase(TimelinePhase.SEND_END);
+        }
+        return this;
+    }
+
+    @Override
+    public JMSProducer send(final Destination destination, final Map<String, Object> body) {
+        checkTransaction();
+        applyProfile(destination);
+        transactionHelper.recordPhase(TimelinePhase.SEND_START);
+        try {
+            producer.send(destination, body);
+        } finally {
+            transactionHelper.recordPhase(TimelinePhase.SEND_END);
+        }
+        return this;
+    }
+
+    @Override
+    public JMSProducer send(final Destination destination, final byte[] body) {
+        if (context != null && body != null && context.isCompressing(body.length)) {
+            BytesMessage message = context.createBytesMessage();
+            try {
+                message.writeBytes(body);
+            } catch (JMSException e) {
+                throw new NarayanaHelperException("Error writing message body.", e);
+            }
+            return send(destination, message);
+        }
+        checkTransaction();
+        applyProfile(destination);
+        transactionHelper.recordPhase(TimelinePhase.SEND_START);
+        try {
+            producer.send(destination, body);
+        } finally {
+            transactionHelper.recordPhase(TimelinePhase.SEND_END);
+        }
+        return this;
+    }
+
+    @Override
+    public JMSProducer send(final Destination destination, final Serializable body) {
+        checkTransaction();
+        applyProfile(destination);
+        transactionHelper.recordPhase(TimelinePhase.SEND_START);
+        try {
+            producer.send(destination, body);
+        } finally {
+            transactionHelper.recordPhase(TimelinePhase.SEND_END);
+        }
+        return this;
+    }
+
+    @Override
+    public JMSProducer setDisableMessageID(final boolean value) {
+        producer.setDisableMessageID(value);
+        explicitSettings.setDisableMessageID(value);
+        return this;
+    }
+
+    @Override
+    public boolean getDisableMessageID() {
+        return producer.getDisableMessageID();
+    }
+
+    @Override
+    public JMSProducer setDisableMessageTimestamp(final boolean value) {
+        producer.setDisableMessageTimestamp(value);
+        explicitSettings.setDisableMessageTimestamp(value);
+        return this;
+    }
+
+    @Override
+    public boolean getDisableMessageTimestamp() {
+        return producer.getDisableMessageTimestamp();
+    }
+
+    @Override
+    public JMSProducer setDeliveryMode(final int deliveryMode) {
+        producer.setDeliveryMode(deliveryMode);
+        explicitSettings.setDeliveryMode(deliveryMode);
+        return this;
+    }
+
+    @Override
+    public int getDeliveryMode() {
+        return producer.getDeliveryMode();
+    }
+
+    @Override
+    public JMSProducer setPriority(final int priority) {
+        producer.setPriority(priority);
+        explicitSettings.setPriority(priority);
+        return this;
+    }
+
+    @Override
+    public int getPriority() {
+        return producer.getPriority();
+    }
+
+    @Override
+    public JMSProducer setTimeToLive(final long timeToLive) {
+        producer.setTimeToLive(timeToLive);
+        explicitSettings.setTimeToLive(timeToLive);
+        return this;
+    }
+
+    @Override
+    public long getTimeToLive() {
+        return producer.getTimeToLive();
+    }
+
+    @Override
+    public JMSProducer setDeliveryDelay(final long deliveryDelay) {
+        producer.setDeliveryDelay(deliveryDelay);
+        return this;
+    }
+
+    @Override
+    public long getDeliveryDelay() {
+        return producer.getDeliveryDelay();
+    }
+
+    @Override
+    public JMSProducer setAsync(final CompletionListener completionListener) {
+        producer.setAsync(completionListener);
+        return this;
+    }
+
+    @Override
+    public CompletionListener getAsync() {
+        return producer.getAsync();
+    }
+
+    @Override
+    public JMSProducer setProperty(final String name, final boolean value) {
+        producer.setProperty(name, value);
+        return this;
+    }
+
+    @Override
+    public JMSProducer setProperty(final String name, final byte value) {
+        producer.setProperty(name, value);
+        return this;
+    }
+
+    @Override
+    public JMSProducer setProperty(final String name, final short value) {
+        producer.setProperty(name, value);
+        return this;
+    }
+
+    @Override
+    public JMSProducer setProperty(final String name, final int value) {
+        producer.setProperty(name, value);
+        return this;
+    }
+
+    @Override
+    public JMSProducer setProperty(final String name, final long value) {
+        producer.setProperty(name, value);
+        return this;
+    }
+
+    @Override
+    public JMSProducer setProperty(final String name, final float value) {
+        producer.setProperty(name, value);
+        return this;
+    }
+
+    @Override
+    public JMSProducer setProperty(final String name, final double value) {
+        producer.setProperty(name, value);
+        return this;
+    }
+
+    @Override
+    public JMSProducer setProperty(final String name, final String value) {
+        producer.setProperty(name, value);
+        return this;
+    }
+
+    @Override
+    public JMSProducer setProperty(final String name, final Object value) {
+        producer.setProperty(name, value);
+        return this;
+    }
+
+    @Override
+    public JMSProducer clearProperties() {
+        producer.clearProperties();
+        return this;
+    }
+
+    @Override
+    public boolean propertyExists(final String name) {
+        return producer.propertyExists(name);
+    }
+
+    @Override
+    public boolean getBooleanProperty(final String name) {
+        return producer.getBooleanProperty(name);
+    }
+
+    @Override
+    public byte getByteProperty(final String name) {
+        return producer.getByteProperty(name);
+    }
+
+    @Override
+    public short getShortProperty(final String name) {
+        return producer.getShortProperty(name);
+    }
+
+    @Override
+    public int getIntProperty(final String name) {
+        return producer.getIntProperty(name);
+    }
+
+    @Override
+    public long getLongProperty(final String name) {
+        return producer.getLongProperty(name);
+    }
+
+    @Override
+    public float getFloatProperty(final String name) {
+        return producer.getFloatProperty(name);
+    }
+
+    @Override
+    public double getDoubleProperty(final String name) {
+        return producer.getDoubleProperty(name);
+    }
+
+    @Override
+    public String getStringProperty(final String name) {
+        return producer.getStringProperty(name);
+    }
+
+    @Override
+    public Object getObjectProperty(final String name) {
+        return producer.getObjectProperty(name);
+    }
+
+    @Override
+    public Set<String> getPropertyNames() {
+        return producer.getPropertyNames();
+    }
+
+    @Override
+    public JMSProducer setJMSCorrelationIDAsBytes(final byte[] correlationID) {
+        producer.setJMSCorrelationIDAsBytes(correlationID);
+        return this;
+    }
+
+    @Override
+    public byte[] getJMSCorrelationIDAsBytes() {
+        return producer.getJMSCorrelationIDAsBytes();
+    }
+
+    @Override
+    public JMSProducer setJMSCorrelationID(final String correlationID) {
+        producer.setJMSCorrelationID(correlationID);
+        return this;
+    }
+
+    @Override
+    public String getJMSCorrelationID() {
+        return producer.getJMSCorrelationID();
+    }
+
+    @Override
+    public JMSProducer setJMSType(final String type) {
+        producer.setJMSType(type);
+        return this;
+    }
+
+    @Override
+    public String getJMSType() {
+        return producer.getJMSType();
+    }
+
+    @Override
+    public JMSProducer setJMSReplyTo(final Destination replyTo) {
+        producer.setJMSReplyTo(replyTo);
+        return this;
+    }
+
+    @Override
+    public Destination getJMSReplyTo() {
+        return producer.getJMSReplyTo();
+    }
+
+    // ---- Private Helper Methods ---------------------------------------
+
+    private void checkTransaction() {
+        if (context != null) {
+            context.checkTransaction();
+        }
+    }
+
+    /**
+     * Set the profile of the destination on the physical producer if it differs from the one of the last send,
+     * leaving the settings made on this producer alone.
+     */
+    private void applyProfile(final Destination destination) {
+        ProducerProfile profile = context == null ? null : context.getProducerProfile(destination);
+        if (profile == appliedProfile) {
+            return;
+        }
+        if (defaultSettings == null) {
+            defaultSettings = new ProducerProfile();
+            defaultSettings.setDisableMessageID(producer.getDisableMessageID());
+            defaultSettings.setDisableMessageTimestamp(producer.getDisableMessageTimestamp());
+            defaultSettings.setDeliveryMode(producer.getDeliveryMode());
+            defaultSettings.setPriority(producer.getPriority());
+            defaultSettings.setTimeToLive(producer.getTimeToLive());
+        }
+        ProducerProfile target = profile == null ? defaultSettings : profile;
+        if (explicitSettings.getDisableMessageID() == null) {
+            producer.setDisableMessageID(choose(target.getDisableMessageID(), defaultSettings.getDisableMessageID()));
+        }
+        if (explicitSettings.getDisableMessageTimestamp() == null) {
+            producer.setDisableMessageTimestamp(choose(target.getDisableMessageTimestamp(), defaultSettings.getDisableMessageTimestamp()));
+        }
+        if (explicitSettings.getDeliveryMode() == null) {
+            producer.setDeliveryMode(choose(target.getDeliveryMode(), defaultSettings.getDeliveryMode()));
+        }
+        if (explicitSettings.getPriority() == null) {
+            producer.setPriority(choose(target.getPriority(), defaultSettings.getPriority()));
+        }
+        if (explicitSettings.getTimeToLive() == null) {
+            producer.setTimeToLive(choose(target.getTimeToLive(), defaultSettings.getTimeToLive()));
+        }
+        appliedProfile = profile;
+    }
+
+    private static <T> T choose(final T value, final T fallback) {
+        return value == null ? fallback : value;
+    }
+
+}
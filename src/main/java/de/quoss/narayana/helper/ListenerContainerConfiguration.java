@@ -0,0 +1,105 @@
+package de.quoss.narayana.helper;
+
+/**
+ * Consumer count, polling and scaling settings of a {@link TransactionalListenerContainer}.
+ */
+public class ListenerContainerConfiguration {
+
+    private int minConsumers = 1;
+
+    private int maxConsumers = 1;
+
+    private long receiveTimeoutMillis = 1_000L;
+
+    private int idlePollsBeforeRetire = 5;
+
+    private int busyPollsBeforeScaleUp = 3;
+
+    private long recoveryIntervalMillis = 5_000L;
+
+    private String messageSelector;
+
+    public int getMinConsumers() {
+        return minConsumers;
+    }
+
+    public void setMinConsumers(final int minConsumers) {
+        this.minConsumers = requirePositive(minConsumers, "Min consumers");
+    }
+
+    public int getMaxConsumers() {
+        return maxConsumers;
+    }
+
+    public void setMaxConsumers(final int maxConsumers) {
+        this.maxConsumers = requirePositive(maxConsumers, "Max consumers");
+    }
+
+    /**
+     * @return time a consumer waits for a message in one transaction before the poll counts as idle.
+     */
+    public long getReceiveTimeoutMillis() {
+        return receiveTimeoutMillis;
+    }
+
+    public void setReceiveTimeoutMillis(final long receiveTimeoutMillis) {
+        if (receiveTimeoutMillis <= 0L) {
+            throw new NarayanaHelperException("Receive timeout must be positive.");
+        }
+        this.receiveTimeoutMillis = receiveTimeoutMillis;
+    }
+
+    /**
+     * @return number of consecutive idle polls after which a consumer above the minimum stops.
+     */
+    public int getIdlePollsBeforeRetire() {
+        return idlePollsBeforeRetire;
+    }
+
+    public void setIdlePollsBeforeRetire(final int idlePollsBeforeRetire) {
+        this.idlePollsBeforeRetire = requirePositive(idlePollsBeforeRetire, "Idle polls before retire");
+    }
+
+    /**
+     * @return number of consecutive polls of a consumer finding a message already waiting after which another consumer
+     *   starts, unless another consumer is waiting for messages.
+     */
+    public int getBusyPollsBeforeScaleUp() {
+        return busyPollsBeforeScaleUp;
+    }
+
+    public void setBusyPollsBeforeScaleUp(final int busyPollsBeforeScaleUp) {
+        this.busyPollsBeforeScaleUp = requirePositive(busyPollsBeforeScaleUp, "Busy polls before scale up");
+    }
+
+    /**
+     * @return pause of a consumer after its transaction failed, e.g. for a broker outage or a handler failing on a
+     *   redelivered message, before it polls again.
+     */
+    public long getRecoveryIntervalMillis() {
+        return recoveryIntervalMillis;
+    }
+
+    public void setRecoveryIntervalMillis(final long recoveryIntervalMillis) {
+        if (recoveryIntervalMillis < 0L) {
+            throw new NarayanaHelperException("Recovery interval must not be negative.");
+        }
+        this.recoveryIntervalMillis = recoveryIntervalMillis;
+    }
+
+    public String getMessageSelector() {
+        return messageSelector;
+    }
+
+    public void setMessageSelector(final String messageSelector) {
+        this.messageSelector = messageSelector;
+    }
+
+    private static int requirePositive(final int value, final String name) {
+        if (value <= 0) {
+            throw new NarayanaHelperException(name + " must be positive.");
+        }
+        return value;
+    }
+
+}
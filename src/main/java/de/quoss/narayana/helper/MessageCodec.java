@@ -0,0 +1,36 @@
+package de.quoss.narayana.helper;
+
+import java.io.IOException;
+
+/**
+ * Codec sending objects as the body of a {@link javax.jms.BytesMessage} instead of using Java serialization in an
+ * {@link javax.jms.ObjectMessage}. The name of the codec travels with the message, see {@link MessageCodecRegistry}.
+ */
+public interface MessageCodec {
+
+    /**
+     * @return the name identifying the codec on the consumer side, must be unique within a registry.
+     */
+    String getName();
+
+    /**
+     * @param object the object to send.
+     * @return whether this codec can encode the object.
+     */
+    boolean canEncode(Object object);
+
+    /**
+     * @param object the object to encode.
+     * @return the encoded object.
+     * @throws IOException if the object cannot be encoded.
+     */
+    byte[] encode(Object object) throws IOException;
+
+    /**
+     * @param data bytes produced by {@link #encode(Object)}.
+     * @return the decoded object.
+     * @throws IOException if the bytes cannot be decoded.
+     */
+    Object decode(byte[] data) throws IOException;
+
+}
@@ -0,0 +1,143 @@
+package de.quoss.narayana.helper;
+
+import javax.jms.BytesMessage;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageFormatException;
+import javax.jms.ObjectMessage;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * <p>
+ *   Registry of the {@link MessageCodec}s used to encode objects on the producer side and to decode them on the
+ *   consumer side.
+ * </p>
+ * <p>
+ *   Encoded objects are sent as {@link BytesMessage} with the codec name in the string property
+ *   {@value #CODEC_PROPERTY}. Producers pick the first registered codec able to encode an object, the default
+ *   registry starts out with the {@link BinaryMessageCodec}.
+ * </p>
+ */
+public class MessageCodecRegistry {
+
+    /** Message property naming the codec of an encoded message. */
+    public static final String CODEC_PROPERTY = "NarayanaHelperCodec";
+
+    private static final MessageCodecRegistry DEFAULT = new MessageCodecRegistry();
+
+    static {
+        DEFAULT.register(new BinaryMessageCodec());
+    }
+
+    private final CopyOnWriteArrayList<MessageCodec> codecs = new CopyOnWriteArrayList<>();
+
+    private final Map<String, MessageCodec> codecsByName = new ConcurrentHashMap<>();
+
+    /**
+     * @return the registry used by {@link SessionProxy#createEncodedMessage(Object)} and
+     *   {@link ContextProxy#createEncodedMessage(Object)}.
+     */
+    public static MessageCodecRegistry getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Register a codec, codecs registered first are preferred for encoding.
+     *
+     * @param codec the codec.
+     */
+    public void register(final MessageCodec codec) {
+        if (codec == null) {
+            throw new NarayanaHelperException("Codec must not be null.");
+        }
+        if (codecsByName.putIfAbsent(codec.getName(), codec) != null) {
+            throw new NarayanaHelperException(String.format("Codec %s is already registered.", codec.getName()));
+        }
+        codecs.add(codec);
+    }
+
+    /**
+     * @param name name of the codec.
+     * @return the codec or {@code null} if none is registered with the name.
+     */
+    public MessageCodec getCodec(final String name) {
+        return codecsByName.get(name);
+    }
+
+    /**
+     * @param object the object to encode.
+     * @return the first registered codec able to encode the object.
+     */
+    public MessageCodec getCodec(final Object object) {
+        for (MessageCodec codec : codecs) {
+            if (codec.canEncode(object)) {
+                return codec;
+            }
+        }
+        throw new NarayanaHelperException(String.format("No codec registered for objects of type %s.",
+                object == null ? null : object.getClass().getName()));
+    }
+
+    /**
+     * Decode the object of a received message. Plain object messages are supported to ease the migration of
+     * producers.
+     *
+     * @param message encoded bytes message or object message.
+     * @return the decoded object.
+     * @throws MessageFormatException if the message does not carry an object or its codec is not registered.
+     * @throws JMSException if the message cannot be read.
+     */
+    public Object decode(final Message message) throws JMSException {
+        if (message instanceof ObjectMessage) {
+            return ((ObjectMessage) message).getObject();
+        }
+        String name = message.getStringProperty(CODEC_PROPERTY);
+        if (name == null || !(message instanceof BytesMessage)) {
+            throw new MessageFormatException("Message does not carry an encoded object.");
+        }
+        MessageCodec codec = getCodec(name);
+        if (codec == null) {
+            throw new MessageFormatException(String.format("Codec %s is not registered.", name));
+        }
+        BytesMessage bytesMessage = (BytesMessage) message;
+        bytesMessage.reset();
+        byte[] data = new byte[(int) bytesMessage.getBodyLength()];
+        bytesMessage.readBytes(data);
+        try {
+            return codec.decode(data);
+        } catch (IOException e) {
+            throw messageFormatException(String.format("Error decoding message with codec %s.", name), e);
+        }
+    }
+
+    // ---- Package Private Methods ---------------------------------------
+
+    /**
+     * Write the encoded object and the codec name to a new bytes message.
+     */
+    static void encode(final BytesMessage message, final Object object, final MessageCodec codec) throws JMSException {
+        if (codec == null) {
+            throw new NarayanaHelperException("Codec must not be null.");
+        }
+        byte[] data;
+        try {
+            data = codec.encode(object);
+        } catch (IOException e) {
+            throw messageFormatException(String.format("Error encoding object with codec %s.", codec.getName()), e);
+        }
+        message.setStringProperty(CODEC_PROPERTY, codec.getName());
+        message.writeBytes(data);
+    }
+
+    // ---- Private Helper Methods ---------------------------------------
+
+    private static MessageFormatException messageFormatException(final String message, final Exception cause) {
+        MessageFormatException result = new MessageFormatException(message);
+        result.setLinkedException(cause);
+        return result;
+    }
+
+}
@@ -0,0 +1,274 @@
+package de.quoss.narayana.helper;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.jms.BytesMessage;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageFormatException;
+import javax.jms.MessageNotWriteableException;
+import javax.jms.TextMessage;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * <p>
+ *   Compresses the bodies of text and bytes messages above a size threshold before they are sent through the
+ *   producers of a {@link SessionProxy} or {@link ContextProxy}, the consumers of the proxies decompress them again.
+ * </p>
+ * <p>
+ *   Bodies are compressed with the JDK {@link Deflater}. A bytes message carries the compressed bytes, a text message
+ *   their Base64 encoding so the message type is kept. Compressed messages are marked with the string property
+ *   {@value #COMPRESSION_PROPERTY} and carry their original size in {@value #UNCOMPRESSED_LENGTH_PROPERTY}.
+ *   Bodies which do not get smaller are sent as they are.
+ * </p>
+ * <p>
+ *   The body of a message is compressed in place and stays compressed after the send, a marked message is sent as
+ *   it is. Clear its properties before setting a new body to send it again. Decompressing a message removes the
+ *   markers, so a received message can be forwarded.
+ * </p>
+ */
+public class MessageCompressor {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MessageCompressor.class);
+
+    /** Message property naming the compression of a compressed body. */
+    public static final String COMPRESSION_PROPERTY = "NarayanaHelperCompression";
+
+    /** Message property holding the length of the uncompressed body in bytes. */
+    public static final String UNCOMPRESSED_LENGTH_PROPERTY = "NarayanaHelperUncompressedLength";
+
+    private static final String DEFLATE = "deflate";
+
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    private final int thresholdBytes;
+
+    private final int level;
+
+    /**
+     * @param thresholdBytes minimum body size in bytes (characters for text messages) to compress.
+     */
+    public MessageCompressor(final int thresholdBytes) {
+        this(thresholdBytes, Deflater.BEST_SPEED);
+    }
+
+    /**
+     * @param thresholdBytes minimum body size in bytes (characters for text messages) to compress.
+     * @param level compression level as defined by {@link Deflater}.
+     */
+    public MessageCompressor(final int thresholdBytes, final int level) {
+        if (thresholdBytes < 0) {
+            throw new NarayanaHelperException("Threshold must not be negative.");
+        }
+        if (level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+            throw new NarayanaHelperException(String.format("Invalid compression level %d.", level));
+        }
+        this.thresholdBytes = thresholdBytes;
+        this.level = level;
+    }
+
+    public int getThresholdBytes() {
+        return thresholdBytes;
+    }
+
+    /**
+     * Compress the body of a text or bytes message about to be sent in place, if it is large enough, gets smaller
+     * and is not marked as compressed already.
+     *
+     * @param message the message.
+     * @throws JMSException if the message cannot be read or written.
+     */
+    public void compress(final Message message) throws JMSException {
+        if (message.propertyExists(COMPRESSION_PROPERTY)) {
+            return;
+        }
+        if (message instanceof TextMessage) {
+            String text = ((TextMessage) message).getText();
+            if (text == null || text.length() < thresholdBytes) {
+                return;
+            }
+            byte[] data = text.getBytes(StandardCharsets.UTF_8);
+            String compressed = Base64.getEncoder().encodeToString(deflate(data));
+            if (compressed.length() < text.length() && mark(message, data.length)) {
+                ((TextMessage) message).setText(compressed);
+            }
+        } else if (message instanceof BytesMessage) {
+            BytesMessage bytesMessage = (BytesMessage) message;
+            // switches to read-only mode, which the provider does on send anyway
+            bytesMessage.reset();
+            long length = bytesMessage.getBodyLength();
+            if (length < thresholdBytes || length > Integer.MAX_VALUE) {
+                return;
+            }
+            byte[] data = new byte[(int) length];
+            bytesMessage.readBytes(data);
+            byte[] compressed = deflate(data);
+            if (compressed.length < data.length && mark(message, data.length)) {
+                bytesMessage.clearBody();
+                bytesMessage.writeBytes(compressed);
+            } else {
+                bytesMessage.reset();
+            }
+        }
+    }
+
+    /**
+     * Decompress the body of a received message in place and remove the markers if it is marked as compressed.
+     *
+     * @param message the message, may be {@code null}.
+     * @return whether the message was compressed.
+     * @throws MessageFormatException if the compressed body or its stated length is corrupt.
+     * @throws JMSException if the message cannot be read or written.
+     */
+    public static boolean decompress(final Message message) throws JMSException {
+        if (message == null || !DEFLATE.equals(message.getStringProperty(COMPRESSION_PROPERTY))) {
+            return false;
+        }
+        int length = getUncompressedLength(message);
+        if (message instanceof TextMessage) {
+            TextMessage textMessage = (TextMessage) message;
+            byte[] data = inflate(decodeBase64(textMessage.getText()), length);
+            textMessage.clearBody();
+            textMessage.setText(new String(data, StandardCharsets.UTF_8));
+        } else if (message instanceof BytesMessage) {
+            BytesMessage bytesMessage = (BytesMessage) message;
+            bytesMessage.reset();
+            byte[] compressed = new byte[(int) bytesMessage.getBodyLength()];
+            bytesMessage.readBytes(compressed);
+            byte[] data = inflate(compressed, length);
+            bytesMessage.clearBody();
+            bytesMessage.writeBytes(data);
+            bytesMessage.reset();
+        } else {
+            throw new MessageFormatException(String.format("Compressed messages of type %s are not supported.", message.getClass().getName()));
+        }
+        unmark(message);
+        return true;
+    }
+
+    // ---- Private Helper Methods ---------------------------------------
+
+    private static int getUncompressedLength(final Message message) throws JMSException {
+        try {
+            return message.getIntProperty(UNCOMPRESSED_LENGTH_PROPERTY);
+        } catch (NumberFormatException e) {
+            // the property is missing
+            throw formatException(String.format("Compressed message without valid %s.", UNCOMPRESSED_LENGTH_PROPERTY), e);
+        }
+    }
+
+    private static byte[] decodeBase64(final String text) throws MessageFormatException {
+        if (text == null) {
+            throw new MessageFormatException("Compressed text message without body.");
+        }
+        try {
+            return Base64.getDecoder().decode(text);
+        } catch (IllegalArgumentException e) {
+            throw formatException("Compressed body is not valid Base64.", e);
+        }
+    }
+
+    private static MessageFormatException formatException(final String message, final Exception cause) {
+        MessageFormatException result = new MessageFormatException(message);
+        result.setLinkedException(cause);
+        return result;
+    }
+
+    private static boolean mark(final Message message, final int length) throws JMSException {
+        try {
+            message.setStringProperty(COMPRESSION_PROPERTY, DEFLATE);
+            message.setIntProperty(UNCOMPRESSED_LENGTH_PROPERTY, length);
+            return true;
+        } catch (MessageNotWriteableException e) {
+            // e.g. a received message being forwarded, send it as it is
+            return false;
+        }
+    }
+
+    /**
+     * Remove the markers, properties of a received message can only be removed all at once. {@code JMSX} properties
+     * like {@code JMSXDeliveryCount} are put back unless the provider keeps them apart from the other properties.
+     */
+    private static void unmark(final Message message) throws JMSException {
+        Map<String, Object> properties = new HashMap<>();
+        Enumeration<?> names = message.getPropertyNames();
+        while (names.hasMoreElements()) {
+            String name = (String) names.nextElement();
+            if (!COMPRESSION_PROPERTY.equals(name) && !UNCOMPRESSED_LENGTH_PROPERTY.equals(name)) {
+                properties.put(name, message.getObjectProperty(name));
+            }
+        }
+        message.clearProperties();
+        for (Map.Entry<String, Object> entry : properties.entrySet()) {
+            String name = entry.getKey();
+            if (!name.startsWith("JMSX")) {
+                message.setObjectProperty(name, entry.getValue());
+            } else if (!message.propertyExists(name)) {
+                try {
+                    message.setObjectProperty(name, entry.getValue());
+                } catch (JMSException | RuntimeException e) {
+                    // the provider does not let clients set it
+                    LOGGER.debug("Cannot restore property {} of decompressed message: {}", name, e.toString());
+                }
+            }
+        }
+    }
+
+    private byte[] deflate(final byte[] data) {
+        Deflater deflater = new Deflater(level);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.min(data.length, BUFFER_SIZE));
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(final byte[] compressed, final int length) throws MessageFormatException {
+        if (length < 0) {
+            throw new MessageFormatException(String.format("Invalid uncompressed length %d.", length));
+        }
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            // the stated length bounds the output, which grows with the inflated data instead of trusting the sender
+            byte[] result = new byte[Math.min(length, Math.max(BUFFER_SIZE, compressed.length * 4))];
+            int inflated = 0;
+            while (inflated < length && !inflater.finished()) {
+                if (inflated == result.length) {
+                    result = Arrays.copyOf(result, (int) Math.min(length, 2L * result.length));
+                }
+                int count = inflater.inflate(result, inflated, result.length - inflated);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                inflated += count;
+            }
+            if (inflated != length || !inflater.finished()) {
+                throw new MessageFormatException("Compressed body is corrupt.");
+            }
+            return result;
+        } catch (DataFormatException e) {
+            throw formatException("Compressed body is corrupt.", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+}
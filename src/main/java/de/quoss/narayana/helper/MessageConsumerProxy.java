@@ -0,0 +1,189 @@
+package de.quoss.narayana.helper;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageConsumer;
+import javax.jms.MessageListener;
+import javax.jms.Queue;
+import javax.jms.QueueReceiver;
+import javax.jms.Topic;
+import javax.jms.TopicSubscriber;
+
+/**
+ * Proxy for the message consumers of a {@link SessionProxy}, decompressing the bodies compressed by a
+ * {@link MessageCompressor} on receive and clipping receive timeouts to the time left in the current transaction.
+ */
+public class MessageConsumerProxy implements QueueReceiver, TopicSubscriber {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MessageConsumerProxy.class);
+
+    private final MessageConsumer consumer;
+
+    private final TransactionHelper transactionHelper;
+
+    private final SessionProxy session;
+
+    private MessageListener messageListener;
+
+    public MessageConsumerProxy(final MessageConsumer consumer, final TransactionHelper transactionHelper) {
+        this(consumer, transactionHelper, null);
+    }
+
+    /**
+     * @param consumer physical consumer.
+     * @param transactionHelper transaction helper.
+     * @param session session proxy tracking the consumer until it is closed, may be {@code null}.
+     */
+    MessageConsumerProxy(final MessageConsumer consumer, final TransactionHelper transactionHelper, final SessionProxy session) {
+        if (consumer == null) {
+            throw new NarayanaHelperException("Message consumer must not be null.");
+        }
+        this.consumer = consumer;
+        if (transactionHelper == null) {
+            throw new NarayanaHelperException("Transaction helper must not be null.");
+        }
+        this.transactionHelper = transactionHelper;
+        this.session = session;
+    }
+
+    public MessageConsumer getConsumer() {
+        return consumer;
+    }
+
+    // ---- MessageConsumer API Methods -----------------------------------------
+
+    @Override
+    public String getMessageSelector() throws JMSException {
+        return consumer.getMessageSelector();
+    }
+
+    @Override
+    public MessageListener getMessageListener() throws JMSException {
+        return messageListener;
+    }
+
+    @Override
+    public void setMessageListener(final MessageListener listener) throws JMSException {
+        consumer.setMessageListener(listener == null ? null : new DecompressingMessageListener(listener));
+        this.messageListener = listener;
+    }
+
+    /**
+     * Receive the next message, inside a transaction with a timeout waiting at most until the transaction times out.
+     *
+     * @return the message or {@code null} if the transaction timed out first.
+     */
+    @Override
+    public Message receive() throws JMSException {
+        long remaining = transactionHelper.getRemainingTimeMillis();
+        if (remaining < 0L) {
+            return decompress(consumer.receive());
+        }
+        return remaining == 0L ? skip() : decompress(consumer.receive(remaining));
+    }
+
+    /**
+     * Receive the next message, inside a transaction with a timeout waiting at most until the transaction times out.
+     *
+     * @param timeout timeout in milliseconds, {@code 0} to wait without timeout.
+     * @return the message or {@code null} if none arrived in time.
+     */
+    @Override
+    public Message receive(final long timeout) throws JMSException {
+        long remaining = transactionHelper.getRemainingTimeMillis();
+        if (remaining < 0L) {
+            return decompress(consumer.receive(timeout));
+        }
+        return remaining == 0L ? skip() : decompress(consumer.receive(timeout == 0L ? remaining : Math.min(timeout, remaining)));
+    }
+
+    /**
+     * Receive the next message if one is available, nothing if the transaction has already timed out.
+     *
+     * @return the message or {@code null}.
+     */
+    @Override
+    public Message receiveNoWait() throws JMSException {
+        return transactionHelper.getRemainingTimeMillis() == 0L ? skip() : decompress(consumer.receiveNoWait());
+    }
+
+    @Override
+    public void close() throws JMSException {
+        try {
+            consumer.close();
+        } finally {
+            if (session != null) {
+                session.untrack(this);
+            }
+        }
+    }
+
+    // ---- QueueReceiver API Methods -----------------------------------------
+
+    @Override
+    public Queue getQueue() throws JMSException {
+        if (consumer instanceof QueueReceiver) {
+            return ((QueueReceiver) consumer).getQueue();
+        } else {
+            throw new NarayanaHelperException("Consumer is not of type QueueReceiver.");
+        }
+    }
+
+    // ---- TopicSubscriber API Methods -----------------------------------------
+
+    @Override
+    public Topic getTopic() throws JMSException {
+        if (consumer instanceof TopicSubscriber) {
+            return ((TopicSubscriber) consumer).getTopic();
+        } else {
+            throw new NarayanaHelperException("Consumer is not of type TopicSubscriber.");
+        }
+    }
+
+    @Override
+    public boolean getNoLocal() throws JMSException {
+        if (consumer instanceof TopicSubscriber) {
+            return ((TopicSubscriber) consumer).getNoLocal();
+        } else {
+            throw new NarayanaHelperException("Consumer is not of type TopicSubscriber.");
+        }
+    }
+
+    // ---- Private Helper Methods ---------------------------------------
+
+    private static Message skip() {
+        // a message received now would be redelivered after the rollback anyway
+        LOGGER.debug("Receive skipped, transaction timed out or marked for rollback.");
+        return null;
+    }
+
+    private static Message decompress(final Message message) throws JMSException {
+        MessageCompressor.decompress(message);
+        return message;
+    }
+
+    private static final class DecompressingMessageListener implements MessageListener {
+
+        private final MessageListener delegate;
+
+        private DecompressingMessageListener(final MessageListener delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void onMessage(final Message message) {
+            try {
+                MessageCompressor.decompress(message);
+            } catch (JMSException e) {
+                // let the provider redeliver
+                throw new NarayanaHelperException("Error decompressing message.", e);
+            }
+            delegate.onMessage(message);
+        }
+
+    }
+
+}
@@ -0,0 +1,338 @@
+package de.quoss.narayana.helper;
+
+import javax.jms.CompletionListener;
+import javax.jms.Destination;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageProducer;
+
+/**
+ * Proxy for the message producers of a {@link SessionProxy}, recording the sends of the current transaction,
+ * compressing large bodies if the session has a {@link MessageCompressor} and applying the {@link ProducerProfile}
+ * of the destination sent to if the producer is anonymous.
+ */
+public class MessageProducerProxy implements MessageProducer {
+
+    private final MessageProducer producer;
+
+    private final TransactionHelper transactionHelper;
+
+    private final SessionProxy session;
+
+    private final boolean anonymous;
+
+    /** Settings made on this producer, taking precedence over the profiles. */
+    private final ProducerProfile explicitSettings = new ProducerProfile();
+
+    /** Settings of the physical producer before a profile was applied. */
+    private ProducerProfile defaultSettings;
+
+    /** Profile set on the physical producer, {@code null} for the default settings. */
+    private ProducerProfile appliedProfile;
+
+    public MessageProducerProxy(final MessageProducer producer, final TransactionHelper transactionHelper) {
+        this(producer, transactionHelper, null, false);
+    }
+
+    /**
+     * @param producer physical producer.
+     * @param transactionHelper transaction helper.
+     * @param session session proxy compressing messages, tracking its reusable messages in asynchronous sends and
+     *   providing the profiles of anonymous producers, may be {@code null}.
+     * @param anonymous whether the producer was created without destination.
+     */
+    MessageProducerProxy(final MessageProducer producer, final TransactionHelper transactionHelper, final SessionProxy session, final boolean anonymous) {
+        if (producer == null) {
+            throw new NarayanaHelperException("Message producer must not be null.");
+        }
+        this.producer = producer;
+        if (transactionHelper == null) {
+            throw new NarayanaHelperException("Transaction helper must not be null.");
+        }
+        this.transactionHelper = transactionHelper;
+        this.session = session;
+        this.anonymous = anonymous;
+    }
+
+    public MessageProducer getProducer() {
+        return producer;
+    }
+
+    // ---- MessageProducer JMS Spec 1.1 API Methods -----------------------------------------
+
+    @Override
+    public void setDisableMessageID(final boolean value) throws JMSException {
+        producer.setDisableMessageID(value);
+        explicitSettings.setDisableMessageID(value);
+    }
+
+    @Override
+    public boolean getDisableMessageID() throws JMSException {
+        return producer.getDisableMessageID();
+    }
+
+    @Override
+    public void setDisableMessageTimestamp(final boolean value) throws JMSException {
+        producer.setDisableMessageTimestamp(value);
+        explicitSettings.setDisableMessageTimestamp(value);
+    }
+
+    @Override
+    public boolean getDisableMessageTimestamp() throws JMSException {
+        return producer.getDisableMessageTimestamp();
+    }
+
+    @Override
+    public void setDeliveryMode(final int deliveryMode) throws JMSException {
+        producer.setDeliveryMode(deliveryMode);
+        explicitSettings.setDeliveryMode(deliveryMode);
+    }
+
+    @Override
+    public int getDeliveryMode() throws JMSException {
+        return producer.getDeliveryMode();
+    }
+
+    @Override
+    public void setPriority(final int defaultPriority) throws JMSException {
+        producer.setPriority(defaultPriority);
+        explicitSettings.setPriority(defaultPriority);
+    }
+
+    @Override
+    public int getPriority() throws JMSException {
+        return producer.getPriority();
+    }
+
+    @Override
+    public void setTimeToLive(final long timeToLive) throws JMSException {
+        producer.setTimeToLive(timeToLive);
+        explicitSettings.setTimeToLive(timeToLive);
+    }
+
+    @Override
+    public long getTimeToLive() throws JMSException {
+        return producer.getTimeToLive();
+    }
+
+    @Override
+    public Destination getDestination() throws JMSException {
+        return producer.getDestination();
+    }
+
+    @Override
+    public void close() throws JMSException {
+        try {
+            producer.close();
+        } finally {
+            if (session != null) {
+                session.untrack(this);
+            }
+        }
+    }
+
+    @Override
+    public void send(final Message message) throws JMSException {
+        checkTransaction();
+        transactionHelper.recordPhase(TimelinePhase.SEND_START);
+        try {
+            compress(message);
+            producer.send(message);
+        } finally {
+            transactionHelper.recordPhase(TimelinePhase.SEND_END);
+        }
+    }
+
+    @Override
+    public void send(final Message message, final int deliveryMode, final int priority, final long timeToLive) throws JMSException {
+        checkTransaction();
+        transactionHelper.recordPhase(TimelinePhase.SEND_START);
+        try {
+            compress(message);
+            producer.send(message, deliveryMode, priority, timeToLive);
+        } finally {
+            transactionHelper.recordPhase(TimelinePhase.SEND_END);
+        }
+    }
+
+    @Override
+    public void send(final Destination destination, final Message message) throws JMSException {
+        checkTransaction();
+        applyProfile(destination);
+        transactionHelper.recordPhase(TimelinePhase.SEND_START);
+        try {
+            compress(message);
+            producer.send(destination, message);
+        } finally {
+            transactionHelper.recordPhase(TimelinePhase.SEND_END);
+        }
+    }
+
+    @Override
+    public void send(final Destination destination, final Message message, final int deliveryMode, final int priority, final long timeToLive) throws JMSException {
+        checkTransaction();
+        applyProfile(destination);
+        transactionHelper.recordPhase(TimelinePhase.SEND_START);
+        try {
+            compress(message);
+            producer.send(destination, message, deliveryMode, priority, timeToLive);
+        } finally {
+            transactionHelper.recordPhase(TimelinePhase.SEND_END);
+        }
+    }
+
+    // ---- MessageProducer JMS Spec 2.0 API Methods -----------------------------------------
+
+    @Override
+    public void setDeliveryDelay(final long deliveryDelay) throws JMSException {
+        producer.setDeliveryDelay(deliveryDelay);
+    }
+
+    @Override
+    public long getDeliveryDelay() throws JMSException {
+        return producer.getDeliveryDelay();
+    }
+
+    @Override
+    public void send(final Message message, final CompletionListener completionListener) throws JMSException {
+        checkTransaction();
+        transactionHelper.recordPhase(TimelinePhase.SEND_START);
+        try {
+            compress(message);
+            CompletionListener tracking = track(message, completionListener);
+            try {
+                producer.send(message, tracking);
+            } catch (JMSException | RuntimeException e) {
+                cancel(tracking);
+                throw e;
+            }
+        } finally {
+            transactionHelper.recordPhase(TimelinePhase.SEND_END);
+        }
+    }
+
+    @Override
+    public void send(final Message message, final int deliveryMode, final int priority, final long timeToLive, final CompletionListener completionListener) throws JMSException {
+        checkTransaction();
+        transactionHelper.recordPhase(TimelinePhase.SEND_START);
+        try {
+            compress(message);
+            CompletionListener tracking = track(message, completionListener);
+            try {
+                producer.send(message, deliveryMode, priority, timeToLive, tracking);
+            } catch (JMSException | RuntimeException e) {
+                cancel(tracking);
+                throw e;
+            }
+        } finally {
+            transactionHelper.recordPhase(TimelinePhase.SEND_END);
+        }
+    }
+
+    @Override
+    public void send(final Destination destination, final Message message, final CompletionListener completionListener) throws JMSException {
+        checkTransaction();
+        applyProfile(destination);
+        transactionHelper.recordPhase(TimelinePhase.SEND_START);
+        try {
+            compress(message);
+            CompletionListener tracking = track(message, completionListener);
+            try {
+                producer.send(destination, message, tracking);
+            } catch (JMSException | RuntimeException e) {
+                cancel(tracking);
+                throw e;
+            }
+        } finally {
+            transactionHelper.recordPhase(TimelinePhase.SEND_END);
+        }
+    }
+
+    @Override
+    public void send(final Destination destination, final Message message, final int deliveryMode, final int priority, final long timeToLive,
+            final CompletionListener completionListener) throws JMSException {
+        checkTransaction();
+        applyProfile(destination);
+        transactionHelper.recordPhase(TimelinePhase.SEND_START);
+        try {
+            compress(message);
+            CompletionListener tracking = track(message, completionListener);
+            try {
+                producer.send(destination, message, deliveryMode, priority, timeToLive, tracking);
+            } catch (JMSException | RuntimeException e) {
+                cancel(tracking);
+                throw e;
+            }
+        } finally {
+            transactionHelper.recordPhase(TimelinePhase.SEND_END);
+        }
+    }
+
+    // ---- Private Helper Methods ---------------------------------------
+
+    private void checkTransaction() throws JMSException {
+        if (session != null) {
+            session.checkTransaction();
+        }
+    }
+
+    /**
+     * Set the profile of the destination on the physical producer of an anonymous producer if it differs from the one
+     * of the last send, leaving the settings made on this producer alone.
+     */
+    private void applyProfile(final Destination destination) throws JMSException {
+        if (!anonymous) {
+            return;
+        }
+        ProducerProfile profile = session.getProducerProfile(destination);
+        if (profile == appliedProfile) {
+            return;
+        }
+        if (defaultSettings == null) {
+            defaultSettings = new ProducerProfile();
+            defaultSettings.setDisableMessageID(producer.getDisableMessageID());
+            defaultSettings.setDisableMessageTimestamp(producer.getDisableMessageTimestamp());
+            defaultSettings.setDeliveryMode(producer.getDeliveryMode());
+            defaultSettings.setPriority(producer.getPriority());
+            defaultSettings.setTimeToLive(producer.getTimeToLive());
+        }
+        ProducerProfile target = profile == null ? defaultSettings : profile;
+        if (explicitSettings.getDisableMessageID() == null) {
+            producer.setDisableMessageID(choose(target.getDisableMessageID(), defaultSettings.getDisableMessageID()));
+        }
+        if (explicitSettings.getDisableMessageTimestamp() == null) {
+            producer.setDisableMessageTimestamp(choose(target.getDisableMessageTimestamp(), defaultSettings.getDisableMessageTimestamp()));
+        }
+        if (explicitSettings.getDeliveryMode() == null) {
+            producer.setDeliveryMode(choose(target.getDeliveryMode(), defaultSettings.getDeliveryMode()));
+        }
+        if (explicitSettings.getPriority() == null) {
+            producer.setPriority(choose(target.getPriority(), defaultSettings.getPriority()));
+        }
+        if (explicitSettings.getTimeToLive() == null) {
+            producer.setTimeToLive(choose(target.getTimeToLive(), defaultSettings.getTimeToLive()));
+        }
+        appliedProfile = profile;
+    }
+
+    private static <T> T choose(final T value, final T fallback) {
+        return value == null ? fallback : value;
+    }
+
+    private void compress(final Message message) throws JMSException {
+        if (session != null) {
+            session.compress(message);
+        }
+    }
+
+    private CompletionListener track(final Message message, final CompletionListener completionListener) {
+        return session == null ? completionListener : session.trackAsyncSend(message, completionListener);
+    }
+
+    private void cancel(final CompletionListener tracking) {
+        if (session != null) {
+            session.cancelAsyncSend(tracking);
+        }
+    }
+
+}
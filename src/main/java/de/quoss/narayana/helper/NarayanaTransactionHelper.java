@@ -4,6 +4,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.jms.JMSException;
+import javax.jms.TransactionRolledBackException;
+import javax.transaction.HeuristicMixedException;
+import javax.transaction.HeuristicRollbackException;
+import javax.transaction.InvalidTransactionException;
+import javax.transaction.NotSupportedException;
 import javax.transaction.RollbackException;
 import javax.transaction.Status;
 import javax.transaction.Synchronization;
@@ -11,6 +16,9 @@ import javax.transaction.SystemException;
 import javax.transaction.Transaction;
 import javax.transaction.TransactionManager;
 import javax.transaction.xa.XAResource;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 
 public class NarayanaTransactionHelper implements TransactionHelper {
 
@@ -18,31 +26,68 @@ public class NarayanaTransactionHelper implements TransactionHelper {
 
     private static final String TRC_FMT_END = "{} end";
 
+    private static final MethodType REMAINING_TIMEOUT_TYPE = MethodType.methodType(long.class, Transaction.class);
+
+    /** Narayana's {@code TransactionImple.getRemainingTimeoutMills()} of the last transaction class seen. */
+    private static volatile RemainingTimeout remainingTimeout;
+
     private final TransactionManager transactionManager;
 
+    private final TransactionTimelineRecorder timelineRecorder;
+
     public NarayanaTransactionHelper(final TransactionManager transactionManager) {
+        this(transactionManager, null);
+    }
+
+    /**
+     * @param transactionManager the transaction manager.
+     * @param timelineRecorder recorder of the helper-level phases of transactions, {@code null} to record nothing.
+     */
+    public NarayanaTransactionHelper(final TransactionManager transactionManager, final TransactionTimelineRecorder timelineRecorder) {
         this.transactionManager = transactionManager;
+        this.timelineRecorder = timelineRecorder;
     }
 
     @Override
     public boolean isTransactionAvailable() throws JMSException {
         final String methodName = "isTransactionAvailable()";
         LOGGER.trace("{} start", methodName);
-        Transaction txn = getTransaction();
-        LOGGER.debug("{} [txn={}]", methodName, txn);
         int status = getStatus();
         boolean result = status != Status.STATUS_NO_TRANSACTION;
         LOGGER.trace("{} end [result={}]", methodName, result);
         return result;
     }
 
+    @Override
+    public boolean isTransactionUsable() throws JMSException {
+        int status = getStatus();
+        switch (status) {
+            case Status.STATUS_NO_TRANSACTION:
+                return false;
+            case Status.STATUS_ACTIVE:
+                return true;
+            case Status.STATUS_MARKED_ROLLBACK:
+            case Status.STATUS_ROLLING_BACK:
+            case Status.STATUS_ROLLEDBACK:
+                throw new TransactionRolledBackException(String.format("Transaction is doomed [status=%d].", status));
+            default:
+                // preparing, prepared, committing, committed or unknown
+                throw new javax.jms.IllegalStateException(String.format("Transaction is completing, no new work can be enlisted [status=%d].", status));
+        }
+    }
+
     @Override
     public void registerSynchronization(final Synchronization synchronization) throws JMSException {
         final String methodName = "registerSynchronization(Synchronization)";
         LOGGER.trace("{} start [synchronization={}]", methodName, synchronization);
+        Transaction txn = getTransaction();
+        Synchronization registered = timelineRecorder == null ? synchronization : timelineRecorder.wrap(txn, synchronization);
         try {
-            getTransaction().registerSynchronization(synchronization);
+            txn.registerSynchronization(registered);
         } catch (IllegalStateException | RollbackException | SystemException e) {
+            if (timelineRecorder != null) {
+                timelineRecorder.registrationFailed(registered);
+            }
             throw getJmsException(e.getMessage(), e);
         }
         LOGGER.trace(TRC_FMT_END, methodName);
@@ -52,12 +97,16 @@ public class NarayanaTransactionHelper implements TransactionHelper {
     public void registerXAResource(final XAResource xaResource) throws JMSException {
         final String methodName = "registerXAResource(XAResource)";
         LOGGER.trace("{} start [xaResource={}]", methodName, xaResource);
+        Transaction txn = getTransaction();
+        record(txn, TimelinePhase.ENLIST_START);
         try {
-            if (!getTransaction().enlistResource(xaResource)) {
+            if (!txn.enlistResource(xaResource)) {
                 throw getJmsException("Error enlisting resource.", null);
             }
         } catch (RollbackException | IllegalStateException | SystemException e) {
             throw getJmsException(e.getMessage(), e);
+        } finally {
+            record(txn, TimelinePhase.ENLIST_END);
         }
         LOGGER.trace(TRC_FMT_END, methodName);
     }
@@ -66,18 +115,164 @@ public class NarayanaTransactionHelper implements TransactionHelper {
     public void deregisterXAResource(final XAResource xaResource) throws JMSException {
         final String methodName = "deregisterXAResource(XAResource)";
         LOGGER.trace("{} start [xaResource={}]", methodName, xaResource);
+        Transaction txn = getTransaction();
+        record(txn, TimelinePhase.DELIST_START);
         try {
-            if (!getTransaction().delistResource(xaResource, XAResource.TMSUCCESS)) {
+            if (!txn.delistResource(xaResource, XAResource.TMSUCCESS)) {
                 throw getJmsException("Error delisting resource.", null);
             }
         } catch (IllegalStateException | SystemException e) {
             throw getJmsException(e.getMessage(), e);
+        } finally {
+            record(txn, TimelinePhase.DELIST_END);
+        }
+        LOGGER.trace(TRC_FMT_END, methodName);
+    }
+
+    @Override
+    public Object getTransactionKey() throws JMSException {
+        // Narayana's transactions are equal by their uid
+        return getTransaction();
+    }
+
+    @Override
+    public long getRemainingTimeMillis() throws JMSException {
+        Transaction txn = getTransaction();
+        if (txn == null) {
+            return -1L;
+        }
+        int status;
+        try {
+            status = txn.getStatus();
+        } catch (SystemException e) {
+            throw getJmsException(e.getMessage(), e);
+        }
+        if (status == Status.STATUS_MARKED_ROLLBACK || status == Status.STATUS_ROLLING_BACK || status == Status.STATUS_ROLLEDBACK) {
+            // timed out transactions are rolled back by the reaper, there is no time left for useful work
+            return 0L;
+        }
+        MethodHandle handle = getRemainingTimeoutHandle(txn.getClass());
+        if (handle == null) {
+            return -1L;
+        }
+        long result;
+        try {
+            result = (long) handle.invokeExact(txn);
+        } catch (Error e) {
+            throw e;
+        } catch (Throwable e) {
+            LOGGER.debug("Remaining time of transaction {} not available.", txn, e);
+            return -1L;
+        }
+        // Narayana reports 0 for transactions without timeout and a negative value once the timeout has passed
+        return result == 0L ? -1L : Math.max(result, 0L);
+    }
+
+    @Override
+    public void begin() throws JMSException {
+        final String methodName = "begin()";
+        LOGGER.trace("{} start", methodName);
+        try {
+            transactionManager.begin();
+        } catch (NotSupportedException | SystemException e) {
+            throw getJmsException(e.getMessage(), e);
+        }
+        LOGGER.trace(TRC_FMT_END, methodName);
+    }
+
+    @Override
+    public void commit() throws JMSException {
+        final String methodName = "commit()";
+        LOGGER.trace("{} start", methodName);
+        try {
+            transactionManager.commit();
+        } catch (RollbackException | HeuristicRollbackException e) {
+            TransactionRolledBackException exception = new TransactionRolledBackException(e.getMessage());
+            exception.setLinkedException(e);
+            throw exception;
+        } catch (HeuristicMixedException | SecurityException | IllegalStateException | SystemException e) {
+            throw getJmsException(e.getMessage(), e);
         }
         LOGGER.trace(TRC_FMT_END, methodName);
     }
 
+    @Override
+    public void rollback() throws JMSException {
+        final String methodName = "rollback()";
+        LOGGER.trace("{} start", methodName);
+        try {
+            transactionManager.rollback();
+        } catch (SecurityException | IllegalStateException | SystemException e) {
+            throw getJmsException(e.getMessage(), e);
+        }
+        LOGGER.trace(TRC_FMT_END, methodName);
+    }
+
+    @Override
+    public Transaction suspend() throws JMSException {
+        final String methodName = "suspend()";
+        LOGGER.trace("{} start", methodName);
+        Transaction result;
+        try {
+            result = transactionManager.suspend();
+        } catch (SystemException e) {
+            throw getJmsException(e.getMessage(), e);
+        }
+        LOGGER.trace("{} end [result={}]", methodName, result);
+        return result;
+    }
+
+    @Override
+    public void resume(final Transaction transaction) throws JMSException {
+        final String methodName = "resume(Transaction)";
+        LOGGER.trace("{} start [transaction={}]", methodName, transaction);
+        try {
+            transactionManager.resume(transaction);
+        } catch (InvalidTransactionException | IllegalStateException | SystemException e) {
+            throw getJmsException(e.getMessage(), e);
+        }
+        LOGGER.trace(TRC_FMT_END, methodName);
+    }
+
+    @Override
+    public void recordPhase(final TimelinePhase phase) {
+        if (timelineRecorder == null) {
+            return;
+        }
+        try {
+            record(transactionManager.getTransaction(), phase);
+        } catch (SystemException e) {
+            LOGGER.debug("Phase {} not recorded.", phase, e);
+        }
+    }
+
     // ---- Private Helper Methods ---------------------------------------
 
+    /**
+     * @return handle of {@code getRemainingTimeoutMills()} of the transaction class, {@code null} if there is none.
+     */
+    private static MethodHandle getRemainingTimeoutHandle(final Class<?> type) {
+        RemainingTimeout cached = remainingTimeout;
+        if (cached == null || cached.type != type) {
+            MethodHandle handle;
+            try {
+                handle = MethodHandles.publicLookup().unreflect(type.getMethod("getRemainingTimeoutMills")).asType(REMAINING_TIMEOUT_TYPE);
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                LOGGER.debug("Remaining time of transactions of type {} not available.", type.getName(), e);
+                handle = null;
+            }
+            cached = new RemainingTimeout(type, handle);
+            remainingTimeout = cached;
+        }
+        return cached.handle;
+    }
+
+    private void record(final Transaction txn, final TimelinePhase phase) {
+        if (timelineRecorder != null && txn != null) {
+            timelineRecorder.record(txn, phase);
+        }
+    }
+
     private Transaction getTransaction() throws JMSException {
         try {
             return transactionManager.getTransaction();
@@ -88,7 +283,8 @@ public class NarayanaTransactionHelper implements TransactionHelper {
 
     private int getStatus() throws JMSException {
         try {
-            return transactionManager.getTransaction().getStatus();
+            // the manager answers for the current thread without looking up the transaction
+            return transactionManager.getStatus();
         } catch (SystemException e) {
             throw getJmsException(e.getMessage(), e);
         }
@@ -100,4 +296,17 @@ public class NarayanaTransactionHelper implements TransactionHelper {
         return jmsException;
     }
 
+    private static final class RemainingTimeout {
+
+        private final Class<?> type;
+
+        private final MethodHandle handle;
+
+        private RemainingTimeout(final Class<?> type, final MethodHandle handle) {
+            this.type = type;
+            this.handle = handle;
+        }
+
+    }
+
 }
@@ -0,0 +1,195 @@
+package de.quoss.narayana.helper;
+
+/**
+ * <p>
+ *   Sizing and maintenance settings for the resource pools kept by {@link ConnectionFactoryProxy}.
+ * </p>
+ * <p>
+ *   Pooling is disabled by default: a configuration with {@code maxIdleConnections} and {@code maxIdleContexts}
+ *   both set to zero keeps the classic one-physical-resource-per-call behaviour.
+ * </p>
+ */
+public class PoolConfiguration {
+
+    private int minIdleConnections;
+
+    private int maxIdleConnections;
+
+    private int minIdleSessionsPerConnection;
+
+    private int maxIdleSessionsPerConnection;
+
+    private int maxSessionsPerConnection;
+
+    private long sessionBorrowTimeoutMillis = 30_000L;
+
+    private int minIdleContexts;
+
+    private int maxIdleContexts;
+
+    private int multiplexedParentContexts;
+
+    private long idleTimeoutMillis = 300_000L;
+
+    private long validationIntervalMillis = 30_000L;
+
+    private long refillIntervalMillis = 1_000L;
+
+    private long maxRefillBackoffMillis = 30_000L;
+
+    public int getMinIdleConnections() {
+        return minIdleConnections;
+    }
+
+    public void setMinIdleConnections(final int minIdleConnections) {
+        this.minIdleConnections = requireNotNegative(minIdleConnections, "Min idle connections");
+    }
+
+    public int getMaxIdleConnections() {
+        return maxIdleConnections;
+    }
+
+    public void setMaxIdleConnections(final int maxIdleConnections) {
+        this.maxIdleConnections = requireNotNegative(maxIdleConnections, "Max idle connections");
+    }
+
+    /**
+     * @return number of xa sessions opened on every connection by {@link ConnectionFactoryProxy#warmUp()}.
+     */
+    public int getMinIdleSessionsPerConnection() {
+        return minIdleSessionsPerConnection;
+    }
+
+    public void setMinIdleSessionsPerConnection(final int minIdleSessionsPerConnection) {
+        this.minIdleSessionsPerConnection = requireNotNegative(minIdleSessionsPerConnection, "Min idle sessions per connection");
+    }
+
+    public int getMaxIdleSessionsPerConnection() {
+        return maxIdleSessionsPerConnection;
+    }
+
+    public void setMaxIdleSessionsPerConnection(final int maxIdleSessionsPerConnection) {
+        this.maxIdleSessionsPerConnection = requireNotNegative(maxIdleSessionsPerConnection, "Max idle sessions per connection");
+    }
+
+    /**
+     * @return maximum number of open pooled xa sessions per connection, zero for no limit. Threads asking for a
+     *   session beyond the limit wait for another thread to return one.
+     */
+    public int getMaxSessionsPerConnection() {
+        return maxSessionsPerConnection;
+    }
+
+    public void setMaxSessionsPerConnection(final int maxSessionsPerConnection) {
+        this.maxSessionsPerConnection = requireNotNegative(maxSessionsPerConnection, "Max sessions per connection");
+    }
+
+    /**
+     * @return maximum time to wait for a returned session when {@link #getMaxSessionsPerConnection()} is reached.
+     */
+    public long getSessionBorrowTimeoutMillis() {
+        return sessionBorrowTimeoutMillis;
+    }
+
+    public void setSessionBorrowTimeoutMillis(final long sessionBorrowTimeoutMillis) {
+        this.sessionBorrowTimeoutMillis = requireNotNegative(sessionBorrowTimeoutMillis, "Session borrow timeout");
+    }
+
+    public int getMinIdleContexts() {
+        return minIdleContexts;
+    }
+
+    public void setMinIdleContexts(final int minIdleContexts) {
+        this.minIdleContexts = requireNotNegative(minIdleContexts, "Min idle contexts");
+    }
+
+    public int getMaxIdleContexts() {
+        return maxIdleContexts;
+    }
+
+    public void setMaxIdleContexts(final int maxIdleContexts) {
+        this.maxIdleContexts = requireNotNegative(maxIdleContexts, "Max idle contexts");
+    }
+
+    /**
+     * @return number of shared parent xa contexts the enlisted contexts are created from as child contexts, zero to
+     *   open a new top-level context for every caller.
+     * @see ContextMultiplexer
+     */
+    public int getMultiplexedParentContexts() {
+        return multiplexedParentContexts;
+    }
+
+    public void setMultiplexedParentContexts(final int multiplexedParentContexts) {
+        this.multiplexedParentContexts = requireNotNegative(multiplexedParentContexts, "Multiplexed parent contexts");
+    }
+
+    /**
+     * @return time after which an idle resource above the configured minimum is closed, zero disables the timeout.
+     */
+    public long getIdleTimeoutMillis() {
+        return idleTimeoutMillis;
+    }
+
+    public void setIdleTimeoutMillis(final long idleTimeoutMillis) {
+        this.idleTimeoutMillis = requireNotNegative(idleTimeoutMillis, "Idle timeout");
+    }
+
+    /**
+     * @return interval of the background validation of idle resources, zero disables background validation.
+     */
+    public long getValidationIntervalMillis() {
+        return validationIntervalMillis;
+    }
+
+    public void setValidationIntervalMillis(final long validationIntervalMillis) {
+        this.validationIntervalMillis = requireNotNegative(validationIntervalMillis, "Validation interval");
+    }
+
+    /**
+     * @return minimum time between two physical resources opened to refill the pools up to their minimum.
+     */
+    public long getRefillIntervalMillis() {
+        return refillIntervalMillis;
+    }
+
+    public void setRefillIntervalMillis(final long refillIntervalMillis) {
+        this.refillIntervalMillis = requireNotNegative(refillIntervalMillis, "Refill interval");
+    }
+
+    /**
+     * @return upper bound of the exponential back-off applied to refilling after the broker refused a resource.
+     */
+    public long getMaxRefillBackoffMillis() {
+        return maxRefillBackoffMillis;
+    }
+
+    public void setMaxRefillBackoffMillis(final long maxRefillBackoffMillis) {
+        this.maxRefillBackoffMillis = requireNotNegative(maxRefillBackoffMillis, "Max refill back-off");
+    }
+
+    public boolean isConnectionPoolingEnabled() {
+        return maxIdleConnections > 0;
+    }
+
+    public boolean isContextPoolingEnabled() {
+        return maxIdleContexts > 0;
+    }
+
+    // ---- Private Helper Methods ---------------------------------------
+
+    private static int requireNotNegative(final int value, final String name) {
+        if (value < 0) {
+            throw new NarayanaHelperException(name + " must not be negative.");
+        }
+        return value;
+    }
+
+    private static long requireNotNegative(final long value, final String name) {
+        if (value < 0L) {
+            throw new NarayanaHelperException(name + " must not be negative.");
+        }
+        return value;
+    }
+
+}
@@ -0,0 +1,118 @@
+package de.quoss.narayana.helper;
+
+import javax.jms.DeliveryMode;
+import javax.jms.JMSException;
+import javax.jms.MessageProducer;
+
+/**
+ * Producer settings applied to the producers of the destinations matched in {@link ProducerProfiles}. Settings left
+ * {@code null} keep the provider default.
+ */
+public class ProducerProfile {
+
+    private Boolean disableMessageID;
+
+    private Boolean disableMessageTimestamp;
+
+    private Integer deliveryMode;
+
+    private Integer priority;
+
+    private Long timeToLive;
+
+    public Boolean getDisableMessageID() {
+        return disableMessageID;
+    }
+
+    /**
+     * @param disableMessageID whether the provider may skip generating message ids, {@code null} for the default.
+     */
+    public void setDisableMessageID(final Boolean disableMessageID) {
+        this.disableMessageID = disableMessageID;
+    }
+
+    public Boolean getDisableMessageTimestamp() {
+        return disableMessageTimestamp;
+    }
+
+    /**
+     * @param disableMessageTimestamp whether the provider may skip setting timestamps, {@code null} for the default.
+     */
+    public void setDisableMessageTimestamp(final Boolean disableMessageTimestamp) {
+        this.disableMessageTimestamp = disableMessageTimestamp;
+    }
+
+    public Integer getDeliveryMode() {
+        return deliveryMode;
+    }
+
+    /**
+     * @param deliveryMode {@link DeliveryMode#PERSISTENT} or {@link DeliveryMode#NON_PERSISTENT}, {@code null} for
+     *   the default.
+     */
+    public void setDeliveryMode(final Integer deliveryMode) {
+        if (deliveryMode != null && deliveryMode != DeliveryMode.PERSISTENT && deliveryMode != DeliveryMode.NON_PERSISTENT) {
+            throw new NarayanaHelperException(String.format("Invalid delivery mode %d.", deliveryMode));
+        }
+        this.deliveryMode = deliveryMode;
+    }
+
+    public Integer getPriority() {
+        return priority;
+    }
+
+    /**
+     * @param priority priority from 0 to 9, {@code null} for the default.
+     */
+    public void setPriority(final Integer priority) {
+        if (priority != null && (priority < 0 || priority > 9)) {
+            throw new NarayanaHelperException(String.format("Invalid priority %d.", priority));
+        }
+        this.priority = priority;
+    }
+
+    public Long getTimeToLive() {
+        return timeToLive;
+    }
+
+    /**
+     * @param timeToLive time to live in milliseconds, zero for unlimited, {@code null} for the default.
+     */
+    public void setTimeToLive(final Long timeToLive) {
+        if (timeToLive != null && timeToLive < 0L) {
+            throw new NarayanaHelperException("Time to live must not be negative.");
+        }
+        this.timeToLive = timeToLive;
+    }
+
+    /**
+     * Set the settings of this profile on a producer.
+     *
+     * @param producer the producer.
+     * @throws JMSException if a setting cannot be set.
+     */
+    public void apply(final MessageProducer producer) throws JMSException {
+        if (disableMessageID != null) {
+            producer.setDisableMessageID(disableMessageID);
+        }
+        if (disableMessageTimestamp != null) {
+            producer.setDisableMessageTimestamp(disableMessageTimestamp);
+        }
+        if (deliveryMode != null) {
+            producer.setDeliveryMode(deliveryMode);
+        }
+        if (priority != null) {
+            producer.setPriority(priority);
+        }
+        if (timeToLive != null) {
+            producer.setTimeToLive(timeToLive);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ProducerProfile[disableMessageID=%s,disableMessageTimestamp=%s,deliveryMode=%s,priority=%s,timeToLive=%s]",
+                disableMessageID, disableMessageTimestamp, deliveryMode, priority, timeToLive);
+    }
+
+}
@@ -0,0 +1,126 @@
+package de.quoss.narayana.helper;
+
+import javax.jms.Destination;
+import javax.jms.JMSException;
+import javax.jms.Queue;
+import javax.jms.Topic;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Pattern;
+
+/**
+ * <p>
+ *   {@link ProducerProfile}s keyed by destination name patterns, applied to the producers of the sessions and
+ *   contexts handed out by a {@link ConnectionFactoryProxy}.
+ * </p>
+ * <p>
+ *   A pattern matches the queue or topic name, {@code *} standing for any sequence of characters, e.g.
+ *   {@code audit.*}. The first pattern added which matches wins. The result of the lookup is cached per name, the
+ *   cache is dropped when a pattern is added or when it outgrows {@value #MAX_CACHED_NAMES} names, e.g. with many
+ *   temporary destinations.
+ * </p>
+ */
+public class ProducerProfiles {
+
+    private static final int MAX_CACHED_NAMES = 1_024;
+
+    /** Cached for names no pattern matches. */
+    private static final ProducerProfile NO_PROFILE = new ProducerProfile();
+
+    private final List<Entry> entries = new CopyOnWriteArrayList<>();
+
+    private final Map<String, ProducerProfile> cache = new ConcurrentHashMap<>();
+
+    /**
+     * @param pattern destination name pattern.
+     * @param profile profile of the matching destinations.
+     * @return this.
+     */
+    public ProducerProfiles add(final String pattern, final ProducerProfile profile) {
+        if (pattern == null) {
+            throw new NarayanaHelperException("Pattern must not be null.");
+        }
+        if (profile == null) {
+            throw new NarayanaHelperException("Profile must not be null.");
+        }
+        entries.add(new Entry(compile(pattern), profile));
+        cache.clear();
+        return this;
+    }
+
+    /**
+     * @param destination a destination, may be {@code null}.
+     * @return profile of the destination, {@code null} if none matches or the destination has no name.
+     * @throws JMSException if the destination name cannot be read.
+     */
+    public ProducerProfile getProfile(final Destination destination) throws JMSException {
+        String name;
+        if (destination instanceof Queue) {
+            name = ((Queue) destination).getQueueName();
+        } else if (destination instanceof Topic) {
+            name = ((Topic) destination).getTopicName();
+        } else {
+            name = null;
+        }
+        return name == null ? null : getProfile(name);
+    }
+
+    /**
+     * @param name a destination name.
+     * @return profile of the destination, {@code null} if none matches.
+     */
+    public ProducerProfile getProfile(final String name) {
+        ProducerProfile result = cache.get(name);
+        if (result == null) {
+            result = lookUp(name);
+            if (cache.size() >= MAX_CACHED_NAMES) {
+                cache.clear();
+            }
+            cache.put(name, result);
+        }
+        return result == NO_PROFILE ? null : result;
+    }
+
+    // ---- Private Methods ----------------------------------
+
+    private ProducerProfile lookUp(final String name) {
+        for (Entry entry : entries) {
+            if (entry.pattern.matcher(name).matches()) {
+                return entry.profile;
+            }
+        }
+        return NO_PROFILE;
+    }
+
+    private static Pattern compile(final String pattern) {
+        StringBuilder regex = new StringBuilder();
+        int start = 0;
+        for (int i = pattern.indexOf('*'); i >= 0; i = pattern.indexOf('*', start)) {
+            if (i > start) {
+                regex.append(Pattern.quote(pattern.substring(start, i)));
+            }
+            regex.append(".*");
+            start = i + 1;
+        }
+        if (start < pattern.length()) {
+            regex.append(Pattern.quote(pattern.substring(start)));
+        }
+        return Pattern.compile(regex.toString(), Pattern.DOTALL);
+    }
+
+    private static final class Entry {
+
+        private final Pattern pattern;
+
+        private final ProducerProfile profile;
+
+        private Entry(final Pattern pattern, final ProducerProfile profile) {
+            this.pattern = pattern;
+            this.profile = profile;
+        }
+
+    }
+
+}
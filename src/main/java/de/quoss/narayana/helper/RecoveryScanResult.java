@@ -0,0 +1,80 @@
+package de.quoss.narayana.helper;
+
+import javax.transaction.xa.XAResource;
+import javax.transaction.xa.Xid;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Result of scanning one recovery target of a {@link XARecoveryHelper}.
+ */
+public class RecoveryScanResult {
+
+    private static final Xid[] NO_XIDS = new Xid[0];
+
+    private final String name;
+
+    private final XAResource resource;
+
+    private final Xid[] xids;
+
+    private final long durationNanos;
+
+    private final Throwable failure;
+
+    RecoveryScanResult(final String name, final XAResource resource, final Xid[] xids, final long durationNanos, final Throwable failure) {
+        this.name = name;
+        this.resource = resource;
+        this.xids = xids == null ? NO_XIDS : xids;
+        this.durationNanos = durationNanos;
+        this.failure = failure;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the ids of the in-doubt branches found, empty if the scan failed.
+     */
+    public Xid[] getXids() {
+        return xids.clone();
+    }
+
+    public int getInDoubtCount() {
+        return xids.length;
+    }
+
+    /**
+     * @return time taken to open the recovery connection if necessary and to scan it.
+     */
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    /**
+     * @return the cause of a failed scan, {@code null} if it succeeded.
+     */
+    public Throwable getFailure() {
+        return failure;
+    }
+
+    public boolean isSuccessful() {
+        return failure == null;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("RecoveryScanResult [name=%s,inDoubt=%d,durationMillis=%d,failure=%s]", name, xids.length,
+                TimeUnit.NANOSECONDS.toMillis(durationNanos), failure);
+    }
+
+    // ---- Package Private Methods ---------------------------------------
+
+    /**
+     * @return the scanned resource to hand to the recovery manager, {@code null} if the scan failed.
+     */
+    XAResource getXAResource() {
+        return resource;
+    }
+
+}
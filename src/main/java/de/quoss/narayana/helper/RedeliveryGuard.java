@@ -0,0 +1,232 @@
+package de.quoss.narayana.helper;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.jms.ConnectionFactory;
+import javax.jms.Destination;
+import javax.jms.JMSContext;
+import javax.jms.JMSException;
+import javax.jms.JMSRuntimeException;
+import javax.jms.Message;
+import javax.jms.MessageListener;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.Transaction;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * <p>
+ *   Breaks the receive-rollback-redeliver cycle of poison messages.
+ * </p>
+ * <p>
+ *   The delivery attempt of a message is taken from {@code JMSXDeliveryCount} if the provider sets it, otherwise from a
+ *   bounded local table counting the rollbacks of the transactions the message was received in. A redelivered message
+ *   is held back with exponential backoff, capped by the time left in the transaction, before it is handled. Once the
+ *   maximum number of deliveries is exceeded the message is sent to the dead-letter destination in a separate
+ *   transaction and skipped, so the consuming transaction can commit and remove it.
+ * </p>
+ */
+public class RedeliveryGuard {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RedeliveryGuard.class);
+
+    private static final String DELIVERY_COUNT_PROPERTY = "JMSXDeliveryCount";
+
+    private static final int MAX_TRACKED_MESSAGES = 10_000;
+
+    private final ConnectionFactory connectionFactory;
+
+    private final TransactionHelper transactionHelper;
+
+    private final Destination deadLetterDestination;
+
+    private final int maxDeliveries;
+
+    private final long initialBackoffMillis;
+
+    private final long maxBackoffMillis;
+
+    private final Map<String, Integer> rollbacks = new LinkedHashMap<String, Integer>(16, 0.75F, true) {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, Integer> eldest) {
+            return size() > MAX_TRACKED_MESSAGES;
+        }
+
+    };
+
+    /**
+     * @param connectionFactory factory the dead-letter messages are sent with, handing out enlisted contexts.
+     * @param transactionHelper transaction helper supporting transaction demarcation.
+     * @param deadLetterDestination destination of messages exceeding the maximum number of deliveries.
+     * @param maxDeliveries number of deliveries a message gets before it is diverted.
+     * @param initialBackoffMillis backoff before the first redelivery is handled, doubled for every further one.
+     * @param maxBackoffMillis maximum backoff.
+     */
+    public RedeliveryGuard(final ConnectionFactoryProxy connectionFactory, final TransactionHelper transactionHelper, final Destination deadLetterDestination,
+            final int maxDeliveries, final long initialBackoffMillis, final long maxBackoffMillis) {
+        if (connectionFactory == null) {
+            throw new NarayanaHelperException("Connection factory must not be null.");
+        }
+        this.connectionFactory = connectionFactory;
+        if (transactionHelper == null) {
+            throw new NarayanaHelperException("Transaction helper must not be null.");
+        }
+        this.transactionHelper = transactionHelper;
+        if (deadLetterDestination == null) {
+            throw new NarayanaHelperException("Dead-letter destination must not be null.");
+        }
+        this.deadLetterDestination = deadLetterDestination;
+        if (maxDeliveries <= 0) {
+            throw new NarayanaHelperException("Max deliveries must be positive.");
+        }
+        this.maxDeliveries = maxDeliveries;
+        if (initialBackoffMillis < 0L || maxBackoffMillis < initialBackoffMillis) {
+            throw new NarayanaHelperException(String.format("Invalid backoff [%d,%d].", initialBackoffMillis, maxBackoffMillis));
+        }
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+    }
+
+    /**
+     * Check a received message before handling it, backing off on redelivery and diverting it once it exceeded the
+     * maximum number of deliveries.
+     *
+     * @param message the message.
+     * @return {@code false} if the message was sent to the dead-letter destination, {@code true} if it is to be handled.
+     * @throws JMSException if the message cannot be read or diverted.
+     */
+    public boolean accept(final Message message) throws JMSException {
+        int delivery = getDelivery(message);
+        if (delivery > maxDeliveries) {
+            LOGGER.warn("Message {} exceeded {} deliveries, sending it to {}.", message.getJMSMessageID(), maxDeliveries, deadLetterDestination);
+            divert(message);
+            return false;
+        }
+        if (delivery > 1) {
+            backOff(message, delivery);
+        }
+        return true;
+    }
+
+    /**
+     * @param listener listener to call for messages not diverted.
+     * @return a listener guarding against poison messages.
+     */
+    public MessageListener wrap(final MessageListener listener) {
+        if (listener == null) {
+            throw new NarayanaHelperException("Message listener must not be null.");
+        }
+        return message -> {
+            boolean accepted;
+            try {
+                accepted = accept(message);
+            } catch (JMSException e) {
+                // let the provider redeliver
+                throw new NarayanaHelperException("Error guarding message redelivery.", e);
+            }
+            if (accepted) {
+                listener.onMessage(message);
+            }
+        };
+    }
+
+    // ---- Private Methods ----------------------------------
+
+    private int getDelivery(final Message message) throws JMSException {
+        if (message.propertyExists(DELIVERY_COUNT_PROPERTY)) {
+            return message.getIntProperty(DELIVERY_COUNT_PROPERTY);
+        }
+        String id = message.getJMSMessageID();
+        if (id == null || !transactionHelper.isTransactionAvailable()) {
+            return 1;
+        }
+        transactionHelper.registerSynchronization(new RollbackCountingSynchronization(id));
+        Integer count;
+        synchronized (rollbacks) {
+            count = rollbacks.get(id);
+        }
+        return count == null ? 1 : count + 1;
+    }
+
+    private void backOff(final Message message, final int delivery) throws JMSException {
+        long backoff = initialBackoffMillis << Math.min(delivery - 2, 30);
+        backoff = backoff < 0L ? maxBackoffMillis : Math.min(backoff, maxBackoffMillis);
+        long remaining = transactionHelper.getRemainingTimeMillis();
+        if (remaining >= 0L) {
+            // leave the handler some of the time left in the transaction
+            backoff = Math.min(backoff, remaining / 2L);
+        }
+        if (backoff <= 0L) {
+            return;
+        }
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Delivery {} of message {}, backing off {} ms.", delivery, message.getJMSMessageID(), backoff);
+        }
+        try {
+            Thread.sleep(backoff);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new JMSException("Interrupted while backing off redelivery.");
+        }
+    }
+
+    private void divert(final Message message) throws JMSException {
+        Transaction suspended = transactionHelper.isTransactionAvailable() ? transactionHelper.suspend() : null;
+        try {
+            transactionHelper.begin();
+            try (JMSContext context = connectionFactory.createContext()) {
+                context.createProducer().send(deadLetterDestination, message);
+            } catch (JMSRuntimeException | NarayanaHelperException e) {
+                rollback(e);
+                JMSException exception = new JMSException(String.format("Failed to send message to %s.", deadLetterDestination));
+                exception.setLinkedException(e);
+                throw exception;
+            }
+            transactionHelper.commit();
+        } finally {
+            if (suspended != null) {
+                transactionHelper.resume(suspended);
+            }
+        }
+    }
+
+    private void rollback(final Exception cause) {
+        try {
+            transactionHelper.rollback();
+        } catch (JMSException | RuntimeException e) {
+            cause.addSuppressed(e);
+        }
+    }
+
+    private final class RollbackCountingSynchronization implements Synchronization {
+
+        private final String id;
+
+        private RollbackCountingSynchronization(final String id) {
+            this.id = id;
+        }
+
+        @Override
+        public void beforeCompletion() {
+            // Nothing to do
+        }
+
+        @Override
+        public void afterCompletion(final int status) {
+            synchronized (rollbacks) {
+                if (status == Status.STATUS_COMMITTED) {
+                    rollbacks.remove(id);
+                } else {
+                    rollbacks.merge(id, 1, Integer::sum);
+                }
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,71 @@
+package de.quoss.narayana.helper;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ *   Paces the opening of physical resources used to refill the pools of {@link ConnectionFactoryProxy}.
+ * </p>
+ * <p>
+ *   At most one resource is opened per refill interval. Every failed attempt doubles the interval up to the
+ *   configured maximum, the first successful attempt resets it. This keeps a restarting broker from being hit by a
+ *   reconnect storm of all pools at once.
+ * </p>
+ */
+public class RefillRateLimiter {
+
+    private final long intervalNanos;
+
+    private final long maxBackoffNanos;
+
+    private long currentIntervalNanos;
+
+    private long nextPermitNanos;
+
+    public RefillRateLimiter(final long intervalMillis, final long maxBackoffMillis) {
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+        this.maxBackoffNanos = Math.max(intervalNanos, TimeUnit.MILLISECONDS.toNanos(maxBackoffMillis));
+        this.currentIntervalNanos = intervalNanos;
+        this.nextPermitNanos = System.nanoTime();
+    }
+
+    /**
+     * @return whether a resource may be opened now.
+     */
+    public synchronized boolean tryAcquire() {
+        long now = System.nanoTime();
+        if (now - nextPermitNanos < 0L) {
+            return false;
+        }
+        nextPermitNanos = now + currentIntervalNanos;
+        return true;
+    }
+
+    /**
+     * @return milliseconds until the next permit is available, zero if a permit is available now.
+     */
+    public synchronized long getDelayMillis() {
+        long delay = nextPermitNanos - System.nanoTime();
+        return delay <= 0L ? 0L : TimeUnit.NANOSECONDS.toMillis(delay) + 1L;
+    }
+
+    /**
+     * Record a successfully opened resource.
+     */
+    public synchronized void success() {
+        if (currentIntervalNanos != intervalNanos) {
+            nextPermitNanos -= currentIntervalNanos - intervalNanos;
+            currentIntervalNanos = intervalNanos;
+        }
+    }
+
+    /**
+     * Record a failed attempt to open a resource.
+     */
+    public synchronized void failure() {
+        long previous = currentIntervalNanos;
+        currentIntervalNanos = Math.min(maxBackoffNanos, Math.max(1L, previous) * 2L);
+        nextPermitNanos += currentIntervalNanos - previous;
+    }
+
+}
@@ -0,0 +1,282 @@
+package de.quoss.narayana.helper;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.jms.Connection;
+import javax.jms.Destination;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageConsumer;
+import javax.jms.MessageProducer;
+import javax.jms.Session;
+import javax.jms.TemporaryQueue;
+import javax.jms.TextMessage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>
+ *   Request/reply over a fixed set of temporary reply queues created once per connection instead of one temporary
+ *   queue per request.
+ * </p>
+ * <p>
+ *   Each reply queue has its own non-transacted session with a dispatcher listener completing the future waiting for
+ *   the reply with the matching {@code JMSCorrelationID}, and a session sending the requests. Requests are spread over
+ *   the queues in turn. Every request gets a new correlation id and the reply queue as {@code JMSReplyTo}, the
+ *   responder must copy the correlation id of the request into its reply. Replies arriving after their timeout are
+ *   dropped.
+ * </p>
+ * <p>
+ *   The sessions are opened on the physical connection, a {@link ConnectionProxy} is unwrapped, so requests are sent
+ *   immediately and never as part of a running xa transaction. The reply queues live as long as the connection, which
+ *   therefore must not be pooled: a pooled connection would be handed to the next borrower with the reply sessions
+ *   still open. The connection is started and stays open when the client is closed.
+ * </p>
+ */
+public class RequestReplyClient implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RequestReplyClient.class);
+
+    private final List<ReplyChannel> channels;
+
+    private final Map<String, PendingRequest> pending = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService timeoutExecutor;
+
+    private final AtomicInteger next = new AtomicInteger();
+
+    /**
+     * @param connection connection to create the reply queues on, not a pooled {@link ConnectionProxy}.
+     * @param replyQueues number of reply queues.
+     * @throws JMSException if the sessions or queues cannot be created.
+     */
+    public RequestReplyClient(final Connection connection, final int replyQueues) throws JMSException {
+        if (connection == null) {
+            throw new NarayanaHelperException("Connection must not be null.");
+        }
+        if (connection instanceof ConnectionProxy && ((ConnectionProxy) connection).isPooled()) {
+            throw new NarayanaHelperException("Connection must not be pooled, its reply queues would be handed to the next borrower.");
+        }
+        if (replyQueues <= 0) {
+            throw new NarayanaHelperException("Reply queues must be positive.");
+        }
+        Connection physical = connection instanceof ConnectionProxy ? ((ConnectionProxy) connection).getConnection() : connection;
+        this.timeoutExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "narayana-helper-request-timeout");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.channels = new ArrayList<>(replyQueues);
+        try {
+            for (int i = 0; i < replyQueues; i++) {
+                channels.add(new ReplyChannel(physical));
+            }
+            physical.start();
+        } catch (JMSException | RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Create a text message for a request.
+     *
+     * @param text the text.
+     * @return the message.
+     * @throws JMSException if the message cannot be created.
+     */
+    public TextMessage createTextMessage(final String text) throws JMSException {
+        ReplyChannel channel = channels.get(0);
+        synchronized (channel) {
+            return channel.sendSession.createTextMessage(text);
+        }
+    }
+
+    /**
+     * Send a request and wait for its reply.
+     *
+     * @param destination destination of the request.
+     * @param request the request, created on any session of the same provider.
+     * @param timeoutMillis time to wait for the reply.
+     * @return the reply, {@code null} if it did not arrive in time.
+     * @throws JMSException if the request cannot be sent.
+     */
+    public Message request(final Destination destination, final Message request, final long timeoutMillis) throws JMSException {
+        CompletableFuture<Message> future = requestAsync(destination, request, timeoutMillis);
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(false);
+            Thread.currentThread().interrupt();
+            throw new JMSException("Interrupted while waiting for a reply.");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof TimeoutException) {
+                return null;
+            }
+            JMSException exception = new JMSException("Request failed.");
+            exception.setLinkedException(e.getCause() instanceof Exception ? (Exception) e.getCause() : e);
+            throw exception;
+        }
+    }
+
+    /**
+     * Send a request without waiting for its reply.
+     *
+     * @param destination destination of the request.
+     * @param request the request, created on any session of the same provider.
+     * @param timeoutMillis time after which the future fails with a {@link TimeoutException}.
+     * @return future completed with the reply.
+     * @throws JMSException if the request cannot be sent.
+     */
+    public CompletableFuture<Message> requestAsync(final Destination destination, final Message request, final long timeoutMillis) throws JMSException {
+        if (timeoutMillis <= 0L) {
+            throw new NarayanaHelperException("Timeout must be positive.");
+        }
+        ReplyChannel channel = channels.get(Math.floorMod(next.getAndIncrement(), channels.size()));
+        String correlationId = UUID.randomUUID().toString();
+        PendingRequest pendingRequest = new PendingRequest();
+        pending.put(correlationId, pendingRequest);
+        pendingRequest.future.whenComplete((reply, failure) -> {
+            pending.remove(correlationId);
+            ScheduledFuture<?> timeout = pendingRequest.timeout;
+            if (timeout != null) {
+                timeout.cancel(false);
+            }
+        });
+        try {
+            request.setJMSCorrelationID(correlationId);
+            request.setJMSReplyTo(channel.queue);
+            synchronized (channel) {
+                channel.producer.send(destination, request);
+            }
+            pendingRequest.timeout = timeoutExecutor.schedule(() -> pendingRequest.future.completeExceptionally(
+                    new TimeoutException(String.format("No reply within %d ms.", timeoutMillis))), timeoutMillis, TimeUnit.MILLISECONDS);
+            if (pendingRequest.future.isDone()) {
+                // the reply was faster than scheduling its timeout
+                pendingRequest.timeout.cancel(false);
+            }
+        } catch (JMSException | RuntimeException e) {
+            pendingRequest.future.completeExceptionally(e);
+            throw e;
+        }
+        return pendingRequest.future;
+    }
+
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Fail all pending requests and close the sessions and reply queues.
+     */
+    @Override
+    public void close() {
+        timeoutExecutor.shutdownNow();
+        for (PendingRequest pendingRequest : pending.values()) {
+            pendingRequest.future.completeExceptionally(new JMSException("Request/reply client closed."));
+        }
+        for (ReplyChannel channel : channels) {
+            channel.close();
+        }
+    }
+
+    // ---- Private Classes ----------------------------------
+
+    private static final class PendingRequest {
+
+        private final CompletableFuture<Message> future = new CompletableFuture<>();
+
+        private volatile ScheduledFuture<?> timeout;
+
+    }
+
+    private final class ReplyChannel {
+
+        private final Session receiveSession;
+
+        private final Session sendSession;
+
+        private final TemporaryQueue queue;
+
+        private final MessageProducer producer;
+
+        private ReplyChannel(final Connection connection) throws JMSException {
+            this.receiveSession = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+            TemporaryQueue temporaryQueue = null;
+            Session session = null;
+            try {
+                temporaryQueue = receiveSession.createTemporaryQueue();
+                MessageConsumer consumer = receiveSession.createConsumer(temporaryQueue);
+                consumer.setMessageListener(this::dispatch);
+                session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+                this.producer = session.createProducer(null);
+            } catch (JMSException | RuntimeException e) {
+                if (session != null) {
+                    session.close();
+                }
+                receiveSession.close();
+                if (temporaryQueue != null) {
+                    // the queue lives as long as the connection, which stays open
+                    temporaryQueue.delete();
+                }
+                throw e;
+            }
+            this.queue = temporaryQueue;
+            this.sendSession = session;
+        }
+
+        private void dispatch(final Message reply) {
+            PendingRequest pendingRequest;
+            try {
+                String correlationId = reply.getJMSCorrelationID();
+                pendingRequest = correlationId == null ? null : pending.get(correlationId);
+                if (pendingRequest == null) {
+                    LOGGER.debug("Dropping reply with unknown or expired correlation id {}.", correlationId);
+                    return;
+                }
+            } catch (JMSException e) {
+                LOGGER.warn("Failed to dispatch reply.", e);
+                return;
+            }
+            try {
+                MessageCompressor.decompress(reply);
+                pendingRequest.future.complete(reply);
+            } catch (JMSException | RuntimeException e) {
+                pendingRequest.future.completeExceptionally(e);
+            }
+        }
+
+        private void close() {
+            // each step on its own, a failed one must not leave the others open
+            try {
+                sendSession.close();
+            } catch (JMSException | RuntimeException e) {
+                LOGGER.debug("Failed to close send session of reply queue {}.", queue, e);
+            }
+            try {
+                receiveSession.close();
+            } catch (JMSException | RuntimeException e) {
+                LOGGER.debug("Failed to close receive session of reply queue {}.", queue, e);
+            }
+            try {
+                queue.delete();
+            } catch (JMSException | RuntimeException e) {
+                LOGGER.debug("Failed to delete reply queue {}.", queue, e);
+            }
+        }
+
+    }
+
+}
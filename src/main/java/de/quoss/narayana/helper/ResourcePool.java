@@ -0,0 +1,240 @@
+package de.quoss.narayana.helper;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.jms.JMSException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * <p>
+ *   Bounded pool of idle jms resources (connections, sessions or contexts).
+ * </p>
+ * <p>
+ *   The resources are kept in a {@link ConcurrentBag}, so a thread borrowing a resource gets the one it returned
+ *   last if it is still idle. Returning a resource which is not reusable or does not fit into the pool any more
+ *   closes it.
+ * </p>
+ *
+ * @param <T> type of the pooled resource
+ */
+public class ResourcePool<T> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ResourcePool.class);
+
+    /**
+     * Callbacks used by the pool to check and close its resources.
+     *
+     * @param <T> type of the pooled resource
+     */
+    public interface Lifecycle<T> {
+
+        /**
+         * Cheap check done whenever a resource is returned to the pool.
+         *
+         * @param resource resource to check.
+         * @return whether the resource may be kept.
+         */
+        boolean isReusable(T resource);
+
+        /**
+         * Check done by the background validation for idle resources. May contact the broker.
+         *
+         * @param resource resource to check.
+         * @return whether the resource is still usable.
+         */
+        boolean validate(T resource);
+
+        /**
+         * Close the resource.
+         *
+         * @param resource resource to close.
+         * @throws JMSException if closing fails.
+         */
+        void destroy(T resource) throws JMSException;
+
+    }
+
+    private final String name;
+
+    private final int minIdle;
+
+    private final int maxIdle;
+
+    private final long idleTimeoutNanos;
+
+    private final Lifecycle<T> lifecycle;
+
+    private final ConcurrentBag<T> bag = new ConcurrentBag<>();
+
+    private volatile boolean closed;
+
+    /**
+     * @param name name of the pool used for logging.
+     * @param minIdle number of idle resources which are never closed because of the idle timeout.
+     * @param maxIdle maximum number of resources kept by the pool, whether idle or borrowed from it.
+     * @param idleTimeoutMillis idle time after which resources above the minimum are closed, zero disables it.
+     * @param lifecycle callbacks to check and close resources.
+     */
+    public ResourcePool(final String name, final int minIdle, final int maxIdle, final long idleTimeoutMillis, final Lifecycle<T> lifecycle) {
+        if (lifecycle == null) {
+            throw new NarayanaHelperException("Lifecycle must not be null.");
+        }
+        this.name = name;
+        this.minIdle = minIdle;
+        this.maxIdle = maxIdle;
+        this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeoutMillis);
+        this.lifecycle = lifecycle;
+    }
+
+    /**
+     * @return an idle resource, preferably the one the calling thread returned last, or {@code null} if no resource
+     *   is idle.
+     */
+    public T borrow() {
+        return bag.tryBorrow();
+    }
+
+    /**
+     * Borrow an idle resource, waiting for another thread to return one if none is idle.
+     *
+     * @param timeoutMillis maximum time to wait.
+     * @return the borrowed resource or {@code null} if none became idle in time.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public T borrow(final long timeoutMillis) throws InterruptedException {
+        return bag.borrow(timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Return a resource to the pool. Resources not borrowed from the pool are added if the pool has room. The
+     * resource is closed if the pool is closed or full or if the resource is not reusable any more.
+     *
+     * @param resource resource to return.
+     */
+    public void release(final T resource) {
+        boolean known = bag.contains(resource);
+        if (closed || !lifecycle.isReusable(resource) || (!known && bag.size() >= maxIdle)) {
+            destroy(resource);
+            return;
+        }
+        if (known) {
+            bag.requite(resource);
+        } else {
+            bag.add(resource);
+        }
+        // the pool may have been closed concurrently, make sure nothing stays behind
+        if (closed) {
+            evict(r -> true);
+        }
+    }
+
+    /**
+     * Close a resource and remove it from the pool if it was borrowed from it.
+     *
+     * @param resource resource to close.
+     */
+    public void destroy(final T resource) {
+        bag.remove(resource);
+        try {
+            lifecycle.destroy(resource);
+        } catch (JMSException | RuntimeException e) {
+            LOGGER.warn(String.format("Failed to close pooled resource %s of pool %s.", resource, name), e);
+        }
+    }
+
+    /**
+     * Close all idle resources matching the predicate.
+     *
+     * @param predicate predicate selecting the resources to close.
+     * @return number of closed resources.
+     */
+    public int evict(final Predicate<? super T> predicate) {
+        int result = 0;
+        for (ConcurrentBag.Entry<T> entry : bag.entries()) {
+            if (entry.isIdle() && predicate.test(entry.getItem()) && bag.reserve(entry)) {
+                destroy(entry.getItem());
+                result++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Close idle resources which failed validation or exceeded the idle timeout while the pool holds more than the
+     * configured minimum. The oldest resources are checked first.
+     *
+     * @return number of closed resources.
+     */
+    public int validate() {
+        int result = 0;
+        long now = System.nanoTime();
+        for (ConcurrentBag.Entry<T> entry : bag.entries()) {
+            if (!entry.isIdle() || !bag.reserve(entry)) {
+                continue;
+            }
+            // the reserved entry does not count as idle any more
+            boolean expired = idleTimeoutNanos > 0L && now - entry.getIdleSince() > idleTimeoutNanos && bag.getIdleCount() >= minIdle;
+            if (expired || !isValid(entry.getItem())) {
+                LOGGER.debug("Closing {} idle resource {} of pool {}.", expired ? "expired" : "invalid", entry.getItem(), name);
+                destroy(entry.getItem());
+                result++;
+            } else {
+                bag.unreserve(entry);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Close the pool and all idle resources. Resources returned afterwards are closed immediately.
+     */
+    public void close() {
+        closed = true;
+        evict(r -> true);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getIdleCount() {
+        return bag.getIdleCount();
+    }
+
+    /**
+     * @return number of resources kept by the pool, whether idle or borrowed from it.
+     */
+    public int getSize() {
+        return bag.size();
+    }
+
+    public int getWaitingThreadCount() {
+        return bag.getWaitingThreadCount();
+    }
+
+    public int getMinIdle() {
+        return minIdle;
+    }
+
+    public int getMaxIdle() {
+        return maxIdle;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    // ---- Private Helper Methods ---------------------------------------
+
+    private boolean isValid(final T resource) {
+        try {
+            return lifecycle.validate(resource);
+        } catch (RuntimeException e) {
+            LOGGER.debug("Validation of resource {} of pool {} failed.", resource, name, e);
+            return false;
+        }
+    }
+
+}
@@ -0,0 +1,141 @@
+package de.quoss.narayana.helper;
+
+import javax.jms.CompletionListener;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>
+ *   Reusable message instances of one physical session or context, one per message kind. For pooled sessions and
+ *   contexts the instances are kept with the physical resource and reused across borrows.
+ * </p>
+ * <p>
+ *   A cached message is cleared before it is handed out again. A message handed to an asynchronous send stays
+ *   reserved until its completion listener was called, asking for a message of that kind in the meantime yields
+ *   {@code null} and the caller caches a fresh instance. Like the session itself instances are meant for the thread
+ *   using the session, only the completion of asynchronous sends may happen on other threads.
+ * </p>
+ */
+final class ReusableMessages {
+
+    static final int TEXT = 0;
+
+    static final int BYTES = 1;
+
+    private final Slot[] slots = new Slot[2];
+
+    /**
+     * @param kind {@link #TEXT} or {@link #BYTES}.
+     * @return the cleared cached message of the given kind or {@code null} if there is none or it is still in flight.
+     */
+    Message reuse(final int kind) throws JMSException {
+        Slot slot = slots[kind];
+        if (slot == null || slot.inFlight.get() > 0) {
+            return null;
+        }
+        Message message = slot.message;
+        message.clearBody();
+        message.clearProperties();
+        message.setJMSCorrelationID(null);
+        message.setJMSType(null);
+        message.setJMSReplyTo(null);
+        return message;
+    }
+
+    /**
+     * @param kind {@link #TEXT} or {@link #BYTES}.
+     * @param message message to reuse from now on.
+     */
+    void cache(final int kind, final Message message) {
+        slots[kind] = new Slot(message);
+    }
+
+    /**
+     * Reserve a cached message for an asynchronous send.
+     *
+     * @param message the message to be sent.
+     * @param completionListener listener of the send.
+     * @return a listener releasing the message before calling the given one or the given listener if the message
+     *   is not cached.
+     */
+    CompletionListener track(final Message message, final CompletionListener completionListener) {
+        if (completionListener == null) {
+            // left to the provider to reject
+            return null;
+        }
+        for (Slot slot : slots) {
+            if (slot != null && slot.message == message) {
+                slot.inFlight.incrementAndGet();
+                return new ReleasingCompletionListener(slot, completionListener);
+            }
+        }
+        return completionListener;
+    }
+
+    /**
+     * Release the reservation of an asynchronous send which failed synchronously, the provider does not call its
+     * listener in that case.
+     *
+     * @param tracking the listener returned by {@link #track(Message, CompletionListener)}.
+     */
+    void cancel(final CompletionListener tracking) {
+        if (tracking instanceof ReleasingCompletionListener) {
+            ((ReleasingCompletionListener) tracking).release();
+        }
+    }
+
+    private static final class Slot {
+
+        private final Message message;
+
+        private final AtomicInteger inFlight = new AtomicInteger();
+
+        private Slot(final Message message) {
+            this.message = message;
+        }
+
+    }
+
+    private static final class ReleasingCompletionListener implements CompletionListener {
+
+        private final Slot slot;
+
+        private final CompletionListener delegate;
+
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private ReleasingCompletionListener(final Slot slot, final CompletionListener delegate) {
+            this.slot = slot;
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void onCompletion(final Message message) {
+            try {
+                delegate.onCompletion(message);
+            } finally {
+                // the listener may still read the message, release it afterwards
+                release();
+            }
+        }
+
+        @Override
+        public void onException(final Message message, final Exception exception) {
+            try {
+                delegate.onException(message, exception);
+            } finally {
+                release();
+            }
+        }
+
+        private void release() {
+            if (released.compareAndSet(false, true)) {
+                slot.inFlight.decrementAndGet();
+            }
+        }
+
+    }
+
+}
@@ -6,9 +6,10 @@ import org.slf4j.LoggerFactory;
 import javax.jms.JMSException;
 import javax.jms.Session;
 import javax.transaction.Synchronization;
+import java.util.function.BooleanSupplier;
 
 /**
- * Synchronization to close JMS session at the end of the transaction.
+ * Synchronization to close JMS session at the end of the transaction or to return it to its pool.
  */
 public class SessionClosingSynchronization implements Synchronization {
 
@@ -16,11 +17,35 @@ public class SessionClosingSynchronization implements Synchronization {
 
     private final Session session;
 
+    private final ResourcePool<Session> pool;
+
+    private final BooleanSupplier reset;
+
     /**
      * @param session session to be closed.
      */
     public SessionClosingSynchronization(Session session) {
+        this(session, null);
+    }
+
+    /**
+     * @param session session to be closed or returned.
+     * @param pool pool the session is returned to, {@code null} to close the session.
+     */
+    public SessionClosingSynchronization(final Session session, final ResourcePool<Session> pool) {
+        this(session, pool, null);
+    }
+
+    /**
+     * @param session session to be closed or returned.
+     * @param pool pool the session is returned to, {@code null} to close the session.
+     * @param reset callback cleaning up the session before it is returned, reporting whether it may be reused,
+     *   may be {@code null}.
+     */
+    SessionClosingSynchronization(final Session session, final ResourcePool<Session> pool, final BooleanSupplier reset) {
         this.session = session;
+        this.pool = pool;
+        this.reset = reset;
     }
 
     @Override
@@ -29,12 +54,21 @@ public class SessionClosingSynchronization implements Synchronization {
     }
 
     /**
-     * Close the session no matter what the status of the transaction is.
+     * Close or return the session no matter what the status of the transaction is.
      *
      * @param status the status of the completed transaction
      */
     @Override
     public void afterCompletion(int status) {
+        if (pool != null) {
+            if (reset == null || reset.getAsBoolean()) {
+                LOGGER.trace("Returning session {} to pool {}", session, pool.getName());
+                pool.release(session);
+            } else {
+                pool.destroy(session);
+            }
+            return;
+        }
         LOGGER.trace("Closing session {}", session);
 
         try {
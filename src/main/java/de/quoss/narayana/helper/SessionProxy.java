@@ -4,6 +4,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.jms.BytesMessage;
+import javax.jms.CompletionListener;
 import javax.jms.Destination;
 import javax.jms.JMSException;
 import javax.jms.MapMessage;
@@ -28,6 +29,13 @@ import javax.jms.XASession;
 import javax.jms.XATopicSession;
 import javax.transaction.xa.XAResource;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class SessionProxy implements XAQueueSession, XATopicSession {
 
@@ -37,14 +45,54 @@ public class SessionProxy implements XAQueueSession, XATopicSession {
 
     private final TransactionHelper transactionHelper;
 
+    private final ResourcePool<Session> pool;
+
+    /** Consumers, producers and browsers of a pooled session, closed before the session is returned. */
+    private final Set<AutoCloseable> children;
+
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    private ReusableMessages reusableMessages;
+
+    private BytesMessageBuffers bytesMessageBuffers;
+
+    private MessageCompressor messageCompressor;
+
+    private ProducerProfiles producerProfiles;
+
     public SessionProxy(final Session session, final TransactionHelper transactionHelper) {
-        final String methodName = "SessionProxy(Session, TransactionHelper)";
-        LOGGER.trace("{} start [session={},transactionHelper={}]", methodName, session, transactionHelper);
+        this(session, transactionHelper, null);
+    }
+
+    /**
+     * @param session physical session.
+     * @param transactionHelper transaction helper.
+     * @param pool pool the session is returned to on close, {@code null} to close the session.
+     */
+    public SessionProxy(final Session session, final TransactionHelper transactionHelper, final ResourcePool<Session> pool) {
+        this(session, transactionHelper, pool, null);
+    }
+
+    /**
+     * @param session physical session.
+     * @param transactionHelper transaction helper.
+     * @param pool pool the session is returned to on close, {@code null} to close the session.
+     * @param reusableMessages reusable messages kept with the pooled physical session, {@code null} to keep them
+     *   with this proxy.
+     */
+    SessionProxy(final Session session, final TransactionHelper transactionHelper, final ResourcePool<Session> pool, final ReusableMessages reusableMessages) {
+        final String methodName = "SessionProxy(Session, TransactionHelper, ResourcePool, ReusableMessages)";
+        if (LOGGER.isTraceEnabled()) {
+            LOGGER.trace("{} start [session={},transactionHelper={},pool={}]", methodName, session, transactionHelper, pool);
+        }
         if (session == null) {
             throw new NarayanaHelperException("Session must not be null.");
         }
         this.session = session;
         this.transactionHelper = transactionHelper;
+        this.pool = pool;
+        this.children = pool == null ? null : Collections.newSetFromMap(new IdentityHashMap<>());
+        this.reusableMessages = reusableMessages;
         LOGGER.trace("{} end", methodName);
     }
 
@@ -63,6 +111,36 @@ public class SessionProxy implements XAQueueSession, XATopicSession {
         return session.createBytesMessage();
     }
 
+    /**
+     * Create a bytes message with the remaining bytes of the buffer as body, the buffer position is moved to its
+     * limit. The backing array of a heap buffer is handed to the provider without copying it first, direct buffers
+     * are copied through a small reused scratch array.
+     *
+     * @param body the body, may be a direct buffer.
+     * @return the message.
+     * @throws JMSException if the message cannot be created or written.
+     */
+    public BytesMessage createBytesMessage(final ByteBuffer body) throws JMSException {
+        BytesMessage result = session.createBytesMessage();
+        getBytesMessageBuffers().write(result, body);
+        return result;
+    }
+
+    /**
+     * Read the remaining body of a received bytes message into the buffer, starting at its position, e.g. into a
+     * pooled direct buffer. A heap buffer starting at index 0 of its backing array is filled by the provider
+     * directly, other buffers through a small reused scratch array.
+     *
+     * @param message the message.
+     * @param target the buffer, must have room for the body.
+     * @return number of bytes read.
+     * @throws java.nio.BufferOverflowException if the body does not fit, nothing is read in that case.
+     * @throws JMSException if the message cannot be read.
+     */
+    public int readBody(final BytesMessage message, final ByteBuffer target) throws JMSException {
+        return getBytesMessageBuffers().read(message, target);
+    }
+
     @Override
     public MapMessage createMapMessage() throws JMSException {
         return session.createMapMessage();
@@ -83,6 +161,33 @@ public class SessionProxy implements XAQueueSession, XATopicSession {
         return session.createObjectMessage(object);
     }
 
+    /**
+     * Create a bytes message carrying the object encoded by the first codec of the default
+     * {@link MessageCodecRegistry} able to encode it, a faster and more compact alternative to
+     * {@link #createObjectMessage(Serializable)}. Consumers decode it with {@link MessageCodecRegistry#decode(Message)}.
+     *
+     * @param object the object.
+     * @return the message.
+     * @throws JMSException if the message cannot be created or the object cannot be encoded.
+     */
+    public BytesMessage createEncodedMessage(final Object object) throws JMSException {
+        return createEncodedMessage(object, MessageCodecRegistry.getDefault().getCodec(object));
+    }
+
+    /**
+     * Create a bytes message carrying the object encoded by the given codec, see {@link #createEncodedMessage(Object)}.
+     *
+     * @param object the object.
+     * @param codec the codec, must be registered on the consumer side.
+     * @return the message.
+     * @throws JMSException if the message cannot be created or the object cannot be encoded.
+     */
+    public BytesMessage createEncodedMessage(final Object object, final MessageCodec codec) throws JMSException {
+        BytesMessage result = session.createBytesMessage();
+        MessageCodecRegistry.encode(result, object, codec);
+        return result;
+    }
+
     @Override
     public StreamMessage createStreamMessage() throws JMSException {
         return session.createStreamMessage();
@@ -98,6 +203,36 @@ public class SessionProxy implements XAQueueSession, XATopicSession {
         return session.createTextMessage(text);
     }
 
+    /**
+     * <p>
+     *   Get the reusable text message of this session, cleared of body, properties and the correlation id, type and
+     *   reply-to headers.
+     * </p>
+     * <p>
+     *   Opt-in replacement for {@link #createTextMessage()} for high-rate producers: the same instance is returned
+     *   until it is handed to an asynchronous send of a producer of this session, in that case a new instance is
+     *   created and reused from then on. The message must not be used anymore once the next reusable text message
+     *   is requested. A pooled session keeps the instance for its next borrower, it must not be used after closing
+     *   this session. Not all providers allow clearing and resending a message, check before using this.
+     * </p>
+     *
+     * @return the reusable text message.
+     * @throws JMSException if the message cannot be created or cleared.
+     */
+    public TextMessage getReusableTextMessage() throws JMSException {
+        return (TextMessage) getReusableMessage(ReusableMessages.TEXT);
+    }
+
+    /**
+     * Get the reusable bytes message of this session, see {@link #getReusableTextMessage()}.
+     *
+     * @return the reusable bytes message.
+     * @throws JMSException if the message cannot be created or cleared.
+     */
+    public BytesMessage getReusableBytesMessage() throws JMSException {
+        return (BytesMessage) getReusableMessage(ReusableMessages.BYTES);
+    }
+
     @Override
     public boolean getTransacted() throws JMSException {
         return session.getTransacted();
@@ -126,11 +261,23 @@ public class SessionProxy implements XAQueueSession, XATopicSession {
             // let's see who closes the session
             Exception e = new Exception("trace");
             LOGGER.trace("Trace exception:", e);
+            LOGGER.trace("{} [session.class.name={}]", methodName, session.getClass().getName());
         }
-        LOGGER.debug("{} [session.class.name={}]", methodName, session.getClass().getName());
-        if (transactionHelper.isTransactionAvailable()) {
+        if (!closed.compareAndSet(false, true)) {
+            // the session may already be in use by the next borrower
+            LOGGER.trace("{} end [already closed]", methodName);
+            return;
+        }
+        // sessions of the non-xa pool were never enlisted
+        if (session instanceof XASession && transactionHelper.isTransactionAvailable()) {
             transactionHelper.deregisterXAResource(((XASession) session).getXAResource());
-            transactionHelper.registerSynchronization(new SessionClosingSynchronization(session));
+            transactionHelper.registerSynchronization(new SessionClosingSynchronization(session, pool, pool == null ? null : this::resetForPool));
+        } else if (pool != null) {
+            if (resetForPool()) {
+                pool.release(session);
+            } else {
+                pool.destroy(session);
+            }
         } else {
             session.close();
         }
@@ -159,32 +306,45 @@ public class SessionProxy implements XAQueueSession, XATopicSession {
 
     @Override
     public MessageProducer createProducer(final Destination destination) throws JMSException {
-        return session.createProducer(destination);
+        MessageProducer producer = session.createProducer(destination);
+        if (producerProfiles != null) {
+            try {
+                ProducerProfile profile = producerProfiles.getProfile(destination);
+                if (profile != null) {
+                    profile.apply(producer);
+                }
+            } catch (JMSException | RuntimeException e) {
+                producer.close();
+                throw e;
+            }
+        }
+        // an anonymous producer applies the profile of the destination of every send
+        return track(new MessageProducerProxy(producer, transactionHelper, this, destination == null));
     }
 
     @Override
     public MessageConsumer createConsumer(final Destination destination) throws JMSException {
-        return session.createConsumer(destination);
+        return track(new MessageConsumerProxy(session.createConsumer(destination), transactionHelper, this));
     }
 
     @Override
     public MessageConsumer createConsumer(final Destination destination, final String messageSelector) throws JMSException {
-        return session.createConsumer(destination, messageSelector);
+        return track(new MessageConsumerProxy(session.createConsumer(destination, messageSelector), transactionHelper, this));
     }
 
     @Override
     public MessageConsumer createConsumer(final Destination destination, final String messageSelector, final boolean noLocal) throws JMSException {
-        return session.createConsumer(destination, messageSelector, noLocal);
+        return track(new MessageConsumerProxy(session.createConsumer(destination, messageSelector, noLocal), transactionHelper, this));
     }
 
     @Override
     public MessageConsumer createSharedConsumer(final Topic topic, final String s) throws JMSException {
-        return session.createSharedConsumer(topic, s);
+        return track(new MessageConsumerProxy(session.createSharedConsumer(topic, s), transactionHelper, this));
     }
 
     @Override
     public MessageConsumer createSharedConsumer(final Topic topic, final String s, final String s1) throws JMSException {
-        return session.createSharedConsumer(topic, s, s1);
+        return track(new MessageConsumerProxy(session.createSharedConsumer(topic, s, s1), transactionHelper, this));
     }
 
     @Override
@@ -199,46 +359,48 @@ public class SessionProxy implements XAQueueSession, XATopicSession {
 
     @Override
     public TopicSubscriber createDurableSubscriber(final Topic topic, final String name) throws JMSException {
-        return session.createDurableSubscriber(topic, name);
+        return track(new MessageConsumerProxy(session.createDurableSubscriber(topic, name), transactionHelper, this));
     }
 
     @Override
     public TopicSubscriber createDurableSubscriber(final Topic topic, final String name, final String messageSelector, final boolean noLocal) throws JMSException {
         final String methodName = "createDurableSubscriber(Topic, String, String, boolean)";
-        LOGGER.trace("{} start [topic={},name={},messageSelector={},noLocal={}]", methodName, topic, name, messageSelector, noLocal);
-        TopicSubscriber result = session.createDurableSubscriber(topic, name, messageSelector, noLocal);
+        if (LOGGER.isTraceEnabled()) {
+            LOGGER.trace("{} start [topic={},name={},messageSelector={},noLocal={}]", methodName, topic, name, messageSelector, noLocal);
+        }
+        TopicSubscriber result = track(new MessageConsumerProxy(session.createDurableSubscriber(topic, name, messageSelector, noLocal), transactionHelper, this));
         LOGGER.trace("{} end [result={}]", methodName, result);
         return result;
     }
 
     @Override
     public MessageConsumer createDurableConsumer(final Topic topic, final String s) throws JMSException {
-        return session.createDurableConsumer(topic, s);
+        return track(new MessageConsumerProxy(session.createDurableConsumer(topic, s), transactionHelper, this));
     }
 
     @Override
     public MessageConsumer createDurableConsumer(final Topic topic, final String s, final String s1, final boolean b) throws JMSException {
-        return session.createDurableConsumer(topic, s, s1, b);
+        return track(new MessageConsumerProxy(session.createDurableConsumer(topic, s, s1, b), transactionHelper, this));
     }
 
     @Override
     public MessageConsumer createSharedDurableConsumer(final Topic topic, final String s) throws JMSException {
-        return session.createSharedDurableConsumer(topic, s);
+        return track(new MessageConsumerProxy(session.createSharedDurableConsumer(topic, s), transactionHelper, this));
     }
 
     @Override
     public MessageConsumer createSharedDurableConsumer(final Topic topic, final String s, final String s1) throws JMSException {
-        return session.createSharedDurableConsumer(topic, s, s1);
+        return track(new MessageConsumerProxy(session.createSharedDurableConsumer(topic, s, s1), transactionHelper, this));
     }
 
     @Override
     public QueueBrowser createBrowser(final Queue queue) throws JMSException {
-        return session.createBrowser(queue);
+        return track(session.createBrowser(queue));
     }
 
     @Override
     public QueueBrowser createBrowser(final Queue queue, final String messageSelector) throws JMSException {
-        return session.createBrowser(queue, messageSelector);
+        return track(session.createBrowser(queue, messageSelector));
     }
 
     @Override
@@ -273,4 +435,134 @@ public class SessionProxy implements XAQueueSession, XATopicSession {
             throw new NarayanaHelperException("Session is not of type XATopicSession.");
         }
     }
+    // ---- Package Private Methods ---------------------------------------
+
+    /**
+     * @param messageCompressor compressor applied to messages sent by the producers of this session, {@code null}
+     *   to send them as they are.
+     */
+    void setMessageCompressor(final MessageCompressor messageCompressor) {
+        this.messageCompressor = messageCompressor;
+    }
+
+    /**
+     * @param producerProfiles profiles applied to the producers created from now on, {@code null} for none.
+     *   Producers without a destination are left as they are.
+     */
+    void setProducerProfiles(final ProducerProfiles producerProfiles) {
+        this.producerProfiles = producerProfiles;
+    }
+
+    /**
+     * @return profile of the destination, {@code null} if there is none.
+     */
+    ProducerProfile getProducerProfile(final Destination destination) throws JMSException {
+        return producerProfiles == null ? null : producerProfiles.getProfile(destination);
+    }
+
+    /**
+     * Fail fast before sending with an enlisted session in a doomed or completing transaction.
+     */
+    void checkTransaction() throws JMSException {
+        if (session instanceof XASession) {
+            transactionHelper.isTransactionUsable();
+        }
+    }
+
+    void compress(final Message message) throws JMSException {
+        if (messageCompressor != null) {
+            messageCompressor.compress(message);
+        }
+    }
+
+    /**
+     * @return the listener to pass on for an asynchronous send of the given message, reserving the message if it is
+     *   a reusable one.
+     */
+    CompletionListener trackAsyncSend(final Message message, final CompletionListener completionListener) {
+        return reusableMessages == null ? completionListener : reusableMessages.track(message, completionListener);
+    }
+
+    /**
+     * Release the message reserved for an asynchronous send which failed synchronously.
+     */
+    void cancelAsyncSend(final CompletionListener tracking) {
+        if (reusableMessages != null) {
+            reusableMessages.cancel(tracking);
+        }
+    }
+
+    /**
+     * Stop tracking a closed consumer, producer or browser.
+     */
+    void untrack(final AutoCloseable child) {
+        if (children != null) {
+            synchronized (children) {
+                children.remove(child);
+            }
+        }
+    }
+
+    // ---- Private Helper Methods ---------------------------------------
+
+    private <T extends AutoCloseable> T track(final T child) {
+        if (children != null) {
+            synchronized (children) {
+                children.add(child);
+            }
+        }
+        return child;
+    }
+
+    /**
+     * Close the consumers, producers and browsers left open by the borrower and clear the session's listener, so an
+     * idle session neither holds prefetched messages nor hands them to the listener of the previous borrower.
+     *
+     * @return whether the session may go back to the pool.
+     */
+    private boolean resetForPool() {
+        List<AutoCloseable> open;
+        synchronized (children) {
+            open = new ArrayList<>(children);
+            children.clear();
+        }
+        boolean result = true;
+        for (AutoCloseable child : open) {
+            try {
+                child.close();
+            } catch (Exception e) {
+                LOGGER.debug("Failed to close {} of pooled session {}.", child, session, e);
+                result = false;
+            }
+        }
+        try {
+            if (session.getMessageListener() != null) {
+                session.setMessageListener(null);
+            }
+        } catch (JMSException | RuntimeException e) {
+            LOGGER.debug("Failed to clear message listener of pooled session {}.", session, e);
+            result = false;
+        }
+        return result;
+    }
+
+    private BytesMessageBuffers getBytesMessageBuffers() {
+        if (bytesMessageBuffers == null) {
+            bytesMessageBuffers = new BytesMessageBuffers();
+        }
+        return bytesMessageBuffers;
+    }
+
+    private Message getReusableMessage(final int kind) throws JMSException {
+        if (reusableMessages == null) {
+            reusableMessages = new ReusableMessages();
+        }
+        Message result = reusableMessages.reuse(kind);
+        if (result == null) {
+            result = kind == ReusableMessages.TEXT ? session.createTextMessage() : session.createBytesMessage();
+            reusableMessages.cache(kind, result);
+        }
+        return result;
+    }
+
 }
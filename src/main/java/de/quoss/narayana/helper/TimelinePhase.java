@@ -0,0 +1,39 @@
+package de.quoss.narayana.helper;
+
+/**
+ * Helper-level phases of a transaction recorded by the {@link TransactionTimelineRecorder}.
+ */
+public enum TimelinePhase {
+
+    /** First helper activity seen in the transaction. */
+    BEGIN,
+
+    SESSION_CREATE_START,
+
+    SESSION_CREATE_END,
+
+    CONTEXT_CREATE_START,
+
+    CONTEXT_CREATE_END,
+
+    ENLIST_START,
+
+    ENLIST_END,
+
+    SEND_START,
+
+    SEND_END,
+
+    DELIST_START,
+
+    DELIST_END,
+
+    BEFORE_COMPLETION,
+
+    AFTER_COMPLETION,
+
+    DEFERRED_CLOSE_START,
+
+    DEFERRED_CLOSE_END
+
+}
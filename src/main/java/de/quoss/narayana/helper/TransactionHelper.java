@@ -1,7 +1,9 @@
 package de.quoss.narayana.helper;
 
 import javax.jms.JMSException;
+import javax.jms.TransactionRolledBackException;
 import javax.transaction.Synchronization;
+import javax.transaction.Transaction;
 import javax.transaction.xa.XAResource;
 
 /**
@@ -17,6 +19,19 @@ public interface TransactionHelper {
      */
     boolean isTransactionAvailable() throws JMSException;
 
+    /**
+     * Check if new work may be done in the current transaction, before sessions or contexts are created, enlisted or
+     * used for sending. If error occurs wrap an original exception with {@link JMSException}.
+     *
+     * @return whether a transaction is active, {@code false} if there is none.
+     * @throws TransactionRolledBackException if the transaction is marked for rollback or being rolled back.
+     * @throws javax.jms.IllegalStateException if the transaction is completing and cannot take new resources.
+     * @throws JMSException if transaction service has failed in unexpected way to obtain transaction status
+     */
+    default boolean isTransactionUsable() throws JMSException {
+        return isTransactionAvailable();
+    }
+
     /**
      * Register synchronization with a current transaction. If error occurs wrap an original exception with
      * {@link JMSException}.
@@ -50,4 +65,90 @@ public interface TransactionHelper {
      */
     void deregisterXAResource(XAResource xaResource) throws JMSException;
 
+    /**
+     * Get a key identifying the current transaction, equal for every call within the same transaction. If error
+     * occurs wrap an original exception with {@link JMSException}.
+     *
+     * @return the key, {@code null} if there is no transaction or keys are not supported, which is the default.
+     * @throws JMSException if transaction service has failed in unexpected way to obtain the transaction
+     */
+    default Object getTransactionKey() throws JMSException {
+        return null;
+    }
+
+    /**
+     * Get the time left until the current transaction times out. If error occurs wrap an original exception with
+     * {@link JMSException}.
+     *
+     * @return the remaining milliseconds, {@code 0} if the deadline has passed or the transaction is already doomed
+     *   and {@code -1} if there is no transaction, no deadline or it is unknown, which is the default.
+     * @throws JMSException if transaction service has failed in unexpected way to obtain transaction status
+     */
+    default long getRemainingTimeMillis() throws JMSException {
+        return -1L;
+    }
+
+    /**
+     * Begin a new transaction on the current thread, e.g. for a delivery of an {@link XAServerSessionPool}. If error
+     * occurs wrap an original exception with {@link JMSException}. Not supported by default.
+     *
+     * @throws JMSException if the transaction cannot be begun.
+     */
+    default void begin() throws JMSException {
+        throw new JMSException(String.format("Transaction demarcation is not supported by %s.", getClass().getName()));
+    }
+
+    /**
+     * Commit the transaction of the current thread. If error occurs wrap an original exception with
+     * {@link JMSException}. Not supported by default.
+     *
+     * @throws TransactionRolledBackException if the transaction was rolled back instead.
+     * @throws JMSException if the transaction cannot be committed.
+     */
+    default void commit() throws JMSException {
+        throw new JMSException(String.format("Transaction demarcation is not supported by %s.", getClass().getName()));
+    }
+
+    /**
+     * Roll back the transaction of the current thread. If error occurs wrap an original exception with
+     * {@link JMSException}. Not supported by default.
+     *
+     * @throws JMSException if the transaction cannot be rolled back.
+     */
+    default void rollback() throws JMSException {
+        throw new JMSException(String.format("Transaction demarcation is not supported by %s.", getClass().getName()));
+    }
+
+    /**
+     * Suspend the transaction of the current thread, e.g. to do work in a separate transaction. If error occurs wrap an
+     * original exception with {@link JMSException}. Not supported by default.
+     *
+     * @return the suspended transaction, {@code null} if there was none.
+     * @throws JMSException if the transaction cannot be suspended.
+     */
+    default Transaction suspend() throws JMSException {
+        throw new JMSException(String.format("Transaction demarcation is not supported by %s.", getClass().getName()));
+    }
+
+    /**
+     * Resume a transaction suspended by {@link #suspend()} on the current thread. If error occurs wrap an original
+     * exception with {@link JMSException}. Not supported by default.
+     *
+     * @param transaction the transaction.
+     * @throws JMSException if the transaction cannot be resumed.
+     */
+    default void resume(Transaction transaction) throws JMSException {
+        throw new JMSException(String.format("Transaction demarcation is not supported by %s.", getClass().getName()));
+    }
+
+    /**
+     * Record a helper-level phase of the current transaction, e.g. for a {@link TransactionTimelineRecorder}. Does
+     * nothing by default and must never fail.
+     *
+     * @param phase the phase.
+     */
+    default void recordPhase(TimelinePhase phase) {
+        // Nothing to do
+    }
+
 }
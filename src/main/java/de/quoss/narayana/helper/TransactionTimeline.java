@@ -0,0 +1,187 @@
+package de.quoss.narayana.helper;
+
+import javax.transaction.Status;
+import javax.transaction.Transaction;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ *   Timeline of the helper-level phases of one transaction.
+ * </p>
+ * <p>
+ *   Instances are preallocated and recycled by the {@link TransactionTimelineRecorder}, a timeline handed to a
+ *   slow-transaction callback is only valid during the callback. Events are kept in a fixed-size ring, if a
+ *   transaction has more events than fit, the oldest events are overwritten and counted as dropped.
+ * </p>
+ */
+public class TransactionTimeline {
+
+    private final long[] nanos;
+
+    private final TimelinePhase[] phases;
+
+    private Transaction transaction;
+
+    private String transactionName;
+
+    private long startNanos;
+
+    private long endNanos;
+
+    private int count;
+
+    private int status;
+
+    private int pending;
+
+    private volatile boolean active;
+
+    TransactionTimeline(final int capacity) {
+        this.nanos = new long[capacity];
+        this.phases = new TimelinePhase[capacity];
+    }
+
+    /**
+     * @return number of events available through {@link #getPhase(int)} and {@link #getOffsetNanos(int)}.
+     */
+    public synchronized int getEventCount() {
+        return Math.min(count, phases.length);
+    }
+
+    /**
+     * @return number of events overwritten because the transaction had more events than the ring holds.
+     */
+    public synchronized int getDroppedEventCount() {
+        return Math.max(0, count - phases.length);
+    }
+
+    /**
+     * @param index index of the event, oldest first.
+     * @return phase of the event.
+     */
+    public synchronized TimelinePhase getPhase(final int index) {
+        return phases[slot(index)];
+    }
+
+    /**
+     * @param index index of the event, oldest first.
+     * @return nanoseconds between the start of the timeline and the event.
+     */
+    public synchronized long getOffsetNanos(final int index) {
+        return nanos[slot(index)] - startNanos;
+    }
+
+    public synchronized long getDurationNanos() {
+        return endNanos - startNanos;
+    }
+
+    /**
+     * @return the completion status of the transaction as defined by {@link Status}.
+     */
+    public synchronized int getStatus() {
+        return status;
+    }
+
+    public synchronized String getTransactionName() {
+        return transactionName;
+    }
+
+    /**
+     * @return the timeline as a single structured log line.
+     */
+    @Override
+    public synchronized String toString() {
+        StringBuilder builder = new StringBuilder(64 + 32 * getEventCount());
+        builder.append("TransactionTimeline [transaction=").append(transactionName)
+                .append(",status=").append(status)
+                .append(",durationMicros=").append(TimeUnit.NANOSECONDS.toMicros(endNanos - startNanos))
+                .append(",dropped=").append(getDroppedEventCount())
+                .append(",events=");
+        for (int i = 0; i < getEventCount(); i++) {
+            if (i > 0) {
+                builder.append(' ');
+            }
+            builder.append(getPhase(i)).append('@').append(TimeUnit.NANOSECONDS.toMicros(getOffsetNanos(i)));
+        }
+        return builder.append(']').toString();
+    }
+
+    // ---- Package Private Methods ---------------------------------------
+
+    /**
+     * @return whether the timeline was free and now belongs to the given transaction.
+     */
+    synchronized boolean start(final Transaction transaction, final long now) {
+        if (active) {
+            return false;
+        }
+        this.active = true;
+        this.transaction = transaction;
+        this.transactionName = null;
+        this.startNanos = now;
+        this.endNanos = now;
+        this.count = 0;
+        this.status = Status.STATUS_UNKNOWN;
+        // the completion synchronization of the recorder
+        this.pending = 1;
+        record(TimelinePhase.BEGIN, now);
+        return true;
+    }
+
+    synchronized boolean belongsTo(final Transaction transaction) {
+        // a resumed transaction or one looked up on another thread may be another instance
+        return active && (this.transaction == transaction || transaction.equals(this.transaction));
+    }
+
+    /**
+     * @return whether the timeline belongs to a transaction, without locking.
+     */
+    boolean isActive() {
+        return active;
+    }
+
+    synchronized Transaction getTransaction() {
+        return transaction;
+    }
+
+    synchronized void record(final TimelinePhase phase, final long now) {
+        if (!active) {
+            return;
+        }
+        int index = count % phases.length;
+        phases[index] = phase;
+        nanos[index] = now;
+        endNanos = now;
+        count++;
+    }
+
+    synchronized void addPending() {
+        pending++;
+    }
+
+    /**
+     * @return whether this was the last outstanding synchronization and the timeline is complete.
+     */
+    synchronized boolean completePending(final int completionStatus) {
+        if (completionStatus != Status.STATUS_UNKNOWN) {
+            status = completionStatus;
+        }
+        if (transactionName == null && transaction != null) {
+            transactionName = transaction.toString();
+        }
+        return --pending == 0;
+    }
+
+    synchronized void release() {
+        active = false;
+        transaction = null;
+    }
+
+    // ---- Private Helper Methods ---------------------------------------
+
+    private int slot(final int index) {
+        int first = count > phases.length ? count % phases.length : 0;
+        return (first + index) % phases.length;
+    }
+
+}
@@ -0,0 +1,246 @@
+package de.quoss.narayana.helper;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.transaction.RollbackException;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.SystemException;
+import javax.transaction.Transaction;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * <p>
+ *   Records the helper-level phases of transactions (session and context creation, enlistment, sends, delistment,
+ *   completion and the deferred closing in {@code afterCompletion}) with {@link System#nanoTime()} and reports the
+ *   timelines of transactions slower than a threshold.
+ * </p>
+ * <p>
+ *   Timelines live in a ring of preallocated {@link TransactionTimeline} instances, recording an event does not
+ *   allocate. A timeline is complete once the transaction and all synchronizations registered through the
+ *   {@link NarayanaTransactionHelper} have completed. Slow timelines are logged as one structured line at WARN or
+ *   handed to a callback. Transactions beyond the capacity of the ring are not recorded. A transaction keeps its
+ *   timeline when it is suspended and resumed or touched from another thread.
+ * </p>
+ */
+public class TransactionTimelineRecorder {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TransactionTimelineRecorder.class);
+
+    private static final int DEFAULT_CONCURRENT_TRANSACTIONS = 256;
+
+    private static final int DEFAULT_EVENTS_PER_TRANSACTION = 64;
+
+    private final TransactionTimeline[] ring;
+
+    private final AtomicInteger cursor = new AtomicInteger();
+
+    private final ThreadLocal<TransactionTimeline> current = new ThreadLocal<>();
+
+    /** Timelines by transaction, for transactions resumed on or touched from another thread. */
+    private final Map<Transaction, TransactionTimeline> timelines = new ConcurrentHashMap<>();
+
+    private final AtomicInteger activeCount = new AtomicInteger();
+
+    private final long thresholdNanos;
+
+    private final Consumer<TransactionTimeline> slowTransactionCallback;
+
+    /**
+     * @param thresholdMillis minimum duration of transactions which are logged.
+     */
+    public TransactionTimelineRecorder(final long thresholdMillis) {
+        this(thresholdMillis, DEFAULT_CONCURRENT_TRANSACTIONS, DEFAULT_EVENTS_PER_TRANSACTION, null);
+    }
+
+    /**
+     * @param thresholdMillis minimum duration of transactions which are reported.
+     * @param concurrentTransactions number of preallocated timelines.
+     * @param eventsPerTransaction number of events kept per transaction.
+     * @param slowTransactionCallback callback for slow transactions, {@code null} to log them. The timeline is only
+     *   valid during the callback.
+     */
+    public TransactionTimelineRecorder(final long thresholdMillis, final int concurrentTransactions, final int eventsPerTransaction,
+            final Consumer<TransactionTimeline> slowTransactionCallback) {
+        if (concurrentTransactions <= 0 || eventsPerTransaction <= 0) {
+            throw new NarayanaHelperException("Timeline capacities must be positive.");
+        }
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+        this.slowTransactionCallback = slowTransactionCallback;
+        this.ring = new TransactionTimeline[concurrentTransactions];
+        for (int i = 0; i < concurrentTransactions; i++) {
+            ring[i] = new TransactionTimeline(eventsPerTransaction);
+        }
+    }
+
+    /**
+     * Record a phase of the given transaction.
+     *
+     * @param transaction the transaction.
+     * @param phase the phase.
+     */
+    public void record(final Transaction transaction, final TimelinePhase phase) {
+        TransactionTimeline timeline = getTimeline(transaction);
+        if (timeline != null) {
+            timeline.record(phase, System.nanoTime());
+        }
+    }
+
+    /**
+     * Wrap a synchronization so its {@code afterCompletion} is recorded as deferred close and the timeline is only
+     * completed after it.
+     *
+     * @param transaction the transaction the synchronization is registered with.
+     * @param synchronization the synchronization.
+     * @return the wrapped synchronization or the given one if the transaction is not recorded.
+     */
+    public Synchronization wrap(final Transaction transaction, final Synchronization synchronization) {
+        TransactionTimeline timeline = getTimeline(transaction);
+        if (timeline == null) {
+            return synchronization;
+        }
+        timeline.addPending();
+        return new TimedSynchronization(synchronization, timeline);
+    }
+
+    /**
+     * Undo {@link #wrap(Transaction, Synchronization)} for a synchronization which could not be registered.
+     *
+     * @param synchronization the synchronization returned by {@code wrap}.
+     */
+    public void registrationFailed(final Synchronization synchronization) {
+        if (synchronization instanceof TimedSynchronization) {
+            complete(((TimedSynchronization) synchronization).timeline, Status.STATUS_UNKNOWN);
+        }
+    }
+
+    // ---- Private Helper Methods ---------------------------------------
+
+    private TransactionTimeline getTimeline(final Transaction transaction) {
+        TransactionTimeline timeline = current.get();
+        if (timeline != null && timeline.belongsTo(transaction)) {
+            return timeline;
+        }
+        timeline = timelines.get(transaction);
+        if (timeline != null && timeline.belongsTo(transaction)) {
+            current.set(timeline);
+            return timeline;
+        }
+        timeline = start(transaction);
+        if (timeline != null) {
+            current.set(timeline);
+        }
+        return timeline;
+    }
+
+    private TransactionTimeline start(final Transaction transaction) {
+        long now = System.nanoTime();
+        for (int i = 0; i < ring.length && activeCount.get() < ring.length; i++) {
+            TransactionTimeline timeline = ring[(cursor.getAndIncrement() & Integer.MAX_VALUE) % ring.length];
+            if (timeline.isActive() || !timeline.start(transaction, now)) {
+                continue;
+            }
+            activeCount.incrementAndGet();
+            TransactionTimeline existing = timelines.putIfAbsent(transaction, timeline);
+            if (existing != null) {
+                // started concurrently by another thread
+                release(timeline);
+                return existing;
+            }
+            try {
+                transaction.registerSynchronization(new CompletionSynchronization(timeline));
+            } catch (RollbackException | IllegalStateException | SystemException e) {
+                // transaction is already completing, nothing worth recording
+                release(timeline);
+                return null;
+            }
+            return timeline;
+        }
+        // all timelines busy, the transaction is not recorded
+        return null;
+    }
+
+    private void release(final TransactionTimeline timeline) {
+        Transaction transaction = timeline.getTransaction();
+        if (transaction != null) {
+            timelines.remove(transaction, timeline);
+        }
+        timeline.release();
+        activeCount.decrementAndGet();
+    }
+
+    private void complete(final TransactionTimeline timeline, final int status) {
+        if (!timeline.completePending(status)) {
+            return;
+        }
+        try {
+            if (timeline.getDurationNanos() >= thresholdNanos) {
+                if (slowTransactionCallback != null) {
+                    slowTransactionCallback.accept(timeline);
+                } else {
+                    LOGGER.warn("Slow transaction: {}", timeline);
+                }
+            }
+        } catch (RuntimeException e) {
+            LOGGER.warn("Error reporting slow transaction.", e);
+        } finally {
+            release(timeline);
+        }
+    }
+
+    private final class CompletionSynchronization implements Synchronization {
+
+        private final TransactionTimeline timeline;
+
+        private CompletionSynchronization(final TransactionTimeline timeline) {
+            this.timeline = timeline;
+        }
+
+        @Override
+        public void beforeCompletion() {
+            timeline.record(TimelinePhase.BEFORE_COMPLETION, System.nanoTime());
+        }
+
+        @Override
+        public void afterCompletion(final int status) {
+            timeline.record(TimelinePhase.AFTER_COMPLETION, System.nanoTime());
+            complete(timeline, status);
+        }
+
+    }
+
+    private final class TimedSynchronization implements Synchronization {
+
+        private final Synchronization delegate;
+
+        private final TransactionTimeline timeline;
+
+        private TimedSynchronization(final Synchronization delegate, final TransactionTimeline timeline) {
+            this.delegate = delegate;
+            this.timeline = timeline;
+        }
+
+        @Override
+        public void beforeCompletion() {
+            delegate.beforeCompletion();
+        }
+
+        @Override
+        public void afterCompletion(final int status) {
+            timeline.record(TimelinePhase.DEFERRED_CLOSE_START, System.nanoTime());
+            try {
+                delegate.afterCompletion(status);
+            } finally {
+                timeline.record(TimelinePhase.DEFERRED_CLOSE_END, System.nanoTime());
+                complete(timeline, status);
+            }
+        }
+
+    }
+
+}
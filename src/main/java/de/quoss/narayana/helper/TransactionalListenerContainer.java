@@ -0,0 +1,298 @@
+package de.quoss.narayana.helper;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.jms.ConnectionFactory;
+import javax.jms.Destination;
+import javax.jms.JMSConsumer;
+import javax.jms.JMSContext;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageListener;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>
+ *   Runs polling consumers on a destination, each receiving one message per transaction and passing it to a handler.
+ * </p>
+ * <p>
+ *   Every poll begins a transaction through the {@link TransactionHelper}, receives on a context of the
+ *   {@link ConnectionFactoryProxy}, which enlists it, calls the handler and commits. A handler throwing a runtime
+ *   exception rolls the transaction back so the message is redelivered, the consumer pauses for the recovery interval
+ *   before its next poll like after any other failure. The number of consumers scales between the configured minimum
+ *   and maximum: a consumer finding a message already waiting while no other consumer is waiting in receive takes it
+ *   as a backlog and starts another consumer after a number of such consecutive polls, or at once if there are other
+ *   consumers and all of them are busy in the handler. A consumer above the minimum stops after a number of consecutive idle polls.
+ * </p>
+ * <p>
+ *   Consumers run on threads of the given thread factory, on Java 21 and later e.g. {@code Thread.ofVirtual().factory()}
+ *   for virtual threads. By default they run on daemon platform threads.
+ * </p>
+ */
+public class TransactionalListenerContainer implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TransactionalListenerContainer.class);
+
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+    private final ConnectionFactory connectionFactory;
+
+    private final TransactionHelper transactionHelper;
+
+    private final Destination destination;
+
+    private final MessageListener handler;
+
+    private final ListenerContainerConfiguration configuration;
+
+    private final ThreadFactory threadFactory;
+
+    private final Set<Thread> threads = ConcurrentHashMap.newKeySet();
+
+    private final AtomicInteger consumers = new AtomicInteger();
+
+    private final AtomicInteger receiving = new AtomicInteger();
+
+    private final AtomicInteger handling = new AtomicInteger();
+
+    private volatile boolean running;
+
+    public TransactionalListenerContainer(final ConnectionFactoryProxy connectionFactory, final TransactionHelper transactionHelper, final Destination destination,
+            final MessageListener handler, final ListenerContainerConfiguration configuration) {
+        this(connectionFactory, transactionHelper, destination, handler, configuration, r -> {
+            Thread thread = new Thread(r, "narayana-helper-listener-" + THREAD_COUNT.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * @param connectionFactory factory the consumers receive from, handing out enlisted contexts.
+     * @param transactionHelper transaction helper supporting transaction demarcation.
+     * @param destination destination to consume from.
+     * @param handler handler called with every received message within its transaction.
+     * @param configuration consumer count, polling and scaling settings.
+     * @param threadFactory factory of the consumer threads.
+     */
+    public TransactionalListenerContainer(final ConnectionFactoryProxy connectionFactory, final TransactionHelper transactionHelper, final Destination destination,
+            final MessageListener handler, final ListenerContainerConfiguration configuration, final ThreadFactory threadFactory) {
+        if (connectionFactory == null) {
+            throw new NarayanaHelperException("Connection factory must not be null.");
+        }
+        this.connectionFactory = connectionFactory;
+        if (transactionHelper == null) {
+            throw new NarayanaHelperException("Transaction helper must not be null.");
+        }
+        this.transactionHelper = transactionHelper;
+        if (destination == null) {
+            throw new NarayanaHelperException("Destination must not be null.");
+        }
+        this.destination = destination;
+        if (handler == null) {
+            throw new NarayanaHelperException("Handler must not be null.");
+        }
+        this.handler = handler;
+        if (configuration == null) {
+            throw new NarayanaHelperException("Configuration must not be null.");
+        }
+        if (configuration.getMinConsumers() > configuration.getMaxConsumers()) {
+            throw new NarayanaHelperException("Min consumers must not exceed max consumers.");
+        }
+        this.configuration = configuration;
+        if (threadFactory == null) {
+            throw new NarayanaHelperException("Thread factory must not be null.");
+        }
+        this.threadFactory = threadFactory;
+    }
+
+    /**
+     * Start the minimum number of consumers.
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        for (int i = 0; i < configuration.getMinConsumers(); i++) {
+            addConsumer();
+        }
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public int getConsumerCount() {
+        return consumers.get();
+    }
+
+    /**
+     * Stop all consumers, waiting for their current polls to complete.
+     */
+    @Override
+    public synchronized void close() {
+        running = false;
+        for (Thread thread : threads) {
+            try {
+                thread.join(configuration.getReceiveTimeoutMillis() * 2L);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (thread.isAlive()) {
+                LOGGER.warn("Consumer thread {} still running.", thread.getName());
+            }
+        }
+    }
+
+    // ---- Private Methods ----------------------------------
+
+    private void addConsumer() {
+        int count;
+        do {
+            count = consumers.get();
+            if (count >= configuration.getMaxConsumers()) {
+                return;
+            }
+        } while (!consumers.compareAndSet(count, count + 1));
+        try {
+            threadFactory.newThread(new ConsumerLoop()).start();
+        } catch (RuntimeException e) {
+            consumers.decrementAndGet();
+            LOGGER.warn("Failed to start consumer thread.", e);
+            return;
+        }
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Started consumer {} of {} on {}.", count + 1, configuration.getMaxConsumers(), destination);
+        }
+    }
+
+    private boolean retireConsumer() {
+        int count;
+        do {
+            count = consumers.get();
+            if (count <= configuration.getMinConsumers()) {
+                return false;
+            }
+        } while (!consumers.compareAndSet(count, count - 1));
+        LOGGER.debug("Stopped idle consumer on {}.", destination);
+        return true;
+    }
+
+    /**
+     * Receive and handle one message in a new transaction.
+     *
+     * @param loop the polling consumer.
+     * @return whether a message was received.
+     */
+    private boolean poll(final ConsumerLoop loop) throws JMSException {
+        transactionHelper.begin();
+        try {
+            Message message;
+            try (JMSContext context = connectionFactory.createContext();
+                 JMSConsumer consumer = context.createConsumer(destination, configuration.getMessageSelector())) {
+                receiving.incrementAndGet();
+                boolean waiting;
+                try {
+                    message = consumer.receiveNoWait();
+                    waiting = message != null;
+                    if (message == null) {
+                        message = consumer.receive(configuration.getReceiveTimeoutMillis());
+                    }
+                } finally {
+                    receiving.decrementAndGet();
+                }
+                loop.busyPolls = waiting ? loop.busyPolls + 1 : 0;
+                int others = consumers.get() - 1;
+                if (waiting && running && receiving.get() == 0
+                        && (loop.busyPolls >= configuration.getBusyPollsBeforeScaleUp() || others > 0 && handling.get() >= others)) {
+                    // nobody left waiting for the next message, the destination has a backlog
+                    loop.busyPolls = 0;
+                    addConsumer();
+                }
+                if (message != null) {
+                    handling.incrementAndGet();
+                    try {
+                        handler.onMessage(message);
+                    } catch (RuntimeException e) {
+                        throw new HandlerFailedException(e);
+                    } finally {
+                        handling.decrementAndGet();
+                    }
+                }
+            }
+            transactionHelper.commit();
+            return message != null;
+        } catch (JMSException | RuntimeException e) {
+            try {
+                transactionHelper.rollback();
+            } catch (JMSException | RuntimeException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+    }
+
+    private void pause() {
+        try {
+            Thread.sleep(configuration.getRecoveryIntervalMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // ---- Private Classes ----------------------------------
+
+    private final class ConsumerLoop implements Runnable {
+
+        /** Consecutive polls finding a message already waiting. */
+        private int busyPolls;
+
+        @Override
+        public void run() {
+            threads.add(Thread.currentThread());
+            int idlePolls = 0;
+            boolean retired = false;
+            try {
+                while (running && !Thread.currentThread().isInterrupted()) {
+                    try {
+                        idlePolls = poll(this) ? 0 : idlePolls + 1;
+                    } catch (HandlerFailedException e) {
+                        LOGGER.warn("Message handler failed, transaction rolled back.", e.getCause());
+                        idlePolls = 0;
+                        // a failing message is redelivered at once, do not spin on it
+                        pause();
+                    } catch (JMSException | RuntimeException e) {
+                        LOGGER.warn(String.format("Polling %s failed, transaction rolled back.", destination), e);
+                        pause();
+                    }
+                    if (idlePolls >= configuration.getIdlePollsBeforeRetire() && retireConsumer()) {
+                        retired = true;
+                        return;
+                    }
+                }
+            } finally {
+                if (!retired) {
+                    consumers.decrementAndGet();
+                }
+                threads.remove(Thread.currentThread());
+            }
+        }
+
+    }
+
+    private static final class HandlerFailedException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        private HandlerFailedException(final RuntimeException cause) {
+            super(cause);
+        }
+
+    }
+
+}
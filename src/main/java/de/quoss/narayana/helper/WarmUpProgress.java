@@ -0,0 +1,147 @@
+package de.quoss.narayana.helper;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * <p>
+ *   Progress of a pool warm-up started with {@link ConnectionFactoryProxy#warmUp()}.
+ * </p>
+ * <p>
+ *   The completion future is completed with this progress once every planned resource has been opened, or
+ *   exceptionally with a {@link NarayanaHelperException} once all attempts have finished and at least one of them
+ *   failed. A readiness probe can either wait on the future or poll {@link #isReady()}.
+ * </p>
+ */
+public class WarmUpProgress {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(WarmUpProgress.class);
+
+    private final int plannedConnections;
+
+    private final int plannedSessions;
+
+    private final int plannedContexts;
+
+    private final AtomicInteger openedConnections = new AtomicInteger();
+
+    private final AtomicInteger openedSessions = new AtomicInteger();
+
+    private final AtomicInteger openedContexts = new AtomicInteger();
+
+    private final AtomicInteger failures = new AtomicInteger();
+
+    private final CompletableFuture<WarmUpProgress> completion = new CompletableFuture<>();
+
+    private final Consumer<WarmUpProgress> progressCallback;
+
+    WarmUpProgress(final int plannedConnections, final int plannedSessions, final int plannedContexts, final Consumer<WarmUpProgress> progressCallback) {
+        this.plannedConnections = plannedConnections;
+        this.plannedSessions = plannedSessions;
+        this.plannedContexts = plannedContexts;
+        this.progressCallback = progressCallback;
+    }
+
+    public CompletableFuture<WarmUpProgress> getCompletion() {
+        return completion;
+    }
+
+    /**
+     * @return whether every planned resource has been opened.
+     */
+    public boolean isReady() {
+        return completion.isDone() && !completion.isCompletedExceptionally();
+    }
+
+    /**
+     * @return share of the planned resources opened so far, between 0.0 and 1.0.
+     */
+    public double getFraction() {
+        int planned = plannedConnections + plannedSessions + plannedContexts;
+        if (planned == 0) {
+            return 1.0d;
+        }
+        return (double) (openedConnections.get() + openedSessions.get() + openedContexts.get()) / planned;
+    }
+
+    public int getPlannedConnections() {
+        return plannedConnections;
+    }
+
+    public int getPlannedSessions() {
+        return plannedSessions;
+    }
+
+    public int getPlannedContexts() {
+        return plannedContexts;
+    }
+
+    public int getOpenedConnections() {
+        return openedConnections.get();
+    }
+
+    public int getOpenedSessions() {
+        return openedSessions.get();
+    }
+
+    public int getOpenedContexts() {
+        return openedContexts.get();
+    }
+
+    public int getFailures() {
+        return failures.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("WarmUpProgress [connections=%d/%d,sessions=%d/%d,contexts=%d/%d,failures=%d]", openedConnections.get(), plannedConnections,
+                openedSessions.get(), plannedSessions, openedContexts.get(), plannedContexts, failures.get());
+    }
+
+    // ---- Package Private Methods ---------------------------------------
+
+    void connectionOpened() {
+        openedConnections.incrementAndGet();
+        notifyProgress();
+    }
+
+    void sessionOpened() {
+        openedSessions.incrementAndGet();
+        notifyProgress();
+    }
+
+    void contextOpened() {
+        openedContexts.incrementAndGet();
+        notifyProgress();
+    }
+
+    void failed() {
+        failures.incrementAndGet();
+        notifyProgress();
+    }
+
+    void finish() {
+        if (failures.get() == 0) {
+            completion.complete(this);
+        } else {
+            completion.completeExceptionally(new NarayanaHelperException("Warm-up incomplete: " + this));
+        }
+    }
+
+    // ---- Private Helper Methods ---------------------------------------
+
+    private void notifyProgress() {
+        if (progressCallback != null) {
+            try {
+                progressCallback.accept(this);
+            } catch (RuntimeException e) {
+                LOGGER.warn("Error in warm-up progress callback.", e);
+            }
+        }
+    }
+
+}
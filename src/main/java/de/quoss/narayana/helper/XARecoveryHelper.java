@@ -0,0 +1,330 @@
+package de.quoss.narayana.helper;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.jms.JMSException;
+import javax.jms.XAConnection;
+import javax.jms.XAConnectionFactory;
+import javax.jms.XASession;
+import javax.transaction.xa.XAException;
+import javax.transaction.xa.XAResource;
+import javax.transaction.xa.Xid;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * <p>
+ *   Provides the xa resources of the brokers behind {@link ConnectionFactoryProxy} instances to the recovery
+ *   manager, e.g. from an {@code org.jboss.tm.XAResourceRecovery} registered with Narayana's
+ *   {@code XARecoveryModule} delegating its {@code getXAResources()} to {@link #getXAResources()}.
+ * </p>
+ * <p>
+ *   Every factory and credential pair is a target with its own recovery connection, opened directly on the proxied
+ *   factory and kept open between recovery passes. {@link #scan()} runs {@code recover()} on all targets in parallel,
+ *   on at most {@code maxConcurrency} threads and within a timeout. The resources handed to the recovery manager
+ *   answer its own sequential scan from the results of the parallel one, so the recovery pass takes about as long
+ *   as the slowest broker instead of the sum of all. Failed targets are left out of the pass and retried on the next.
+ * </p>
+ */
+public class XARecoveryHelper implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(XARecoveryHelper.class);
+
+    private final List<Target> targets = new CopyOnWriteArrayList<>();
+
+    private final ExecutorService executor;
+
+    private final long timeoutMillis;
+
+    private volatile List<RecoveryScanResult> lastScanResults = Collections.emptyList();
+
+    private volatile long lastScanDurationNanos;
+
+    /**
+     * @param maxConcurrency maximum number of targets scanned at the same time.
+     * @param timeoutMillis time a scan of all targets may take, targets not done by then count as failed.
+     */
+    public XARecoveryHelper(final int maxConcurrency, final long timeoutMillis) {
+        if (maxConcurrency <= 0) {
+            throw new NarayanaHelperException("Max concurrency must be positive.");
+        }
+        if (timeoutMillis <= 0L) {
+            throw new NarayanaHelperException("Timeout must be positive.");
+        }
+        this.timeoutMillis = timeoutMillis;
+        this.executor = Executors.newFixedThreadPool(maxConcurrency, r -> {
+            Thread thread = new Thread(r, "narayana-helper-recovery");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Add a target recovered with the default credentials of the factory.
+     *
+     * @param name name of the target in logs and results.
+     * @param connectionFactory proxy of an xa connection factory.
+     */
+    public void addFactory(final String name, final ConnectionFactoryProxy connectionFactory) {
+        addFactory(name, connectionFactory, null, null);
+    }
+
+    /**
+     * Add a target recovered with the given credentials.
+     *
+     * @param name name of the target in logs and results.
+     * @param connectionFactory proxy of an xa connection factory.
+     * @param userName user name, {@code null} for the default credentials.
+     * @param password password.
+     */
+    public void addFactory(final String name, final ConnectionFactoryProxy connectionFactory, final String userName, final String password) {
+        if (name == null) {
+            throw new NarayanaHelperException("Name must not be null.");
+        }
+        if (connectionFactory == null) {
+            throw new NarayanaHelperException("Connection factory must not be null.");
+        }
+        targets.add(new Target(name, connectionFactory.getXAConnectionFactory(), userName, password));
+    }
+
+    /**
+     * Scan all targets and return the resources of the reachable ones for a recovery pass.
+     *
+     * @return the resources.
+     */
+    public XAResource[] getXAResources() {
+        List<XAResource> result = new ArrayList<>(targets.size());
+        for (RecoveryScanResult scanResult : scan()) {
+            if (scanResult.isSuccessful()) {
+                result.add(scanResult.getXAResource());
+            }
+        }
+        return result.toArray(new XAResource[0]);
+    }
+
+    /**
+     * Scan all targets in parallel.
+     *
+     * @return one result per target, in the order the targets were added.
+     */
+    public List<RecoveryScanResult> scan() {
+        long start = System.nanoTime();
+        List<Target> scanned = new ArrayList<>(targets);
+        List<Future<RecoveryScanResult>> futures = new ArrayList<>(scanned.size());
+        for (Target target : scanned) {
+            futures.add(executor.submit(target::scan));
+        }
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        List<RecoveryScanResult> results = new ArrayList<>(scanned.size());
+        int inDoubt = 0;
+        int failed = 0;
+        for (int i = 0; i < futures.size(); i++) {
+            RecoveryScanResult result;
+            try {
+                result = futures.get(i).get(Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException | ExecutionException e) {
+                futures.get(i).cancel(true);
+                // unblocks a scan stuck on the broker, the next pass reconnects
+                scanned.get(i).closeConnection();
+                result = new RecoveryScanResult(scanned.get(i).name, null, null, System.nanoTime() - start, e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                futures.get(i).cancel(true);
+                result = new RecoveryScanResult(scanned.get(i).name, null, null, System.nanoTime() - start, e);
+            }
+            if (result.isSuccessful()) {
+                inDoubt += result.getInDoubtCount();
+            } else {
+                failed++;
+                LOGGER.warn(String.format("Recovery scan of %s failed.", result.getName()), result.getFailure());
+            }
+            results.add(result);
+        }
+        lastScanResults = Collections.unmodifiableList(results);
+        lastScanDurationNanos = System.nanoTime() - start;
+        if (LOGGER.isInfoEnabled()) {
+            LOGGER.info("Recovery scan of {} targets took {} ms, {} in-doubt branches found, {} targets failed.", results.size(),
+                    TimeUnit.NANOSECONDS.toMillis(lastScanDurationNanos), inDoubt, failed);
+        }
+        return lastScanResults;
+    }
+
+    public List<RecoveryScanResult> getLastScanResults() {
+        return lastScanResults;
+    }
+
+    public long getLastScanDurationNanos() {
+        return lastScanDurationNanos;
+    }
+
+    /**
+     * Stop the scanning threads and close all recovery connections.
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        for (Target target : targets) {
+            target.closeConnection();
+        }
+    }
+
+    private static final class Target {
+
+        private final String name;
+
+        private final XAConnectionFactory connectionFactory;
+
+        private final String userName;
+
+        private final String password;
+
+        private volatile XAConnection connection;
+
+        private volatile XAResource resource;
+
+        private volatile EvictingExceptionListener exceptionListener;
+
+        private Target(final String name, final XAConnectionFactory connectionFactory, final String userName, final String password) {
+            this.name = name;
+            this.connectionFactory = connectionFactory;
+            this.userName = userName;
+            this.password = password;
+        }
+
+        private synchronized RecoveryScanResult scan() {
+            long start = System.nanoTime();
+            try {
+                if (connection == null || exceptionListener.isFailed()) {
+                    closeConnection();
+                    open();
+                }
+                Xid[] xids = resource.recover(XAResource.TMSTARTRSCAN | XAResource.TMENDRSCAN);
+                return new RecoveryScanResult(name, new ScannedXAResource(resource, xids), xids, System.nanoTime() - start, null);
+            } catch (JMSException | XAException | RuntimeException e) {
+                closeConnection();
+                return new RecoveryScanResult(name, null, null, System.nanoTime() - start, e);
+            }
+        }
+
+        private void open() throws JMSException {
+            XAConnection opened = userName == null ? connectionFactory.createXAConnection() : connectionFactory.createXAConnection(userName, password);
+            try {
+                EvictingExceptionListener listener = new EvictingExceptionListener(() -> LOGGER.info("Recovery connection of {} failed, reconnecting on next scan.", name));
+                opened.setExceptionListener(listener);
+                XASession session = opened.createXASession();
+                this.exceptionListener = listener;
+                this.resource = session.getXAResource();
+                this.connection = opened;
+            } catch (JMSException | RuntimeException e) {
+                opened.close();
+                throw e;
+            }
+        }
+
+        /**
+         * Not synchronized, may be called while a scan hangs.
+         */
+        private void closeConnection() {
+            XAConnection closed = connection;
+            connection = null;
+            if (closed != null) {
+                try {
+                    closed.close();
+                } catch (JMSException | RuntimeException e) {
+                    LOGGER.debug(String.format("Failed to close recovery connection of %s.", name), e);
+                }
+            }
+        }
+
+    }
+
+    /**
+     * Resource answering the first scan of the recovery manager with the branches found by the parallel scan,
+     * everything else is delegated.
+     */
+    private static final class ScannedXAResource implements XAResource {
+
+        private final XAResource delegate;
+
+        private Xid[] scanned;
+
+        private boolean scanOpen;
+
+        private ScannedXAResource(final XAResource delegate, final Xid[] scanned) {
+            this.delegate = delegate;
+            this.scanned = scanned == null ? new Xid[0] : scanned;
+        }
+
+        @Override
+        public synchronized Xid[] recover(final int flags) throws XAException {
+            if ((flags & TMSTARTRSCAN) != 0 && scanned != null) {
+                Xid[] result = scanned;
+                scanned = null;
+                scanOpen = (flags & TMENDRSCAN) == 0;
+                return result;
+            }
+            if (scanOpen) {
+                // the parallel scan already returned every branch
+                scanOpen = (flags & TMENDRSCAN) == 0;
+                return new Xid[0];
+            }
+            return delegate.recover(flags);
+        }
+
+        @Override
+        public void commit(final Xid xid, final boolean onePhase) throws XAException {
+            delegate.commit(xid, onePhase);
+        }
+
+        @Override
+        public void end(final Xid xid, final int flags) throws XAException {
+            delegate.end(xid, flags);
+        }
+
+        @Override
+        public void forget(final Xid xid) throws XAException {
+            delegate.forget(xid);
+        }
+
+        @Override
+        public int getTransactionTimeout() throws XAException {
+            return delegate.getTransactionTimeout();
+        }
+
+        @Override
+        public boolean isSameRM(final XAResource xares) throws XAException {
+            return delegate.isSameRM(xares instanceof ScannedXAResource ? ((ScannedXAResource) xares).delegate : xares);
+        }
+
+        @Override
+        public int prepare(final Xid xid) throws XAException {
+            return delegate.prepare(xid);
+        }
+
+        @Override
+        public void rollback(final Xid xid) throws XAException {
+            delegate.rollback(xid);
+        }
+
+        @Override
+        public boolean setTransactionTimeout(final int seconds) throws XAException {
+            return delegate.setTransactionTimeout(seconds);
+        }
+
+        @Override
+        public void start(final Xid xid, final int flags) throws XAException {
+            delegate.start(xid, flags);
+        }
+
+    }
+
+}
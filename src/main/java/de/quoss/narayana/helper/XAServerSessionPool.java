@@ -0,0 +1,227 @@
+package de.quoss.narayana.helper;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.jms.Connection;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageListener;
+import javax.jms.ServerSession;
+import javax.jms.ServerSessionPool;
+import javax.jms.Session;
+import javax.jms.XAConnection;
+import javax.jms.XASession;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ *   Server session pool for the connection consumers of an xa connection, delivering every batch of messages in its
+ *   own transaction.
+ * </p>
+ * <p>
+ *   The pool keeps a fixed number of xa sessions created up front on the connection the consumer is created on. For
+ *   each delivery the provider loads messages into an idle session and starts it, the pool then runs the delivery on
+ *   the given executor: it begins a transaction through the {@link TransactionHelper}, enlists the session, runs the
+ *   message listener and commits. A listener throwing a runtime exception rolls the transaction back so the messages
+ *   are redelivered. When all sessions are busy the provider waits in {@link #getServerSession()}, which bounds the
+ *   number of concurrent deliveries to the pool size.
+ * </p>
+ */
+public class XAServerSessionPool implements ServerSessionPool, AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(XAServerSessionPool.class);
+
+    /** Interval in which a provider thread waiting for an idle session notices the pool being closed. */
+    private static final long CLOSED_CHECK_INTERVAL_MILLIS = 100L;
+
+    private final TransactionHelper transactionHelper;
+
+    private final Executor executor;
+
+    private final List<PooledServerSession> sessions;
+
+    private final BlockingQueue<PooledServerSession> idle;
+
+    private volatile boolean closed;
+
+    /**
+     * @param connection connection the connection consumer is created on, a {@link ConnectionProxy} is unwrapped.
+     * @param transactionHelper transaction helper supporting transaction demarcation.
+     * @param listener listener receiving the delivered messages.
+     * @param size number of sessions and thus concurrent deliveries.
+     * @param executor executor running the deliveries.
+     * @throws JMSException if a session cannot be created.
+     */
+    public XAServerSessionPool(final Connection connection, final TransactionHelper transactionHelper, final MessageListener listener,
+            final int size, final Executor executor) throws JMSException {
+        final String methodName = "XAServerSessionPool(Connection, TransactionHelper, MessageListener, int, Executor)";
+        if (LOGGER.isTraceEnabled()) {
+            LOGGER.trace("{} start [connection={},size={}]", methodName, connection, size);
+        }
+        Connection physical = connection instanceof ConnectionProxy ? ((ConnectionProxy) connection).getConnection() : connection;
+        if (!(physical instanceof XAConnection)) {
+            throw new NarayanaHelperException("Connection is not of type XAConnection.");
+        }
+        if (transactionHelper == null) {
+            throw new NarayanaHelperException("Transaction helper must not be null.");
+        }
+        this.transactionHelper = transactionHelper;
+        if (listener == null) {
+            throw new NarayanaHelperException("Message listener must not be null.");
+        }
+        if (size <= 0) {
+            throw new NarayanaHelperException("Size must be positive.");
+        }
+        if (executor == null) {
+            throw new NarayanaHelperException("Executor must not be null.");
+        }
+        this.executor = executor;
+        this.sessions = new ArrayList<>(size);
+        this.idle = new ArrayBlockingQueue<>(size);
+        try {
+            for (int i = 0; i < size; i++) {
+                PooledServerSession serverSession = new PooledServerSession(((XAConnection) physical).createXASession(), listener);
+                sessions.add(serverSession);
+                idle.add(serverSession);
+            }
+        } catch (JMSException | RuntimeException e) {
+            close();
+            throw e;
+        }
+        LOGGER.trace("{} end", methodName);
+    }
+
+    /**
+     * Take an idle session, waiting until a running delivery completes if there is none or the pool is closed.
+     */
+    @Override
+    public ServerSession getServerSession() throws JMSException {
+        try {
+            while (!closed) {
+                PooledServerSession result = idle.poll(CLOSED_CHECK_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+                if (result != null) {
+                    return result;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new JMSException("Interrupted while waiting for a server session.");
+        }
+        throw new javax.jms.IllegalStateException("Server session pool is closed.");
+    }
+
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    /**
+     * Close all sessions, deliveries still running fail and are rolled back. The connection consumer should be closed
+     * first.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (PooledServerSession serverSession : sessions) {
+            try {
+                serverSession.session.close();
+            } catch (JMSException e) {
+                LOGGER.warn(String.format("Failed to close server session %s.", serverSession.session), e);
+            }
+        }
+    }
+
+    // ---- Private Classes ----------------------------------
+
+    private final class PooledServerSession implements ServerSession, MessageListener, Runnable {
+
+        private final XASession session;
+
+        private final MessageListener listener;
+
+        private RuntimeException failure;
+
+        private PooledServerSession(final XASession session, final MessageListener listener) throws JMSException {
+            this.session = session;
+            this.listener = listener;
+            session.getSession().setMessageListener(this);
+        }
+
+        @Override
+        public Session getSession() {
+            return session;
+        }
+
+        @Override
+        public void start() throws JMSException {
+            try {
+                executor.execute(this);
+            } catch (RejectedExecutionException e) {
+                if (!closed) {
+                    // not running, so nobody else returns it
+                    idle.add(this);
+                }
+                JMSException exception = new JMSException("Delivery rejected by executor.");
+                exception.setLinkedException(e);
+                throw exception;
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                deliver();
+            } catch (JMSException | RuntimeException e) {
+                LOGGER.warn(String.format("Delivery on server session %s failed.", session), e);
+            } finally {
+                failure = null;
+                if (!closed) {
+                    idle.add(this);
+                }
+            }
+        }
+
+        @Override
+        public void onMessage(final Message message) {
+            if (failure != null) {
+                // the transaction is rolled back, the remaining messages of the batch are redelivered as well
+                return;
+            }
+            try {
+                listener.onMessage(message);
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+        }
+
+        private void deliver() throws JMSException {
+            transactionHelper.begin();
+            try {
+                transactionHelper.registerXAResource(session.getXAResource());
+                // delivers the messages loaded by the provider to onMessage
+                session.run();
+            } catch (JMSException | RuntimeException e) {
+                try {
+                    transactionHelper.rollback();
+                } catch (JMSException | RuntimeException suppressed) {
+                    e.addSuppressed(suppressed);
+                }
+                throw e;
+            }
+            if (failure != null) {
+                transactionHelper.rollback();
+                LOGGER.warn(String.format("Message listener failed on server session %s, delivery rolled back.", session), failure);
+            } else {
+                transactionHelper.commit();
+            }
+        }
+
+    }
+
+}
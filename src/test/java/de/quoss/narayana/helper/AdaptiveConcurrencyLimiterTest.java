@@ -0,0 +1,66 @@
+package de.quoss.narayana.helper;
+
+import de.quoss.narayana.helper.inmemory.InMemoryTransactionManager;
+import de.quoss.narayana.helper.inmemory.InMemoryXAConnectionFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.jms.Connection;
+import javax.jms.JMSContext;
+import javax.jms.Session;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    private InMemoryTransactionManager transactionManager;
+
+    private AdaptiveConcurrencyLimiter limiter;
+
+    private ConnectionFactoryProxy connectionFactory;
+
+    @BeforeEach
+    void setUp() {
+        transactionManager = new InMemoryTransactionManager();
+        // a single permit, a second one for the same transaction would be rejected at once
+        limiter = new AdaptiveConcurrencyLimiter(1, 1, 4, 60_000L, 0L);
+        connectionFactory = new ConnectionFactoryProxy(new InMemoryXAConnectionFactory(), new NarayanaTransactionHelper(transactionManager));
+        connectionFactory.setConcurrencyLimiter(limiter);
+    }
+
+    @AfterEach
+    void tearDown() {
+        connectionFactory.close();
+    }
+
+    @Test
+    void testOnePermitPerTransaction() throws Exception {
+        transactionManager.begin();
+        try (Connection connection = connectionFactory.createConnection();
+                JMSContext context = connectionFactory.createContext()) {
+            connection.createSession(Session.SESSION_TRANSACTED);
+            connection.createSession(Session.SESSION_TRANSACTED);
+            context.createProducer();
+            assertEquals(1, limiter.getInFlight());
+        } finally {
+            transactionManager.commit();
+        }
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    void testRollbackKeepsLimit() throws Exception {
+        limiter = new AdaptiveConcurrencyLimiter(3, 1, 4, 60_000L, 0L);
+        connectionFactory.setConcurrencyLimiter(limiter);
+        transactionManager.begin();
+        try (Connection connection = connectionFactory.createConnection()) {
+            connection.createSession(Session.SESSION_TRANSACTED);
+        } finally {
+            transactionManager.rollback();
+        }
+        assertEquals(3, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+}
@@ -0,0 +1,67 @@
+package de.quoss.narayana.helper;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.io.File;
+import java.util.Locale;
+import java.util.function.IntFunction;
+
+/**
+ * <p>
+ *   Runs a benchmark once per thread count in a forked jvm and writes one result file per run, used by the
+ *   {@code main} methods of the benchmarks started by the {@code benchmark} maven profile.
+ * </p>
+ * <p>
+ *   Settings are read from system properties, blank values select the defaults: {@code benchmark.threads},
+ *   {@code benchmark.format} ({@code json} or {@code csv}) and {@code benchmark.directory}.
+ * </p>
+ */
+final class BenchmarkLauncher {
+
+    private BenchmarkLauncher() {
+    }
+
+    /**
+     * @param key name of the system property.
+     * @param defaultValue value used if the property is missing or blank.
+     * @return the comma separated values of the property.
+     */
+    static String[] getValues(final String key, final String defaultValue) {
+        String value = System.getProperty(key);
+        String[] result = (value == null || value.trim().isEmpty() ? defaultValue : value).split(",");
+        for (int i = 0; i < result.length; i++) {
+            result[i] = result[i].trim();
+        }
+        return result;
+    }
+
+    /**
+     * @param name prefix of the result files, {@code <name>-<threads>-threads.<format>}.
+     * @param defaultThreads comma separated thread counts used if {@code benchmark.threads} is not set.
+     * @param options options of the benchmark for a thread count.
+     * @throws RunnerException if a benchmark fails.
+     */
+    static void run(final String name, final String defaultThreads, final IntFunction<ChainedOptionsBuilder> options) throws RunnerException {
+        ResultFormatType format = ResultFormatType.valueOf(getValues("benchmark.format", "json")[0].toUpperCase(Locale.ROOT));
+        File directory = new File(getValues("benchmark.directory", "target")[0]);
+        for (String threads : getValues("benchmark.threads", defaultThreads)) {
+            int count = Integer.parseInt(threads);
+            File result = new File(directory, String.format("%s-%d-threads.%s", name, count, format.name().toLowerCase(Locale.ROOT)));
+            new Runner(options.apply(count)
+                    .forks(1)
+                    .warmupIterations(3)
+                    .warmupTime(TimeValue.seconds(1L))
+                    .measurementIterations(5)
+                    .measurementTime(TimeValue.seconds(1L))
+                    .shouldFailOnError(true)
+                    .resultFormat(format)
+                    .result(result.getPath())
+                    .build()).run();
+        }
+    }
+
+}
@@ -0,0 +1,51 @@
+package de.quoss.narayana.helper;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BinaryMessageCodecTest {
+
+    private final BinaryMessageCodec codec = new BinaryMessageCodec();
+
+    @Test
+    void testNestedListRoundTrip() throws Exception {
+        Object object = "leaf";
+        for (int i = 0; i < BinaryMessageCodec.MAX_DEPTH; i++) {
+            object = Collections.singletonList(object);
+        }
+        assertTrue(codec.canEncode(object));
+        assertEquals(object, codec.decode(codec.encode(object)));
+        Object tooDeep = Collections.singletonList(object);
+        assertFalse(codec.canEncode(tooDeep));
+        assertThrows(IOException.class, () -> codec.encode(tooDeep));
+    }
+
+    @Test
+    void testSelfContainingListIsRejected() {
+        List<Object> list = new ArrayList<>();
+        list.add(list);
+        assertFalse(codec.canEncode(list));
+        assertThrows(IOException.class, () -> codec.encode(list));
+    }
+
+    @Test
+    void testDeeplyNestedInputIsRejected() {
+        // a list tag with one element, repeated far beyond any stack depth
+        ByteBuffer data = ByteBuffer.allocate(5 * 1024 * 1024);
+        while (data.remaining() >= 5) {
+            data.put((byte) 13).putInt(1);
+        }
+        assertThrows(IOException.class, () -> codec.decode(data.array()));
+    }
+
+}
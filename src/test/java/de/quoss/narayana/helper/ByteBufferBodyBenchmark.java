@@ -0,0 +1,162 @@
+package de.quoss.narayana.helper;
+
+import de.quoss.narayana.helper.inmemory.InMemoryTransactionManager;
+import de.quoss.narayana.helper.inmemory.InMemoryXAConnectionFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.jms.BytesMessage;
+import javax.jms.Connection;
+import javax.jms.JMSException;
+import javax.jms.Session;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ *   Moving bodies of 64 KB to 4 MB between {@link ByteBuffer}s and bytes messages, through
+ *   {@link SessionProxy#createBytesMessage(ByteBuffer)} and {@link SessionProxy#readBody(BytesMessage, ByteBuffer)}
+ *   next to the usual way of copying the buffer to and from a {@code byte[]} of the body's size. Heap and direct
+ *   buffers are run separately, the context proxy shares the implementation of the session proxy.
+ * </p>
+ * <p>
+ *   The in-memory provider copies the body on every write, which costs both paths the same. Run with
+ *   {@code mvn -Pbenchmark -DskipTests test -Dbenchmark.class=de.quoss.narayana.helper.ByteBufferBodyBenchmark},
+ *   optionally with {@code -Dbenchmark.sizes=65536,1048576,4194304}, see {@link BenchmarkLauncher} for the other
+ *   settings. The allocation rate of {@code -prof gc} shows the copies saved, results are written to
+ *   {@code target/byte-buffer-body-benchmark-<threads>-threads.<format>}.
+ * </p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ByteBufferBodyBenchmark {
+
+    static final String HEAP = "heap";
+
+    static final String DIRECT = "direct";
+
+    @Param({"65536", "1048576", "4194304"})
+    public int size;
+
+    @Param({HEAP, DIRECT})
+    public String buffer;
+
+    private InMemoryTransactionManager transactionManager;
+
+    private ConnectionFactoryProxy connectionFactoryProxy;
+
+    private Connection connection;
+
+    private SessionProxy session;
+
+    private ByteBuffer body;
+
+    private ByteBuffer target;
+
+    private BytesMessage received;
+
+    /**
+     * Run both paths for every thread count, see the class description for the settings.
+     *
+     * @param args not used.
+     * @throws RunnerException if a benchmark fails.
+     */
+    public static void main(final String[] args) throws RunnerException {
+        String[] sizes = BenchmarkLauncher.getValues("benchmark.sizes", "65536,1048576,4194304");
+        BenchmarkLauncher.run("byte-buffer-body-benchmark", "1", threads -> options(threads, sizes));
+    }
+
+    /**
+     * @param threads number of threads copying bodies at the same time.
+     * @param sizes body sizes in bytes to run with.
+     * @return options running both paths with the allocation profiler.
+     */
+    static ChainedOptionsBuilder options(final int threads, final String[] sizes) {
+        return new OptionsBuilder()
+                .include(ByteBufferBodyBenchmark.class.getName() + "\\.")
+                .threads(threads)
+                .param("size", sizes)
+                .addProfiler(GCProfiler.class);
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        transactionManager = new InMemoryTransactionManager();
+        connectionFactoryProxy = new ConnectionFactoryProxy(new InMemoryXAConnectionFactory(), new NarayanaTransactionHelper(transactionManager));
+        // only sessions enlisted in a transaction are proxied
+        transactionManager.begin();
+        connection = connectionFactoryProxy.createConnection();
+        session = (SessionProxy) connection.createSession(Session.SESSION_TRANSACTED);
+        body = allocate(size);
+        for (int i = 0; i < size; i++) {
+            body.put((byte) i);
+        }
+        body.flip();
+        target = allocate(size);
+        received = session.createBytesMessage();
+        byte[] payload = new byte[size];
+        body.duplicate().get(payload);
+        received.writeBytes(payload);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        transactionManager.rollback();
+        session.close();
+        connection.close();
+        connectionFactoryProxy.close();
+    }
+
+    @Benchmark
+    public BytesMessage writeBuffer() throws JMSException {
+        body.rewind();
+        return session.createBytesMessage(body);
+    }
+
+    @Benchmark
+    public BytesMessage writeCopiedArray() throws JMSException {
+        body.rewind();
+        byte[] array = new byte[body.remaining()];
+        body.get(array);
+        BytesMessage result = session.createBytesMessage();
+        result.writeBytes(array);
+        return result;
+    }
+
+    @Benchmark
+    public int readBuffer() throws JMSException {
+        received.reset();
+        target.clear();
+        return session.readBody(received, target);
+    }
+
+    @Benchmark
+    public int readCopiedArray() throws JMSException {
+        received.reset();
+        target.clear();
+        byte[] array = new byte[(int) received.getBodyLength()];
+        int result = received.readBytes(array);
+        target.put(array, 0, result);
+        return result;
+    }
+
+    // ---- Private Helper Methods ---------------------------------------
+
+    private ByteBuffer allocate(final int capacity) {
+        return HEAP.equals(buffer) ? ByteBuffer.allocate(capacity) : ByteBuffer.allocateDirect(capacity);
+    }
+
+}
@@ -0,0 +1,112 @@
+package de.quoss.narayana.helper;
+
+import de.quoss.narayana.helper.inmemory.InMemoryXAConnectionFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.jms.BytesMessage;
+import javax.jms.Connection;
+import javax.jms.MessageConsumer;
+import javax.jms.Queue;
+import javax.jms.Session;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ChunkedStreamReassemblerTest {
+
+    private static final byte[] PAYLOAD = "0123456789".getBytes(StandardCharsets.US_ASCII);
+
+    @TempDir
+    Path directory;
+
+    private Connection connection;
+
+    private Session session;
+
+    private MessageConsumer consumer;
+
+    private String streamId;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        connection = new InMemoryXAConnectionFactory().createConnection();
+        session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        Queue queue = session.createQueue("chunks");
+        consumer = session.createConsumer(queue);
+        // three chunks, the last one with two bytes
+        streamId = new ChunkedStreamSender(session, 4).send(session.createProducer(queue), ByteBuffer.wrap(PAYLOAD));
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        connection.close();
+    }
+
+    @Test
+    void testStreamCompletesAfterRestart() throws Exception {
+        try (ChunkedStreamReassembler reassembler = new ChunkedStreamReassembler(directory)) {
+            assertNull(reassembler.onMessage(receive()));
+            assertNull(reassembler.onMessage(receive()));
+        }
+        try (ChunkedStreamReassembler reassembler = new ChunkedStreamReassembler(directory)) {
+            Path file = reassembler.onMessage(receive());
+            assertNotNull(file);
+            assertArrayEquals(PAYLOAD, Files.readAllBytes(file));
+            assertFalse(Files.exists(directory.resolve(streamId + ".part")));
+            assertFalse(Files.exists(directory.resolve(streamId + ".chunks")));
+        }
+    }
+
+    @Test
+    void testRedeliveredLastChunkIsIgnored() throws Exception {
+        try (ChunkedStreamReassembler reassembler = new ChunkedStreamReassembler(directory)) {
+            reassembler.onMessage(receive());
+            reassembler.onMessage(receive());
+            BytesMessage last = receive();
+            Path file = reassembler.onMessage(last);
+            assertNotNull(file);
+            // the consumer took the file away before the redelivery
+            Files.delete(file);
+            last.reset();
+            assertNull(reassembler.onMessage(last));
+            assertEquals(0, reassembler.getIncompleteStreamCount());
+            assertFalse(Files.exists(directory.resolve(streamId + ".part")));
+        }
+    }
+
+    @Test
+    void testChunkOfCompletedFileIsIgnoredAfterRestart() throws Exception {
+        BytesMessage last;
+        try (ChunkedStreamReassembler reassembler = new ChunkedStreamReassembler(directory)) {
+            reassembler.onMessage(receive());
+            reassembler.onMessage(receive());
+            last = receive();
+            assertNotNull(reassembler.onMessage(last));
+        }
+        try (ChunkedStreamReassembler reassembler = new ChunkedStreamReassembler(directory)) {
+            last.reset();
+            assertNull(reassembler.onMessage(last));
+            assertFalse(Files.exists(directory.resolve(streamId + ".part")));
+            assertArrayEquals(PAYLOAD, Files.readAllBytes(directory.resolve(streamId)));
+        }
+    }
+
+    // ---- Private Helper Methods ---------------------------------------
+
+    private BytesMessage receive() throws Exception {
+        BytesMessage result = (BytesMessage) consumer.receiveNoWait();
+        assertNotNull(result);
+        return result;
+    }
+
+}
@@ -0,0 +1,77 @@
+package de.quoss.narayana.helper;
+
+import de.quoss.narayana.helper.inmemory.InMemoryTransactionManager;
+import de.quoss.narayana.helper.inmemory.InMemoryXAConnectionFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.jms.Connection;
+import javax.jms.JMSContext;
+import javax.jms.Message;
+import javax.jms.Queue;
+import javax.jms.Session;
+import javax.jms.TextMessage;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class CoalescingProducerTest {
+
+    private InMemoryTransactionManager transactionManager;
+
+    private Connection connection;
+
+    private Session session;
+
+    private Queue queue;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        transactionManager = new InMemoryTransactionManager();
+        connection = new InMemoryXAConnectionFactory().createConnection();
+        session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        queue = session.createQueue("envelopes");
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        connection.close();
+    }
+
+    @Test
+    void testRollbackKeepsMessagesAddedBeforeTransaction() throws Exception {
+        try (CoalescingProducer producer = new CoalescingProducer(session, queue, new NarayanaTransactionHelper(transactionManager), 10, 1_024, 60_000L)) {
+            producer.send("before", null);
+            transactionManager.begin();
+            producer.send("within", null);
+            transactionManager.rollback();
+        }
+        Message envelope = session.createConsumer(queue).receiveNoWait();
+        assertNotNull(envelope);
+        assertEquals(1, envelope.getIntProperty(CoalescingProducer.ENVELOPE_PROPERTY));
+        assertNull(session.createConsumer(queue).receiveNoWait());
+    }
+
+    @Test
+    void testContextSendsEnvelope() throws Exception {
+        try (JMSContext context = new InMemoryXAConnectionFactory().createContext()) {
+            Queue contextQueue = context.createQueue("context-envelopes");
+            try (CoalescingProducer producer = new CoalescingProducer(context, contextQueue, new NarayanaTransactionHelper(transactionManager), 2,
+                    1_024, 60_000L)) {
+                producer.send("first", Collections.singletonMap("index", 1));
+                producer.send("second", Collections.singletonMap("index", 2));
+            }
+            Message envelope = context.createConsumer(contextQueue).receiveNoWait();
+            assertNotNull(envelope);
+            List<Message> messages = new EnvelopeUnpacker(context).unpack(envelope);
+            assertEquals(2, messages.size());
+            assertEquals("second", ((TextMessage) messages.get(1)).getText());
+            assertEquals(2, messages.get(1).getIntProperty("index"));
+        }
+    }
+
+}
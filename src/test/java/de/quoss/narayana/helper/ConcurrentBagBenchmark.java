@@ -0,0 +1,109 @@
+package de.quoss.narayana.helper;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ *   Borrowing and returning a pooled item under contention, the {@link ConcurrentBag} behind {@link ResourcePool}
+ *   next to a pool kept in a {@link LinkedBlockingQueue}. Both borrow without waiting first and wait for a returned
+ *   item if the pool is empty, which happens once there are more threads than items. The item is held for
+ *   {@code workTokens} of {@link Blackhole#consumeCPU(long)}.
+ * </p>
+ * <p>
+ *   Run with {@code mvn -Pbenchmark -DskipTests test -Dbenchmark.class=de.quoss.narayana.helper.ConcurrentBagBenchmark},
+ *   optionally with {@code -Dbenchmark.threads=1,4,16,64,128} and {@code -Dbenchmark.poolSizes=8,64}, see
+ *   {@link BenchmarkLauncher} for the other settings. Every thread count writes its results to
+ *   {@code target/concurrent-bag-benchmark-<threads>-threads.<format>}.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ConcurrentBagBenchmark {
+
+    private static final long TIMEOUT_SECONDS = 10L;
+
+    @Param({"8", "64"})
+    public int poolSize;
+
+    @Param({"0", "100"})
+    public long workTokens;
+
+    private ConcurrentBag<Object> bag;
+
+    private BlockingQueue<Object> queue;
+
+    /**
+     * Run both pools for every thread count, see the class description for the settings.
+     *
+     * @param args not used.
+     * @throws RunnerException if a benchmark fails.
+     */
+    public static void main(final String[] args) throws RunnerException {
+        String[] poolSizes = BenchmarkLauncher.getValues("benchmark.poolSizes", "8,64");
+        BenchmarkLauncher.run("concurrent-bag-benchmark", "1,4,16,64,128", threads -> options(threads, poolSizes));
+    }
+
+    /**
+     * @param threads number of threads borrowing at the same time.
+     * @param poolSizes numbers of pooled items to run with.
+     * @return options running both pools with the allocation profiler.
+     */
+    static ChainedOptionsBuilder options(final int threads, final String[] poolSizes) {
+        return new OptionsBuilder()
+                .include(ConcurrentBagBenchmark.class.getName() + "\\.")
+                .threads(threads)
+                .param("poolSize", poolSizes)
+                .addProfiler(GCProfiler.class);
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        bag = new ConcurrentBag<>();
+        queue = new LinkedBlockingQueue<>();
+        for (int i = 0; i < poolSize; i++) {
+            bag.add(new Object());
+            queue.add(new Object());
+        }
+    }
+
+    @Benchmark
+    public Object concurrentBag() throws InterruptedException {
+        Object item = bag.tryBorrow();
+        if (item == null) {
+            item = bag.borrow(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        }
+        Blackhole.consumeCPU(workTokens);
+        bag.requite(item);
+        return item;
+    }
+
+    @Benchmark
+    public Object linkedBlockingQueue() throws InterruptedException {
+        Object item = queue.poll();
+        if (item == null) {
+            item = queue.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        }
+        Blackhole.consumeCPU(workTokens);
+        queue.offer(item);
+        return item;
+    }
+
+}
@@ -0,0 +1,85 @@
+package de.quoss.narayana.helper;
+
+import de.quoss.narayana.helper.inmemory.InMemoryTransactionManager;
+import de.quoss.narayana.helper.inmemory.InMemoryXAConnectionFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.jms.JMSException;
+import javax.jms.TransactionRolledBackRuntimeException;
+import javax.transaction.xa.XAResource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ConnectionFactoryProxyTest {
+
+    private InMemoryTransactionManager transactionManager;
+
+    private FailingTransactionHelper transactionHelper;
+
+    private ConnectionFactoryProxy connectionFactory;
+
+    @BeforeEach
+    void setUp() {
+        PoolConfiguration poolConfiguration = new PoolConfiguration();
+        poolConfiguration.setMaxIdleContexts(1);
+        transactionManager = new InMemoryTransactionManager();
+        transactionHelper = new FailingTransactionHelper(transactionManager);
+        connectionFactory = new ConnectionFactoryProxy(new InMemoryXAConnectionFactory(), transactionHelper, poolConfiguration);
+    }
+
+    @AfterEach
+    void tearDown() {
+        connectionFactory.close();
+    }
+
+    @Test
+    void testFailedEnlistmentKeepsContextPoolUsable() throws Exception {
+        transactionManager.begin();
+        connectionFactory.createContext().close();
+        transactionManager.commit();
+        assertEquals(1, connectionFactory.getIdleContextCount());
+        transactionHelper.failing = true;
+        transactionManager.begin();
+        assertThrows(IllegalStateException.class, connectionFactory::createContext);
+        transactionManager.rollback();
+        assertEquals(0, connectionFactory.getIdleContextCount());
+        transactionHelper.failing = false;
+        transactionManager.begin();
+        connectionFactory.createContext().close();
+        transactionManager.commit();
+        assertEquals(1, connectionFactory.getIdleContextCount());
+    }
+
+    @Test
+    void testDoomedTransactionFailsWithTypedException() throws Exception {
+        transactionManager.begin();
+        transactionManager.setRollbackOnly();
+        assertThrows(TransactionRolledBackRuntimeException.class, connectionFactory::createContext);
+        assertThrows(TransactionRolledBackRuntimeException.class, connectionFactory::createXAContext);
+        transactionManager.rollback();
+    }
+
+    // ---- Private Helper Classes ---------------------------------------
+
+    private static final class FailingTransactionHelper extends NarayanaTransactionHelper {
+
+        private volatile boolean failing;
+
+        private FailingTransactionHelper(final InMemoryTransactionManager transactionManager) {
+            super(transactionManager);
+        }
+
+        @Override
+        public void registerXAResource(final XAResource xaResource) throws JMSException {
+            if (failing) {
+                throw new IllegalStateException("enlisting failed");
+            }
+            super.registerXAResource(xaResource);
+        }
+
+    }
+
+}
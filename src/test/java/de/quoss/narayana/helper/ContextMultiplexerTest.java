@@ -0,0 +1,47 @@
+package de.quoss.narayana.helper;
+
+import de.quoss.narayana.helper.inmemory.InMemoryTransactionManager;
+import de.quoss.narayana.helper.inmemory.InMemoryXAConnectionFactory;
+import org.junit.jupiter.api.Test;
+
+import javax.jms.JMSContext;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ContextMultiplexerTest {
+
+    @Test
+    void testFailingChildCreationDisablesMultiplexing() {
+        ContextMultiplexer multiplexer = new ContextMultiplexer(new InMemoryXAConnectionFactory(), 2);
+        try {
+            assertNull(multiplexer.createChild());
+            assertFalse(multiplexer.isSupported());
+            assertNull(multiplexer.createChild());
+        } finally {
+            multiplexer.close();
+        }
+    }
+
+    @Test
+    void testProxyFallsBackToPool() throws Exception {
+        PoolConfiguration poolConfiguration = new PoolConfiguration();
+        poolConfiguration.setMaxIdleContexts(1);
+        poolConfiguration.setMultiplexedParentContexts(2);
+        InMemoryTransactionManager transactionManager = new InMemoryTransactionManager();
+        ConnectionFactoryProxy connectionFactory = new ConnectionFactoryProxy(new InMemoryXAConnectionFactory(),
+                new NarayanaTransactionHelper(transactionManager), poolConfiguration);
+        try {
+            transactionManager.begin();
+            try (JMSContext context = connectionFactory.createContext()) {
+                context.createProducer().send(context.createQueue("multiplexed"), "message");
+            }
+            transactionManager.commit();
+            assertEquals(1, connectionFactory.getIdleContextCount());
+        } finally {
+            connectionFactory.close();
+        }
+    }
+
+}
@@ -0,0 +1,189 @@
+package de.quoss.narayana.helper;
+
+import de.quoss.narayana.helper.inmemory.InMemoryQueue;
+import de.quoss.narayana.helper.inmemory.InMemoryTextMessage;
+import de.quoss.narayana.helper.inmemory.InMemoryTransactionManager;
+import de.quoss.narayana.helper.inmemory.InMemoryXAConnectionFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.jms.Connection;
+import javax.jms.JMSConsumer;
+import javax.jms.JMSContext;
+import javax.jms.Message;
+import javax.jms.MessageConsumer;
+import javax.jms.Queue;
+import javax.jms.Session;
+import javax.transaction.Status;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ *   End-to-end scenarios through a pooling {@link ConnectionFactoryProxy} on the in-memory xa provider, one
+ *   transaction per operation: send-only, receive-only and receive-process-send, each with the session and the
+ *   context API. The provider simulates the configured round trip latency on every physical send, prepare, commit
+ *   and rollback. The receive scenarios put their request on the input queue directly before the transaction, which
+ *   costs no simulated latency.
+ * </p>
+ * <p>
+ *   Run with {@code mvn -Pbenchmark -DskipTests test}, optionally with {@code -Dbenchmark.threads=1,2,4,8} and
+ *   {@code -Dbenchmark.latencyMicros=0,100}, see {@link BenchmarkLauncher} for the other settings. Every thread count
+ *   writes the throughput, the latency percentiles of the sample time mode and the allocation rate of {@code -prof gc}
+ *   to {@code target/e2e-benchmark-<threads>-threads.<format>}.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class EndToEndBenchmark {
+
+    static final String SESSION = "session";
+
+    static final String CONTEXT = "context";
+
+    private static final int POOL_SIZE = 64;
+
+    @Param({SESSION, CONTEXT})
+    public String api;
+
+    @Param({"0"})
+    public long latencyMicros;
+
+    private InMemoryXAConnectionFactory connectionFactory;
+
+    private InMemoryTransactionManager transactionManager;
+
+    private ConnectionFactoryProxy connectionFactoryProxy;
+
+    private final Queue input = new InMemoryQueue("e2e.in");
+
+    private final Queue output = new InMemoryQueue("e2e.out");
+
+    private final Message request = new InMemoryTextMessage("request");
+
+    /**
+     * Run the scenarios for every thread count, see the class description for the settings.
+     *
+     * @param args not used.
+     * @throws RunnerException if a benchmark fails.
+     */
+    public static void main(final String[] args) throws RunnerException {
+        String[] latencies = BenchmarkLauncher.getValues("benchmark.latencyMicros", "0,100");
+        BenchmarkLauncher.run("e2e-benchmark", "1,2,4,8", threads -> options(threads, latencies));
+    }
+
+    /**
+     * @param threads number of threads running the scenarios at the same time.
+     * @param latencyMicros simulated latencies to run the scenarios with.
+     * @return options running all scenarios with the allocation profiler.
+     */
+    static ChainedOptionsBuilder options(final int threads, final String[] latencyMicros) {
+        return new OptionsBuilder()
+                .include(EndToEndBenchmark.class.getName() + "\\.")
+                .threads(threads)
+                .param("latencyMicros", latencyMicros)
+                .addProfiler(GCProfiler.class);
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        connectionFactory = new InMemoryXAConnectionFactory();
+        connectionFactory.getBroker().setLatencyMicros(latencyMicros);
+        transactionManager = new InMemoryTransactionManager();
+        PoolConfiguration poolConfiguration = new PoolConfiguration();
+        poolConfiguration.setMaxIdleConnections(POOL_SIZE);
+        poolConfiguration.setMaxIdleSessionsPerConnection(POOL_SIZE);
+        poolConfiguration.setMaxIdleContexts(POOL_SIZE);
+        connectionFactoryProxy = new ConnectionFactoryProxy(connectionFactory, new NarayanaTransactionHelper(transactionManager), poolConfiguration);
+    }
+
+    @Setup(Level.Iteration)
+    public void purge() {
+        // the output queue is never consumed
+        connectionFactory.getBroker().purge();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        connectionFactoryProxy.close();
+    }
+
+    @Benchmark
+    public Message sendOnly() throws Exception {
+        return run(false, true);
+    }
+
+    @Benchmark
+    public Message receiveOnly() throws Exception {
+        return run(true, false);
+    }
+
+    @Benchmark
+    public Message receiveProcessSend() throws Exception {
+        return run(true, true);
+    }
+
+    // ---- Private Helper Methods ---------------------------------------
+
+    private Message run(final boolean receive, final boolean send) throws Exception {
+        if (receive) {
+            connectionFactory.getBroker().deliver(input, request);
+        }
+        transactionManager.begin();
+        boolean committed = false;
+        try {
+            Message result = SESSION.equals(api) ? runWithSession(receive, send) : runWithContext(receive, send);
+            transactionManager.commit();
+            committed = true;
+            return result;
+        } finally {
+            if (!committed && transactionManager.getStatus() != Status.STATUS_NO_TRANSACTION) {
+                transactionManager.rollback();
+            }
+        }
+    }
+
+    private Message runWithSession(final boolean receive, final boolean send) throws Exception {
+        try (Connection connection = connectionFactoryProxy.createConnection();
+                Session session = connection.createSession(Session.SESSION_TRANSACTED)) {
+            Message received = null;
+            if (receive) {
+                MessageConsumer consumer = session.createConsumer(input);
+                received = consumer.receiveNoWait();
+                consumer.close();
+            }
+            if (send) {
+                session.createProducer(output).send(session.createTextMessage(received == null ? "reply" : "reply to " + received.getJMSMessageID()));
+            }
+            return received;
+        }
+    }
+
+    private Message runWithContext(final boolean receive, final boolean send) throws Exception {
+        try (JMSContext context = connectionFactoryProxy.createContext()) {
+            Message received = null;
+            if (receive) {
+                try (JMSConsumer consumer = context.createConsumer(input)) {
+                    received = consumer.receiveNoWait();
+                }
+            }
+            if (send) {
+                context.createProducer().send(output, context.createTextMessage(received == null ? "reply" : "reply to " + received.getJMSMessageID()));
+            }
+            return received;
+        }
+    }
+
+}
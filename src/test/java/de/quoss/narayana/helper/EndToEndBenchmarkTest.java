@@ -0,0 +1,43 @@
+package de.quoss.narayana.helper;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.TimeValue;
+import org.openjdk.jmh.runner.options.VerboseMode;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs every scenario of {@link EndToEndBenchmark} once, briefly and concurrently, and checks the result file.
+ */
+class EndToEndBenchmarkTest {
+
+    @Test
+    void testScenariosRunAndReport(@TempDir final Path directory) throws Exception {
+        Path result = directory.resolve("e2e-benchmark.json");
+        // in-process, the benchmark classes are compiled with the tests and there is no jar to fork with
+        new Runner(EndToEndBenchmark.options(2, new String[] {"0"})
+                .forks(0)
+                .warmupIterations(1)
+                .warmupTime(TimeValue.milliseconds(100))
+                .measurementIterations(1)
+                .measurementTime(TimeValue.milliseconds(100))
+                .shouldFailOnError(true)
+                .resultFormat(ResultFormatType.JSON)
+                .result(result.toString())
+                .verbosity(VerboseMode.SILENT)
+                .build()).run();
+        String json = new String(Files.readAllBytes(result), StandardCharsets.UTF_8);
+        for (String scenario : new String[] {"sendOnly", "receiveOnly", "receiveProcessSend", EndToEndBenchmark.SESSION, EndToEndBenchmark.CONTEXT,
+                "gc.alloc.rate.norm", "p0.99"}) {
+            assertTrue(json.contains(scenario), "No " + scenario + " in " + result + ".");
+        }
+    }
+
+}
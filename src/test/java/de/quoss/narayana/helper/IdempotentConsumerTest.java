@@ -0,0 +1,66 @@
+package de.quoss.narayana.helper;
+
+import de.quoss.narayana.helper.inmemory.InMemoryTextMessage;
+import de.quoss.narayana.helper.inmemory.InMemoryTransactionManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.jms.Message;
+import javax.jms.MessageListener;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IdempotentConsumerTest {
+
+    private InMemoryTransactionManager transactionManager;
+
+    private IdempotentConsumer consumer;
+
+    private Message message;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        transactionManager = new InMemoryTransactionManager();
+        consumer = new IdempotentConsumer(new DuplicateDetectionIndex(64, 60_000L), new NarayanaTransactionHelper(transactionManager));
+        message = new InMemoryTextMessage("idempotent");
+        message.setJMSMessageID("ID:1");
+    }
+
+    @Test
+    void testFailedHandlerIsNotRecordedWithoutTransaction() {
+        AtomicInteger calls = new AtomicInteger();
+        MessageListener listener = consumer.wrap(m -> {
+            if (calls.incrementAndGet() == 1) {
+                throw new IllegalStateException("handler failed");
+            }
+        });
+        assertThrows(IllegalStateException.class, () -> listener.onMessage(message));
+        listener.onMessage(message);
+        listener.onMessage(message);
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void testProcessedMessageIsSkippedWithoutTransaction() throws Exception {
+        assertTrue(consumer.accept(message));
+        assertTrue(consumer.accept(message));
+        consumer.processed(message);
+        assertFalse(consumer.accept(message));
+    }
+
+    @Test
+    void testRolledBackMessageIsAcceptedAgain() throws Exception {
+        transactionManager.begin();
+        assertTrue(consumer.accept(message));
+        transactionManager.rollback();
+        transactionManager.begin();
+        assertTrue(consumer.accept(message));
+        transactionManager.commit();
+        assertFalse(consumer.accept(message));
+    }
+
+}
@@ -0,0 +1,89 @@
+package de.quoss.narayana.helper;
+
+import de.quoss.narayana.helper.inmemory.InMemoryTransactionManager;
+import de.quoss.narayana.helper.inmemory.InMemoryXAConnectionFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.jms.BytesMessage;
+import javax.jms.JMSConsumer;
+import javax.jms.JMSContext;
+import javax.jms.Message;
+import javax.jms.MessageFormatRuntimeException;
+import javax.jms.Queue;
+import javax.jms.TextMessage;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class JMSConsumerProxyTest {
+
+    private static final String TEXT = new String(new char[1024]).replace('\0', 'a');
+
+    private ConnectionFactoryProxy connectionFactory;
+
+    @BeforeEach
+    void setUp() {
+        connectionFactory = new ConnectionFactoryProxy(new InMemoryXAConnectionFactory(),
+                new NarayanaTransactionHelper(new InMemoryTransactionManager()), new PoolConfiguration());
+    }
+
+    @AfterEach
+    void tearDown() {
+        connectionFactory.close();
+    }
+
+    @Test
+    void testBodyOfOtherTypeIsNotConsumed() throws Exception {
+        try (JMSContext context = connectionFactory.createContext()) {
+            Queue queue = context.createQueue("body");
+            BytesMessage message = context.createBytesMessage();
+            message.writeBytes(new byte[] {1, 2, 3});
+            context.createProducer().send(queue, message);
+            JMSConsumer consumer = context.createConsumer(queue);
+            assertThrows(MessageFormatRuntimeException.class, () -> consumer.receiveBodyNoWait(String.class));
+            assertArrayEquals(new byte[] {1, 2, 3}, consumer.receiveBodyNoWait(byte[].class));
+        }
+    }
+
+    @Test
+    void testCompressedBodyIsDecompressed() {
+        connectionFactory.setMessageCompressor(new MessageCompressor(16));
+        try (JMSContext context = connectionFactory.createContext()) {
+            Queue queue = context.createQueue("compressed");
+            context.createProducer().send(queue, TEXT);
+            assertEquals(TEXT, context.createConsumer(queue).receiveBodyNoWait(String.class));
+        }
+    }
+
+    @Test
+    void testMessageIsCompressedOnce() throws Exception {
+        MessageCompressor compressor = new MessageCompressor(16);
+        try (JMSContext context = connectionFactory.createContext()) {
+            TextMessage message = context.createTextMessage(TEXT);
+            compressor.compress(message);
+            String compressed = message.getText();
+            compressor.compress(message);
+            assertEquals(compressed, message.getText());
+        }
+    }
+
+    @Test
+    void testDecompressedMessageCanBeForwarded() throws Exception {
+        MessageCompressor compressor = new MessageCompressor(16);
+        try (JMSContext context = connectionFactory.createContext()) {
+            TextMessage message = context.createTextMessage(TEXT);
+            message.setStringProperty("kept", "value");
+            compressor.compress(message);
+            MessageCompressor.decompress(message);
+            assertEquals(TEXT, message.getText());
+            assertEquals("value", message.getStringProperty("kept"));
+            assertFalse(message.propertyExists(MessageCompressor.COMPRESSION_PROPERTY));
+            assertFalse(MessageCompressor.decompress((Message) message));
+        }
+    }
+
+}
@@ -0,0 +1,170 @@
+package de.quoss.narayana.helper;
+
+import de.quoss.narayana.helper.inmemory.InMemoryBytesMessage;
+import de.quoss.narayana.helper.inmemory.InMemoryTextMessage;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.jms.BytesMessage;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.TextMessage;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ *   CPU spent by the {@link MessageCompressor} against the bytes it saves, for JSON-like text bodies which compress
+ *   well and random bytes bodies which do not. {@code compress} counts the bytes saved per message in the
+ *   {@code savedBytes} counter, so the throughput mode reports the bytes saved per millisecond next to the messages
+ *   compressed per millisecond. {@code decompress} restores a compressed body as a consumer proxy does.
+ * </p>
+ * <p>
+ *   Run with {@code mvn -Pbenchmark -DskipTests test -Dbenchmark.class=de.quoss.narayana.helper.MessageCompressorBenchmark},
+ *   optionally with {@code -Dbenchmark.sizes=1024,65536,1048576}, see {@link BenchmarkLauncher} for the other
+ *   settings. Results are written to {@code target/message-compressor-benchmark-<threads>-threads.<format>}.
+ * </p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class MessageCompressorBenchmark {
+
+    static final String JSON = "json";
+
+    static final String RANDOM = "random";
+
+    @Param({"1024", "65536", "1048576"})
+    public int size;
+
+    @Param({JSON, RANDOM})
+    public String payload;
+
+    @Param({"1", "6", "9"})
+    public int level;
+
+    private MessageCompressor compressor;
+
+    private String text;
+
+    private byte[] bytes;
+
+    private Message compressed;
+
+    /**
+     * Bytes saved by the compression, reported per time unit.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Counters {
+
+        public long savedBytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            savedBytes = 0L;
+        }
+
+    }
+
+    /**
+     * Run compression and decompression for every thread count, see the class description for the settings.
+     *
+     * @param args not used.
+     * @throws RunnerException if a benchmark fails.
+     */
+    public static void main(final String[] args) throws RunnerException {
+        String[] sizes = BenchmarkLauncher.getValues("benchmark.sizes", "1024,65536,1048576");
+        BenchmarkLauncher.run("message-compressor-benchmark", "1", threads -> options(threads, sizes));
+    }
+
+    /**
+     * @param threads number of threads compressing at the same time.
+     * @param sizes body sizes in bytes to run with.
+     * @return options running compression and decompression with the allocation profiler.
+     */
+    static ChainedOptionsBuilder options(final int threads, final String[] sizes) {
+        return new OptionsBuilder()
+                .include(MessageCompressorBenchmark.class.getName() + "\\.")
+                .threads(threads)
+                .param("size", sizes)
+                .addProfiler(GCProfiler.class);
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws JMSException {
+        compressor = new MessageCompressor(0, level);
+        if (JSON.equals(payload)) {
+            StringBuilder builder = new StringBuilder(size + 64);
+            for (int i = 0; builder.length() < size; i++) {
+                builder.append("{\"id\":").append(i).append(",\"status\":\"OPEN\",\"amount\":").append(i % 977).append(".50},");
+            }
+            text = builder.substring(0, size);
+        } else {
+            bytes = new byte[size];
+            new Random(size).nextBytes(bytes);
+        }
+        compressed = newMessage();
+        compressor.compress(compressed);
+    }
+
+    @Benchmark
+    public Message compress(final Counters counters) throws JMSException {
+        Message result = newMessage();
+        compressor.compress(result);
+        counters.savedBytes += size - getBodyLength(result);
+        return result;
+    }
+
+    @Benchmark
+    public Message decompress() throws JMSException {
+        Message result;
+        if (compressed instanceof TextMessage) {
+            result = new InMemoryTextMessage(((TextMessage) compressed).getText());
+        } else {
+            BytesMessage source = (BytesMessage) compressed;
+            byte[] body = new byte[(int) source.getBodyLength()];
+            source.reset();
+            source.readBytes(body);
+            result = new InMemoryBytesMessage();
+            ((BytesMessage) result).writeBytes(body);
+        }
+        if (compressed.propertyExists(MessageCompressor.COMPRESSION_PROPERTY)) {
+            result.setStringProperty(MessageCompressor.COMPRESSION_PROPERTY, compressed.getStringProperty(MessageCompressor.COMPRESSION_PROPERTY));
+            result.setIntProperty(MessageCompressor.UNCOMPRESSED_LENGTH_PROPERTY, compressed.getIntProperty(MessageCompressor.UNCOMPRESSED_LENGTH_PROPERTY));
+        }
+        MessageCompressor.decompress(result);
+        return result;
+    }
+
+    // ---- Private Helper Methods ---------------------------------------
+
+    private Message newMessage() throws JMSException {
+        if (text != null) {
+            return new InMemoryTextMessage(text);
+        }
+        BytesMessage result = new InMemoryBytesMessage();
+        result.writeBytes(bytes);
+        return result;
+    }
+
+    private static long getBodyLength(final Message message) throws JMSException {
+        if (message instanceof TextMessage) {
+            return ((TextMessage) message).getText().length();
+        }
+        return ((BytesMessage) message).getBodyLength();
+    }
+
+}
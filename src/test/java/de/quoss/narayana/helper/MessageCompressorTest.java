@@ -0,0 +1,65 @@
+package de.quoss.narayana.helper;
+
+import de.quoss.narayana.helper.inmemory.InMemoryBytesMessage;
+import de.quoss.narayana.helper.inmemory.InMemoryTextMessage;
+import org.junit.jupiter.api.Test;
+
+import javax.jms.BytesMessage;
+import javax.jms.MessageFormatException;
+import javax.jms.TextMessage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MessageCompressorTest {
+
+    private static final String TEXT = new String(new char[1024]).replace('\0', 'a');
+
+    @Test
+    void testStatedLengthIsNotTrusted() throws Exception {
+        BytesMessage message = new InMemoryBytesMessage();
+        message.writeBytes(new byte[] {1, 2, 3});
+        message.setStringProperty(MessageCompressor.COMPRESSION_PROPERTY, "deflate");
+        message.setIntProperty(MessageCompressor.UNCOMPRESSED_LENGTH_PROPERTY, Integer.MAX_VALUE);
+        assertThrows(MessageFormatException.class, () -> MessageCompressor.decompress(message));
+    }
+
+    @Test
+    void testMissingLengthIsFormatError() throws Exception {
+        TextMessage message = compressed();
+        message.clearProperties();
+        message.setStringProperty(MessageCompressor.COMPRESSION_PROPERTY, "deflate");
+        assertThrows(MessageFormatException.class, () -> MessageCompressor.decompress(message));
+    }
+
+    @Test
+    void testInvalidBase64IsFormatError() throws Exception {
+        TextMessage message = compressed();
+        message.setText("not base64!");
+        assertThrows(MessageFormatException.class, () -> MessageCompressor.decompress(message));
+    }
+
+    @Test
+    void testDecompressKeepsJmsxProperties() throws Exception {
+        TextMessage message = compressed();
+        message.setStringProperty("JMSXGroupID", "group");
+        message.setIntProperty("JMSXGroupSeq", 2);
+        assertTrue(MessageCompressor.decompress(message));
+        assertEquals(TEXT, message.getText());
+        assertEquals("group", message.getStringProperty("JMSXGroupID"));
+        assertEquals(2, message.getIntProperty("JMSXGroupSeq"));
+        assertFalse(message.propertyExists(MessageCompressor.COMPRESSION_PROPERTY));
+    }
+
+    // ---- Private Helper Methods ---------------------------------------
+
+    private static TextMessage compressed() throws Exception {
+        TextMessage result = new InMemoryTextMessage(TEXT);
+        new MessageCompressor(16).compress(result);
+        assertTrue(result.propertyExists(MessageCompressor.COMPRESSION_PROPERTY));
+        return result;
+    }
+
+}
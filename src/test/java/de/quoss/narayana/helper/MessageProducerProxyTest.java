@@ -0,0 +1,71 @@
+package de.quoss.narayana.helper;
+
+import de.quoss.narayana.helper.inmemory.InMemoryTransactionManager;
+import de.quoss.narayana.helper.inmemory.InMemoryXAConnectionFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.jms.Connection;
+import javax.jms.DeliveryMode;
+import javax.jms.Message;
+import javax.jms.MessageProducer;
+import javax.jms.Session;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MessageProducerProxyTest {
+
+    private InMemoryTransactionManager transactionManager;
+
+    private ConnectionFactoryProxy connectionFactory;
+
+    private Connection connection;
+
+    private Session session;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        ProducerProfile profile = new ProducerProfile();
+        profile.setPriority(9);
+        profile.setDeliveryMode(DeliveryMode.NON_PERSISTENT);
+        transactionManager = new InMemoryTransactionManager();
+        connectionFactory = new ConnectionFactoryProxy(new InMemoryXAConnectionFactory(), new NarayanaTransactionHelper(transactionManager));
+        connectionFactory.setProducerProfiles(new ProducerProfiles().add("audit.*", profile));
+        // only sessions enlisted in a transaction are proxied
+        transactionManager.begin();
+        connection = connectionFactory.createConnection();
+        session = connection.createSession(Session.SESSION_TRANSACTED);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        transactionManager.rollback();
+        connection.close();
+        connectionFactory.close();
+    }
+
+    @Test
+    void testAnonymousProducerAppliesProfilePerSend() throws Exception {
+        MessageProducer producer = session.createProducer(null);
+        MessageProducer physical = ((MessageProducerProxy) producer).getProducer();
+        Message message = session.createMessage();
+        producer.send(session.createQueue("audit.orders"), message);
+        assertEquals(9, physical.getPriority());
+        assertEquals(DeliveryMode.NON_PERSISTENT, physical.getDeliveryMode());
+        producer.send(session.createQueue("orders"), message);
+        assertEquals(Message.DEFAULT_PRIORITY, physical.getPriority());
+        assertEquals(DeliveryMode.PERSISTENT, physical.getDeliveryMode());
+    }
+
+    @Test
+    void testExplicitSettingsTakePrecedence() throws Exception {
+        MessageProducer producer = session.createProducer(null);
+        MessageProducer physical = ((MessageProducerProxy) producer).getProducer();
+        producer.setPriority(2);
+        producer.send(session.createQueue("audit.orders"), session.createMessage());
+        assertEquals(2, physical.getPriority());
+        assertEquals(DeliveryMode.NON_PERSISTENT, physical.getDeliveryMode());
+    }
+
+}
@@ -0,0 +1,60 @@
+package de.quoss.narayana.helper;
+
+import de.quoss.narayana.helper.inmemory.InMemoryTransactionManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.transaction.Status;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NarayanaTransactionHelperTest {
+
+    private InMemoryTransactionManager transactionManager;
+
+    private NarayanaTransactionHelper transactionHelper;
+
+    @BeforeEach
+    void setUp() {
+        transactionManager = new InMemoryTransactionManager();
+        transactionHelper = new NarayanaTransactionHelper(transactionManager);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        transactionManager.setTransactionTimeout(0);
+        if (transactionManager.getStatus() != Status.STATUS_NO_TRANSACTION) {
+            transactionManager.rollback();
+        }
+    }
+
+    @Test
+    void testRemainingTimeWithoutTransaction() throws Exception {
+        assertEquals(-1L, transactionHelper.getRemainingTimeMillis());
+    }
+
+    @Test
+    void testRemainingTimeWithoutTimeout() throws Exception {
+        transactionManager.begin();
+        assertEquals(-1L, transactionHelper.getRemainingTimeMillis());
+    }
+
+    @Test
+    void testRemainingTimeWithTimeout() throws Exception {
+        transactionManager.setTransactionTimeout(60);
+        transactionManager.begin();
+        long remaining = transactionHelper.getRemainingTimeMillis();
+        assertTrue(remaining > 0L && remaining <= 60_000L, "Remaining time " + remaining);
+    }
+
+    @Test
+    void testRemainingTimeOfExpiredTransaction() throws Exception {
+        transactionManager.setTransactionTimeout(1);
+        transactionManager.begin();
+        Thread.sleep(1_100L);
+        assertEquals(0L, transactionHelper.getRemainingTimeMillis());
+    }
+
+}
@@ -0,0 +1,200 @@
+package de.quoss.narayana.helper;
+
+import de.quoss.narayana.helper.inmemory.InMemoryTextMessage;
+import de.quoss.narayana.helper.inmemory.InMemoryTransactionManager;
+import de.quoss.narayana.helper.inmemory.InMemoryXAConnectionFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import javax.jms.Connection;
+import javax.jms.JMSConsumer;
+import javax.jms.JMSContext;
+import javax.jms.JMSException;
+import javax.jms.JMSProducer;
+import javax.jms.Message;
+import javax.jms.MessageConsumer;
+import javax.jms.MessageProducer;
+import javax.jms.Queue;
+import javax.jms.Session;
+import javax.jms.XAJMSContext;
+import javax.jms.XASession;
+import javax.transaction.Transaction;
+import javax.transaction.xa.XAResource;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ *   Steady-state hot paths of the proxies within a transaction, each next to the same operation on the physical
+ *   resource. Run with {@code -prof gc}, {@link ProxyAllocationTest} compares the normalized allocation rates.
+ * </p>
+ * <p>
+ *   The sends are buffered by the transaction branch, every {@value #BATCH} sends the transaction is committed,
+ *   the queue purged and the physical resources enlisted in a new transaction, which costs the proxied and the
+ *   physical sends the same. The receives poll an empty queue, which leaves the provider little to do besides the
+ *   proxies' lookup of the time left in the transaction.
+ * </p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ProxyAllocationBenchmark {
+
+    private static final int BATCH = 1_024;
+
+    private InMemoryXAConnectionFactory connectionFactory;
+
+    private InMemoryTransactionManager transactionManager;
+
+    private TransactionHelper transactionHelper;
+
+    private ConnectionFactoryProxy connectionFactoryProxy;
+
+    private Connection connection;
+
+    private SessionProxy session;
+
+    private MessageProducer producer;
+
+    private MessageProducer physicalProducer;
+
+    private ContextProxy context;
+
+    private JMSProducer jmsProducer;
+
+    private JMSProducer physicalJmsProducer;
+
+    private MessageConsumer consumer;
+
+    private MessageConsumer physicalConsumer;
+
+    private JMSConsumer jmsConsumer;
+
+    private JMSConsumer physicalJmsConsumer;
+
+    private XAResource sessionResource;
+
+    private XAResource contextResource;
+
+    private Queue queue;
+
+    private Message message;
+
+    private int sends;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        connectionFactory = new InMemoryXAConnectionFactory();
+        transactionManager = new InMemoryTransactionManager();
+        transactionHelper = new NarayanaTransactionHelper(transactionManager);
+        connectionFactoryProxy = new ConnectionFactoryProxy(connectionFactory, transactionHelper);
+        // a timeout makes the transaction helper look up the time left
+        transactionManager.setTransactionTimeout(3_600);
+        transactionManager.begin();
+        connection = connectionFactoryProxy.createConnection();
+        session = (SessionProxy) connection.createSession(Session.SESSION_TRANSACTED);
+        sessionResource = ((XASession) session.getSession()).getXAResource();
+        queue = session.createQueue("allocation");
+        producer = session.createProducer(queue);
+        physicalProducer = ((MessageProducerProxy) producer).getProducer();
+        context = (ContextProxy) connectionFactoryProxy.createContext();
+        contextResource = ((XAJMSContext) context.getContext()).getXAResource();
+        jmsProducer = context.createProducer();
+        physicalJmsProducer = ((JMSProducerProxy) jmsProducer).getProducer();
+        Queue empty = session.createQueue("allocation-empty");
+        consumer = session.createConsumer(empty);
+        physicalConsumer = ((MessageConsumerProxy) consumer).getConsumer();
+        jmsConsumer = context.createConsumer(empty);
+        physicalJmsConsumer = ((JMSConsumerProxy) jmsConsumer).getConsumer();
+        message = new InMemoryTextMessage("allocation");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        transactionManager.rollback();
+        context.close();
+        session.close();
+        connection.close();
+        connectionFactoryProxy.close();
+    }
+
+    @Benchmark
+    public boolean isTransactionAvailable() throws JMSException {
+        return transactionHelper.isTransactionAvailable();
+    }
+
+    @Benchmark
+    public boolean isTransactionUsable() throws JMSException {
+        return transactionHelper.isTransactionUsable();
+    }
+
+    @Benchmark
+    public long getRemainingTimeMillis() throws JMSException {
+        return transactionHelper.getRemainingTimeMillis();
+    }
+
+    @Benchmark
+    public void physicalSessionSend() throws Exception {
+        physicalProducer.send(message);
+        sent();
+    }
+
+    @Benchmark
+    public void proxiedSessionSend() throws Exception {
+        producer.send(message);
+        sent();
+    }
+
+    @Benchmark
+    public void physicalContextSend() throws Exception {
+        physicalJmsProducer.send(queue, message);
+        sent();
+    }
+
+    @Benchmark
+    public void proxiedContextSend() throws Exception {
+        jmsProducer.send(queue, message);
+        sent();
+    }
+
+    @Benchmark
+    public Message physicalSessionReceive() throws JMSException {
+        return physicalConsumer.receiveNoWait();
+    }
+
+    @Benchmark
+    public Message proxiedSessionReceive() throws JMSException {
+        return consumer.receiveNoWait();
+    }
+
+    @Benchmark
+    public Message physicalContextReceive() {
+        return physicalJmsConsumer.receiveNoWait();
+    }
+
+    @Benchmark
+    public Message proxiedContextReceive() {
+        return jmsConsumer.receiveNoWait();
+    }
+
+    // ---- Private Helper Methods ---------------------------------------
+
+    private void sent() throws Exception {
+        if (++sends == BATCH) {
+            sends = 0;
+            transactionManager.commit();
+            connectionFactory.getBroker().purge();
+            transactionManager.begin();
+            Transaction transaction = transactionManager.getTransaction();
+            transaction.enlistResource(sessionResource);
+            transaction.enlistResource(contextResource);
+        }
+    }
+
+}
@@ -0,0 +1,70 @@
+package de.quoss.narayana.helper;
+
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+import org.openjdk.jmh.runner.options.VerboseMode;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Fails if the steady-state hot paths of the proxies allocate again, see {@link ProxyAllocationBenchmark}.
+ */
+class ProxyAllocationTest {
+
+    /** Normalized allocation rate reported by {@code -prof gc}. */
+    private static final String ALLOCATION_RATE = "gc.alloc.rate.norm";
+
+    /** Bytes per operation tolerated as measurement noise, one object would take at least 16. */
+    private static final double TOLERANCE = 4.0;
+
+    @Test
+    void testHotPathsDoNotAllocate() throws Exception {
+        // forked, profiles polluted by other in-process benchmarks of the test run would defeat escape analysis
+        Options options = new OptionsBuilder()
+                .include(ProxyAllocationBenchmark.class.getName() + "\\.")
+                .forks(1)
+                .warmupIterations(3)
+                .warmupTime(TimeValue.milliseconds(500))
+                .measurementIterations(3)
+                .measurementTime(TimeValue.milliseconds(500))
+                .addProfiler(GCProfiler.class)
+                .shouldFailOnError(true)
+                .verbosity(VerboseMode.SILENT)
+                .build();
+        Map<String, Double> bytesPerOperation = new HashMap<>();
+        for (RunResult runResult : new Runner(options).run()) {
+            Result<?> allocation = runResult.getSecondaryResults().get(ALLOCATION_RATE);
+            assertNotNull(allocation, "No allocation rate in " + runResult.getSecondaryResults().keySet());
+            String benchmark = runResult.getParams().getBenchmark();
+            bytesPerOperation.put(benchmark.substring(benchmark.lastIndexOf('.') + 1), allocation.getScore());
+        }
+        assertAllocationFree(bytesPerOperation, "isTransactionAvailable", null);
+        assertAllocationFree(bytesPerOperation, "isTransactionUsable", null);
+        assertAllocationFree(bytesPerOperation, "getRemainingTimeMillis", null);
+        assertAllocationFree(bytesPerOperation, "proxiedSessionSend", "physicalSessionSend");
+        assertAllocationFree(bytesPerOperation, "proxiedContextSend", "physicalContextSend");
+        assertAllocationFree(bytesPerOperation, "proxiedSessionReceive", "physicalSessionReceive");
+        assertAllocationFree(bytesPerOperation, "proxiedContextReceive", "physicalContextReceive");
+    }
+
+    // ---- Private Helper Methods ---------------------------------------
+
+    private static void assertAllocationFree(final Map<String, Double> bytesPerOperation, final String benchmark, final String baseline) {
+        Double measured = bytesPerOperation.get(benchmark);
+        assertNotNull(measured, "Benchmark " + benchmark + " did not run.");
+        double provider = baseline == null ? 0.0 : bytesPerOperation.get(baseline);
+        assertTrue(measured - provider <= TOLERANCE,
+                String.format("%s allocates %.1f bytes per operation on top of the provider's %.1f.", benchmark, measured - provider, provider));
+    }
+
+}
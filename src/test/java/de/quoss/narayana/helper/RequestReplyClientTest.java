@@ -0,0 +1,26 @@
+package de.quoss.narayana.helper;
+
+import de.quoss.narayana.helper.inmemory.InMemoryTransactionManager;
+import de.quoss.narayana.helper.inmemory.InMemoryXAConnectionFactory;
+import org.junit.jupiter.api.Test;
+
+import javax.jms.Connection;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class RequestReplyClientTest {
+
+    @Test
+    void testPooledConnectionIsRejected() throws Exception {
+        PoolConfiguration poolConfiguration = new PoolConfiguration();
+        poolConfiguration.setMaxIdleConnections(1);
+        ConnectionFactoryProxy connectionFactory = new ConnectionFactoryProxy(new InMemoryXAConnectionFactory(),
+                new NarayanaTransactionHelper(new InMemoryTransactionManager()), poolConfiguration);
+        try (Connection connection = connectionFactory.createConnection()) {
+            assertThrows(NarayanaHelperException.class, () -> new RequestReplyClient(connection, 1));
+        } finally {
+            connectionFactory.close();
+        }
+    }
+
+}
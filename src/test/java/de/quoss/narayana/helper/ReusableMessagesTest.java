@@ -0,0 +1,117 @@
+package de.quoss.narayana.helper;
+
+import de.quoss.narayana.helper.inmemory.InMemoryTransactionManager;
+import de.quoss.narayana.helper.inmemory.InMemoryXAConnectionFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.jms.CompletionListener;
+import javax.jms.Connection;
+import javax.jms.JMSRuntimeException;
+import javax.jms.Message;
+import javax.jms.MessageProducer;
+import javax.jms.Queue;
+import javax.jms.Session;
+import javax.jms.TextMessage;
+
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ReusableMessagesTest {
+
+    private static final CompletionListener IGNORING_LISTENER = new CompletionListener() {
+
+        @Override
+        public void onCompletion(final Message message) {
+            // nothing to do
+        }
+
+        @Override
+        public void onException(final Message message, final Exception exception) {
+            // nothing to do
+        }
+
+    };
+
+    private InMemoryTransactionManager transactionManager;
+
+    private ConnectionFactoryProxy connectionFactory;
+
+    @BeforeEach
+    void setUp() {
+        transactionManager = new InMemoryTransactionManager();
+        PoolConfiguration poolConfiguration = new PoolConfiguration();
+        poolConfiguration.setMaxIdleConnections(1);
+        poolConfiguration.setMaxIdleSessionsPerConnection(1);
+        poolConfiguration.setMaxIdleContexts(1);
+        connectionFactory = new ConnectionFactoryProxy(new InMemoryXAConnectionFactory(), new NarayanaTransactionHelper(transactionManager),
+                poolConfiguration);
+    }
+
+    @AfterEach
+    void tearDown() {
+        connectionFactory.close();
+    }
+
+    @Test
+    void testReusableMessageSurvivesSessionBorrow() throws Exception {
+        transactionManager.begin();
+        TextMessage message;
+        try (Connection connection = connectionFactory.createConnection();
+                SessionProxy session = (SessionProxy) connection.createSession(Session.SESSION_TRANSACTED)) {
+            message = session.getReusableTextMessage();
+        }
+        transactionManager.commit();
+        transactionManager.begin();
+        try (Connection connection = connectionFactory.createConnection();
+                SessionProxy session = (SessionProxy) connection.createSession(Session.SESSION_TRANSACTED)) {
+            assertSame(message, session.getReusableTextMessage());
+        }
+        transactionManager.commit();
+    }
+
+    @Test
+    void testReusableMessageSurvivesContextBorrow() throws Exception {
+        transactionManager.begin();
+        TextMessage message;
+        try (ContextProxy context = (ContextProxy) connectionFactory.createContext()) {
+            message = context.getReusableTextMessage();
+        }
+        transactionManager.commit();
+        transactionManager.begin();
+        try (ContextProxy context = (ContextProxy) connectionFactory.createContext()) {
+            assertSame(message, context.getReusableTextMessage());
+        }
+        transactionManager.commit();
+    }
+
+    @Test
+    void testFailedAsyncSessionSendReleasesMessage() throws Exception {
+        transactionManager.begin();
+        try (Connection connection = connectionFactory.createConnection()) {
+            SessionProxy session = (SessionProxy) connection.createSession(Session.SESSION_TRANSACTED);
+            Queue queue = session.createQueue("reusable");
+            MessageProducer producer = session.createProducer(queue);
+            TextMessage message = session.getReusableTextMessage();
+            // a producer with a destination rejects other destinations before sending
+            assertThrows(UnsupportedOperationException.class, () -> producer.send(session.createQueue("other"), message, IGNORING_LISTENER));
+            assertSame(message, session.getReusableTextMessage());
+        } finally {
+            transactionManager.rollback();
+        }
+    }
+
+    @Test
+    void testFailedAsyncContextSendReleasesMessage() throws Exception {
+        transactionManager.begin();
+        try (ContextProxy context = (ContextProxy) connectionFactory.createContext()) {
+            TextMessage message = context.getReusableTextMessage();
+            assertThrows(JMSRuntimeException.class, () -> context.createProducer().setAsync(IGNORING_LISTENER).send(null, message));
+            assertSame(message, context.getReusableTextMessage());
+        } finally {
+            transactionManager.rollback();
+        }
+    }
+
+}
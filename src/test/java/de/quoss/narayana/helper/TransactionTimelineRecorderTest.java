@@ -0,0 +1,53 @@
+package de.quoss.narayana.helper;
+
+import de.quoss.narayana.helper.inmemory.InMemoryTransactionManager;
+import org.junit.jupiter.api.Test;
+
+import javax.transaction.Transaction;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TransactionTimelineRecorderTest {
+
+    private final InMemoryTransactionManager transactionManager = new InMemoryTransactionManager();
+
+    private final List<Integer> reportedEventCounts = new ArrayList<>();
+
+    @Test
+    void testTransactionKeepsTimelineAcrossThreads() throws Exception {
+        TransactionTimelineRecorder recorder = new TransactionTimelineRecorder(0L, 4, 64, t -> reportedEventCounts.add(t.getEventCount()));
+        transactionManager.begin();
+        Transaction transaction = transactionManager.getTransaction();
+        recorder.record(transaction, TimelinePhase.SEND_START);
+        CompletableFuture.runAsync(() -> recorder.record(transaction, TimelinePhase.SEND_END)).get();
+        transactionManager.resume(transactionManager.suspend());
+        recorder.record(transaction, TimelinePhase.DELIST_START);
+        transactionManager.commit();
+        // begin, three phases, before and after completion
+        assertEquals(1, reportedEventCounts.size());
+        assertEquals(6, reportedEventCounts.get(0));
+    }
+
+    @Test
+    void testFullRingSkipsTransaction() throws Exception {
+        TransactionTimelineRecorder recorder = new TransactionTimelineRecorder(0L, 1, 64, t -> reportedEventCounts.add(t.getEventCount()));
+        transactionManager.begin();
+        recorder.record(transactionManager.getTransaction(), TimelinePhase.SEND_START);
+        Transaction first = transactionManager.suspend();
+        transactionManager.begin();
+        recorder.record(transactionManager.getTransaction(), TimelinePhase.SEND_START);
+        transactionManager.commit();
+        assertEquals(0, reportedEventCounts.size());
+        transactionManager.resume(first);
+        transactionManager.commit();
+        assertEquals(1, reportedEventCounts.size());
+        transactionManager.begin();
+        recorder.record(transactionManager.getTransaction(), TimelinePhase.SEND_START);
+        transactionManager.commit();
+        assertEquals(2, reportedEventCounts.size());
+    }
+
+}
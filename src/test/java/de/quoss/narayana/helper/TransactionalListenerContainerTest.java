@@ -0,0 +1,108 @@
+package de.quoss.narayana.helper;
+
+import de.quoss.narayana.helper.inmemory.InMemoryTransactionManager;
+import de.quoss.narayana.helper.inmemory.InMemoryXAConnectionFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.jms.JMSContext;
+import javax.jms.Queue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TransactionalListenerContainerTest {
+
+    private InMemoryXAConnectionFactory physicalConnectionFactory;
+
+    private ConnectionFactoryProxy connectionFactory;
+
+    private TransactionHelper transactionHelper;
+
+    private ListenerContainerConfiguration configuration;
+
+    private Queue queue;
+
+    @BeforeEach
+    void setUp() {
+        physicalConnectionFactory = new InMemoryXAConnectionFactory();
+        transactionHelper = new NarayanaTransactionHelper(new InMemoryTransactionManager());
+        connectionFactory = new ConnectionFactoryProxy(physicalConnectionFactory, transactionHelper);
+        configuration = new ListenerContainerConfiguration();
+        configuration.setReceiveTimeoutMillis(50L);
+        try (JMSContext context = physicalConnectionFactory.createContext()) {
+            queue = context.createQueue("container");
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        connectionFactory.close();
+    }
+
+    @Test
+    void testFailingHandlerPausesForRecoveryInterval() throws Exception {
+        configuration.setRecoveryIntervalMillis(200L);
+        AtomicInteger calls = new AtomicInteger();
+        send(1);
+        try (TransactionalListenerContainer container = new TransactionalListenerContainer(connectionFactory, transactionHelper, queue, message -> {
+            calls.incrementAndGet();
+            throw new IllegalStateException("handler failed");
+        }, configuration)) {
+            container.start();
+            Thread.sleep(500L);
+        }
+        assertTrue(calls.get() >= 1 && calls.get() <= 4, "Handler called " + calls.get() + " times.");
+    }
+
+    @Test
+    void testSingleMessagesDoNotScaleUp() throws Exception {
+        configuration.setMaxConsumers(4);
+        CountDownLatch handled = new CountDownLatch(3);
+        try (TransactionalListenerContainer container = new TransactionalListenerContainer(connectionFactory, transactionHelper, queue,
+                message -> handled.countDown(), configuration)) {
+            container.start();
+            for (int i = 0; i < 3; i++) {
+                // sent while the consumer waits in receive
+                Thread.sleep(20L);
+                send(1);
+            }
+            assertTrue(handled.await(5L, TimeUnit.SECONDS));
+            assertEquals(1, container.getConsumerCount());
+        }
+    }
+
+    @Test
+    void testBacklogScalesUp() throws Exception {
+        configuration.setMaxConsumers(2);
+        send(10);
+        CountDownLatch handled = new CountDownLatch(10);
+        try (TransactionalListenerContainer container = new TransactionalListenerContainer(connectionFactory, transactionHelper, queue, message -> {
+            handled.countDown();
+            try {
+                Thread.sleep(10L);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, configuration)) {
+            container.start();
+            assertTrue(handled.await(5L, TimeUnit.SECONDS));
+            assertEquals(2, container.getConsumerCount());
+        }
+    }
+
+    // ---- Private Helper Methods ---------------------------------------
+
+    private void send(final int count) {
+        try (JMSContext context = physicalConnectionFactory.createContext()) {
+            for (int i = 0; i < count; i++) {
+                context.createProducer().send(queue, context.createTextMessage("message " + i));
+            }
+        }
+    }
+
+}
@@ -0,0 +1,70 @@
+package de.quoss.narayana.helper;
+
+import de.quoss.narayana.helper.inmemory.InMemoryTransactionManager;
+import de.quoss.narayana.helper.inmemory.InMemoryXAConnectionFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.jms.JMSException;
+import javax.jms.ServerSession;
+import javax.jms.XAConnection;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+class XAServerSessionPoolTest {
+
+    private XAConnection connection;
+
+    private TransactionHelper transactionHelper;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        connection = new InMemoryXAConnectionFactory().createXAConnection();
+        transactionHelper = new NarayanaTransactionHelper(new InMemoryTransactionManager());
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        connection.close();
+    }
+
+    @Test
+    void testRejectedDeliveryReturnsSession() throws Exception {
+        try (XAServerSessionPool pool = new XAServerSessionPool(connection, transactionHelper, message -> { }, 1, task -> {
+            throw new RejectedExecutionException("saturated");
+        })) {
+            for (int i = 0; i < 3; i++) {
+                ServerSession serverSession = assertTimeoutPreemptively(Duration.ofSeconds(5L), pool::getServerSession);
+                assertThrows(JMSException.class, serverSession::start);
+            }
+            assertEquals(1, pool.getIdleCount());
+        }
+    }
+
+    @Test
+    void testCloseWakesWaitingProvider() throws Exception {
+        XAServerSessionPool pool = new XAServerSessionPool(connection, transactionHelper, message -> { }, 1, Runnable::run);
+        pool.getServerSession();
+        CompletableFuture<ServerSession> waiting = CompletableFuture.supplyAsync(() -> {
+            try {
+                return pool.getServerSession();
+            } catch (JMSException e) {
+                throw new NarayanaHelperException(e);
+            }
+        });
+        Thread.sleep(50L);
+        pool.close();
+        ExecutionException e = assertThrows(ExecutionException.class, () -> waiting.get(5L, TimeUnit.SECONDS));
+        assertInstanceOf(javax.jms.IllegalStateException.class, e.getCause().getCause());
+    }
+
+}
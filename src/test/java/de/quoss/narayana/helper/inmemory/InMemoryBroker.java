@@ -0,0 +1,119 @@
+package de.quoss.narayana.helper.inmemory;
+
+import javax.jms.Destination;
+import javax.jms.InvalidDestinationException;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageFormatException;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * <p>
+ *   Queues of the in-memory provider, shared by all connections of its {@link InMemoryXAConnectionFactory}.
+ * </p>
+ * <p>
+ *   The broker can simulate the round trip to a remote provider: every physical send and every commit, prepare
+ *   or rollback of a transaction branch is delayed by the configured latency.
+ * </p>
+ */
+public class InMemoryBroker {
+
+    private final Map<String, BlockingQueue<InMemoryMessage>> queues = new ConcurrentHashMap<>();
+
+    private final AtomicLong messageIds = new AtomicLong();
+
+    private volatile long latencyNanos;
+
+    /**
+     * @param latencyMicros simulated latency of a round trip in microseconds, 0 for none.
+     */
+    public void setLatencyMicros(final long latencyMicros) {
+        this.latencyNanos = TimeUnit.MICROSECONDS.toNanos(latencyMicros);
+    }
+
+    /**
+     * @param name a queue name.
+     * @return number of committed messages waiting on the queue.
+     */
+    public int getDepth(final String name) {
+        BlockingQueue<InMemoryMessage> queue = queues.get(name);
+        return queue == null ? 0 : queue.size();
+    }
+
+    /**
+     * Drop all messages of all queues.
+     */
+    public void purge() {
+        for (BlockingQueue<InMemoryMessage> queue : queues.values()) {
+            queue.clear();
+        }
+    }
+
+    /**
+     * Put a copy of a message on a queue as if it had been sent and committed, without simulated latency, e.g. to
+     * feed the consumers of a benchmark.
+     *
+     * @param destination an in-memory queue.
+     * @param message an in-memory message.
+     * @throws JMSException if the destination or message is not one of this provider.
+     */
+    public void deliver(final Destination destination, final Message message) throws JMSException {
+        if (!(message instanceof InMemoryMessage)) {
+            throw new MessageFormatException(String.format("Message %s is not an in-memory message.", message));
+        }
+        InMemoryMessage copy = ((InMemoryMessage) message).copy();
+        stamp(copy, destination);
+        enqueue(destination, copy);
+    }
+
+    // ---- Provider Methods ---------------------------------------
+
+    void simulateLatency() {
+        long nanos = latencyNanos;
+        if (nanos > 0L) {
+            long deadline = System.nanoTime() + nanos;
+            for (long left = nanos; left > 0L; left = deadline - System.nanoTime()) {
+                LockSupport.parkNanos(left);
+            }
+        }
+    }
+
+    void stamp(final InMemoryMessage message, final Destination destination) throws JMSException {
+        message.setJMSDestination(destination);
+        message.setJMSMessageID("ID:" + messageIds.incrementAndGet());
+        message.setJMSTimestamp(System.currentTimeMillis());
+    }
+
+    void enqueue(final Destination destination, final InMemoryMessage message) throws JMSException {
+        getQueue(destination).add(message);
+    }
+
+    InMemoryMessage poll(final Destination destination, final long timeoutMillis) throws JMSException {
+        BlockingQueue<InMemoryMessage> queue = getQueue(destination);
+        if (timeoutMillis < 0L) {
+            return queue.poll();
+        }
+        try {
+            return timeoutMillis == 0L ? queue.take() : queue.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    // ---- Private Helper Methods ---------------------------------------
+
+    private BlockingQueue<InMemoryMessage> getQueue(final Destination destination) throws JMSException {
+        if (!(destination instanceof InMemoryQueue)) {
+            throw new InvalidDestinationException(String.format("Destination %s is not an in-memory queue.", destination));
+        }
+        return queues.computeIfAbsent(((InMemoryQueue) destination).getQueueName(), name -> new LinkedBlockingQueue<>());
+    }
+
+}
@@ -0,0 +1,222 @@
+package de.quoss.narayana.helper.inmemory;
+
+import javax.jms.BytesMessage;
+import javax.jms.JMSException;
+import javax.jms.MessageFormatException;
+import javax.jms.MessageNotReadableException;
+import javax.jms.MessageNotWriteableException;
+import java.util.Arrays;
+
+/**
+ * Bytes message of the in-memory provider, only the bulk read and write methods are supported.
+ */
+public class InMemoryBytesMessage extends InMemoryMessage implements BytesMessage {
+
+    private byte[] body = new byte[0];
+
+    private int length;
+
+    private int position;
+
+    private boolean readOnly;
+
+    @Override
+    InMemoryMessage newInstance() {
+        return new InMemoryBytesMessage();
+    }
+
+    @Override
+    void copyTo(final InMemoryMessage target) {
+        super.copyTo(target);
+        InMemoryBytesMessage bytesMessage = (InMemoryBytesMessage) target;
+        bytesMessage.body = Arrays.copyOf(body, length);
+        bytesMessage.length = length;
+        // delivered messages are read from the start
+        bytesMessage.readOnly = true;
+    }
+
+    // ---- BytesMessage API Methods ---------------------------------------
+
+    @Override
+    public long getBodyLength() throws MessageNotReadableException {
+        checkReadable();
+        return length;
+    }
+
+    @Override
+    public int readBytes(final byte[] value) throws MessageNotReadableException {
+        return readBytes(value, value.length);
+    }
+
+    @Override
+    public int readBytes(final byte[] value, final int count) throws MessageNotReadableException {
+        checkReadable();
+        if (position == length && count > 0) {
+            return -1;
+        }
+        int result = Math.min(count, length - position);
+        System.arraycopy(body, position, value, 0, result);
+        position += result;
+        return result;
+    }
+
+    @Override
+    public void writeBytes(final byte[] value) throws MessageNotWriteableException {
+        writeBytes(value, 0, value.length);
+    }
+
+    @Override
+    public void writeBytes(final byte[] value, final int offset, final int count) throws MessageNotWriteableException {
+        if (readOnly) {
+            throw new MessageNotWriteableException("Message is read-only.");
+        }
+        if (body.length < length + count) {
+            body = Arrays.copyOf(body, Math.max(body.length * 2, length + count));
+        }
+        System.arraycopy(value, offset, body, length, count);
+        length += count;
+    }
+
+    @Override
+    public void reset() {
+        readOnly = true;
+        position = 0;
+    }
+
+    @Override
+    public void clearBody() {
+        body = new byte[0];
+        length = 0;
+        position = 0;
+        readOnly = false;
+    }
+
+    @Override
+    public <T> T getBody(final Class<T> c) throws MessageFormatException {
+        if (!isBodyAssignableTo(c)) {
+            throw new MessageFormatException(String.format("Body of bytes message is not assignable to %s.", c.getName()));
+        }
+        return length == 0 ? null : c.cast(Arrays.copyOf(body, length));
+    }
+
+    @Override
+    public boolean isBodyAssignableTo(@SuppressWarnings("rawtypes") final Class c) {
+        return length == 0 || ((Class<?>) c).isAssignableFrom(byte[].class);
+    }
+
+    // ---- Private Helper Methods ---------------------------------------
+
+    private void checkReadable() throws MessageNotReadableException {
+        if (!readOnly) {
+            throw new MessageNotReadableException("Message is write-only, reset it first.");
+        }
+    }
+
+    // ---- Unsupported Methods ---------------------------------------
+
+    @Override
+    public boolean readBoolean() throws JMSException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public byte readByte() throws JMSException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public int readUnsignedByte() throws JMSException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public short readShort() throws JMSException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public int readUnsignedShort() throws JMSException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public char readChar() throws JMSException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public int readInt() throws JMSException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public long readLong() throws JMSException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public float readFloat() throws JMSException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public double readDouble() throws JMSException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public String readUTF() throws JMSException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void writeBoolean(final boolean bValue) throws JMSException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void writeByte(final byte bValue) throws JMSException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void writeShort(final short sValue) throws JMSException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void writeChar(final char cValue) throws JMSException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void writeInt(final int iValue) throws JMSException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void writeLong(final long lValue) throws JMSException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void writeFloat(final float fValue) throws JMSException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void writeDouble(final double dValue) throws JMSException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void writeUTF(final String string) throws JMSException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void writeObject(final Object value) throws JMSException {
+        throw new UnsupportedOperationException();
+    }
+
+}
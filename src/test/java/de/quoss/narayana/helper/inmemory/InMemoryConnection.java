@@ -0,0 +1,120 @@
+package de.quoss.narayana.helper.inmemory;
+
+import javax.jms.Connection;
+import javax.jms.ConnectionConsumer;
+import javax.jms.ConnectionMetaData;
+import javax.jms.Destination;
+import javax.jms.ExceptionListener;
+import javax.jms.IllegalStateException;
+import javax.jms.JMSException;
+import javax.jms.ServerSessionPool;
+import javax.jms.Session;
+import javax.jms.Topic;
+
+/**
+ * Connection of the in-memory provider.
+ */
+public class InMemoryConnection implements Connection {
+
+    private final InMemoryBroker broker;
+
+    private volatile ExceptionListener exceptionListener;
+
+    private volatile String clientID;
+
+    private volatile boolean closed;
+
+    InMemoryConnection(final InMemoryBroker broker) {
+        this.broker = broker;
+    }
+
+    InMemoryBroker getBroker() {
+        return broker;
+    }
+
+    void checkOpen() throws IllegalStateException {
+        if (closed) {
+            throw new IllegalStateException("Connection is closed.");
+        }
+    }
+
+    @Override
+    public Session createSession(final boolean transacted, final int acknowledgeMode) throws JMSException {
+        checkOpen();
+        return new InMemorySession(broker, transacted, acknowledgeMode);
+    }
+
+    @Override
+    public Session createSession(final int sessionMode) throws JMSException {
+        return createSession(sessionMode == Session.SESSION_TRANSACTED, sessionMode);
+    }
+
+    @Override
+    public Session createSession() throws JMSException {
+        return createSession(false, Session.AUTO_ACKNOWLEDGE);
+    }
+
+    @Override
+    public String getClientID() {
+        return clientID;
+    }
+
+    @Override
+    public void setClientID(final String clientID) {
+        this.clientID = clientID;
+    }
+
+    @Override
+    public ConnectionMetaData getMetaData() throws JMSException {
+        checkOpen();
+        return null;
+    }
+
+    @Override
+    public ExceptionListener getExceptionListener() {
+        return exceptionListener;
+    }
+
+    @Override
+    public void setExceptionListener(final ExceptionListener listener) {
+        this.exceptionListener = listener;
+    }
+
+    @Override
+    public void start() throws JMSException {
+        checkOpen();
+    }
+
+    @Override
+    public void stop() throws JMSException {
+        checkOpen();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+    }
+
+    // ---- Unsupported Methods ---------------------------------------
+
+    @Override
+    public ConnectionConsumer createConnectionConsumer(final Destination destination, final String string, final ServerSessionPool serverSessionPool, final int iValue) throws JMSException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public ConnectionConsumer createSharedConnectionConsumer(final Topic topic, final String string, final String string1, final ServerSessionPool serverSessionPool, final int iValue) throws JMSException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public ConnectionConsumer createDurableConnectionConsumer(final Topic topic, final String string, final String string1, final ServerSessionPool serverSessionPool, final int iValue) throws JMSException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public ConnectionConsumer createSharedDurableConnectionConsumer(final Topic topic, final String string, final String string1, final ServerSessionPool serverSessionPool, final int iValue) throws JMSException {
+        throw new UnsupportedOperationException();
+    }
+
+}
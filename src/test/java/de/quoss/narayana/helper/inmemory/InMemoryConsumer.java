@@ -0,0 +1,76 @@
+package de.quoss.narayana.helper.inmemory;
+
+import javax.jms.Destination;
+import javax.jms.IllegalStateException;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageConsumer;
+import javax.jms.MessageListener;
+
+/**
+ * Synchronous message consumer of the in-memory provider.
+ */
+public class InMemoryConsumer implements MessageConsumer {
+
+    private final InMemorySession session;
+
+    private final Destination destination;
+
+    private volatile boolean closed;
+
+    InMemoryConsumer(final InMemorySession session, final Destination destination) {
+        this.session = session;
+        this.destination = destination;
+    }
+
+    Destination getDestination() {
+        return destination;
+    }
+
+    @Override
+    public String getMessageSelector() {
+        return null;
+    }
+
+    @Override
+    public MessageListener getMessageListener() {
+        return null;
+    }
+
+    @Override
+    public void setMessageListener(final MessageListener listener) throws JMSException {
+        throw new JMSException("Asynchronous delivery is not supported by the in-memory provider.");
+    }
+
+    @Override
+    public Message receive() throws JMSException {
+        checkOpen();
+        return session.receive(destination, 0L);
+    }
+
+    @Override
+    public Message receive(final long timeout) throws JMSException {
+        checkOpen();
+        return session.receive(destination, timeout);
+    }
+
+    @Override
+    public Message receiveNoWait() throws JMSException {
+        checkOpen();
+        return session.receive(destination, -1L);
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+    }
+
+    // ---- Private Helper Methods ---------------------------------------
+
+    private void checkOpen() throws IllegalStateException {
+        if (closed) {
+            throw new IllegalStateException("Consumer is closed.");
+        }
+    }
+
+}
@@ -0,0 +1,302 @@
+package de.quoss.narayana.helper.inmemory;
+
+import javax.jms.BytesMessage;
+import javax.jms.ConnectionMetaData;
+import javax.jms.Destination;
+import javax.jms.ExceptionListener;
+import javax.jms.IllegalStateException;
+import javax.jms.IllegalStateRuntimeException;
+import javax.jms.InvalidDestinationException;
+import javax.jms.InvalidDestinationRuntimeException;
+import javax.jms.JMSConsumer;
+import javax.jms.JMSContext;
+import javax.jms.JMSException;
+import javax.jms.JMSProducer;
+import javax.jms.JMSRuntimeException;
+import javax.jms.MapMessage;
+import javax.jms.Message;
+import javax.jms.MessageFormatException;
+import javax.jms.MessageFormatRuntimeException;
+import javax.jms.ObjectMessage;
+import javax.jms.Queue;
+import javax.jms.QueueBrowser;
+import javax.jms.StreamMessage;
+import javax.jms.TemporaryQueue;
+import javax.jms.TemporaryTopic;
+import javax.jms.TextMessage;
+import javax.jms.Topic;
+import java.io.Serializable;
+
+/**
+ * Context of the in-memory provider, backed by an {@link InMemorySession}.
+ */
+public class InMemoryContext implements JMSContext {
+
+    private final InMemorySession session;
+
+    private final int sessionMode;
+
+    private volatile ExceptionListener exceptionListener;
+
+    private volatile boolean autoStart = true;
+
+    private volatile String clientID;
+
+    InMemoryContext(final InMemorySession session, final int sessionMode) {
+        this.session = session;
+        this.sessionMode = sessionMode;
+    }
+
+    InMemorySession getSession() {
+        return session;
+    }
+
+    static JMSRuntimeException toRuntimeException(final JMSException e) {
+        JMSRuntimeException result;
+        if (e instanceof IllegalStateException) {
+            result = new IllegalStateRuntimeException(e.getMessage(), e.getErrorCode(), e);
+        } else if (e instanceof InvalidDestinationException) {
+            result = new InvalidDestinationRuntimeException(e.getMessage(), e.getErrorCode(), e);
+        } else if (e instanceof MessageFormatException) {
+            result = new MessageFormatRuntimeException(e.getMessage(), e.getErrorCode(), e);
+        } else {
+            result = new JMSRuntimeException(e.getMessage(), e.getErrorCode(), e);
+        }
+        return result;
+    }
+
+    // ---- JMSContext API Methods ---------------------------------------
+
+    @Override
+    public JMSProducer createProducer() {
+        return new InMemoryJMSProducer(session);
+    }
+
+    @Override
+    public String getClientID() {
+        return clientID;
+    }
+
+    @Override
+    public void setClientID(final String clientID) {
+        this.clientID = clientID;
+    }
+
+    @Override
+    public ConnectionMetaData getMetaData() {
+        return null;
+    }
+
+    @Override
+    public ExceptionListener getExceptionListener() {
+        return exceptionListener;
+    }
+
+    @Override
+    public void setExceptionListener(final ExceptionListener listener) {
+        this.exceptionListener = listener;
+    }
+
+    @Override
+    public void start() {
+        // delivery is always started
+    }
+
+    @Override
+    public void stop() {
+        // delivery is always started
+    }
+
+    @Override
+    public void setAutoStart(final boolean autoStart) {
+        this.autoStart = autoStart;
+    }
+
+    @Override
+    public boolean getAutoStart() {
+        return autoStart;
+    }
+
+    @Override
+    public void close() {
+        try {
+            session.close();
+        } catch (JMSException e) {
+            throw toRuntimeException(e);
+        }
+    }
+
+    @Override
+    public Message createMessage() {
+        return new InMemoryMessage();
+    }
+
+    @Override
+    public BytesMessage createBytesMessage() {
+        return new InMemoryBytesMessage();
+    }
+
+    @Override
+    public TextMessage createTextMessage() {
+        return new InMemoryTextMessage();
+    }
+
+    @Override
+    public TextMessage createTextMessage(final String text) {
+        return new InMemoryTextMessage(text);
+    }
+
+    @Override
+    public boolean getTransacted() {
+        return sessionMode == JMSContext.SESSION_TRANSACTED;
+    }
+
+    @Override
+    public int getSessionMode() {
+        return sessionMode;
+    }
+
+    @Override
+    public void commit() {
+        try {
+            session.commit();
+        } catch (JMSException e) {
+            throw toRuntimeException(e);
+        }
+    }
+
+    @Override
+    public void rollback() {
+        try {
+            session.rollback();
+        } catch (JMSException e) {
+            throw toRuntimeException(e);
+        }
+    }
+
+    @Override
+    public void recover() {
+        // receives are acknowledged right away or with the transaction
+    }
+
+    @Override
+    public JMSConsumer createConsumer(final Destination destination) {
+        try {
+            return new InMemoryJMSConsumer((InMemoryConsumer) session.createConsumer(destination), session);
+        } catch (JMSException e) {
+            throw toRuntimeException(e);
+        }
+    }
+
+    @Override
+    public JMSConsumer createConsumer(final Destination destination, final String messageSelector) {
+        return createConsumer(destination);
+    }
+
+    @Override
+    public JMSConsumer createConsumer(final Destination destination, final String messageSelector, final boolean noLocal) {
+        return createConsumer(destination);
+    }
+
+    @Override
+    public Queue createQueue(final String queueName) {
+        return new InMemoryQueue(queueName);
+    }
+
+    @Override
+    public TemporaryQueue createTemporaryQueue() {
+        try {
+            return session.createTemporaryQueue();
+        } catch (JMSException e) {
+            throw toRuntimeException(e);
+        }
+    }
+
+    @Override
+    public void acknowledge() {
+        // receives are acknowledged right away or with the transaction
+    }
+
+    // ---- Unsupported Methods ---------------------------------------
+
+    @Override
+    public JMSContext createContext(final int iValue) {
+        throw new IllegalStateRuntimeException("Child contexts are not supported by the in-memory provider.");
+    }
+
+    @Override
+    public MapMessage createMapMessage() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public ObjectMessage createObjectMessage() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public ObjectMessage createObjectMessage(final Serializable serializable) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public StreamMessage createStreamMessage() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Topic createTopic(final String string) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public JMSConsumer createDurableConsumer(final Topic topic, final String string) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public JMSConsumer createDurableConsumer(final Topic topic, final String string, final String string1, final boolean bValue) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public JMSConsumer createSharedDurableConsumer(final Topic topic, final String string) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public JMSConsumer createSharedDurableConsumer(final Topic topic, final String string, final String string1) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public JMSConsumer createSharedConsumer(final Topic topic, final String string) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public JMSConsumer createSharedConsumer(final Topic topic, final String string, final String string1) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public QueueBrowser createBrowser(final Queue queue) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public QueueBrowser createBrowser(final Queue queue, final String string) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public TemporaryTopic createTemporaryTopic() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void unsubscribe(final String string) {
+        throw new UnsupportedOperationException();
+    }
+
+}
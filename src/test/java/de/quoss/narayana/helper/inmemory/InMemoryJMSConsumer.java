@@ -0,0 +1,109 @@
+package de.quoss.narayana.helper.inmemory;
+
+import javax.jms.Destination;
+import javax.jms.JMSConsumer;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageFormatRuntimeException;
+import javax.jms.MessageListener;
+
+/**
+ * <p>
+ *   Synchronous consumer of an {@link InMemoryContext}.
+ * </p>
+ * <p>
+ *   Like a provider following the specification, {@code receiveBody} leaves a message whose body has another type
+ *   on the queue unless the context belongs to a transaction, the rollback of which returns it.
+ * </p>
+ */
+public class InMemoryJMSConsumer implements JMSConsumer {
+
+    private final InMemoryConsumer consumer;
+
+    private final InMemorySession session;
+
+    InMemoryJMSConsumer(final InMemoryConsumer consumer, final InMemorySession session) {
+        this.consumer = consumer;
+        this.session = session;
+    }
+
+    @Override
+    public String getMessageSelector() {
+        return null;
+    }
+
+    @Override
+    public MessageListener getMessageListener() {
+        return null;
+    }
+
+    @Override
+    public void setMessageListener(final MessageListener listener) {
+        try {
+            consumer.setMessageListener(listener);
+        } catch (JMSException e) {
+            throw InMemoryContext.toRuntimeException(e);
+        }
+    }
+
+    @Override
+    public Message receive() {
+        return receive(0L);
+    }
+
+    @Override
+    public Message receive(final long timeout) {
+        try {
+            return consumer.receive(timeout);
+        } catch (JMSException e) {
+            throw InMemoryContext.toRuntimeException(e);
+        }
+    }
+
+    @Override
+    public Message receiveNoWait() {
+        try {
+            return consumer.receiveNoWait();
+        } catch (JMSException e) {
+            throw InMemoryContext.toRuntimeException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        consumer.close();
+    }
+
+    @Override
+    public <T> T receiveBody(final Class<T> c) {
+        return receiveBody(c, 0L);
+    }
+
+    @Override
+    public <T> T receiveBody(final Class<T> c, final long timeout) {
+        return getBody(consumer.getDestination(), receive(timeout), c);
+    }
+
+    @Override
+    public <T> T receiveBodyNoWait(final Class<T> c) {
+        return getBody(consumer.getDestination(), receiveNoWait(), c);
+    }
+
+    // ---- Private Helper Methods ---------------------------------------
+
+    private <T> T getBody(final Destination destination, final Message message, final Class<T> c) {
+        if (message == null) {
+            return null;
+        }
+        try {
+            if (!message.isBodyAssignableTo(c)) {
+                session.undeliver(destination, (InMemoryMessage) message);
+                throw new MessageFormatRuntimeException(String.format("Body of message %s is not assignable to %s.", message.getJMSMessageID(), c.getName()));
+            }
+            return message.getBody(c);
+        } catch (JMSException e) {
+            throw InMemoryContext.toRuntimeException(e);
+        }
+    }
+
+}
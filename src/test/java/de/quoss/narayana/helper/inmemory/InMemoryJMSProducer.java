@@ -0,0 +1,323 @@
+package de.quoss.narayana.helper.inmemory;
+
+import javax.jms.CompletionListener;
+import javax.jms.DeliveryMode;
+import javax.jms.Destination;
+import javax.jms.JMSException;
+import javax.jms.JMSProducer;
+import javax.jms.Message;
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Producer of an {@link InMemoryContext}.
+ */
+public class InMemoryJMSProducer implements JMSProducer {
+
+    private final InMemorySession session;
+
+    private final Map<String, Object> properties = new HashMap<>();
+
+    private boolean disableMessageID;
+
+    private boolean disableMessageTimestamp;
+
+    private int deliveryMode = DeliveryMode.PERSISTENT;
+
+    private int priority = Message.DEFAULT_PRIORITY;
+
+    private long timeToLive = Message.DEFAULT_TIME_TO_LIVE;
+
+    private long deliveryDelay = Message.DEFAULT_DELIVERY_DELAY;
+
+    private CompletionListener completionListener;
+
+    private String correlationID;
+
+    private String type;
+
+    private Destination replyTo;
+
+    InMemoryJMSProducer(final InMemorySession session) {
+        this.session = session;
+    }
+
+    @Override
+    public JMSProducer send(final Destination destination, final Message message) {
+        try {
+            for (Map.Entry<String, Object> entry : properties.entrySet()) {
+                message.setObjectProperty(entry.getKey(), entry.getValue());
+            }
+            if (correlationID != null) {
+                message.setJMSCorrelationID(correlationID);
+            }
+            if (type != null) {
+                message.setJMSType(type);
+            }
+            if (replyTo != null) {
+                message.setJMSReplyTo(replyTo);
+            }
+            session.send(destination, message, deliveryMode, priority, timeToLive);
+        } catch (JMSException e) {
+            // failures are thrown right away, completion is reported after the synchronous send
+            throw InMemoryContext.toRuntimeException(e);
+        }
+        if (completionListener != null) {
+            completionListener.onCompletion(message);
+        }
+        return this;
+    }
+
+    @Override
+    public JMSProducer send(final Destination destination, final String body) {
+        return send(destination, new InMemoryTextMessage(body));
+    }
+
+    @Override
+    public JMSProducer setDisableMessageID(final boolean value) {
+        this.disableMessageID = value;
+        return this;
+    }
+
+    @Override
+    public boolean getDisableMessageID() {
+        return disableMessageID;
+    }
+
+    @Override
+    public JMSProducer setDisableMessageTimestamp(final boolean value) {
+        this.disableMessageTimestamp = value;
+        return this;
+    }
+
+    @Override
+    public boolean getDisableMessageTimestamp() {
+        return disableMessageTimestamp;
+    }
+
+    @Override
+    public JMSProducer setDeliveryMode(final int deliveryMode) {
+        this.deliveryMode = deliveryMode;
+        return this;
+    }
+
+    @Override
+    public int getDeliveryMode() {
+        return deliveryMode;
+    }
+
+    @Override
+    public JMSProducer setPriority(final int priority) {
+        this.priority = priority;
+        return this;
+    }
+
+    @Override
+    public int getPriority() {
+        return priority;
+    }
+
+    @Override
+    public JMSProducer setTimeToLive(final long timeToLive) {
+        this.timeToLive = timeToLive;
+        return this;
+    }
+
+    @Override
+    public long getTimeToLive() {
+        return timeToLive;
+    }
+
+    @Override
+    public JMSProducer setDeliveryDelay(final long deliveryDelay) {
+        this.deliveryDelay = deliveryDelay;
+        return this;
+    }
+
+    @Override
+    public long getDeliveryDelay() {
+        return deliveryDelay;
+    }
+
+    @Override
+    public JMSProducer setAsync(final CompletionListener completionListener) {
+        this.completionListener = completionListener;
+        return this;
+    }
+
+    @Override
+    public CompletionListener getAsync() {
+        return completionListener;
+    }
+
+    @Override
+    public JMSProducer setProperty(final String name, final Object value) {
+        properties.put(name, value);
+        return this;
+    }
+
+    @Override
+    public JMSProducer setProperty(final String name, final String value) {
+        return setProperty(name, (Object) value);
+    }
+
+    @Override
+    public JMSProducer setProperty(final String name, final int value) {
+        return setProperty(name, (Object) value);
+    }
+
+    @Override
+    public JMSProducer setProperty(final String name, final long value) {
+        return setProperty(name, (Object) value);
+    }
+
+    @Override
+    public JMSProducer setProperty(final String name, final boolean value) {
+        return setProperty(name, (Object) value);
+    }
+
+    @Override
+    public JMSProducer clearProperties() {
+        properties.clear();
+        return this;
+    }
+
+    @Override
+    public boolean propertyExists(final String name) {
+        return properties.containsKey(name);
+    }
+
+    @Override
+    public Object getObjectProperty(final String name) {
+        return properties.get(name);
+    }
+
+    @Override
+    public String getStringProperty(final String name) {
+        Object value = properties.get(name);
+        return value == null ? null : value.toString();
+    }
+
+    @Override
+    public Set<String> getPropertyNames() {
+        return properties.keySet();
+    }
+
+    @Override
+    public JMSProducer setJMSCorrelationID(final String correlationID) {
+        this.correlationID = correlationID;
+        return this;
+    }
+
+    @Override
+    public String getJMSCorrelationID() {
+        return correlationID;
+    }
+
+    @Override
+    public JMSProducer setJMSType(final String type) {
+        this.type = type;
+        return this;
+    }
+
+    @Override
+    public String getJMSType() {
+        return type;
+    }
+
+    @Override
+    public JMSProducer setJMSReplyTo(final Destination replyTo) {
+        this.replyTo = replyTo;
+        return this;
+    }
+
+    @Override
+    public Destination getJMSReplyTo() {
+        return replyTo;
+    }
+
+    // ---- Unsupported Methods ---------------------------------------
+
+    @Override
+    public JMSProducer send(final Destination destination, final Map<String, Object> map) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public JMSProducer send(final Destination destination, final byte[] bValue) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public JMSProducer send(final Destination destination, final Serializable serializable) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public JMSProducer setProperty(final String string, final byte bValue) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public JMSProducer setProperty(final String string, final short sValue) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public JMSProducer setProperty(final String string, final float fValue) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public JMSProducer setProperty(final String string, final double dValue) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean getBooleanProperty(final String string) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public byte getByteProperty(final String string) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public short getShortProperty(final String string) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public int getIntProperty(final String string) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public long getLongProperty(final String string) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public float getFloatProperty(final String string) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public double getDoubleProperty(final String string) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public JMSProducer setJMSCorrelationIDAsBytes(final byte[] bValue) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public byte[] getJMSCorrelationIDAsBytes() {
+        throw new UnsupportedOperationException();
+    }
+
+}
@@ -0,0 +1,354 @@
+package de.quoss.narayana.helper.inmemory;
+
+import javax.jms.DeliveryMode;
+import javax.jms.Destination;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageFormatException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Message without body of the in-memory provider.
+ */
+public class InMemoryMessage implements Message {
+
+    /** Maintained by the provider, starts with 1 at the first delivery. */
+    private static final String DELIVERY_COUNT = "JMSXDeliveryCount";
+
+    private final Map<String, Object> properties = new HashMap<>();
+
+    private String messageId;
+
+    private long timestamp;
+
+    private String correlationId;
+
+    private Destination replyTo;
+
+    private Destination destination;
+
+    private int deliveryMode = DeliveryMode.PERSISTENT;
+
+    private boolean redelivered;
+
+    private String type;
+
+    private long expiration;
+
+    private long deliveryTime;
+
+    private int priority = Message.DEFAULT_PRIORITY;
+
+    private int deliveryCount;
+
+    /**
+     * @return a copy of this message as delivered to a consumer.
+     */
+    InMemoryMessage copy() {
+        InMemoryMessage result = newInstance();
+        copyTo(result);
+        return result;
+    }
+
+    InMemoryMessage newInstance() {
+        return new InMemoryMessage();
+    }
+
+    void copyTo(final InMemoryMessage target) {
+        target.properties.putAll(properties);
+        target.messageId = messageId;
+        target.timestamp = timestamp;
+        target.correlationId = correlationId;
+        target.replyTo = replyTo;
+        target.destination = destination;
+        target.deliveryMode = deliveryMode;
+        target.redelivered = redelivered;
+        target.type = type;
+        target.expiration = expiration;
+        target.deliveryTime = deliveryTime;
+        target.priority = priority;
+        target.deliveryCount = deliveryCount;
+    }
+
+    void delivered() {
+        deliveryCount++;
+        redelivered = deliveryCount > 1;
+    }
+
+    // ---- Message API Methods ---------------------------------------
+
+    @Override
+    public String getJMSMessageID() {
+        return messageId;
+    }
+
+    @Override
+    public void setJMSMessageID(final String id) {
+        this.messageId = id;
+    }
+
+    @Override
+    public long getJMSTimestamp() {
+        return timestamp;
+    }
+
+    @Override
+    public void setJMSTimestamp(final long timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    @Override
+    public byte[] getJMSCorrelationIDAsBytes() {
+        return correlationId == null ? null : correlationId.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void setJMSCorrelationIDAsBytes(final byte[] correlationId) {
+        this.correlationId = correlationId == null ? null : new String(correlationId, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void setJMSCorrelationID(final String correlationId) {
+        this.correlationId = correlationId;
+    }
+
+    @Override
+    public String getJMSCorrelationID() {
+        return correlationId;
+    }
+
+    @Override
+    public Destination getJMSReplyTo() {
+        return replyTo;
+    }
+
+    @Override
+    public void setJMSReplyTo(final Destination replyTo) {
+        this.replyTo = replyTo;
+    }
+
+    @Override
+    public Destination getJMSDestination() {
+        return destination;
+    }
+
+    @Override
+    public void setJMSDestination(final Destination destination) {
+        this.destination = destination;
+    }
+
+    @Override
+    public int getJMSDeliveryMode() {
+        return deliveryMode;
+    }
+
+    @Override
+    public void setJMSDeliveryMode(final int deliveryMode) {
+        this.deliveryMode = deliveryMode;
+    }
+
+    @Override
+    public boolean getJMSRedelivered() {
+        return redelivered;
+    }
+
+    @Override
+    public void setJMSRedelivered(final boolean redelivered) {
+        this.redelivered = redelivered;
+    }
+
+    @Override
+    public String getJMSType() {
+        return type;
+    }
+
+    @Override
+    public void setJMSType(final String type) {
+        this.type = type;
+    }
+
+    @Override
+    public long getJMSExpiration() {
+        return expiration;
+    }
+
+    @Override
+    public void setJMSExpiration(final long expiration) {
+        this.expiration = expiration;
+    }
+
+    @Override
+    public long getJMSDeliveryTime() {
+        return deliveryTime;
+    }
+
+    @Override
+    public void setJMSDeliveryTime(final long deliveryTime) {
+        this.deliveryTime = deliveryTime;
+    }
+
+    @Override
+    public int getJMSPriority() {
+        return priority;
+    }
+
+    @Override
+    public void setJMSPriority(final int priority) {
+        this.priority = priority;
+    }
+
+    @Override
+    public void clearProperties() {
+        properties.clear();
+    }
+
+    @Override
+    public boolean propertyExists(final String name) {
+        return DELIVERY_COUNT.equals(name) ? deliveryCount > 0 : properties.containsKey(name);
+    }
+
+    @Override
+    public boolean getBooleanProperty(final String name) {
+        Object value = properties.get(name);
+        return value instanceof Boolean ? (Boolean) value : Boolean.parseBoolean((String) value);
+    }
+
+    @Override
+    public byte getByteProperty(final String name) throws JMSException {
+        return (byte) getLong(name);
+    }
+
+    @Override
+    public short getShortProperty(final String name) throws JMSException {
+        return (short) getLong(name);
+    }
+
+    @Override
+    public int getIntProperty(final String name) throws JMSException {
+        return (int) getLong(name);
+    }
+
+    @Override
+    public long getLongProperty(final String name) throws JMSException {
+        return getLong(name);
+    }
+
+    @Override
+    public float getFloatProperty(final String name) throws JMSException {
+        return (float) getDoubleProperty(name);
+    }
+
+    @Override
+    public double getDoubleProperty(final String name) throws JMSException {
+        Object value = getObjectProperty(name);
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        }
+        if (value instanceof String) {
+            return Double.parseDouble((String) value);
+        }
+        throw new MessageFormatException(String.format("Property %s is not numeric.", name));
+    }
+
+    @Override
+    public String getStringProperty(final String name) {
+        Object value = getObjectProperty(name);
+        return value == null ? null : value.toString();
+    }
+
+    @Override
+    public Object getObjectProperty(final String name) {
+        return DELIVERY_COUNT.equals(name) ? (Object) deliveryCount : properties.get(name);
+    }
+
+    @Override
+    public Enumeration<String> getPropertyNames() {
+        return Collections.enumeration(properties.keySet());
+    }
+
+    @Override
+    public void setBooleanProperty(final String name, final boolean value) {
+        properties.put(name, value);
+    }
+
+    @Override
+    public void setByteProperty(final String name, final byte value) {
+        properties.put(name, value);
+    }
+
+    @Override
+    public void setShortProperty(final String name, final short value) {
+        properties.put(name, value);
+    }
+
+    @Override
+    public void setIntProperty(final String name, final int value) {
+        properties.put(name, value);
+    }
+
+    @Override
+    public void setLongProperty(final String name, final long value) {
+        properties.put(name, value);
+    }
+
+    @Override
+    public void setFloatProperty(final String name, final float value) {
+        properties.put(name, value);
+    }
+
+    @Override
+    public void setDoubleProperty(final String name, final double value) {
+        properties.put(name, value);
+    }
+
+    @Override
+    public void setStringProperty(final String name, final String value) {
+        properties.put(name, value);
+    }
+
+    @Override
+    public void setObjectProperty(final String name, final Object value) {
+        properties.put(name, value);
+    }
+
+    @Override
+    public void acknowledge() {
+        // acknowledged on receipt or with the transaction
+    }
+
+    @Override
+    public void clearBody() {
+        // no body
+    }
+
+    @Override
+    public <T> T getBody(final Class<T> c) throws JMSException {
+        return null;
+    }
+
+    @Override
+    public boolean isBodyAssignableTo(@SuppressWarnings("rawtypes") final Class c) {
+        return true;
+    }
+
+    // ---- Private Helper Methods ---------------------------------------
+
+    private long getLong(final String name) throws JMSException {
+        Object value = getObjectProperty(name);
+        if (value instanceof Byte || value instanceof Short || value instanceof Integer || value instanceof Long) {
+            return ((Number) value).longValue();
+        }
+        if (value instanceof String) {
+            return Long.parseLong((String) value);
+        }
+        if (value == null) {
+            throw new NumberFormatException(String.format("Property %s is not set.", name));
+        }
+        throw new MessageFormatException(String.format("Property %s is not integral.", name));
+    }
+
+}
@@ -0,0 +1,158 @@
+package de.quoss.narayana.helper.inmemory;
+
+import javax.jms.CompletionListener;
+import javax.jms.DeliveryMode;
+import javax.jms.Destination;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageProducer;
+
+/**
+ * Message producer of the in-memory provider.
+ */
+public class InMemoryProducer implements MessageProducer {
+
+    private final InMemorySession session;
+
+    private final Destination destination;
+
+    private boolean disableMessageID;
+
+    private boolean disableMessageTimestamp;
+
+    private int deliveryMode = DeliveryMode.PERSISTENT;
+
+    private int priority = Message.DEFAULT_PRIORITY;
+
+    private long timeToLive = Message.DEFAULT_TIME_TO_LIVE;
+
+    private long deliveryDelay = Message.DEFAULT_DELIVERY_DELAY;
+
+    InMemoryProducer(final InMemorySession session, final Destination destination) {
+        this.session = session;
+        this.destination = destination;
+    }
+
+    @Override
+    public void setDisableMessageID(final boolean value) {
+        this.disableMessageID = value;
+    }
+
+    @Override
+    public boolean getDisableMessageID() {
+        return disableMessageID;
+    }
+
+    @Override
+    public void setDisableMessageTimestamp(final boolean value) {
+        this.disableMessageTimestamp = value;
+    }
+
+    @Override
+    public boolean getDisableMessageTimestamp() {
+        return disableMessageTimestamp;
+    }
+
+    @Override
+    public void setDeliveryMode(final int deliveryMode) {
+        this.deliveryMode = deliveryMode;
+    }
+
+    @Override
+    public int getDeliveryMode() {
+        return deliveryMode;
+    }
+
+    @Override
+    public void setPriority(final int priority) {
+        this.priority = priority;
+    }
+
+    @Override
+    public int getPriority() {
+        return priority;
+    }
+
+    @Override
+    public void setTimeToLive(final long timeToLive) {
+        this.timeToLive = timeToLive;
+    }
+
+    @Override
+    public long getTimeToLive() {
+        return timeToLive;
+    }
+
+    @Override
+    public void setDeliveryDelay(final long deliveryDelay) {
+        this.deliveryDelay = deliveryDelay;
+    }
+
+    @Override
+    public long getDeliveryDelay() {
+        return deliveryDelay;
+    }
+
+    @Override
+    public Destination getDestination() {
+        return destination;
+    }
+
+    @Override
+    public void close() {
+        // nothing to release
+    }
+
+    @Override
+    public void send(final Message message) throws JMSException {
+        send(message, deliveryMode, priority, timeToLive);
+    }
+
+    @Override
+    public void send(final Message message, final int deliveryMode, final int priority, final long timeToLive) throws JMSException {
+        if (destination == null) {
+            throw new UnsupportedOperationException("Producer has no destination.");
+        }
+        session.send(destination, message, deliveryMode, priority, timeToLive);
+    }
+
+    @Override
+    public void send(final Destination destination, final Message message) throws JMSException {
+        send(destination, message, deliveryMode, priority, timeToLive);
+    }
+
+    @Override
+    public void send(final Destination destination, final Message message, final int deliveryMode, final int priority, final long timeToLive) throws JMSException {
+        if (this.destination != null) {
+            throw new UnsupportedOperationException("Producer has a destination.");
+        }
+        session.send(destination, message, deliveryMode, priority, timeToLive);
+    }
+
+    @Override
+    public void send(final Message message, final CompletionListener completionListener) throws JMSException {
+        send(message, deliveryMode, priority, timeToLive, completionListener);
+    }
+
+    @Override
+    public void send(final Message message, final int deliveryMode, final int priority, final long timeToLive, final CompletionListener completionListener)
+            throws JMSException {
+        // failures are thrown right away, completion is reported after the synchronous send
+        send(message, deliveryMode, priority, timeToLive);
+        completionListener.onCompletion(message);
+    }
+
+    @Override
+    public void send(final Destination destination, final Message message, final CompletionListener completionListener) throws JMSException {
+        send(destination, message, deliveryMode, priority, timeToLive, completionListener);
+    }
+
+    @Override
+    public void send(final Destination destination, final Message message, final int deliveryMode, final int priority, final long timeToLive,
+            final CompletionListener completionListener) throws JMSException {
+        // failures are thrown right away, completion is reported after the synchronous send
+        send(destination, message, deliveryMode, priority, timeToLive);
+        completionListener.onCompletion(message);
+    }
+
+}
@@ -0,0 +1,36 @@
+package de.quoss.narayana.helper.inmemory;
+
+import javax.jms.Queue;
+
+/**
+ * Queue of the in-memory provider.
+ */
+public class InMemoryQueue implements Queue {
+
+    private final String name;
+
+    public InMemoryQueue(final String name) {
+        this.name = name;
+    }
+
+    @Override
+    public String getQueueName() {
+        return name;
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+        return other instanceof InMemoryQueue && ((InMemoryQueue) other).name.equals(name);
+    }
+
+    @Override
+    public int hashCode() {
+        return name.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "queue://" + name;
+    }
+
+}
@@ -0,0 +1,335 @@
+package de.quoss.narayana.helper.inmemory;
+
+import javax.jms.BytesMessage;
+import javax.jms.Destination;
+import javax.jms.IllegalStateException;
+import javax.jms.InvalidDestinationException;
+import javax.jms.JMSException;
+import javax.jms.MapMessage;
+import javax.jms.Message;
+import javax.jms.MessageConsumer;
+import javax.jms.MessageFormatException;
+import javax.jms.MessageListener;
+import javax.jms.MessageProducer;
+import javax.jms.ObjectMessage;
+import javax.jms.Queue;
+import javax.jms.QueueBrowser;
+import javax.jms.Session;
+import javax.jms.StreamMessage;
+import javax.jms.TemporaryQueue;
+import javax.jms.TemporaryTopic;
+import javax.jms.TextMessage;
+import javax.jms.Topic;
+import javax.jms.TopicSubscriber;
+import java.io.Serializable;
+import java.util.UUID;
+
+/**
+ * <p>
+ *   Session of the in-memory provider.
+ * </p>
+ * <p>
+ *   A transacted session keeps its sends and receives until {@link #commit()} or {@link #rollback()}. Otherwise
+ *   sends are delivered and receives acknowledged right away, unless the session belongs to an active xa
+ *   transaction branch, see {@link InMemoryXASession}.
+ * </p>
+ */
+public class InMemorySession implements Session {
+
+    private final InMemoryBroker broker;
+
+    private final boolean transacted;
+
+    private final int acknowledgeMode;
+
+    private final InMemoryWork localWork;
+
+    private volatile InMemoryWork branch;
+
+    private volatile MessageListener messageListener;
+
+    private volatile boolean closed;
+
+    InMemorySession(final InMemoryBroker broker, final boolean transacted, final int acknowledgeMode) {
+        this.broker = broker;
+        this.transacted = transacted;
+        this.acknowledgeMode = transacted ? Session.SESSION_TRANSACTED : acknowledgeMode;
+        this.localWork = transacted ? new InMemoryWork(broker) : null;
+    }
+
+    // ---- Provider Methods ---------------------------------------
+
+    InMemoryBroker getBroker() {
+        return broker;
+    }
+
+    void setBranch(final InMemoryWork branch) {
+        this.branch = branch;
+    }
+
+    void send(final Destination destination, final Message message, final int deliveryMode, final int priority, final long timeToLive) throws JMSException {
+        checkOpen();
+        if (destination == null) {
+            throw new InvalidDestinationException("Destination must not be null.");
+        }
+        if (!(message instanceof InMemoryMessage)) {
+            throw new MessageFormatException(String.format("Message %s is not an in-memory message.", message));
+        }
+        broker.stamp((InMemoryMessage) message, destination);
+        message.setJMSDeliveryMode(deliveryMode);
+        message.setJMSPriority(priority);
+        message.setJMSExpiration(timeToLive == 0L ? 0L : message.getJMSTimestamp() + timeToLive);
+        InMemoryMessage copy = ((InMemoryMessage) message).copy();
+        InMemoryWork work = getWork();
+        if (work == null) {
+            broker.simulateLatency();
+            broker.enqueue(destination, copy);
+        } else {
+            work.sent(destination, copy);
+        }
+    }
+
+    InMemoryMessage receive(final Destination destination, final long timeoutMillis) throws JMSException {
+        checkOpen();
+        InMemoryMessage result = broker.poll(destination, timeoutMillis);
+        if (result != null) {
+            result.delivered();
+            InMemoryWork work = getWork();
+            if (work != null) {
+                work.received(destination, result);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Return a received message whose body the receiver could not take, it stays with the transaction if there
+     * is one.
+     */
+    void undeliver(final Destination destination, final InMemoryMessage message) throws JMSException {
+        if (getWork() == null) {
+            broker.enqueue(destination, message);
+        }
+    }
+
+    // ---- Session API Methods ---------------------------------------
+
+    @Override
+    public Message createMessage() throws JMSException {
+        checkOpen();
+        return new InMemoryMessage();
+    }
+
+    @Override
+    public BytesMessage createBytesMessage() throws JMSException {
+        checkOpen();
+        return new InMemoryBytesMessage();
+    }
+
+    @Override
+    public TextMessage createTextMessage() throws JMSException {
+        checkOpen();
+        return new InMemoryTextMessage();
+    }
+
+    @Override
+    public TextMessage createTextMessage(final String text) throws JMSException {
+        checkOpen();
+        return new InMemoryTextMessage(text);
+    }
+
+    @Override
+    public boolean getTransacted() throws JMSException {
+        checkOpen();
+        return transacted;
+    }
+
+    @Override
+    public int getAcknowledgeMode() throws JMSException {
+        checkOpen();
+        return acknowledgeMode;
+    }
+
+    @Override
+    public void commit() throws JMSException {
+        checkOpen();
+        if (!transacted) {
+            throw new IllegalStateException("Session is not transacted.");
+        }
+        localWork.commit();
+    }
+
+    @Override
+    public void rollback() throws JMSException {
+        checkOpen();
+        if (!transacted) {
+            throw new IllegalStateException("Session is not transacted.");
+        }
+        localWork.rollback();
+    }
+
+    @Override
+    public void close() throws JMSException {
+        if (!closed) {
+            closed = true;
+            if (transacted) {
+                localWork.rollback();
+            }
+        }
+    }
+
+    @Override
+    public void recover() throws JMSException {
+        checkOpen();
+    }
+
+    @Override
+    public MessageListener getMessageListener() {
+        return messageListener;
+    }
+
+    @Override
+    public void setMessageListener(final MessageListener listener) {
+        this.messageListener = listener;
+    }
+
+    @Override
+    public MessageProducer createProducer(final Destination destination) throws JMSException {
+        checkOpen();
+        return new InMemoryProducer(this, destination);
+    }
+
+    @Override
+    public MessageConsumer createConsumer(final Destination destination) throws JMSException {
+        checkOpen();
+        return new InMemoryConsumer(this, destination);
+    }
+
+    @Override
+    public MessageConsumer createConsumer(final Destination destination, final String messageSelector) throws JMSException {
+        return createConsumer(destination);
+    }
+
+    @Override
+    public MessageConsumer createConsumer(final Destination destination, final String messageSelector, final boolean noLocal) throws JMSException {
+        return createConsumer(destination);
+    }
+
+    @Override
+    public Queue createQueue(final String queueName) throws JMSException {
+        checkOpen();
+        return new InMemoryQueue(queueName);
+    }
+
+    @Override
+    public TemporaryQueue createTemporaryQueue() throws JMSException {
+        checkOpen();
+        return new InMemoryTemporaryQueue("temp." + UUID.randomUUID());
+    }
+
+    // ---- Private Helper Methods ---------------------------------------
+
+    private InMemoryWork getWork() {
+        InMemoryWork work = branch;
+        return work == null ? localWork : work;
+    }
+
+    private void checkOpen() throws IllegalStateException {
+        if (closed) {
+            throw new IllegalStateException("Session is closed.");
+        }
+    }
+
+    // ---- Unsupported Methods ---------------------------------------
+
+    @Override
+    public MapMessage createMapMessage() throws JMSException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public ObjectMessage createObjectMessage() throws JMSException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public ObjectMessage createObjectMessage(final Serializable serializable) throws JMSException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public StreamMessage createStreamMessage() throws JMSException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void run() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public MessageConsumer createSharedConsumer(final Topic topic, final String string) throws JMSException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public MessageConsumer createSharedConsumer(final Topic topic, final String string, final String string1) throws JMSException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Topic createTopic(final String string) throws JMSException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public TopicSubscriber createDurableSubscriber(final Topic topic, final String string) throws JMSException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public TopicSubscriber createDurableSubscriber(final Topic topic, final String string, final String string1, final boolean bValue) throws JMSException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public MessageConsumer createDurableConsumer(final Topic topic, final String string) throws JMSException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public MessageConsumer createDurableConsumer(final Topic topic, final String string, final String string1, final boolean bValue) throws JMSException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public MessageConsumer createSharedDurableConsumer(final Topic topic, final String string) throws JMSException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public MessageConsumer createSharedDurableConsumer(final Topic topic, final String string, final String string1) throws JMSException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public QueueBrowser createBrowser(final Queue queue) throws JMSException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public QueueBrowser createBrowser(final Queue queue, final String string) throws JMSException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public TemporaryTopic createTemporaryTopic() throws JMSException {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void unsubscribe(final String string) throws JMSException {
+        throw new UnsupportedOperationException();
+    }
+
+}
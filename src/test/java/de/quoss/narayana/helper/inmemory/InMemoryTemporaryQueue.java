@@ -0,0 +1,19 @@
+package de.quoss.narayana.helper.inmemory;
+
+import javax.jms.TemporaryQueue;
+
+/**
+ * Temporary queue of the in-memory provider, its messages stay on the broker until it is purged.
+ */
+public class InMemoryTemporaryQueue extends InMemoryQueue implements TemporaryQueue {
+
+    InMemoryTemporaryQueue(final String name) {
+        super(name);
+    }
+
+    @Override
+    public void delete() {
+        // nothing to release
+    }
+
+}
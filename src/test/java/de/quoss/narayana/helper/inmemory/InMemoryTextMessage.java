@@ -0,0 +1,61 @@
+package de.quoss.narayana.helper.inmemory;
+
+import javax.jms.MessageFormatException;
+import javax.jms.TextMessage;
+
+/**
+ * Text message of the in-memory provider.
+ */
+public class InMemoryTextMessage extends InMemoryMessage implements TextMessage {
+
+    private String text;
+
+    public InMemoryTextMessage() {
+    }
+
+    public InMemoryTextMessage(final String text) {
+        this.text = text;
+    }
+
+    @Override
+    InMemoryMessage newInstance() {
+        return new InMemoryTextMessage();
+    }
+
+    @Override
+    void copyTo(final InMemoryMessage target) {
+        super.copyTo(target);
+        ((InMemoryTextMessage) target).text = text;
+    }
+
+    // ---- TextMessage API Methods ---------------------------------------
+
+    @Override
+    public void setText(final String text) {
+        this.text = text;
+    }
+
+    @Override
+    public String getText() {
+        return text;
+    }
+
+    @Override
+    public void clearBody() {
+        text = null;
+    }
+
+    @Override
+    public <T> T getBody(final Class<T> c) throws MessageFormatException {
+        if (text != null && !c.isAssignableFrom(String.class)) {
+            throw new MessageFormatException(String.format("Body of text message is not assignable to %s.", c.getName()));
+        }
+        return c.cast(text);
+    }
+
+    @Override
+    public boolean isBodyAssignableTo(@SuppressWarnings("rawtypes") final Class c) {
+        return text == null || ((Class<?>) c).isAssignableFrom(String.class);
+    }
+
+}
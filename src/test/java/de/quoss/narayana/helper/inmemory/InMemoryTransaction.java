@@ -0,0 +1,284 @@
+package de.quoss.narayana.helper.inmemory;
+
+import javax.transaction.HeuristicMixedException;
+import javax.transaction.RollbackException;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.SystemException;
+import javax.transaction.Transaction;
+import javax.transaction.xa.XAException;
+import javax.transaction.xa.XAResource;
+import javax.transaction.xa.Xid;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>
+ *   Transaction of the {@link InMemoryTransactionManager}, committing a single branch in one phase and several
+ *   branches in two phases.
+ * </p>
+ * <p>
+ *   Like Narayana's reaper a timed out transaction is marked rollback only, here when its status is next asked
+ *   for. {@link #getRemainingTimeoutMills()} mirrors Narayana's {@code TransactionImple}, which the
+ *   {@code NarayanaTransactionHelper} looks up by reflection.
+ * </p>
+ */
+public class InMemoryTransaction implements Transaction {
+
+    private static final AtomicLong IDS = new AtomicLong();
+
+    private static final int FORMAT_ID = 0x4e48;
+
+    private final long id = IDS.incrementAndGet();
+
+    private final long deadlineNanos;
+
+    private final List<XAResource> resources = new ArrayList<>();
+
+    private final List<Xid> xids = new ArrayList<>();
+
+    private final List<Boolean> associated = new ArrayList<>();
+
+    private final List<Synchronization> synchronizations = new ArrayList<>();
+
+    private int status = Status.STATUS_ACTIVE;
+
+    /**
+     * @param timeoutSeconds timeout of the transaction, 0 for none.
+     */
+    InMemoryTransaction(final int timeoutSeconds) {
+        this.deadlineNanos = timeoutSeconds > 0 ? System.nanoTime() + TimeUnit.SECONDS.toNanos(timeoutSeconds) : 0L;
+    }
+
+    /**
+     * @return remaining time in milliseconds, 0 if the transaction has no timeout, negative once it timed out.
+     */
+    public long getRemainingTimeoutMills() {
+        return deadlineNanos == 0L ? 0L : TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime());
+    }
+
+    @Override
+    public synchronized int getStatus() {
+        if (status == Status.STATUS_ACTIVE && deadlineNanos != 0L && System.nanoTime() - deadlineNanos >= 0L) {
+            status = Status.STATUS_MARKED_ROLLBACK;
+        }
+        return status;
+    }
+
+    @Override
+    public synchronized boolean enlistResource(final XAResource resource) throws RollbackException, SystemException {
+        checkActive();
+        int index = resources.indexOf(resource);
+        try {
+            if (index < 0) {
+                Xid xid = new BranchXid(id, resources.size());
+                resource.start(xid, XAResource.TMNOFLAGS);
+                resources.add(resource);
+                xids.add(xid);
+                associated.add(Boolean.TRUE);
+            } else if (!associated.get(index)) {
+                resource.start(xids.get(index), XAResource.TMJOIN);
+                associated.set(index, Boolean.TRUE);
+            }
+        } catch (XAException e) {
+            throw systemException("Error enlisting resource.", e);
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized boolean delistResource(final XAResource resource, final int flag) throws SystemException {
+        int index = resources.indexOf(resource);
+        if (index < 0 || !associated.get(index)) {
+            throw new IllegalStateException("Resource is not enlisted.");
+        }
+        try {
+            resource.end(xids.get(index), flag);
+        } catch (XAException e) {
+            throw systemException("Error delisting resource.", e);
+        }
+        associated.set(index, Boolean.FALSE);
+        if (flag == XAResource.TMFAIL) {
+            setRollbackOnly();
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized void registerSynchronization(final Synchronization synchronization) throws RollbackException {
+        checkActive();
+        synchronizations.add(synchronization);
+    }
+
+    @Override
+    public synchronized void setRollbackOnly() {
+        if (status == Status.STATUS_ACTIVE) {
+            status = Status.STATUS_MARKED_ROLLBACK;
+        }
+    }
+
+    @Override
+    public void commit() throws RollbackException, HeuristicMixedException, SystemException {
+        List<Synchronization> before;
+        synchronized (this) {
+            if (getStatus() != Status.STATUS_ACTIVE && status != Status.STATUS_MARKED_ROLLBACK) {
+                throw new IllegalStateException(String.format("Transaction cannot commit [status=%d].", status));
+            }
+            before = new ArrayList<>(synchronizations);
+        }
+        if (getStatus() == Status.STATUS_ACTIVE) {
+            for (Synchronization synchronization : before) {
+                try {
+                    synchronization.beforeCompletion();
+                } catch (RuntimeException e) {
+                    setRollbackOnly();
+                    break;
+                }
+            }
+        }
+        synchronized (this) {
+            endAssociated();
+            if (getStatus() == Status.STATUS_MARKED_ROLLBACK) {
+                rollbackBranches();
+                complete(Status.STATUS_ROLLEDBACK);
+                throw new RollbackException("Transaction was marked rollback only or timed out.");
+            }
+            status = Status.STATUS_PREPARING;
+            boolean onePhase = resources.size() == 1;
+            if (!onePhase) {
+                for (int i = 0; i < resources.size(); i++) {
+                    try {
+                        resources.get(i).prepare(xids.get(i));
+                    } catch (XAException e) {
+                        rollbackBranches();
+                        complete(Status.STATUS_ROLLEDBACK);
+                        RollbackException exception = new RollbackException("Prepare failed.");
+                        exception.initCause(e);
+                        throw exception;
+                    }
+                }
+            }
+            status = Status.STATUS_COMMITTING;
+            XAException failure = null;
+            for (int i = 0; i < resources.size(); i++) {
+                try {
+                    resources.get(i).commit(xids.get(i), onePhase);
+                } catch (XAException e) {
+                    failure = e;
+                }
+            }
+            if (failure != null && onePhase) {
+                complete(Status.STATUS_ROLLEDBACK);
+                RollbackException exception = new RollbackException("Commit failed.");
+                exception.initCause(failure);
+                throw exception;
+            }
+            complete(Status.STATUS_COMMITTED);
+            if (failure != null) {
+                HeuristicMixedException exception = new HeuristicMixedException("Commit of a prepared branch failed.");
+                exception.initCause(failure);
+                throw exception;
+            }
+        }
+    }
+
+    @Override
+    public synchronized void rollback() {
+        if (status != Status.STATUS_ACTIVE && status != Status.STATUS_MARKED_ROLLBACK) {
+            throw new IllegalStateException(String.format("Transaction cannot roll back [status=%d].", status));
+        }
+        endAssociated();
+        rollbackBranches();
+        complete(Status.STATUS_ROLLEDBACK);
+    }
+
+    @Override
+    public String toString() {
+        return "InMemoryTransaction[id=" + id + "]";
+    }
+
+    // ---- Private Helper Methods ---------------------------------------
+
+    private void checkActive() throws RollbackException {
+        int current = getStatus();
+        if (current == Status.STATUS_MARKED_ROLLBACK) {
+            throw new RollbackException("Transaction is marked rollback only.");
+        }
+        if (current != Status.STATUS_ACTIVE) {
+            throw new IllegalStateException(String.format("Transaction is not active [status=%d].", current));
+        }
+    }
+
+    private void endAssociated() {
+        for (int i = 0; i < resources.size(); i++) {
+            if (associated.get(i)) {
+                try {
+                    resources.get(i).end(xids.get(i), XAResource.TMSUCCESS);
+                } catch (XAException e) {
+                    setRollbackOnly();
+                }
+                associated.set(i, Boolean.FALSE);
+            }
+        }
+    }
+
+    private void rollbackBranches() {
+        status = Status.STATUS_ROLLING_BACK;
+        for (int i = 0; i < resources.size(); i++) {
+            try {
+                resources.get(i).rollback(xids.get(i));
+            } catch (XAException e) {
+                // the branch is gone already
+            }
+        }
+    }
+
+    private void complete(final int completedStatus) {
+        status = completedStatus;
+        for (Synchronization synchronization : synchronizations) {
+            try {
+                synchronization.afterCompletion(completedStatus);
+            } catch (RuntimeException e) {
+                // like Narayana, failing synchronizations do not affect the outcome
+            }
+        }
+    }
+
+    private static SystemException systemException(final String message, final XAException cause) {
+        SystemException result = new SystemException(message);
+        result.initCause(cause);
+        return result;
+    }
+
+    private static final class BranchXid implements Xid {
+
+        private final byte[] globalTransactionId;
+
+        private final byte[] branchQualifier;
+
+        private BranchXid(final long id, final int branch) {
+            this.globalTransactionId = ByteBuffer.allocate(Long.BYTES).putLong(id).array();
+            this.branchQualifier = ByteBuffer.allocate(Integer.BYTES).putInt(branch).array();
+        }
+
+        @Override
+        public int getFormatId() {
+            return FORMAT_ID;
+        }
+
+        @Override
+        public byte[] getGlobalTransactionId() {
+            return globalTransactionId.clone();
+        }
+
+        @Override
+        public byte[] getBranchQualifier() {
+            return branchQualifier.clone();
+        }
+
+    }
+
+}
@@ -0,0 +1,104 @@
+package de.quoss.narayana.helper.inmemory;
+
+import javax.transaction.HeuristicMixedException;
+import javax.transaction.InvalidTransactionException;
+import javax.transaction.NotSupportedException;
+import javax.transaction.RollbackException;
+import javax.transaction.Status;
+import javax.transaction.SystemException;
+import javax.transaction.Transaction;
+import javax.transaction.TransactionManager;
+
+/**
+ * Transaction manager associating {@link InMemoryTransaction}s with threads, standing in for Narayana in tests
+ * and benchmarks.
+ */
+public class InMemoryTransactionManager implements TransactionManager {
+
+    private final ThreadLocal<InMemoryTransaction> current = new ThreadLocal<>();
+
+    private volatile int timeoutSeconds;
+
+    @Override
+    public void begin() throws NotSupportedException {
+        if (current.get() != null) {
+            throw new NotSupportedException("Thread is already associated with a transaction.");
+        }
+        current.set(new InMemoryTransaction(timeoutSeconds));
+    }
+
+    @Override
+    public void commit() throws RollbackException, HeuristicMixedException, SystemException {
+        InMemoryTransaction txn = getCurrent();
+        try {
+            txn.commit();
+        } finally {
+            current.remove();
+        }
+    }
+
+    @Override
+    public void rollback() {
+        InMemoryTransaction txn = getCurrent();
+        try {
+            txn.rollback();
+        } finally {
+            current.remove();
+        }
+    }
+
+    @Override
+    public void setRollbackOnly() {
+        getCurrent().setRollbackOnly();
+    }
+
+    @Override
+    public int getStatus() {
+        InMemoryTransaction txn = current.get();
+        return txn == null ? Status.STATUS_NO_TRANSACTION : txn.getStatus();
+    }
+
+    @Override
+    public Transaction getTransaction() {
+        return current.get();
+    }
+
+    /**
+     * @param seconds timeout of the transactions begun afterwards by any thread, 0 for none.
+     */
+    @Override
+    public void setTransactionTimeout(final int seconds) {
+        this.timeoutSeconds = seconds;
+    }
+
+    @Override
+    public Transaction suspend() {
+        InMemoryTransaction result = current.get();
+        current.remove();
+        return result;
+    }
+
+    @Override
+    public void resume(final Transaction transaction) throws InvalidTransactionException {
+        if (transaction != null && !(transaction instanceof InMemoryTransaction)) {
+            throw new InvalidTransactionException(String.format("Transaction %s is not an in-memory transaction.", transaction));
+        }
+        if (current.get() != null) {
+            throw new IllegalStateException("Thread is already associated with a transaction.");
+        }
+        if (transaction != null) {
+            current.set((InMemoryTransaction) transaction);
+        }
+    }
+
+    // ---- Private Helper Methods ---------------------------------------
+
+    private InMemoryTransaction getCurrent() {
+        InMemoryTransaction result = current.get();
+        if (result == null) {
+            throw new IllegalStateException("Thread is not associated with a transaction.");
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,62 @@
+package de.quoss.narayana.helper.inmemory;
+
+import javax.jms.Destination;
+import javax.jms.JMSException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sends and receives of a local transaction or an xa transaction branch, applied to the broker on completion.
+ */
+final class InMemoryWork {
+
+    private final InMemoryBroker broker;
+
+    private final List<Destination> sentTo = new ArrayList<>();
+
+    private final List<InMemoryMessage> sent = new ArrayList<>();
+
+    private final List<Destination> receivedFrom = new ArrayList<>();
+
+    private final List<InMemoryMessage> received = new ArrayList<>();
+
+    InMemoryWork(final InMemoryBroker broker) {
+        this.broker = broker;
+    }
+
+    synchronized void sent(final Destination destination, final InMemoryMessage message) {
+        sentTo.add(destination);
+        sent.add(message);
+    }
+
+    synchronized void received(final Destination destination, final InMemoryMessage message) {
+        receivedFrom.add(destination);
+        received.add(message);
+    }
+
+    synchronized void commit() throws JMSException {
+        broker.simulateLatency();
+        for (int i = 0; i < sent.size(); i++) {
+            broker.enqueue(sentTo.get(i), sent.get(i));
+        }
+        clear();
+    }
+
+    synchronized void rollback() throws JMSException {
+        broker.simulateLatency();
+        for (int i = 0; i < received.size(); i++) {
+            broker.enqueue(receivedFrom.get(i), received.get(i));
+        }
+        clear();
+    }
+
+    // ---- Private Helper Methods ---------------------------------------
+
+    private void clear() {
+        sentTo.clear();
+        sent.clear();
+        receivedFrom.clear();
+        received.clear();
+    }
+
+}
@@ -0,0 +1,22 @@
+package de.quoss.narayana.helper.inmemory;
+
+import javax.jms.JMSException;
+import javax.jms.XAConnection;
+import javax.jms.XASession;
+
+/**
+ * Xa connection of the in-memory provider.
+ */
+public class InMemoryXAConnection extends InMemoryConnection implements XAConnection {
+
+    InMemoryXAConnection(final InMemoryBroker broker) {
+        super(broker);
+    }
+
+    @Override
+    public XASession createXASession() throws JMSException {
+        checkOpen();
+        return new InMemoryXASession(getBroker());
+    }
+
+}
@@ -0,0 +1,112 @@
+package de.quoss.narayana.helper.inmemory;
+
+import javax.jms.Connection;
+import javax.jms.ConnectionFactory;
+import javax.jms.JMSContext;
+import javax.jms.XAConnection;
+import javax.jms.XAConnectionFactory;
+import javax.jms.XAJMSContext;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>
+ *   Connection factory of an in-memory provider for tests and benchmarks, handing out plain and xa resources
+ *   which share the queues of one {@link InMemoryBroker}.
+ * </p>
+ * <p>
+ *   Only point-to-point messaging with synchronous consumers and text messages is supported.
+ * </p>
+ */
+public class InMemoryXAConnectionFactory implements ConnectionFactory, XAConnectionFactory {
+
+    private final InMemoryBroker broker;
+
+    private final AtomicInteger openedConnections = new AtomicInteger();
+
+    private final AtomicInteger openedContexts = new AtomicInteger();
+
+    public InMemoryXAConnectionFactory() {
+        this(new InMemoryBroker());
+    }
+
+    public InMemoryXAConnectionFactory(final InMemoryBroker broker) {
+        this.broker = broker;
+    }
+
+    public InMemoryBroker getBroker() {
+        return broker;
+    }
+
+    /**
+     * @return number of physical connections opened so far.
+     */
+    public int getOpenedConnections() {
+        return openedConnections.get();
+    }
+
+    /**
+     * @return number of physical contexts opened so far.
+     */
+    public int getOpenedContexts() {
+        return openedContexts.get();
+    }
+
+    // ---- ConnectionFactory API Methods ---------------------------------------
+
+    @Override
+    public Connection createConnection() {
+        openedConnections.incrementAndGet();
+        return new InMemoryConnection(broker);
+    }
+
+    @Override
+    public Connection createConnection(final String userName, final String password) {
+        return createConnection();
+    }
+
+    @Override
+    public JMSContext createContext() {
+        return createContext(JMSContext.AUTO_ACKNOWLEDGE);
+    }
+
+    @Override
+    public JMSContext createContext(final String userName, final String password) {
+        return createContext();
+    }
+
+    @Override
+    public JMSContext createContext(final String userName, final String password, final int sessionMode) {
+        return createContext(sessionMode);
+    }
+
+    @Override
+    public JMSContext createContext(final int sessionMode) {
+        openedContexts.incrementAndGet();
+        return new InMemoryContext(new InMemorySession(broker, sessionMode == JMSContext.SESSION_TRANSACTED, sessionMode), sessionMode);
+    }
+
+    // ---- XAConnectionFactory API Methods ---------------------------------------
+
+    @Override
+    public XAConnection createXAConnection() {
+        openedConnections.incrementAndGet();
+        return new InMemoryXAConnection(broker);
+    }
+
+    @Override
+    public XAConnection createXAConnection(final String userName, final String password) {
+        return createXAConnection();
+    }
+
+    @Override
+    public XAJMSContext createXAContext() {
+        openedContexts.incrementAndGet();
+        return new InMemoryXAContext(new InMemoryXASession(broker));
+    }
+
+    @Override
+    public XAJMSContext createXAContext(final String userName, final String password) {
+        return createXAContext();
+    }
+
+}
@@ -0,0 +1,31 @@
+package de.quoss.narayana.helper.inmemory;
+
+import javax.jms.JMSContext;
+import javax.jms.XAJMSContext;
+import javax.transaction.xa.XAResource;
+
+/**
+ * Xa context of the in-memory provider, backed by an {@link InMemoryXASession}.
+ */
+public class InMemoryXAContext extends InMemoryContext implements XAJMSContext {
+
+    InMemoryXAContext(final InMemoryXASession session) {
+        super(session, JMSContext.SESSION_TRANSACTED);
+    }
+
+    @Override
+    public JMSContext getContext() {
+        return this;
+    }
+
+    @Override
+    public XAResource getXAResource() {
+        return ((InMemoryXASession) getSession()).getXAResource();
+    }
+
+    @Override
+    public boolean getTransacted() {
+        return true;
+    }
+
+}
@@ -0,0 +1,112 @@
+package de.quoss.narayana.helper.inmemory;
+
+import javax.jms.JMSException;
+import javax.transaction.xa.XAException;
+import javax.transaction.xa.XAResource;
+import javax.transaction.xa.Xid;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Xa resource of an {@link InMemoryXASession}, keeping the work of each branch until it completes.
+ */
+public class InMemoryXAResource implements XAResource {
+
+    private final InMemorySession session;
+
+    private final Map<Xid, InMemoryWork> branches = new ConcurrentHashMap<>();
+
+    InMemoryXAResource(final InMemorySession session) {
+        this.session = session;
+    }
+
+    @Override
+    public void start(final Xid xid, final int flags) throws XAException {
+        InMemoryWork work;
+        if ((flags & (TMJOIN | TMRESUME)) != 0) {
+            work = branches.get(xid);
+            if (work == null) {
+                throw new XAException(XAException.XAER_NOTA);
+            }
+        } else {
+            work = new InMemoryWork(session.getBroker());
+            if (branches.putIfAbsent(xid, work) != null) {
+                throw new XAException(XAException.XAER_DUPID);
+            }
+        }
+        session.setBranch(work);
+    }
+
+    @Override
+    public void end(final Xid xid, final int flags) throws XAException {
+        if (!branches.containsKey(xid)) {
+            throw new XAException(XAException.XAER_NOTA);
+        }
+        session.setBranch(null);
+    }
+
+    @Override
+    public int prepare(final Xid xid) throws XAException {
+        if (!branches.containsKey(xid)) {
+            throw new XAException(XAException.XAER_NOTA);
+        }
+        session.getBroker().simulateLatency();
+        return XA_OK;
+    }
+
+    @Override
+    public void commit(final Xid xid, final boolean onePhase) throws XAException {
+        complete(xid, true);
+    }
+
+    @Override
+    public void rollback(final Xid xid) throws XAException {
+        complete(xid, false);
+    }
+
+    @Override
+    public void forget(final Xid xid) {
+        branches.remove(xid);
+    }
+
+    @Override
+    public Xid[] recover(final int flag) {
+        return new Xid[0];
+    }
+
+    @Override
+    public boolean isSameRM(final XAResource other) {
+        return other == this;
+    }
+
+    @Override
+    public int getTransactionTimeout() {
+        return 0;
+    }
+
+    @Override
+    public boolean setTransactionTimeout(final int seconds) {
+        return false;
+    }
+
+    // ---- Private Helper Methods ---------------------------------------
+
+    private void complete(final Xid xid, final boolean commit) throws XAException {
+        InMemoryWork work = branches.remove(xid);
+        if (work == null) {
+            throw new XAException(XAException.XAER_NOTA);
+        }
+        try {
+            if (commit) {
+                work.commit();
+            } else {
+                work.rollback();
+            }
+        } catch (JMSException e) {
+            XAException exception = new XAException(XAException.XAER_RMERR);
+            exception.initCause(e);
+            throw exception;
+        }
+    }
+
+}
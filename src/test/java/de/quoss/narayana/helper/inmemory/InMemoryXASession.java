@@ -0,0 +1,30 @@
+package de.quoss.narayana.helper.inmemory;
+
+import javax.jms.Session;
+import javax.jms.XASession;
+import javax.transaction.xa.XAResource;
+
+/**
+ * Xa session of the in-memory provider, its sends and receives belong to the transaction branch its
+ * {@link XAResource} is associated with.
+ */
+public class InMemoryXASession extends InMemorySession implements XASession {
+
+    private final InMemoryXAResource xaResource;
+
+    InMemoryXASession(final InMemoryBroker broker) {
+        super(broker, false, Session.AUTO_ACKNOWLEDGE);
+        this.xaResource = new InMemoryXAResource(this);
+    }
+
+    @Override
+    public Session getSession() {
+        return this;
+    }
+
+    @Override
+    public XAResource getXAResource() {
+        return xaResource;
+    }
+
+}